@@ -4,6 +4,7 @@ import felosy.services.CryptoDataService;
 import felosy.services.GoldDataService;
 import felosy.services.RealEstateDataService;
 import felosy.services.StockDataService;
+import felosy.services.UserProvisioningService;
 import felosy.authentication.User;
 import felosy.assetmanagement.Portfolio;
 import felosy.storage.DataStorage;
@@ -32,6 +33,8 @@ public class    App extends Application {
     @Override
     public void start(Stage stage) throws IOException {
         primaryStage = stage;
+        // Deleting an account also removes its portfolios and holdings
+        UserProvisioningService.getInstance().installAccountDeleter();
         Parent root = loadFXML("login");
         Scene scene = new Scene(root);
         stage.setScene(scene);
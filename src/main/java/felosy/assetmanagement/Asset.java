@@ -4,6 +4,7 @@ import java.io.Serializable;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.Date;
+import java.util.Locale;
 
 public abstract class Asset implements Serializable {
     private static final long serialVersionUID = 1L;
@@ -13,6 +14,7 @@ public abstract class Asset implements Serializable {
     private BigDecimal purchasePrice;
     private BigDecimal currentValue;
     private Date actionDate; // Date when asset was added
+    private String currency; // Null means the instrument's currency, else USD
 
     public Asset(String assetId, String name, Date purchaseDate, BigDecimal purchasePrice, BigDecimal currentValue) {
         this.assetId = assetId;
@@ -38,6 +40,41 @@ public abstract class Asset implements Serializable {
      * @return current price of Asset
      */
     public abstract BigDecimal fetchPrice();
+
+    /**
+     *
+     * @return symbol of the traded instrument behind this asset, or null if it has none
+     */
+    public String getInstrumentSymbol() {
+        return null;
+    }
+
+    /**
+     *
+     * @return ID of the instrument in the {@link InstrumentRegistry}, or -1 if it has none
+     */
+    public int getInstrumentId() {
+        String symbol = getInstrumentSymbol();
+        return symbol != null ? InstrumentRegistry.getInstance().intern(symbol) : -1;
+    }
+
+    /**
+     *
+     * @return units of the instrument held (shares, coins, grams), or null if the asset is not held in units
+     */
+    public BigDecimal getQuantity() {
+        return null;
+    }
+
+    /**
+     * Values the asset at a given unit price without fetching a new quote.
+     * Assets that are not quoted per unit fall back to their current value.
+     * @param unitPrice price of one unit of the instrument
+     * @return value of the whole holding at that price
+     */
+    public BigDecimal valueAt(BigDecimal unitPrice) {
+        return getCurrentValue();
+    }
     
     // Getters and setters
     public String getAssetId() {
@@ -89,6 +126,28 @@ public abstract class Asset implements Serializable {
         this.currentValue = currentValue;
     }
     
+    /**
+     *
+     * @return currency the asset is valued in
+     */
+    public String getCurrency() {
+        if (currency != null) {
+            return currency;
+        }
+        String symbol = getInstrumentSymbol();
+        Instrument instrument = symbol != null ? InstrumentRegistry.getInstance().get(symbol) : null;
+        return instrument != null && instrument.getCurrency() != null
+            ? instrument.getCurrency()
+            : FxRateTable.BASE_CURRENCY;
+    }
+
+    public void setCurrency(String currency) {
+        if (!FxRateTable.getInstance().isSupported(currency)) {
+            throw new IllegalArgumentException("Unsupported currency: " + currency);
+        }
+        this.currency = currency.trim().toUpperCase(Locale.ROOT);
+    }
+    
     public void setActionDate(Date actionDate) {
         if (actionDate == null) {
             throw new IllegalArgumentException("Action date can not be null");
@@ -109,6 +168,7 @@ public abstract class Asset implements Serializable {
            ", purchaseDate=" + purchaseDate +
            ", purchasePrice=" + purchasePrice +
            ", currentValue=" + currentValue +
+           ", currency=" + getCurrency() +
            ", actionDate=" + actionDate +
            ", return=" + calculateReturn() +
            '}';
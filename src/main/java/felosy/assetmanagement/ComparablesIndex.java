@@ -0,0 +1,374 @@
+package felosy.assetmanagement;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Local dataset of comparable property sales used to value real estate.
+ * Sales are indexed by location token and property type; within each group
+ * they are sorted by log area, so the nearest sales by size and recency are
+ * found by walking outwards from a binary search instead of scanning the set.
+ * The index is rebuilt lazily after sales are added and carries a version
+ * number that valuations use to tell when their cached result went stale.
+ * Prices are in US dollars.
+ */
+public final class ComparablesIndex {
+    private static final Logger LOGGER = Logger.getLogger(ComparablesIndex.class.getName());
+    private static final String BUNDLED_FILE = "real_estate_comparables.csv";
+    private static final String USER_FILE = "data/real_estate_comparables.csv";
+    private static final String ANY_LOCATION = "*";
+    private static final int DEFAULT_NEIGHBOURS = 5;
+    // Doubling the area counts as far as a sale five years older
+    private static final double AREA_SCALE = Math.log(2.0);
+    private static final double YEARS_SCALE = 5.0;
+    private static final ComparablesIndex instance = new ComparablesIndex();
+
+    private final List<LocalDate> dates = new ArrayList<>();
+    private final List<String> locations = new ArrayList<>();
+    private final List<RealEstate.PropertyType> types = new ArrayList<>();
+    private final List<Double> areas = new ArrayList<>();
+    private final List<Double> prices = new ArrayList<>();
+    private volatile Index index;
+    private volatile long version;
+
+    private ComparablesIndex() {
+        loadBundledSales();
+        loadUserSales();
+    }
+
+    public static ComparablesIndex getInstance() {
+        return instance;
+    }
+
+    /**
+     * Adds a comparable sale
+     * @param date Date of the sale
+     * @param location Free-text location, e.g. "Maadi, Cairo"
+     * @param type Type of the property sold
+     * @param areaSquareMeters Area of the property
+     * @param priceUsd Sale price in US dollars
+     */
+    public synchronized void addSale(LocalDate date, String location, RealEstate.PropertyType type,
+                                     double areaSquareMeters, double priceUsd) {
+        if (date == null || type == null) {
+            throw new IllegalArgumentException("Date and property type cannot be null");
+        }
+        if (location == null || location.trim().isEmpty()) {
+            throw new IllegalArgumentException("Location cannot be null or empty");
+        }
+        if (!(areaSquareMeters > 0.0) || !(priceUsd > 0.0)) {
+            throw new IllegalArgumentException("Area and price must be positive");
+        }
+        dates.add(date);
+        locations.add(location.trim());
+        types.add(type);
+        areas.add(areaSquareMeters);
+        prices.add(priceUsd);
+        index = null;
+        version++;
+    }
+
+    /**
+     * Estimates the price per square meter from the nearest comparable sales
+     * @param location Location of the property
+     * @param type Type of the property
+     * @param areaSquareMeters Area of the property
+     * @return Distance-weighted price per square meter in US dollars, or null if no sale of that type is known
+     */
+    public BigDecimal estimatePricePerSquareMeter(String location, RealEstate.PropertyType type,
+                                                  BigDecimal areaSquareMeters) {
+        if (location == null || type == null || areaSquareMeters == null || areaSquareMeters.signum() <= 0) {
+            throw new IllegalArgumentException("Location, type and a positive area are required");
+        }
+        Index current = index;
+        if (current == null) {
+            current = rebuildIndex();
+        }
+        double estimate = current.estimate(tokenize(location), type, Math.log(areaSquareMeters.doubleValue()),
+                (int) LocalDate.now().toEpochDay(), DEFAULT_NEIGHBOURS);
+        return Double.isNaN(estimate) ? null : BigDecimal.valueOf(estimate).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * @return a number that changes whenever the comparables data changes
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public synchronized int size() {
+        return dates.size();
+    }
+
+    /**
+     * Loads sales from a CSV file with the columns date,property_type,area_sqm,price_usd,location.
+     * The location is the rest of the line and may contain commas.
+     * @param file The file to load
+     * @return Number of sales read
+     * @throws IOException if the file cannot be read
+     */
+    public int load(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return load(reader);
+        }
+    }
+
+    private int load(Reader source) throws IOException {
+        int count = 0;
+        BufferedReader reader = new BufferedReader(source);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#") || line.startsWith("date,")) {
+                continue;
+            }
+            String[] fields = line.split(",", 5);
+            try {
+                if (fields.length < 5) {
+                    throw new IllegalArgumentException("Missing columns");
+                }
+                addSale(LocalDate.parse(fields[0].trim()),
+                    fields[4],
+                    RealEstate.PropertyType.valueOf(fields[1].trim().toUpperCase(Locale.ROOT)),
+                    Double.parseDouble(fields[2].trim()),
+                    Double.parseDouble(fields[3].trim()));
+                count++;
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                LOGGER.warning("Skipping invalid comparable sale line: " + line);
+            }
+        }
+        return count;
+    }
+
+    private synchronized Index rebuildIndex() {
+        if (index != null) {
+            return index;
+        }
+        // Group sale positions by location token and type, including an any-location group
+        Map<String, List<List<Integer>>> groups = new HashMap<>();
+        int typeCount = RealEstate.PropertyType.values().length;
+        for (int sale = 0; sale < dates.size(); sale++) {
+            Set<String> tokens = tokenize(locations.get(sale));
+            tokens.add(ANY_LOCATION);
+            int type = types.get(sale).ordinal();
+            for (String token : tokens) {
+                List<List<Integer>> byType = groups.computeIfAbsent(token,
+                    key -> new ArrayList<>(Collections.nCopies(typeCount, null)));
+                if (byType.get(type) == null) {
+                    byType.set(type, new ArrayList<>());
+                }
+                byType.get(type).add(sale);
+            }
+        }
+
+        Map<String, Bucket[]> buckets = new HashMap<>(groups.size() * 2);
+        for (Map.Entry<String, List<List<Integer>>> entry : groups.entrySet()) {
+            Bucket[] byType = new Bucket[typeCount];
+            for (int type = 0; type < typeCount; type++) {
+                List<Integer> sales = entry.getValue().get(type);
+                if (sales != null) {
+                    byType[type] = new Bucket(sales);
+                }
+            }
+            buckets.put(entry.getKey(), byType);
+        }
+        index = new Index(buckets);
+        LOGGER.fine("Indexed " + dates.size() + " comparable sales under " + buckets.size() + " location tokens");
+        return index;
+    }
+
+    /**
+     * Splits a location into lower-case words, e.g. "New Cairo, Egypt" into new, cairo, egypt
+     */
+    private static Set<String> tokenize(String location) {
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String token : location.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (token.length() > 1) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private void loadBundledSales() {
+        try (InputStream input = getClass().getClassLoader().getResourceAsStream(BUNDLED_FILE)) {
+            if (input != null) {
+                int count = load(new InputStreamReader(input, StandardCharsets.UTF_8));
+                LOGGER.info("Loaded " + count + " bundled comparable sales");
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not load bundled comparable sales", e);
+        }
+    }
+
+    private void loadUserSales() {
+        Path file = Paths.get(USER_FILE);
+        if (!Files.exists(file)) {
+            return;
+        }
+        try {
+            int count = load(file);
+            LOGGER.info("Loaded " + count + " comparable sales from " + USER_FILE);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not load comparable sales from " + USER_FILE, e);
+        }
+    }
+
+    /**
+     * Sales of one type under one location token, sorted by log area
+     */
+    private final class Bucket {
+        private final int[] saleIds;
+        private final double[] logAreas;
+        private final int[] days;
+        private final double[] pricesPerSquareMeter;
+
+        private Bucket(List<Integer> sales) {
+            int n = sales.size();
+            Integer[] order = sales.toArray(new Integer[0]);
+            Arrays.sort(order, (a, b) -> Double.compare(areas.get(a), areas.get(b)));
+            saleIds = new int[n];
+            logAreas = new double[n];
+            days = new int[n];
+            pricesPerSquareMeter = new double[n];
+            for (int i = 0; i < n; i++) {
+                int sale = order[i];
+                saleIds[i] = sale;
+                logAreas[i] = Math.log(areas.get(sale));
+                days[i] = (int) dates.get(sale).toEpochDay();
+                pricesPerSquareMeter[i] = prices.get(sale) / areas.get(sale);
+            }
+        }
+
+        /**
+         * Offers the sales closest to a log area to the running nearest set
+         */
+        private void search(double logArea, int today, Neighbours neighbours) {
+            int right = Arrays.binarySearch(logAreas, logArea);
+            if (right < 0) {
+                right = -right - 1;
+            }
+            int left = right - 1;
+            while (left >= 0 || right < logAreas.length) {
+                double leftGap = left >= 0 ? (logArea - logAreas[left]) / AREA_SCALE : Double.POSITIVE_INFINITY;
+                double rightGap = right < logAreas.length ? (logAreas[right] - logArea) / AREA_SCALE : Double.POSITIVE_INFINITY;
+                boolean goLeft = leftGap <= rightGap;
+                double areaGap = goLeft ? leftGap : rightGap;
+                // Every remaining sale is at least this far away on area alone
+                if (areaGap >= neighbours.worst()) {
+                    return;
+                }
+                int i = goLeft ? left-- : right++;
+                double ageYears = Math.abs(today - days[i]) / 365.25;
+                neighbours.offer(saleIds[i], areaGap + ageYears / YEARS_SCALE, pricesPerSquareMeter[i]);
+            }
+        }
+    }
+
+    /**
+     * The k closest sales seen so far
+     */
+    private static final class Neighbours {
+        private final int[] saleIds;
+        private final double[] distances;
+        private final double[] values;
+        private int size;
+
+        private Neighbours(int k) {
+            saleIds = new int[k];
+            distances = new double[k];
+            values = new double[k];
+        }
+
+        private double worst() {
+            return size < distances.length ? Double.POSITIVE_INFINITY : distances[size - 1];
+        }
+
+        private void offer(int saleId, double distance, double value) {
+            for (int i = 0; i < size; i++) {
+                if (saleIds[i] == saleId) {
+                    return;
+                }
+            }
+            if (distance >= worst()) {
+                return;
+            }
+            int i = size < distances.length ? size++ : size - 1;
+            // Insertion sort keeps the k entries ordered by distance
+            while (i > 0 && distances[i - 1] > distance) {
+                saleIds[i] = saleIds[i - 1];
+                distances[i] = distances[i - 1];
+                values[i] = values[i - 1];
+                i--;
+            }
+            saleIds[i] = saleId;
+            distances[i] = distance;
+            values[i] = value;
+        }
+
+        /**
+         * @return inverse-distance weighted mean of the values, or NaN if empty
+         */
+        private double weightedMean() {
+            double weighted = 0.0;
+            double weights = 0.0;
+            for (int i = 0; i < size; i++) {
+                double weight = 1.0 / (distances[i] + 0.05);
+                weighted += weight * values[i];
+                weights += weight;
+            }
+            return size == 0 ? Double.NaN : weighted / weights;
+        }
+    }
+
+    /**
+     * Immutable lookup from location token and property type to sales
+     */
+    private static final class Index {
+        private final Map<String, Bucket[]> buckets;
+
+        private Index(Map<String, Bucket[]> buckets) {
+            this.buckets = buckets;
+        }
+
+        private double estimate(Set<String> tokens, RealEstate.PropertyType type, double logArea, int today, int k) {
+            Neighbours neighbours = new Neighbours(k);
+            for (String token : tokens) {
+                Bucket[] byType = buckets.get(token);
+                if (byType != null && byType[type.ordinal()] != null) {
+                    byType[type.ordinal()].search(logArea, today, neighbours);
+                }
+            }
+            // No local sales of this type: fall back to the same type anywhere
+            if (neighbours.size == 0) {
+                Bucket[] byType = buckets.get(ANY_LOCATION);
+                if (byType != null && byType[type.ordinal()] != null) {
+                    byType[type.ordinal()].search(logArea, today, neighbours);
+                }
+            }
+            return neighbours.weightedMean();
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package felosy.assetmanagement;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.util.Date;
@@ -21,15 +23,51 @@ public final class Cryptocurrency extends Asset implements Serializable {
         public String toString() {
             return this.name();
         }
+
+        /**
+         * @return ID of this coin in the {@link InstrumentRegistry}
+         */
+        public int getInstrumentId() {
+            return InstrumentRegistry.getInstance().intern(toString());
+        }
+
+        /**
+         * Finds the alias for a symbol
+         * @param symbol Coin symbol, e.g. "BTC"
+         * @return The matching coin, or OTHER if the symbol has no alias
+         */
+        public static CoinType fromSymbol(String symbol) {
+            if (symbol == null) {
+                return OTHER;
+            }
+            try {
+                return valueOf(symbol.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                return OTHER;
+            }
+        }
     }
     
+    private static final BigDecimal DEFAULT_PRICE = new BigDecimal("100.0");
+    
     private CoinType coin;
+    private String symbol;
     private BigDecimal amount;
     
     public Cryptocurrency(String assetId, String name, Date purchaseDate, BigDecimal purchasePrice, 
                          BigDecimal currentValue, CoinType coin, BigDecimal amount) {
         super(assetId, name, purchaseDate, purchasePrice, currentValue);
-        this.coin = coin;
+        setCoin(coin);
+        setAmount(amount);
+    }
+    
+    /**
+     * Creates a holding of any registered coin, including ones without a CoinType alias
+     */
+    public Cryptocurrency(String assetId, String name, Date purchaseDate, BigDecimal purchasePrice, 
+                         BigDecimal currentValue, String symbol, BigDecimal amount) {
+        super(assetId, name, purchaseDate, purchasePrice, currentValue);
+        setSymbol(symbol);
         setAmount(amount);
     }
     
@@ -37,24 +75,30 @@ public final class Cryptocurrency extends Asset implements Serializable {
     public BigDecimal fetchPrice() {
         // Implementation to fetch current cryptocurrency price
         // This is a placeholder - real implementation would query market APIs
-        System.out.println("Fetching current price for: " + coin);
-        BigDecimal price;
-        
-        switch (coin) {
-            case BTC:
-                price = new BigDecimal("45000.0");
-                break;
-            case ETH:
-                price = new BigDecimal("2500.0");
-                break;
-            default:
-                price = new BigDecimal("100.0");
-        }
+        System.out.println("Fetching current price for: " + symbol);
+        BigDecimal price = symbol != null
+            ? InstrumentRegistry.getInstance().getMarketPrice(symbol, DEFAULT_PRICE)
+            : DEFAULT_PRICE;
         
         setCurrentValue(price);
         return price;
     }
     
+    @Override
+    public String getInstrumentSymbol() {
+        return symbol;
+    }
+    
+    @Override
+    public BigDecimal getQuantity() {
+        return amount;
+    }
+    
+    @Override
+    public BigDecimal valueAt(BigDecimal unitPrice) {
+        return unitPrice.multiply(amount);
+    }
+    
     @Override
     public BigDecimal getCurrentValue() {
         return fetchPrice().multiply(amount);
@@ -67,6 +111,19 @@ public final class Cryptocurrency extends Asset implements Serializable {
     
     public void setCoin(CoinType coin) {
         this.coin = coin;
+        this.symbol = coin != null ? coin.toString() : null;
+    }
+    
+    public String getSymbol() {
+        return symbol;
+    }
+    
+    public void setSymbol(String symbol) {
+        if (symbol == null || symbol.trim().isEmpty()) {
+            throw new IllegalArgumentException("Coin symbol cannot be null or empty");
+        }
+        this.symbol = InstrumentRegistry.getInstance().get(InstrumentRegistry.getInstance().intern(symbol)).getSymbol();
+        this.coin = CoinType.fromSymbol(this.symbol);
     }
     
     public BigDecimal getAmount() {
@@ -88,9 +145,17 @@ public final class Cryptocurrency extends Asset implements Serializable {
                ", purchaseDate=" + getPurchaseDate() +
                ", purchasePrice=" + getPurchasePrice() +
                ", currentValue=" + getCurrentValue() +
-               ", coin=" + coin +
+               ", coin=" + symbol +
                ", amount=" + amount +
                ", return=" + calculateReturn() +
                '}';
     }
+    
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        // Holdings saved before symbols were stored only have the enum
+        if (symbol == null && coin != null) {
+            symbol = coin.toString();
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,323 @@
+package felosy.assetmanagement;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Shared table of currency exchange rates.
+ * Every rate is stored against the US dollar with the time it was set.
+ * Cross rates between any two currencies are triangulated through the dollar
+ * and cached in a dense matrix, rebuilt only after a rate changes, so bulk
+ * conversions cost one array lookup per amount.
+ */
+public final class FxRateTable {
+    private static final Logger LOGGER = Logger.getLogger(FxRateTable.class.getName());
+    public static final String BASE_CURRENCY = "USD";
+    private static final String BUNDLED_FILE = "fx_rates.csv";
+    private static final String USER_FILE = "data/fx_rates.csv";
+    private static final FxRateTable instance = new FxRateTable();
+
+    private final Map<String, Integer> idsByCode = new ConcurrentHashMap<>();
+    private String[] codes = new String[16];
+    private String[] symbols = new String[16];
+    private double[] unitsPerBase = new double[16];
+    private long[] updatedAt = new long[16];
+    private int size;
+    private volatile long version;
+    private volatile Rates rates;
+
+    private FxRateTable() {
+        register(BASE_CURRENCY, "$", BigDecimal.ONE);
+        loadBundledRates();
+        loadUserRates();
+    }
+
+    public static FxRateTable getInstance() {
+        return instance;
+    }
+
+    /**
+     * Adds a currency or updates its rate
+     * @param code ISO currency code, e.g. "EGP"
+     * @param symbol Display symbol, or null to keep the current one
+     * @param unitsPerBase How many units of the currency buy one US dollar
+     * @return The currency's ID
+     */
+    public synchronized int register(String code, String symbol, BigDecimal unitsPerBase) {
+        String key = normalize(code);
+        if (unitsPerBase == null || unitsPerBase.signum() <= 0) {
+            throw new IllegalArgumentException("Exchange rate must be greater than 0");
+        }
+        if (key.equals(BASE_CURRENCY) && unitsPerBase.compareTo(BigDecimal.ONE) != 0) {
+            throw new IllegalArgumentException("Base currency rate must be 1");
+        }
+
+        Integer existing = idsByCode.get(key);
+        int id = existing != null ? existing : size;
+        if (existing == null) {
+            if (id == codes.length) {
+                int capacity = codes.length * 2;
+                codes = Arrays.copyOf(codes, capacity);
+                symbols = Arrays.copyOf(symbols, capacity);
+                this.unitsPerBase = Arrays.copyOf(this.unitsPerBase, capacity);
+                updatedAt = Arrays.copyOf(updatedAt, capacity);
+            }
+            codes[id] = key;
+            size++;
+            idsByCode.put(key, id);
+        }
+        if (symbol != null && !symbol.isBlank()) {
+            symbols[id] = symbol.trim();
+        } else if (symbols[id] == null) {
+            symbols[id] = key;
+        }
+        this.unitsPerBase[id] = unitsPerBase.doubleValue();
+        updatedAt[id] = System.currentTimeMillis();
+        version++;
+        rates = null;
+        return id;
+    }
+
+    /**
+     * Updates the rate of a currency, adding it if needed
+     * @param code ISO currency code
+     * @param unitsPerBase How many units of the currency buy one US dollar
+     */
+    public void setRate(String code, BigDecimal unitsPerBase) {
+        register(code, null, unitsPerBase);
+    }
+
+    /**
+     * Gets the current set of rates. Hold on to the result to convert many
+     * amounts against one consistent set of rates.
+     * @return An immutable snapshot of all cross rates
+     */
+    public Rates getRates() {
+        Rates current = rates;
+        return current != null ? current : rebuildRates();
+    }
+
+    /**
+     * Converts an amount between two currencies at the current rates
+     * @param amount The amount to convert
+     * @param from Currency of the amount
+     * @param to Currency to convert to
+     * @return The converted amount
+     */
+    public BigDecimal convert(BigDecimal amount, String from, String to) {
+        return getRates().convert(amount, from, to);
+    }
+
+    /**
+     * Gets the number of units of one currency that buy one unit of another
+     */
+    public BigDecimal getRate(String from, String to) {
+        Rates current = getRates();
+        return BigDecimal.valueOf(current.rate(current.idOf(from), current.idOf(to)));
+    }
+
+    /**
+     * @return a number that changes whenever a rate is added or updated
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isSupported(String code) {
+        return code != null && idsByCode.containsKey(code.trim().toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * @return display symbol of a currency, or its code if it has none
+     */
+    public String getSymbol(String code) {
+        Rates current = getRates();
+        return current.symbols[current.idOf(code)];
+    }
+
+    /**
+     * @return when the currency's rate was last set
+     */
+    public Date getUpdatedAt(String code) {
+        Rates current = getRates();
+        return new Date(current.updatedAt[current.idOf(code)]);
+    }
+
+    /**
+     * @return codes of all supported currencies, in the order they were added
+     */
+    public List<String> getCurrencies() {
+        return getRates().getCurrencies();
+    }
+
+    /**
+     * Loads rates from a CSV file with the columns currency,units_per_usd,symbol
+     * @param file The file to load
+     * @return Number of lines read
+     * @throws IOException if the file cannot be read
+     */
+    public int load(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return load(reader);
+        }
+    }
+
+    private int load(Reader source) throws IOException {
+        int count = 0;
+        BufferedReader reader = new BufferedReader(source);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#") || line.startsWith("currency,")) {
+                continue;
+            }
+            String[] fields = line.split(",", -1);
+            try {
+                register(fields[0],
+                    fields.length > 2 ? fields[2] : null,
+                    new BigDecimal(fields.length > 1 ? fields[1].trim() : ""));
+                count++;
+            } catch (IllegalArgumentException e) {
+                LOGGER.warning("Skipping invalid exchange rate line: " + line);
+            }
+        }
+        return count;
+    }
+
+    private synchronized Rates rebuildRates() {
+        if (rates != null) {
+            return rates;
+        }
+        double[] matrix = new double[size * size];
+        for (int from = 0; from < size; from++) {
+            for (int to = 0; to < size; to++) {
+                matrix[from * size + to] = unitsPerBase[to] / unitsPerBase[from];
+            }
+        }
+        rates = new Rates(Arrays.copyOf(codes, size), Arrays.copyOf(symbols, size),
+            Arrays.copyOf(updatedAt, size), matrix, new ConcurrentHashMap<>(idsByCode));
+        return rates;
+    }
+
+    private static String normalize(String code) {
+        if (code == null || code.trim().isEmpty()) {
+            throw new IllegalArgumentException("Currency code cannot be null or empty");
+        }
+        return code.trim().toUpperCase(Locale.ROOT);
+    }
+
+    private void loadBundledRates() {
+        try (InputStream input = getClass().getClassLoader().getResourceAsStream(BUNDLED_FILE)) {
+            if (input != null) {
+                int count = load(new InputStreamReader(input, StandardCharsets.UTF_8));
+                LOGGER.info("Loaded " + count + " bundled exchange rates");
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not load bundled exchange rates", e);
+        }
+    }
+
+    private void loadUserRates() {
+        Path file = Paths.get(USER_FILE);
+        if (!Files.exists(file)) {
+            return;
+        }
+        try {
+            int count = load(file);
+            LOGGER.info("Loaded " + count + " exchange rates from " + USER_FILE);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not load exchange rates from " + USER_FILE, e);
+        }
+    }
+
+    /**
+     * Immutable set of cross rates between every pair of supported currencies
+     */
+    public static final class Rates {
+        private final String[] codes;
+        private final String[] symbols;
+        private final long[] updatedAt;
+        private final double[] matrix;
+        private final Map<String, Integer> idsByCode;
+
+        private Rates(String[] codes, String[] symbols, long[] updatedAt, double[] matrix,
+                      Map<String, Integer> idsByCode) {
+            this.codes = codes;
+            this.symbols = symbols;
+            this.updatedAt = updatedAt;
+            this.matrix = matrix;
+            this.idsByCode = idsByCode;
+        }
+
+        /**
+         * @return the currency's ID
+         * @throws IllegalArgumentException if the currency is not supported
+         */
+        public int idOf(String code) {
+            Integer id = idsByCode.get(normalize(code));
+            if (id == null) {
+                throw new IllegalArgumentException("Unsupported currency: " + code);
+            }
+            return id;
+        }
+
+        /**
+         * @return units of the target currency per unit of the source currency
+         */
+        public double rate(int fromId, int toId) {
+            return matrix[fromId * codes.length + toId];
+        }
+
+        public BigDecimal convert(BigDecimal amount, String from, String to) {
+            if (amount == null) {
+                throw new IllegalArgumentException("Amount cannot be null");
+            }
+            return convert(amount, idOf(from), idOf(to));
+        }
+
+        public BigDecimal convert(BigDecimal amount, int fromId, int toId) {
+            if (fromId == toId || amount.signum() == 0) {
+                return amount;
+            }
+            return amount.multiply(BigDecimal.valueOf(rate(fromId, toId)), MathContext.DECIMAL64);
+        }
+
+        /**
+         * Converts amounts held in several currencies and adds them up
+         * @param amountsByCurrency Amount per currency code
+         * @param to Currency of the total
+         * @return The combined amount
+         */
+        public BigDecimal sum(Map<String, BigDecimal> amountsByCurrency, String to) {
+            int toId = idOf(to);
+            BigDecimal total = BigDecimal.ZERO;
+            for (Map.Entry<String, BigDecimal> entry : amountsByCurrency.entrySet()) {
+                total = total.add(convert(entry.getValue(), idOf(entry.getKey()), toId));
+            }
+            return total;
+        }
+
+        public List<String> getCurrencies() {
+            return Collections.unmodifiableList(new ArrayList<>(Arrays.asList(codes)));
+        }
+    }
+}
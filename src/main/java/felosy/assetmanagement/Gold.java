@@ -9,6 +9,8 @@ public final class Gold extends Asset implements Serializable {
     private static final long serialVersionUID = 1L;
     private BigDecimal weightGrams;
     private BigDecimal purity;
+    private static final String SYMBOL = "XAU";
+    private static final BigDecimal DEFAULT_PRICE_PER_GRAM = new BigDecimal("65.0"); // Example current gold price per gram
     private static final BigDecimal DEFAULT_STORAGE_RATE = new BigDecimal("0.0015"); // 0.15% per annum
     
     public Gold(String assetId, String name, Date purchaseDate, BigDecimal purchasePrice, 
@@ -81,7 +83,22 @@ public final class Gold extends Asset implements Serializable {
         // Implementation to fetch current gold price
         // This is a placeholder - real implementation would query market APIs
         System.out.println("Fetching current price for gold");
-        return new BigDecimal("65.0"); // Example current gold price per gram
+        return InstrumentRegistry.getInstance().getMarketPrice(SYMBOL, DEFAULT_PRICE_PER_GRAM);
+    }
+    
+    @Override
+    public String getInstrumentSymbol() {
+        return SYMBOL;
+    }
+    
+    @Override
+    public BigDecimal getQuantity() {
+        return weightGrams;
+    }
+    
+    @Override
+    public BigDecimal valueAt(BigDecimal unitPrice) {
+        return unitPrice.multiply(weightGrams).multiply(purity);
     }
     
     @Override
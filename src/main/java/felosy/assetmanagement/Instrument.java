@@ -0,0 +1,120 @@
+package felosy.assetmanagement;
+
+import java.math.BigDecimal;
+
+/**
+ * Metadata for a tradable instrument known to the {@link InstrumentRegistry}.
+ * Each instrument carries a dense integer ID that caches and indexes can use
+ * in place of its symbol.
+ */
+public final class Instrument {
+
+    public enum AssetClass {
+        STOCK(0.07, 0.25),
+        CRYPTO(0.10, 0.65),
+        COMMODITY(0.03, 0.15),
+        OTHER(0.04, 0.20);
+
+        private final double defaultDrift;
+        private final double defaultVolatility;
+
+        AssetClass(double defaultDrift, double defaultVolatility) {
+            this.defaultDrift = defaultDrift;
+            this.defaultVolatility = defaultVolatility;
+        }
+
+        /**
+         * @return assumed annual drift when no better estimate is available
+         */
+        public double getDefaultDrift() {
+            return defaultDrift;
+        }
+
+        /**
+         * @return assumed annual volatility when no better estimate is available
+         */
+        public double getDefaultVolatility() {
+            return defaultVolatility;
+        }
+
+        @Override
+        public String toString() {
+            return this.name();
+        }
+    }
+
+    private final int id;
+    private final String symbol;
+    private final AssetClass assetClass;
+    private final String exchange;
+    private final String currency;
+    private final BigDecimal referencePrice;
+    private final String name;
+    private volatile BigDecimal lastPrice;
+
+    Instrument(int id, String symbol, AssetClass assetClass, String exchange,
+               String currency, BigDecimal referencePrice, String name) {
+        this.id = id;
+        this.symbol = symbol;
+        this.assetClass = assetClass;
+        this.exchange = exchange;
+        this.currency = currency;
+        this.referencePrice = referencePrice;
+        this.name = name;
+    }
+
+    // Getters
+    public int getId() {
+        return id;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public AssetClass getAssetClass() {
+        return assetClass;
+    }
+
+    public String getExchange() {
+        return exchange;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    /**
+     * @return fallback unit price used when no live quote is available, or null if unknown
+     */
+    public BigDecimal getReferencePrice() {
+        return referencePrice;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return latest traded unit price, or null if the instrument has not traded
+     */
+    public BigDecimal getLastPrice() {
+        return lastPrice;
+    }
+
+    void setLastPrice(BigDecimal lastPrice) {
+        this.lastPrice = lastPrice;
+    }
+
+    @Override
+    public String toString() {
+        return "Instrument{" +
+               "id=" + id +
+               ", symbol='" + symbol + '\'' +
+               ", assetClass=" + assetClass +
+               ", exchange='" + exchange + '\'' +
+               ", currency='" + currency + '\'' +
+               ", referencePrice=" + referencePrice +
+               '}';
+    }
+}
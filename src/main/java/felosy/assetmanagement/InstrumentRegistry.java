@@ -0,0 +1,266 @@
+package felosy.assetmanagement;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runtime registry of tradable instruments.
+ * Instruments are loaded from data files and interned to dense integer IDs,
+ * so symbol-to-ID and ID-to-instrument lookups are both O(1) and new
+ * instruments can be added without a code change. {@link TickerType} and
+ * {@link Cryptocurrency.CoinType} remain as aliases for registered symbols.
+ */
+public final class InstrumentRegistry {
+    private static final Logger LOGGER = Logger.getLogger(InstrumentRegistry.class.getName());
+    private static final String BUNDLED_FILE = "instruments.csv";
+    private static final String USER_FILE = "data/instruments.csv";
+    private static final String DEFAULT_CURRENCY = "USD";
+    private static final InstrumentRegistry instance = new InstrumentRegistry();
+
+    private final Map<String, Integer> idsBySymbol = new ConcurrentHashMap<>();
+    private volatile Instrument[] instruments = new Instrument[64];
+    private volatile int size;
+
+    private InstrumentRegistry() {
+        loadBundledInstruments();
+        registerAliases();
+        loadUserInstruments();
+    }
+
+    public static InstrumentRegistry getInstance() {
+        return instance;
+    }
+
+    /**
+     * Registers an instrument, or returns the ID it already has
+     * @return The instrument's ID
+     */
+    public synchronized int register(String symbol, Instrument.AssetClass assetClass, String exchange,
+                                     String currency, BigDecimal referencePrice, String name) {
+        String key = normalize(symbol);
+        Integer existing = idsBySymbol.get(key);
+        if (existing != null) {
+            return existing;
+        }
+
+        int id = size;
+        if (id == instruments.length) {
+            instruments = Arrays.copyOf(instruments, id * 2);
+        }
+        instruments[id] = new Instrument(id, key,
+            assetClass != null ? assetClass : Instrument.AssetClass.OTHER,
+            exchange, currency != null ? currency : DEFAULT_CURRENCY, referencePrice,
+            name != null ? name : key);
+        size = id + 1;
+        idsBySymbol.put(key, id);
+        return id;
+    }
+
+    /**
+     * Gets the ID of a symbol, registering it with no metadata if it is new
+     * @param symbol The instrument symbol
+     * @return The instrument's ID
+     */
+    public int intern(String symbol) {
+        Integer id = idsBySymbol.get(normalize(symbol));
+        if (id != null) {
+            return id;
+        }
+        return register(symbol, Instrument.AssetClass.OTHER, null, null, null, null);
+    }
+
+    /**
+     * Gets the ID of a registered symbol
+     * @param symbol The instrument symbol
+     * @return The instrument's ID, or -1 if it is not registered
+     */
+    public int idOf(String symbol) {
+        if (symbol == null) {
+            return -1;
+        }
+        Integer id = idsBySymbol.get(normalize(symbol));
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Gets an instrument by ID
+     * @param id The instrument ID
+     * @return The instrument
+     * @throws IllegalArgumentException if no instrument has that ID
+     */
+    public Instrument get(int id) {
+        if (id < 0 || id >= size) {
+            throw new IllegalArgumentException("Unknown instrument ID: " + id);
+        }
+        return instruments[id];
+    }
+
+    /**
+     * Gets an instrument by symbol
+     * @param symbol The instrument symbol
+     * @return The instrument, or null if it is not registered
+     */
+    public Instrument get(String symbol) {
+        int id = idOf(symbol);
+        return id >= 0 ? instruments[id] : null;
+    }
+
+    /**
+     * Gets the fallback price of an instrument
+     * @param symbol The instrument symbol
+     * @param defaultPrice Price to use if the instrument has none
+     * @return The reference price, or defaultPrice
+     */
+    public BigDecimal getReferencePrice(String symbol, BigDecimal defaultPrice) {
+        Instrument instrument = get(symbol);
+        return instrument != null && instrument.getReferencePrice() != null
+            ? instrument.getReferencePrice()
+            : defaultPrice;
+    }
+
+    /**
+     * Gets the current unit price of an instrument: its last traded price,
+     * else its reference price, else the given default
+     * @param symbol The instrument symbol
+     * @param defaultPrice Price to use if the instrument has neither
+     * @return The current price
+     */
+    public BigDecimal getMarketPrice(String symbol, BigDecimal defaultPrice) {
+        Instrument instrument = get(symbol);
+        if (instrument == null) {
+            return defaultPrice;
+        }
+        BigDecimal lastPrice = instrument.getLastPrice();
+        if (lastPrice != null) {
+            return lastPrice;
+        }
+        return instrument.getReferencePrice() != null ? instrument.getReferencePrice() : defaultPrice;
+    }
+
+    /**
+     * Records the latest traded price of an instrument, e.g. from a market data feed.
+     * Portfolios are not repriced by this; pass the price to {@link Portfolio#applyPrice}
+     * to move their totals.
+     * @param id The instrument ID
+     * @param price The unit price
+     */
+    public void markPrice(int id, BigDecimal price) {
+        if (price == null || price.signum() <= 0) {
+            throw new IllegalArgumentException("Price must be greater than 0");
+        }
+        get(id).setLastPrice(price);
+    }
+
+    /**
+     * @return number of registered instruments; IDs run from 0 to size - 1
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Loads instruments from a CSV file with the columns
+     * symbol,asset_class,exchange,currency,reference_price,name
+     * @param file The file to load
+     * @return Number of lines read
+     * @throws IOException if the file cannot be read
+     */
+    public int load(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return load(reader);
+        }
+    }
+
+    private int load(Reader source) throws IOException {
+        int count = 0;
+        BufferedReader reader = new BufferedReader(source);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#") || line.startsWith("symbol,")) {
+                continue;
+            }
+            String[] fields = line.split(",", -1);
+            try {
+                register(fields[0],
+                    fields.length > 1 && !fields[1].isBlank()
+                        ? Instrument.AssetClass.valueOf(fields[1].trim().toUpperCase(Locale.ROOT))
+                        : Instrument.AssetClass.OTHER,
+                    field(fields, 2),
+                    field(fields, 3),
+                    field(fields, 4) != null ? new BigDecimal(field(fields, 4)) : null,
+                    field(fields, 5));
+                count++;
+            } catch (IllegalArgumentException e) {
+                LOGGER.warning("Skipping invalid instrument line: " + line);
+            }
+        }
+        return count;
+    }
+
+    private static String field(String[] fields, int index) {
+        if (index >= fields.length || fields[index].isBlank()) {
+            return null;
+        }
+        return fields[index].trim();
+    }
+
+    private static String normalize(String symbol) {
+        if (symbol == null || symbol.trim().isEmpty()) {
+            throw new IllegalArgumentException("Instrument symbol cannot be null or empty");
+        }
+        return symbol.trim().toUpperCase(Locale.ROOT);
+    }
+
+    private void loadBundledInstruments() {
+        try (InputStream input = getClass().getClassLoader().getResourceAsStream(BUNDLED_FILE)) {
+            if (input != null) {
+                int count = load(new InputStreamReader(input, StandardCharsets.UTF_8));
+                LOGGER.info("Loaded " + count + " bundled instruments");
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not load bundled instruments", e);
+        }
+    }
+
+    /**
+     * Makes sure every enum alias resolves even if the data files leave it out
+     */
+    private void registerAliases() {
+        for (TickerType ticker : TickerType.values()) {
+            intern(ticker.toString());
+        }
+        for (Cryptocurrency.CoinType coin : Cryptocurrency.CoinType.values()) {
+            if (coin != Cryptocurrency.CoinType.OTHER) {
+                intern(coin.toString());
+            }
+        }
+    }
+
+    private void loadUserInstruments() {
+        Path file = Paths.get(USER_FILE);
+        if (!Files.exists(file)) {
+            return;
+        }
+        try {
+            int count = load(file);
+            LOGGER.info("Loaded " + count + " instruments from " + USER_FILE);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not load instruments from " + USER_FILE, e);
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package felosy.assetmanagement;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Tracks the open purchase lots of a holding and matches sales against them.
+ * Lots are kept in ordered sets so the next lot to sell under any policy is
+ * found in O(log n), and cost basis and realized P/L are updated as each
+ * transaction is recorded rather than recomputed from the full history.
+ */
+public class LotLedger implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final int PRICE_SCALE = 6;
+
+    /**
+     * Policy used to choose which lots a sale consumes
+     */
+    public enum CostBasisMethod implements Serializable {
+        FIFO,
+        LIFO,
+        HIFO,
+        AVERAGE_COST;
+
+        @Override
+        public String toString() {
+            return name().replace('_', ' ');
+        }
+    }
+
+    /**
+     * Shares bought together at one price
+     */
+    public static final class Lot implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final long lotId;
+        private final LocalDate date;
+        private final BigDecimal pricePerShare;
+        private int quantity;
+
+        private Lot(long lotId, LocalDate date, int quantity, BigDecimal pricePerShare) {
+            this.lotId = lotId;
+            this.date = date;
+            this.quantity = quantity;
+            this.pricePerShare = pricePerShare;
+        }
+
+        public long getLotId() {
+            return lotId;
+        }
+
+        public LocalDate getDate() {
+            return date;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public BigDecimal getPricePerShare() {
+            return pricePerShare;
+        }
+
+        public BigDecimal getCost() {
+            return pricePerShare.multiply(new BigDecimal(quantity));
+        }
+
+        @Override
+        public String toString() {
+            return "Lot{id=" + lotId + ", date=" + date + ", quantity=" + quantity + ", price=" + pricePerShare + '}';
+        }
+    }
+
+    private static final Comparator<Lot> BY_AGE = new ByAge();
+    private static final Comparator<Lot> BY_PRICE_DESC = new ByPriceDesc();
+
+    /**
+     * Acquisition order: date, then insertion sequence
+     */
+    private static final class ByAge implements Comparator<Lot>, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public int compare(Lot a, Lot b) {
+            int cmp = a.date.compareTo(b.date);
+            return cmp != 0 ? cmp : Long.compare(a.lotId, b.lotId);
+        }
+    }
+
+    /**
+     * Highest price first, oldest first among equal prices
+     */
+    private static final class ByPriceDesc implements Comparator<Lot>, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public int compare(Lot a, Lot b) {
+            int cmp = b.pricePerShare.compareTo(a.pricePerShare);
+            return cmp != 0 ? cmp : BY_AGE.compare(a, b);
+        }
+    }
+
+    private final TreeSet<Lot> lotsByAge = new TreeSet<>(BY_AGE);
+    private final TreeSet<Lot> lotsByPrice = new TreeSet<>(BY_PRICE_DESC);
+    private final Map<Long, Lot> lotsById = new HashMap<>();
+    private CostBasisMethod method;
+    private long nextLotId = 1;
+    private int totalShares;
+    private BigDecimal totalCost = BigDecimal.ZERO;
+    private BigDecimal realizedProfitLoss = BigDecimal.ZERO;
+
+    public LotLedger(CostBasisMethod method) {
+        setMethod(method);
+    }
+
+    /**
+     * Records a purchase as a new lot
+     * @param date Date of the purchase
+     * @param quantity Number of shares bought
+     * @param pricePerShare Price paid per share
+     * @return The new lot
+     */
+    public Lot buy(LocalDate date, int quantity, BigDecimal pricePerShare) {
+        if (date == null) {
+            throw new IllegalArgumentException("Date cannot be null");
+        }
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive");
+        }
+        if (pricePerShare == null || pricePerShare.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Price must be positive");
+        }
+
+        Lot lot = new Lot(nextLotId++, date, quantity, pricePerShare);
+        lotsByAge.add(lot);
+        lotsByPrice.add(lot);
+        lotsById.put(lot.lotId, lot);
+        totalShares += quantity;
+        totalCost = totalCost.add(lot.getCost());
+        return lot;
+    }
+
+    /**
+     * Sells shares, consuming lots according to the ledger's cost basis method
+     * @param quantity Number of shares to sell
+     * @param pricePerShare Sale price per share
+     * @return The realized profit or loss of this sale
+     */
+    public BigDecimal sell(int quantity, BigDecimal pricePerShare) {
+        validateSale(quantity, pricePerShare);
+
+        BigDecimal costOfSale;
+        if (method == CostBasisMethod.AVERAGE_COST) {
+            costOfSale = getAverageCost().multiply(new BigDecimal(quantity));
+            // Quantities still drain oldest first so the lots stay in step with the share count
+            consume(lotsByAge, quantity);
+        } else {
+            costOfSale = consume(lotOrder(), quantity);
+        }
+        return recordSale(quantity, pricePerShare, costOfSale);
+    }
+
+    /**
+     * Sells shares out of one specific lot
+     * @param lotId The lot to sell from
+     * @param quantity Number of shares to sell
+     * @param pricePerShare Sale price per share
+     * @return The realized profit or loss of this sale
+     */
+    public BigDecimal sellFromLot(long lotId, int quantity, BigDecimal pricePerShare) {
+        validateSale(quantity, pricePerShare);
+        Lot lot = lotsById.get(lotId);
+        if (lot == null) {
+            throw new IllegalArgumentException("Lot " + lotId + " not found");
+        }
+        if (quantity > lot.quantity) {
+            throw new IllegalArgumentException("Cannot sell more shares than the lot holds");
+        }
+
+        BigDecimal costOfSale = method == CostBasisMethod.AVERAGE_COST
+            ? getAverageCost().multiply(new BigDecimal(quantity))
+            : lot.pricePerShare.multiply(new BigDecimal(quantity));
+        take(lot, quantity);
+        return recordSale(quantity, pricePerShare, costOfSale);
+    }
+
+    /**
+     * Gets the unrealized profit or loss of the open shares at a market price
+     * @param marketPrice Current price per share
+     * @return Market value of the open shares minus their cost basis
+     */
+    public BigDecimal getUnrealizedProfitLoss(BigDecimal marketPrice) {
+        return marketPrice.multiply(new BigDecimal(totalShares)).subtract(totalCost);
+    }
+
+    /**
+     * Gets the average cost per open share
+     * @return Total cost basis divided by open shares, or zero if none are held
+     */
+    public BigDecimal getAverageCost() {
+        if (totalShares == 0) {
+            return BigDecimal.ZERO;
+        }
+        return totalCost.divide(new BigDecimal(totalShares), PRICE_SCALE, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Gets the open lots, oldest first
+     * @return A copy of the open lots
+     */
+    public List<Lot> getOpenLots() {
+        return new ArrayList<>(lotsByAge);
+    }
+
+    public CostBasisMethod getMethod() {
+        return method;
+    }
+
+    /**
+     * Changes the cost basis method used for future sales.
+     * Leaving average cost resets the basis to the sum of the open lots.
+     * @param method The new method
+     */
+    public void setMethod(CostBasisMethod method) {
+        if (method == null) {
+            throw new IllegalArgumentException("Cost basis method cannot be null");
+        }
+        if (this.method == CostBasisMethod.AVERAGE_COST && method != CostBasisMethod.AVERAGE_COST) {
+            totalCost = BigDecimal.ZERO;
+            for (Lot lot : lotsByAge) {
+                totalCost = totalCost.add(lot.getCost());
+            }
+        }
+        this.method = method;
+    }
+
+    public int getTotalShares() {
+        return totalShares;
+    }
+
+    public BigDecimal getTotalCost() {
+        return totalCost;
+    }
+
+    public BigDecimal getRealizedProfitLoss() {
+        return realizedProfitLoss;
+    }
+
+    public int getOpenLotCount() {
+        return lotsById.size();
+    }
+
+    private void validateSale(int quantity, BigDecimal pricePerShare) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive");
+        }
+        if (quantity > totalShares) {
+            throw new IllegalArgumentException("Cannot sell more shares than owned");
+        }
+        if (pricePerShare == null || pricePerShare.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Price must be positive");
+        }
+    }
+
+    /**
+     * Gets the open lots in the order the cost basis method sells them
+     */
+    private NavigableSet<Lot> lotOrder() {
+        switch (method) {
+            case LIFO:
+                return lotsByAge.descendingSet();
+            case HIFO:
+                return lotsByPrice;
+            default:
+                return lotsByAge;
+        }
+    }
+
+    /**
+     * Takes shares from the front of an ordered lot set
+     * @return The cost of the shares taken
+     */
+    private BigDecimal consume(NavigableSet<Lot> order, int quantity) {
+        BigDecimal cost = BigDecimal.ZERO;
+        int remaining = quantity;
+        while (remaining > 0) {
+            Lot lot = order.first();
+            int taken = Math.min(remaining, lot.quantity);
+            cost = cost.add(lot.pricePerShare.multiply(new BigDecimal(taken)));
+            take(lot, taken);
+            remaining -= taken;
+        }
+        return cost;
+    }
+
+    private void take(Lot lot, int quantity) {
+        lot.quantity -= quantity;
+        if (lot.quantity == 0) {
+            lotsByAge.remove(lot);
+            lotsByPrice.remove(lot);
+            lotsById.remove(lot.lotId);
+        }
+    }
+
+    private BigDecimal recordSale(int quantity, BigDecimal pricePerShare, BigDecimal costOfSale) {
+        totalShares -= quantity;
+        totalCost = totalShares == 0 ? BigDecimal.ZERO : totalCost.subtract(costOfSale);
+        BigDecimal realized = pricePerShare.multiply(new BigDecimal(quantity)).subtract(costOfSale);
+        realizedProfitLoss = realizedProfitLoss.add(realized);
+        return realized;
+    }
+
+    @Override
+    public String toString() {
+        return "LotLedger{" +
+               "method=" + method +
+               ", openLots=" + lotsById.size() +
+               ", totalShares=" + totalShares +
+               ", totalCost=" + totalCost +
+               ", realizedPL=" + realizedProfitLoss +
+               '}';
+    }
+}
@@ -1,14 +1,31 @@
 // Add more attributes and methods
 package felosy.assetmanagement;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
 /**
- * Represents a user's investment portfolio
+ * Represents a user's investment portfolio.
+ * Safe for concurrent use: reads never block, mutations are serialized on a
+ * short write lock, and {@link #snapshot()} returns a consistent versioned copy.
+ * <p>
+ * Net worth and per-type totals are running totals, not recomputed on read.
+ * They change only through {@link #addAsset}, {@link #removeAsset} and the
+ * repricing methods: {@link #applyPrice} for a new instrument price, and
+ * {@link #revalueAsset} or {@link #revalueAll} for anything else. Changing a
+ * price elsewhere, such as {@link InstrumentRegistry#markPrice} or
+ * {@link Asset#setCurrentValue}, leaves the totals as they were until one of
+ * these is called. The market data feed's portfolio subscription and the
+ * revaluation service both go through {@link #applyPrice}.
  */
 public final class Portfolio implements Serializable {
     private static final long serialVersionUID = 1L;
@@ -16,10 +33,26 @@ public final class Portfolio implements Serializable {
     
     private final String portfolioId;
     private final String userId;
-    private final Map<String, Asset> assets;
-    private Date lastUpdated;
-    private String name;
-    private String description;
+    private Map<String, Asset> assets;
+    private volatile Date lastUpdated;
+    private volatile String name;
+    private volatile String description;
+    private volatile String reportingCurrency;
+
+    // Guards compound updates to the assets, indexes and totals; readers never take it
+    private transient StampedLock lock;
+    private transient volatile long version;
+
+    // Running totals in each asset's own currency, kept in step with the assets map.
+    // Valuation queries convert one total per currency held instead of every asset.
+    private transient Map<String, BigDecimal> assetValues;
+    private transient Map<String, String> assetCurrencies;
+    private transient Map<String, BigDecimal> currencyTotals;
+    private transient Map<Class<? extends Asset>, Map<String, BigDecimal>> typeTotals;
+
+    // Lookup indexes by concrete asset class and by instrument symbol (ticker, coin)
+    private transient Map<Class<? extends Asset>, Map<String, Asset>> assetsByClass;
+    private transient Map<String, Map<String, Asset>> assetsByInstrument;
 
     /**
      * Creates a new portfolio for a user
@@ -32,8 +65,11 @@ public final class Portfolio implements Serializable {
         }
         this.portfolioId = UUID.randomUUID().toString();
         this.userId = userId;
-        this.assets = new HashMap<>();
+        this.assets = new ConcurrentHashMap<>();
         this.lastUpdated = new Date();
+        this.lock = new StampedLock();
+        initializeIndexes();
+        initializeTotals();
         this.name = "Portfolio " + portfolioId.substring(0, 8);
         this.description = "Portfolio created on " + new Date();
     }
@@ -52,8 +88,19 @@ public final class Portfolio implements Serializable {
             throw new IllegalArgumentException("Asset with ID " + asset.getAssetId() + " already exists in portfolio");
         }
         
-        assets.put(asset.getAssetId(), asset);
-        lastUpdated = new Date();
+        // Price outside the lock so a slow quote never holds up other writers
+        BigDecimal value = valueOf(asset);
+        long stamp = lock.writeLock();
+        try {
+            if (assets.putIfAbsent(asset.getAssetId(), asset) != null) {
+                throw new IllegalArgumentException("Asset with ID " + asset.getAssetId() + " already exists in portfolio");
+            }
+            index(asset);
+            applyValue(asset, value);
+            touch();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
         LOGGER.info("Added asset " + asset.getAssetId() + " to portfolio " + portfolioId);
         return true;
     }
@@ -68,27 +115,234 @@ public final class Portfolio implements Serializable {
             throw new IllegalArgumentException("Asset ID cannot be null or empty");
         }
         
-        boolean removed = assets.remove(assetId) != null;
+        Asset removedAsset;
+        long stamp = lock.writeLock();
+        try {
+            removedAsset = assets.remove(assetId);
+            if (removedAsset != null) {
+                unindex(removedAsset);
+                applyValue(removedAsset, null);
+                touch();
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        
+        boolean removed = removedAsset != null;
         if (removed) {
-            lastUpdated = new Date();
             LOGGER.info("Removed asset " + assetId + " from portfolio " + portfolioId);
         }
         return removed;
     }
 
     /**
-     * Calculates the total net worth of the portfolio
-     * @return The total value of all assets in the portfolio
+     * Re-prices a single asset and folds the change into the running totals.
+     * Call this whenever the asset's price changes.
+     * @param assetId The ID of the asset to revalue
+     * @return The asset's new value
+     * @throws IllegalArgumentException if assetId is null, empty or not in the portfolio
      */
-    public BigDecimal getNetWorth() {
+    public BigDecimal revalueAsset(String assetId) {
+        if (assetId == null || assetId.trim().isEmpty()) {
+            throw new IllegalArgumentException("Asset ID cannot be null or empty");
+        }
+
+        Asset asset = assets.get(assetId);
+        if (asset == null) {
+            throw new IllegalArgumentException("Asset not found in portfolio");
+        }
+
+        BigDecimal value = valueOf(asset);
+        long stamp = lock.writeLock();
         try {
-            return assets.values().stream()
-                .map(Asset::getCurrentValue)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Error calculating portfolio net worth", e);
+            // Skip the update if the asset was removed while it was being priced
+            if (assets.get(assetId) == asset) {
+                applyValue(asset, value);
+                touch();
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return value;
+    }
+
+    /**
+     * Re-prices every asset in the portfolio and applies the new values as one update
+     */
+    public void revalueAll() {
+        Map<Asset, BigDecimal> prices = new HashMap<>();
+        for (Asset asset : assets.values()) {
+            prices.put(asset, valueOf(asset));
+        }
+
+        long stamp = lock.writeLock();
+        try {
+            for (Map.Entry<Asset, BigDecimal> entry : prices.entrySet()) {
+                Asset asset = entry.getKey();
+                if (assets.get(asset.getAssetId()) == asset) {
+                    applyValue(asset, entry.getValue());
+                }
+            }
+            touch();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Marks every holding of an instrument to a new unit price, e.g. from a market data tick
+     * @param symbol The instrument symbol
+     * @param unitPrice The new price of one unit
+     * @return The number of holdings that were repriced
+     */
+    public int applyPrice(String symbol, BigDecimal unitPrice) {
+        if (unitPrice == null || unitPrice.signum() <= 0) {
+            throw new IllegalArgumentException("Unit price must be greater than 0");
+        }
+
+        Collection<Asset> holdings = getAssetsByInstrument(symbol);
+        if (holdings.isEmpty()) {
+            return 0;
+        }
+
+        Map<Asset, BigDecimal> prices = new HashMap<>();
+        for (Asset asset : holdings) {
+            BigDecimal value = asset.valueAt(unitPrice);
+            if (value != null && value.signum() > 0) {
+                prices.put(asset, value);
+            }
+        }
+
+        int repriced = 0;
+        long stamp = lock.writeLock();
+        try {
+            for (Map.Entry<Asset, BigDecimal> entry : prices.entrySet()) {
+                Asset asset = entry.getKey();
+                if (assets.get(asset.getAssetId()) == asset) {
+                    asset.setCurrentValue(entry.getValue());
+                    applyValue(asset, entry.getValue());
+                    repriced++;
+                }
+            }
+            if (repriced > 0) {
+                touch();
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return repriced;
+    }
+
+    /**
+     * Takes a consistent copy of the portfolio's assets and valuations.
+     * Uses an optimistic read and only falls back to the read lock if a
+     * writer got in while the copy was being made.
+     * @return An immutable snapshot tagged with the portfolio version
+     */
+    public PortfolioSnapshot snapshot() {
+        long stamp = lock.tryOptimisticRead();
+        PortfolioSnapshot snapshot = captureSnapshot();
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                snapshot = captureSnapshot();
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Copies the assets and converts every value to the reporting currency in one pass
+     */
+    private PortfolioSnapshot captureSnapshot() {
+        FxRateTable.Rates rates = FxRateTable.getInstance().getRates();
+        String currency = getReportingCurrency();
+        int toId = rates.idOf(currency);
+
+        Map<String, BigDecimal> values = new HashMap<>();
+        for (Map.Entry<String, BigDecimal> entry : assetValues.entrySet()) {
+            String assetCurrency = assetCurrencies.get(entry.getKey());
+            if (assetCurrency != null) {
+                values.put(entry.getKey(), rates.convert(entry.getValue(), rates.idOf(assetCurrency), toId));
+            }
+        }
+        Map<Class<? extends Asset>, BigDecimal> types = new HashMap<>();
+        for (Map.Entry<Class<? extends Asset>, Map<String, BigDecimal>> entry : typeTotals.entrySet()) {
+            types.put(entry.getKey(), rates.sum(entry.getValue(), currency));
+        }
+
+        return new PortfolioSnapshot(portfolioId, version, lastUpdated, List.copyOf(assets.values()),
+            values, types, rates.sum(currencyTotals, currency), currency);
+    }
+
+    /**
+     * Gets the version of the portfolio, incremented on every change to its assets or valuations
+     * @return The current version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the total net worth of the portfolio
+     * @return The total value of all assets in the reporting currency
+     */
+    public BigDecimal getNetWorth() {
+        return getNetWorth(getReportingCurrency());
+    }
+
+    /**
+     * Gets the total net worth of the portfolio in a specific currency
+     * @param currency The currency to value the portfolio in
+     * @return The total value of all assets
+     */
+    public BigDecimal getNetWorth(String currency) {
+        return FxRateTable.getInstance().getRates().sum(currencyTotals, currency);
+    }
+
+    /**
+     * Gets the total value of all assets of a specific type
+     * @param assetType The type of assets to total
+     * @return The combined value of the matching assets in the reporting currency
+     */
+    public BigDecimal getNetWorthByType(Class<? extends Asset> assetType) {
+        return getNetWorthByType(assetType, getReportingCurrency());
+    }
+
+    /**
+     * Gets the total value of all assets of a specific type in a specific currency
+     * @param assetType The type of assets to total
+     * @param currency The currency to value the assets in
+     * @return The combined value of the matching assets
+     */
+    public BigDecimal getNetWorthByType(Class<? extends Asset> assetType, String currency) {
+        if (assetType == null) {
+            throw new IllegalArgumentException("Asset type cannot be null");
+        }
+
+        FxRateTable.Rates rates = FxRateTable.getInstance().getRates();
+        BigDecimal total = BigDecimal.ZERO;
+        for (Map.Entry<Class<? extends Asset>, Map<String, BigDecimal>> entry : typeTotals.entrySet()) {
+            if (assetType.isAssignableFrom(entry.getKey())) {
+                total = total.add(rates.sum(entry.getValue(), currency));
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Gets the share of the portfolio held in a specific asset type
+     * @param assetType The type of assets
+     * @return The percentage as a decimal (e.g., 0.25 for 25%)
+     */
+    public BigDecimal getTypePercentage(Class<? extends Asset> assetType) {
+        BigDecimal netWorth = getNetWorth();
+        if (netWorth.compareTo(BigDecimal.ZERO) == 0) {
             return BigDecimal.ZERO;
         }
+        return getNetWorthByType(assetType).divide(netWorth, 4, RoundingMode.HALF_UP);
     }
 
     /**
@@ -102,28 +356,244 @@ public final class Portfolio implements Serializable {
             throw new IllegalArgumentException("Asset ID cannot be null or empty");
         }
         
-        Asset asset = assets.get(assetId);
-        if (asset == null) {
+        BigDecimal assetValue = assetValues.get(assetId);
+        String assetCurrency = assetCurrencies.get(assetId);
+        if (assetValue == null || assetCurrency == null) {
             throw new IllegalArgumentException("Asset not found in portfolio");
         }
         
-        BigDecimal totalValue = getNetWorth();
-        if (totalValue.compareTo(BigDecimal.ZERO) == 0) {
+        FxRateTable.Rates rates = FxRateTable.getInstance().getRates();
+        String currency = getReportingCurrency();
+        BigDecimal netWorth = rates.sum(currencyTotals, currency);
+        if (netWorth.compareTo(BigDecimal.ZERO) == 0) {
             return BigDecimal.ZERO;
         }
         
-        return asset.getCurrentValue().divide(totalValue, 4, BigDecimal.ROUND_HALF_UP);
+        return rates.convert(assetValue, assetCurrency, currency).divide(netWorth, 4, RoundingMode.HALF_UP);
     }
 
     /**
      * Gets all assets of a specific type
      * @param assetType The type of assets to retrieve
-     * @return List of assets of the specified type
+     * @return A read-only view of the assets of the specified type
      */
-    public List<Asset> getAssetsByType(Class<? extends Asset> assetType) {
-        return assets.values().stream()
-            .filter(assetType::isInstance)
-            .toList();
+    @SuppressWarnings("unchecked")
+    public <T extends Asset> Collection<T> getAssetsByType(Class<T> assetType) {
+        if (assetType == null) {
+            throw new IllegalArgumentException("Asset type cannot be null");
+        }
+
+        List<Map<String, Asset>> groups = new ArrayList<>(2);
+        for (Map.Entry<Class<? extends Asset>, Map<String, Asset>> entry : assetsByClass.entrySet()) {
+            if (assetType.isAssignableFrom(entry.getKey())) {
+                groups.add(entry.getValue());
+            }
+        }
+        if (groups.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (groups.size() == 1) {
+            return (Collection<T>) Collections.unmodifiableCollection(groups.get(0).values());
+        }
+
+        // Supertype queries span several concrete classes
+        List<T> matches = new ArrayList<>();
+        for (Map<String, Asset> group : groups) {
+            matches.addAll((Collection<T>) group.values());
+        }
+        return Collections.unmodifiableList(matches);
+    }
+
+    /**
+     * Gets all holdings of a specific instrument, e.g. every AAPL lot
+     * @param symbol The instrument symbol (ticker or coin)
+     * @return A read-only view of the matching assets
+     */
+    public Collection<Asset> getAssetsByInstrument(String symbol) {
+        if (symbol == null || symbol.trim().isEmpty()) {
+            throw new IllegalArgumentException("Instrument symbol cannot be null or empty");
+        }
+
+        Map<String, Asset> holdings = assetsByInstrument.get(symbol);
+        return holdings != null
+            ? Collections.unmodifiableCollection(holdings.values())
+            : Collections.emptyList();
+    }
+
+    /**
+     * Gets the symbols of all instruments held in the portfolio
+     * @return A read-only view of the instrument symbols
+     */
+    public Set<String> getInstrumentSymbols() {
+        return Collections.unmodifiableSet(assetsByInstrument.keySet());
+    }
+
+    /**
+     * Iterates the recorded values of all holdings of an instrument without boxing.
+     * Values are in each holding's own currency.
+     * @param symbol The instrument symbol (ticker or coin)
+     * @return An iterator over the holding values
+     */
+    public PrimitiveIterator.OfDouble instrumentValues(String symbol) {
+        return valuesOf(getAssetsByInstrument(symbol));
+    }
+
+    /**
+     * Iterates the recorded values of all assets of a type without boxing.
+     * Values are in each asset's own currency.
+     * @param assetType The type of assets
+     * @return An iterator over the asset values
+     */
+    public PrimitiveIterator.OfDouble typeValues(Class<? extends Asset> assetType) {
+        return valuesOf(getAssetsByType(assetType));
+    }
+
+    private PrimitiveIterator.OfDouble valuesOf(Collection<? extends Asset> holdings) {
+        Iterator<? extends Asset> iterator = holdings.iterator();
+        return new PrimitiveIterator.OfDouble() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public double nextDouble() {
+                BigDecimal value = assetValues.get(iterator.next().getAssetId());
+                return value != null ? value.doubleValue() : 0.0;
+            }
+        };
+    }
+
+    /**
+     * Adds an asset to the class and instrument indexes
+     */
+    private void index(Asset asset) {
+        assetsByClass.computeIfAbsent(asset.getClass(), k -> new ConcurrentHashMap<>())
+            .put(asset.getAssetId(), asset);
+        String symbol = asset.getInstrumentSymbol();
+        if (symbol != null) {
+            assetsByInstrument.computeIfAbsent(symbol, k -> new ConcurrentHashMap<>())
+                .put(asset.getAssetId(), asset);
+        }
+    }
+
+    /**
+     * Removes an asset from the class and instrument indexes
+     */
+    private void unindex(Asset asset) {
+        Map<String, Asset> byClass = assetsByClass.get(asset.getClass());
+        if (byClass != null) {
+            byClass.remove(asset.getAssetId());
+            if (byClass.isEmpty()) {
+                assetsByClass.remove(asset.getClass());
+            }
+        }
+        String symbol = asset.getInstrumentSymbol();
+        Map<String, Asset> byInstrument = symbol != null ? assetsByInstrument.get(symbol) : null;
+        if (byInstrument != null) {
+            byInstrument.remove(asset.getAssetId());
+            if (byInstrument.isEmpty()) {
+                assetsByInstrument.remove(symbol);
+            }
+        }
+    }
+
+    private void initializeIndexes() {
+        assetsByClass = new ConcurrentHashMap<>();
+        assetsByInstrument = new ConcurrentHashMap<>();
+        for (Asset asset : assets.values()) {
+            index(asset);
+        }
+    }
+
+    /**
+     * Prices an asset, treating pricing failures as a zero value
+     */
+    private BigDecimal valueOf(Asset asset) {
+        try {
+            BigDecimal value = asset.getCurrentValue();
+            return value != null ? value : BigDecimal.ZERO;
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Error pricing asset " + asset.getAssetId(), e);
+            return BigDecimal.ZERO;
+        }
+    }
+
+    /**
+     * Replaces the recorded value of an asset and adjusts the totals by the difference
+     * @param asset The asset whose value changed
+     * @param newValue The new value, or null if the asset left the portfolio
+     */
+    private void applyValue(Asset asset, BigDecimal newValue) {
+        String assetId = asset.getAssetId();
+        String newCurrency = newValue != null ? asset.getCurrency() : null;
+        BigDecimal oldValue = newValue != null
+            ? assetValues.put(assetId, newValue)
+            : assetValues.remove(assetId);
+        String oldCurrency = newCurrency != null
+            ? assetCurrencies.put(assetId, newCurrency)
+            : assetCurrencies.remove(assetId);
+
+        if (oldValue != null && newValue != null && newCurrency.equals(oldCurrency)) {
+            adjustTotals(asset, newCurrency, newValue.subtract(oldValue));
+            return;
+        }
+        if (oldValue != null) {
+            adjustTotals(asset, oldCurrency, oldValue.negate());
+        }
+        if (newValue != null) {
+            adjustTotals(asset, newCurrency, newValue);
+        }
+    }
+
+    private void adjustTotals(Asset asset, String currency, BigDecimal delta) {
+        if (delta.signum() == 0) {
+            return;
+        }
+        currencyTotals.merge(currency, delta, BigDecimal::add);
+        typeTotals.computeIfAbsent(asset.getClass(), type -> new ConcurrentHashMap<>())
+            .merge(currency, delta, BigDecimal::add);
+    }
+
+    /**
+     * Rebuilds the running totals from scratch by pricing every asset
+     */
+    private void initializeTotals() {
+        assetValues = new ConcurrentHashMap<>();
+        assetCurrencies = new ConcurrentHashMap<>();
+        currencyTotals = new ConcurrentHashMap<>();
+        typeTotals = new ConcurrentHashMap<>();
+        for (Asset asset : assets.values()) {
+            applyValue(asset, valueOf(asset));
+        }
+    }
+
+    /**
+     * Bumps the version and modification time; callers must hold the write lock
+     */
+    private void touch() {
+        version++;
+        lastUpdated = new Date();
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        long stamp = lock.readLock();
+        try {
+            out.defaultWriteObject();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        // Portfolios saved before the concurrent rewrite hold a plain HashMap
+        if (!(assets instanceof ConcurrentHashMap)) {
+            assets = new ConcurrentHashMap<>(assets);
+        }
+        lock = new StampedLock();
+        initializeIndexes();
+        initializeTotals();
     }
 
     // Getters and setters
@@ -135,8 +605,8 @@ public final class Portfolio implements Serializable {
         return userId;
     }
 
-    public List<Asset> getAssets() {
-        return new ArrayList<>(assets.values());
+    public Collection<Asset> getAssets() {
+        return Collections.unmodifiableCollection(assets.values());
     }
     
     public Date getLastUpdated() {
@@ -162,10 +632,25 @@ public final class Portfolio implements Serializable {
         this.description = description;
         lastUpdated = new Date();
     }
+
+    /**
+     * @return currency that net worth and percentages are reported in
+     */
+    public String getReportingCurrency() {
+        return reportingCurrency != null ? reportingCurrency : FxRateTable.BASE_CURRENCY;
+    }
+
+    public void setReportingCurrency(String reportingCurrency) {
+        if (!FxRateTable.getInstance().isSupported(reportingCurrency)) {
+            throw new IllegalArgumentException("Unsupported currency: " + reportingCurrency);
+        }
+        this.reportingCurrency = reportingCurrency.trim().toUpperCase(Locale.ROOT);
+        lastUpdated = new Date();
+    }
     
     @Override
     public String toString() {
-        return String.format("Portfolio[id=%s, name=%s, assets=%d, netWorth=%s]",
-            portfolioId, name, assets.size(), getNetWorth());
+        return String.format("Portfolio[id=%s, name=%s, assets=%d, netWorth=%s %s]",
+            portfolioId, name, assets.size(), getNetWorth(), getReportingCurrency());
     }
 }
\ No newline at end of file
@@ -0,0 +1,114 @@
+package felosy.assetmanagement;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, consistent view of a portfolio at a specific version.
+ * Produced by {@link Portfolio#snapshot()} so readers on other threads can
+ * work with the assets and valuations without racing concurrent edits.
+ * All values are in the portfolio's reporting currency at the time of the snapshot.
+ */
+public final class PortfolioSnapshot {
+    private final String portfolioId;
+    private final long version;
+    private final Date takenAt;
+    private final List<Asset> assets;
+    private final Map<String, BigDecimal> assetValues;
+    private final Map<Class<? extends Asset>, BigDecimal> typeTotals;
+    private final BigDecimal netWorth;
+    private final String currency;
+
+    PortfolioSnapshot(String portfolioId, long version, Date takenAt, List<Asset> assets,
+                      Map<String, BigDecimal> assetValues,
+                      Map<Class<? extends Asset>, BigDecimal> typeTotals,
+                      BigDecimal netWorth, String currency) {
+        this.portfolioId = portfolioId;
+        this.version = version;
+        this.takenAt = new Date(takenAt.getTime());
+        this.assets = assets;
+        this.assetValues = Collections.unmodifiableMap(assetValues);
+        this.typeTotals = Collections.unmodifiableMap(typeTotals);
+        this.netWorth = netWorth;
+        this.currency = currency;
+    }
+
+    /**
+     * Gets the recorded value of an asset in this snapshot
+     * @param assetId The ID of the asset
+     * @return The asset's value, or null if the asset is not in the snapshot
+     */
+    public BigDecimal getAssetValue(String assetId) {
+        return assetValues.get(assetId);
+    }
+
+    /**
+     * Gets the total value of all assets of a specific type in this snapshot
+     * @param assetType The type of assets to total
+     * @return The combined value of the matching assets
+     */
+    public BigDecimal getNetWorthByType(Class<? extends Asset> assetType) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (Map.Entry<Class<? extends Asset>, BigDecimal> entry : typeTotals.entrySet()) {
+            if (assetType.isAssignableFrom(entry.getKey())) {
+                total = total.add(entry.getValue());
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Gets the percentage of the snapshot's value held in a specific asset
+     * @param assetId The ID of the asset
+     * @return The percentage as a decimal (e.g., 0.25 for 25%)
+     */
+    public BigDecimal getAssetPercentage(String assetId) {
+        BigDecimal assetValue = assetValues.get(assetId);
+        if (assetValue == null) {
+            throw new IllegalArgumentException("Asset not found in snapshot");
+        }
+        if (netWorth.compareTo(BigDecimal.ZERO) == 0) {
+            return BigDecimal.ZERO;
+        }
+        return assetValue.divide(netWorth, 4, RoundingMode.HALF_UP);
+    }
+
+    // Getters
+    public String getPortfolioId() {
+        return portfolioId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Date getTakenAt() {
+        return new Date(takenAt.getTime());
+    }
+
+    public List<Asset> getAssets() {
+        return assets;
+    }
+
+    public Map<String, BigDecimal> getAssetValues() {
+        return assetValues;
+    }
+
+    public BigDecimal getNetWorth() {
+        return netWorth;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PortfolioSnapshot[id=%s, version=%d, assets=%d, netWorth=%s]",
+            portfolioId, version, assets.size(), netWorth);
+    }
+}
@@ -3,6 +3,7 @@ package felosy.assetmanagement;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.LocalDate;
 import java.util.Date;
 
 public class RealEstate extends Asset implements Serializable {
@@ -34,6 +35,30 @@ public class RealEstate extends Asset implements Serializable {
     private BigDecimal annualPropertyTax;
     private BigDecimal annualMaintenanceCost;
     private BigDecimal annualInsuranceCost;
+    private transient volatile Valuation valuation;
+
+    /**
+     * A computed value together with the comparables data, exchange rates
+     * and valuation date it was based on
+     */
+    private static final class Valuation {
+        private final BigDecimal value;
+        private final long comparablesVersion;
+        private final long fxVersion;
+        private final long valuationDay;
+
+        private Valuation(BigDecimal value, long comparablesVersion, long fxVersion, long valuationDay) {
+            this.value = value;
+            this.comparablesVersion = comparablesVersion;
+            this.fxVersion = fxVersion;
+            this.valuationDay = valuationDay;
+        }
+
+        private boolean isFor(long comparablesVersion, long fxVersion, long valuationDay) {
+            return this.comparablesVersion == comparablesVersion && this.fxVersion == fxVersion
+                    && this.valuationDay == valuationDay;
+        }
+    }
     
     public RealEstate(String assetId, String name, Date purchaseDate, 
             BigDecimal purchasePrice, BigDecimal currentValue, String location, 
@@ -54,43 +79,40 @@ public class RealEstate extends Asset implements Serializable {
     }
     
     /**
-     * Estimates the current market value of the property based on 
-     * location, area, property type, and other factors
+     * Estimates the current market value of the property from comparable
+     * sales near its location, falling back to a per-square-meter rate for
+     * its type when no comparables are known. Income-producing properties
+     * average that with an income-based value.
+     * The result is cached until the property's inputs, the comparables data,
+     * the exchange rates or the date change.
      * @return The estimated current market value
      */
     public BigDecimal estimateValue() {
-        // Implementation to estimate real estate value
-        // This is a placeholder - real implementation would use complex valuation models
+        ComparablesIndex comparables = ComparablesIndex.getInstance();
+        long version = comparables.getVersion();
+        long fxVersion = FxRateTable.getInstance().getVersion();
+        // Comparables are weighted by their age, so an estimate is only good for the day it was made
+        long valuationDay = LocalDate.now().toEpochDay();
+        Valuation cached = valuation;
+        if (cached != null && cached.isFor(version, fxVersion, valuationDay)) {
+            return cached.value;
+        }
+        BigDecimal value = computeValue(comparables);
+        valuation = new Valuation(value, version, fxVersion, valuationDay);
+        return value;
+    }
+
+    private BigDecimal computeValue(ComparablesIndex comparables) {
         System.out.println("Estimating value for property at: " + location);
-        
-        // Base value calculation using area and price per square meter
-        BigDecimal baseValuePerSquareMeter;
-        
-        // Different property types have different base values
-        switch(propertyType) {
-            case OFFICE:
-            case RETAIL:
-                baseValuePerSquareMeter = new BigDecimal("3000");
-                break;
-            case INDUSTRIAL:
-                baseValuePerSquareMeter = new BigDecimal("1500");
-                break;
-            case MULTI_FAMILY_RESIDENTIAL:
-                baseValuePerSquareMeter = new BigDecimal("2500");
-                break;
-            case SINGLE_FAMILY_RESIDENTIAL:
-                baseValuePerSquareMeter = new BigDecimal("2200");
-                break;
-            case MIXED_USE:
-                baseValuePerSquareMeter = new BigDecimal("2800");
-                break;
-            case LAND:
-                baseValuePerSquareMeter = new BigDecimal("1000");
-                break;
-            default:
-                baseValuePerSquareMeter = new BigDecimal("2000");
+
+        BigDecimal baseValuePerSquareMeter = comparables.estimatePricePerSquareMeter(location, propertyType, areaSquareMeters);
+        if (baseValuePerSquareMeter == null) {
+            baseValuePerSquareMeter = defaultValuePerSquareMeter(propertyType);
         }
-        
+        // Comparables and default rates are in dollars
+        baseValuePerSquareMeter = FxRateTable.getInstance()
+                .convert(baseValuePerSquareMeter, FxRateTable.BASE_CURRENCY, getCurrency());
+
         // Calculate base value
         BigDecimal baseValue = areaSquareMeters.multiply(baseValuePerSquareMeter);
         
@@ -106,6 +128,34 @@ public class RealEstate extends Asset implements Serializable {
         
         return baseValue.setScale(2, RoundingMode.HALF_UP);
     }
+
+    private static BigDecimal defaultValuePerSquareMeter(PropertyType propertyType) {
+        // Different property types have different base values
+        switch(propertyType) {
+            case OFFICE:
+            case RETAIL:
+                return new BigDecimal("3000");
+            case INDUSTRIAL:
+                return new BigDecimal("1500");
+            case MULTI_FAMILY_RESIDENTIAL:
+                return new BigDecimal("2500");
+            case SINGLE_FAMILY_RESIDENTIAL:
+                return new BigDecimal("2200");
+            case MIXED_USE:
+                return new BigDecimal("2800");
+            case LAND:
+                return new BigDecimal("1000");
+            default:
+                return new BigDecimal("2000");
+        }
+    }
+
+    /**
+     * Drops the cached valuation after an input to it changes
+     */
+    private void invalidateValuation() {
+        valuation = null;
+    }
     
     /**
      * Calculates the capitalization rate (cap rate) of the property
@@ -163,9 +213,11 @@ public class RealEstate extends Asset implements Serializable {
     
     @Override
     public BigDecimal getCurrentValue() {
-        // Update the current value and return it
+        // Update the current value only when the estimate moved
         BigDecimal estimatedValue = estimateValue();
-        setCurrentValue(estimatedValue);
+        if (super.getCurrentValue() == null || super.getCurrentValue().compareTo(estimatedValue) != 0) {
+            setCurrentValue(estimatedValue);
+        }
         return estimatedValue;
     }
     
@@ -179,6 +231,7 @@ public class RealEstate extends Asset implements Serializable {
             throw new IllegalArgumentException("Location cannot be null or empty");
         }
         this.location = location;
+        invalidateValuation();
     }
     
     public BigDecimal getAreaSquareMeters() {
@@ -190,6 +243,7 @@ public class RealEstate extends Asset implements Serializable {
             throw new IllegalArgumentException("Area must be greater than 0");
         }
         this.areaSquareMeters = areaSquareMeters;
+        invalidateValuation();
     }
     
     public PropertyType getPropertyType() {
@@ -201,6 +255,7 @@ public class RealEstate extends Asset implements Serializable {
             throw new IllegalArgumentException("Property type cannot be null");
         }
         this.propertyType = propertyType;
+        invalidateValuation();
     }
     
     public BigDecimal getMonthlyRentalIncome() {
@@ -212,6 +267,7 @@ public class RealEstate extends Asset implements Serializable {
             throw new IllegalArgumentException("Monthly rental income cannot be negative");
         }
         this.monthlyRentalIncome = monthlyRentalIncome;
+        invalidateValuation();
     }
     
     public float getOccupancyRate() {
@@ -223,6 +279,7 @@ public class RealEstate extends Asset implements Serializable {
             throw new IllegalArgumentException("Occupancy rate must be between 0 and 1");
         }
         this.occupancyRate = occupancyRate;
+        invalidateValuation();
     }
     
     public BigDecimal getAnnualPropertyTax() {
@@ -234,6 +291,7 @@ public class RealEstate extends Asset implements Serializable {
             throw new IllegalArgumentException("Annual property tax cannot be negative");
         }
         this.annualPropertyTax = annualPropertyTax;
+        invalidateValuation();
     }
     
     public BigDecimal getAnnualMaintenanceCost() {
@@ -245,6 +303,7 @@ public class RealEstate extends Asset implements Serializable {
             throw new IllegalArgumentException("Annual maintenance cost cannot be negative");
         }
         this.annualMaintenanceCost = annualMaintenanceCost;
+        invalidateValuation();
     }
     
     public BigDecimal getAnnualInsuranceCost() {
@@ -256,6 +315,13 @@ public class RealEstate extends Asset implements Serializable {
             throw new IllegalArgumentException("Annual insurance cost cannot be negative");
         }
         this.annualInsuranceCost = annualInsuranceCost;
+        invalidateValuation();
+    }
+    
+    @Override
+    public void setCurrency(String currency) {
+        super.setCurrency(currency);
+        invalidateValuation();
     }
     
     @Override
@@ -1,5 +1,7 @@
 package felosy.assetmanagement;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
@@ -9,21 +11,27 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.logging.Logger;
 
 public class Stock extends Asset implements Serializable {
     private static final long serialVersionUID = 1L;
+    private static final Logger LOGGER = Logger.getLogger(Stock.class.getName());
 
-    private TickerType ticker;
+    private static final BigDecimal DEFAULT_PRICE = new BigDecimal("150.75");
+
+    private TickerType ticker; // Alias of symbol, null for instruments without one
+    private String symbol;
     private String exchange;
     private int sharesOwned;
     private BigDecimal dividendYield;
     private BigDecimal eps; // Earnings Per Share
     private List<Transaction> transactionHistory;
+    private LotLedger lotLedger; // Open lots, cost basis and realized P/L
     
     /**
      * Represents a stock purchase or sale transaction
      */
-    private static class Transaction implements Serializable {
+    public static class Transaction implements Serializable {
         private static final long serialVersionUID = 1L;
         private LocalDate date;
         private int quantity;
@@ -66,8 +74,20 @@ public class Stock extends Asset implements Serializable {
                 TickerType ticker, String exchange, int sharesOwned, 
                 BigDecimal dividendYield, BigDecimal eps) {
         
+        this(assetId, name, purchaseDate, purchasePrice, currentValue,
+             requireTicker(ticker).toString(), exchange, sharesOwned, dividendYield, eps);
+    }
+    
+    /**
+     * Creates a holding of any registered stock, including ones without a TickerType alias
+     */
+    public Stock(String assetId, String name, Date purchaseDate, 
+                BigDecimal purchasePrice, BigDecimal currentValue,
+                String symbol, String exchange, int sharesOwned, 
+                BigDecimal dividendYield, BigDecimal eps) {
+        
         super(assetId, name, purchaseDate, purchasePrice, currentValue);
-        setTicker(ticker);
+        setSymbol(symbol);
         setExchange(exchange);
         setSharesOwned(sharesOwned);
         setDividendYield(dividendYield);
@@ -75,11 +95,13 @@ public class Stock extends Asset implements Serializable {
         
         this.transactionHistory = new ArrayList<>();
         this.historicalPriceCache = new HashMap<>();
+        this.lotLedger = new LotLedger(LotLedger.CostBasisMethod.AVERAGE_COST);
         
         // Add initial purchase as first transaction
         LocalDate purchaseLocalDate = new java.sql.Date(purchaseDate.getTime()).toLocalDate();
         BigDecimal pricePerShare = purchasePrice.divide(new BigDecimal(sharesOwned), 6, RoundingMode.HALF_UP);
         this.transactionHistory.add(new Transaction(purchaseLocalDate, sharesOwned, pricePerShare, true));
+        this.lotLedger.buy(purchaseLocalDate, sharesOwned, pricePerShare);
     }
     
     /**
@@ -90,27 +112,10 @@ public class Stock extends Asset implements Serializable {
     public BigDecimal fetchPrice() {
         // Implementation to fetch current stock price from market
         // This is a placeholder - real implementation would query market data API
-        System.out.println("Fetching current price for: " + ticker);
+        System.out.println("Fetching current price for: " + symbol);
         
-        // Example hard-coded prices for demonstration
-        BigDecimal price;
-        switch(ticker) {
-            case AAPL:
-                price = new BigDecimal("175.50");
-                break;
-            case MSFT:
-                price = new BigDecimal("325.75");
-                break;
-            case GOOG:
-            case GOOGL:
-                price = new BigDecimal("2450.25");
-                break;
-            case AMZN:
-                price = new BigDecimal("3250.00");
-                break;
-            default:
-                price = new BigDecimal("150.75");
-        }
+        // Reference prices for demonstration come from the instrument registry
+        BigDecimal price = InstrumentRegistry.getInstance().getMarketPrice(symbol, DEFAULT_PRICE);
         
         // Update the current value
         setCurrentValue(price.multiply(new BigDecimal(sharesOwned)));
@@ -118,6 +123,21 @@ public class Stock extends Asset implements Serializable {
         return price;
     }
     
+    @Override
+    public String getInstrumentSymbol() {
+        return symbol;
+    }
+    
+    @Override
+    public BigDecimal getQuantity() {
+        return new BigDecimal(sharesOwned);
+    }
+    
+    @Override
+    public BigDecimal valueAt(BigDecimal unitPrice) {
+        return unitPrice.multiply(new BigDecimal(sharesOwned));
+    }
+    
     /**
      * Calculates the expected annual dividend based on current value and dividend yield
      * @return The expected annual dividend amount
@@ -141,7 +161,7 @@ public class Stock extends Asset implements Serializable {
         
         // Implementation to fetch historical price
         // This is a placeholder - real implementation would query a financial data API
-        System.out.println("Fetching historical price for " + ticker + " on " + date);
+        System.out.println("Fetching historical price for " + symbol + " on " + date);
         
         // For demonstration, we'll generate a reasonable random price based on current price
         BigDecimal currentPrice = fetchPrice();
@@ -177,27 +197,21 @@ public class Stock extends Asset implements Serializable {
             throw new IllegalArgumentException("Price must be positive");
         }
         
-        // Add to transaction history
-        transactionHistory.add(new Transaction(LocalDate.now(), qty, pricePerShare, true));
-        
-        // Calculate new average purchase price
-        BigDecimal totalShares = new BigDecimal(sharesOwned + qty);
-        BigDecimal currentTotalCost = getPurchasePrice();
-        BigDecimal additionalCost = pricePerShare.multiply(new BigDecimal(qty));
-        BigDecimal newTotalCost = currentTotalCost.add(additionalCost);
-        BigDecimal newAverageCost = newTotalCost.divide(totalShares, 6, RoundingMode.HALF_UP);
+        // Add to transaction history and open a new lot
+        LocalDate today = LocalDate.now();
+        transactionHistory.add(new Transaction(today, qty, pricePerShare, true));
+        lotLedger.buy(today, qty, pricePerShare);
         
         // Update shares owned and purchase price
-        sharesOwned += qty;
-        setPurchasePrice(newTotalCost);
+        sharesOwned = lotLedger.getTotalShares();
+        setPurchasePrice(lotLedger.getTotalCost());
         
-        System.out.println("Bought " + qty + " shares of " + ticker + " at $" + pricePerShare);
-        System.out.println("New average cost: $" + newAverageCost);
+        System.out.println("Bought " + qty + " shares of " + symbol + " at $" + pricePerShare);
         System.out.println("Total shares owned: " + sharesOwned);
     }
     
     /**
-     * Sells shares of the stock
+     * Sells shares of the stock, matching lots by the stock's cost basis method
      * @param qty Quantity of shares to sell
      * @param pricePerShare Price per share
      * @return The realized profit or loss from this sale
@@ -213,41 +227,77 @@ public class Stock extends Asset implements Serializable {
             throw new IllegalArgumentException("Price must be positive");
         }
         
-        // Add to transaction history
+        // Add to transaction history and match the sale against open lots
         transactionHistory.add(new Transaction(LocalDate.now(), qty, pricePerShare, false));
+        BigDecimal realizedPL = lotLedger.sell(qty, pricePerShare);
+        applySale();
         
-        // Calculate average cost per share
-        BigDecimal averageCost = getPurchasePrice().divide(new BigDecimal(sharesOwned), 6, RoundingMode.HALF_UP);
-        
-        // Calculate realized profit/loss
-        BigDecimal realizedPL = pricePerShare.subtract(averageCost).multiply(new BigDecimal(qty));
-        
-        // Calculate remaining investment
-        BigDecimal remainingShares = new BigDecimal(sharesOwned - qty);
-        BigDecimal remainingInvestment;
-        
-        if (remainingShares.compareTo(BigDecimal.ZERO) > 0) {
-            remainingInvestment = getPurchasePrice()
-                    .multiply(remainingShares)
-                    .divide(new BigDecimal(sharesOwned), 6, RoundingMode.HALF_UP);
-        } else {
-            remainingInvestment = BigDecimal.ZERO;
-        }
-        
-        // Update shares owned and purchase price
-        sharesOwned -= qty;
-        setPurchasePrice(remainingInvestment);
-        
-        // Update current value based on remaining shares
-        setCurrentValue(fetchPrice().multiply(new BigDecimal(sharesOwned)));
-        
-        System.out.println("Sold " + qty + " shares of " + ticker + " at $" + pricePerShare);
+        System.out.println("Sold " + qty + " shares of " + symbol + " at $" + pricePerShare);
         System.out.println("Realized P/L: $" + realizedPL);
         System.out.println("Remaining shares: " + sharesOwned);
         
         return realizedPL;
     }
     
+    /**
+     * Sells shares out of a specific lot
+     * @param lotId The lot to sell from
+     * @param qty Quantity of shares to sell
+     * @param pricePerShare Price per share
+     * @return The realized profit or loss from this sale
+     */
+    public BigDecimal sellSharesFromLot(long lotId, int qty, BigDecimal pricePerShare) {
+        BigDecimal realizedPL = lotLedger.sellFromLot(lotId, qty, pricePerShare);
+        transactionHistory.add(new Transaction(LocalDate.now(), qty, pricePerShare, false));
+        applySale();
+        
+        LOGGER.info("Sold " + qty + " shares of " + symbol + " from lot " + lotId + " at " + pricePerShare + " " + getCurrency());
+        return realizedPL;
+    }
+    
+    /**
+     * Brings shares owned, purchase price and current value in line with the ledger after a sale
+     */
+    private void applySale() {
+        sharesOwned = lotLedger.getTotalShares();
+        // Asset requires a positive purchase price, so keep the last basis once the position is closed
+        if (sharesOwned > 0) {
+            setPurchasePrice(lotLedger.getTotalCost());
+            setCurrentValue(fetchPrice().multiply(new BigDecimal(sharesOwned)));
+        }
+    }
+    
+    /**
+     * Gets the unrealized profit or loss of the open shares at the current market price
+     * @return Market value minus cost basis of the open shares
+     */
+    public BigDecimal getUnrealizedProfitLoss() {
+        return lotLedger.getUnrealizedProfitLoss(fetchPrice());
+    }
+    
+    public BigDecimal getRealizedProfitLoss() {
+        return lotLedger.getRealizedProfitLoss();
+    }
+    
+    public BigDecimal getAverageCost() {
+        return lotLedger.getAverageCost();
+    }
+    
+    public LotLedger.CostBasisMethod getCostBasisMethod() {
+        return lotLedger.getMethod();
+    }
+    
+    public void setCostBasisMethod(LotLedger.CostBasisMethod method) {
+        lotLedger.setMethod(method);
+        if (lotLedger.getTotalCost().signum() > 0) {
+            setPurchasePrice(lotLedger.getTotalCost());
+        }
+    }
+    
+    public List<LotLedger.Lot> getOpenLots() {
+        return lotLedger.getOpenLots();
+    }
+    
     /**
      * Calculates the price to earnings ratio
      * @return P/E ratio
@@ -272,10 +322,27 @@ public class Stock extends Asset implements Serializable {
     }
     
     public void setTicker(TickerType ticker) {
+        setSymbol(requireTicker(ticker).toString());
+    }
+    
+    public String getSymbol() {
+        return symbol;
+    }
+    
+    public void setSymbol(String symbol) {
+        if (symbol == null || symbol.trim().isEmpty()) {
+            throw new IllegalArgumentException("Ticker symbol cannot be null");
+        }
+        InstrumentRegistry registry = InstrumentRegistry.getInstance();
+        this.symbol = registry.get(registry.intern(symbol)).getSymbol();
+        this.ticker = TickerType.fromSymbol(this.symbol);
+    }
+    
+    private static TickerType requireTicker(TickerType ticker) {
         if (ticker == null) {
             throw new IllegalArgumentException("Ticker symbol cannot be null");
         }
-        this.ticker = ticker;
+        return ticker;
     }
     
     public String getExchange() {
@@ -326,6 +393,47 @@ public class Stock extends Asset implements Serializable {
         return new ArrayList<>(transactionHistory); // Return a copy to preserve encapsulation
     }
     
+    public int getTransactionCount() {
+        return transactionHistory.size();
+    }
+
+    /**
+     * Gets the transactions recorded after the first fromIndex ones, e.g. to pick up new trades
+     * @param fromIndex Number of transactions already seen
+     * @return A copy of the newer transactions
+     */
+    public List<Transaction> getTransactionsSince(int fromIndex) {
+        if (fromIndex < 0) {
+            throw new IllegalArgumentException("Index cannot be negative");
+        }
+        if (fromIndex >= transactionHistory.size()) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(transactionHistory.subList(fromIndex, transactionHistory.size()));
+    }
+    
+    /**
+     * Rebuilds the lot ledger for stocks saved before lots were tracked,
+     * replaying their transaction history at average cost
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        // Stocks saved before symbols were stored only have the enum
+        if (symbol == null && ticker != null) {
+            symbol = ticker.toString();
+        }
+        if (lotLedger == null) {
+            lotLedger = new LotLedger(LotLedger.CostBasisMethod.AVERAGE_COST);
+            for (Transaction transaction : transactionHistory) {
+                if (transaction.isBuy()) {
+                    lotLedger.buy(transaction.getDate(), transaction.getQuantity(), transaction.getPricePerShare());
+                } else {
+                    lotLedger.sell(transaction.getQuantity(), transaction.getPricePerShare());
+                }
+            }
+        }
+    }
+    
     @Override
     public String toString() {
         return "Stock{" +
@@ -334,7 +442,7 @@ public class Stock extends Asset implements Serializable {
                ", purchaseDate=" + getPurchaseDate() +
                ", purchasePrice=" + getPurchasePrice() +
                ", currentValue=" + getCurrentValue() +
-               ", ticker=" + ticker +
+               ", ticker=" + symbol +
                ", exchange='" + exchange + '\'' +
                ", sharesOwned=" + sharesOwned +
                ", dividendYield=" + dividendYield +
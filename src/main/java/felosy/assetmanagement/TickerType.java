@@ -57,4 +57,27 @@ public enum TickerType {
     public String toString() {
         return this.name().replace("_", ".");
     }
+
+    /**
+     * @return ID of this ticker in the {@link InstrumentRegistry}
+     */
+    public int getInstrumentId() {
+        return InstrumentRegistry.getInstance().intern(toString());
+    }
+
+    /**
+     * Finds the alias for a symbol
+     * @param symbol Ticker symbol, e.g. "BRK.B"
+     * @return The matching ticker, or null if the symbol has no alias
+     */
+    public static TickerType fromSymbol(String symbol) {
+        if (symbol == null) {
+            return null;
+        }
+        try {
+            return valueOf(symbol.trim().toUpperCase().replace(".", "_"));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
 }
\ No newline at end of file
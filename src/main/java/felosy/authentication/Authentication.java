@@ -1,12 +1,11 @@
 package felosy.authentication;
 
-import java.util.*;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.function.Predicate;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 import java.util.regex.Pattern;
-import java.security.SecureRandom;
-import java.time.LocalDateTime;
-import java.time.Duration;
 
 import felosy.storage.DataStorage;
 
@@ -19,8 +18,17 @@ public class Authentication {
     private static final Logger LOGGER = Logger.getLogger(Authentication.class.getName());
     
     // Session management
-    private static final Map<String, UserSession> activeSessions = new HashMap<>();
     private static final int SESSION_EXPIRY_MINUTES = 30;
+    private static final String SESSION_LOG_FILE = "data/sessions.log";
+    private static final SessionStore sessions =
+            new SessionStore(SESSION_EXPIRY_MINUTES * 60_000L, Paths.get(SESSION_LOG_FILE));
+    private static final String SESSION_KEY_FILE = "data/session.key";
+    private static volatile SessionTokenSigner signer;
+    private static volatile boolean issueSignedTokens;
+    
+    // Removes a verified account; the services layer replaces this with the
+    // cascade that also deletes the account's portfolios and holdings
+    private static volatile Predicate<String> accountDeleter = Authentication::deleteUserRecord;
     
     // Password policy constants
     private static final int MIN_PASSWORD_LENGTH = 8;
@@ -33,9 +41,6 @@ public class Authentication {
     private static final Pattern EMAIL_PATTERN = 
             Pattern.compile("^[A-Za-z0-9+_.-]+@(.+)$");
     
-    // Random generator for tokens
-    private static final SecureRandom secureRandom = new SecureRandom();
-    
     /**
      * Initialize the authentication system
      * Ensures DataStorage is initialized
@@ -55,6 +60,36 @@ public class Authentication {
         }
     }
     
+    /**
+     * Switch between server-side sessions and signed, self-contained session tokens.
+     * Signed tokens need no session store and survive restarts; the key is kept in
+     * data/session.key so every instance sharing that file accepts them. Tokens of
+     * either kind that were already issued stay valid after switching.
+     * 
+     * @param enabled true to issue signed tokens on login
+     */
+    public static synchronized void setSignedSessionTokens(boolean enabled) {
+        if (enabled && signer == null) {
+            try {
+                signer = new SessionTokenSigner(SessionTokenSigner.loadOrCreateKey(Paths.get(SESSION_KEY_FILE)),
+                        SESSION_EXPIRY_MINUTES * 60_000L);
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "Failed to load session signing key", e);
+                throw new RuntimeException("Failed to load session signing key", e);
+            }
+        }
+        issueSignedTokens = enabled;
+    }
+    
+    /**
+     * Check whether login issues signed session tokens
+     * 
+     * @return true if signed tokens are enabled
+     */
+    public static boolean isSignedSessionTokens() {
+        return issueSignedTokens;
+    }
+    
     /**
      * Register a new user
      * 
@@ -90,8 +125,8 @@ public class Authentication {
             // Create new user
             User newUser = new User(username, email, password);
             
-            // Save user to storage
-            boolean saved = DataStorage.saveUser(newUser);
+            // Save user to storage; fails if the email was registered concurrently
+            boolean saved = DataStorage.addUser(newUser, false);
             if (!saved) {
                 LOGGER.severe("Failed to save new user to storage");
                 return null;
@@ -106,36 +141,76 @@ public class Authentication {
     }
     
     /**
-     * Login a user with username/email and password
+     * Login a user with username/email and password from this machine
      * 
      * @param usernameOrEmail The username or email
      * @param password The password
      * @return A session token if login successful, null otherwise
      */
     public static String login(String usernameOrEmail, String password) {
+        return login(usernameOrEmail, password, LoginRateLimiter.localSource());
+    }
+    
+    /**
+     * Login a user with username/email and password, throttling attempts
+     * per account and per source before the password is checked
+     * 
+     * @param usernameOrEmail The username or email
+     * @param password The password
+     * @param source Where the attempt comes from, or null if unknown
+     * @return A session token if login successful, null otherwise
+     */
+    public static String login(String usernameOrEmail, String password, String source) {
         try {
             if (usernameOrEmail == null || password == null) {
                 LOGGER.warning("Null username/email or password during login");
                 return null;
             }
             
+            LoginRateLimiter limiter = LoginRateLimiter.getInstance();
+            if (!limiter.tryAcquireSource(source)) {
+                LOGGER.warning("Login throttled for source: " + source);
+                return null;
+            }
+            
             // Find user by username or email
             User user = findUserByUsernameOrEmail(usernameOrEmail);
+            
             if (user == null) {
+                // Throttle unknown names before spending a hash on them
+                if (!limiter.tryAcquireUnknown(usernameOrEmail)) {
+                    LOGGER.warning("Login throttled for unknown name: " + usernameOrEmail);
+                    return null;
+                }
+                // Take as long as a real check so unknown usernames cannot be told apart
+                PasswordHasher.getInstance().verifyDummy(password);
                 LOGGER.warning("User not found during login: " + usernameOrEmail);
                 return null;
             }
             
+            // Throttle per account
+            if (!limiter.tryAcquireAccount(user.getUserId())) {
+                LOGGER.warning("Login throttled for account: " + usernameOrEmail);
+                return null;
+            }
+            
             // Authenticate user
+            boolean rehash = user.needsPasswordRehash();
             if (!user.authenticate(password)) {
                 LOGGER.warning("Invalid password during login for user: " + user.getUserId());
                 return null;
             }
             
+            // Persist the upgraded password hash
+            if (rehash && !DataStorage.saveUser(user)) {
+                LOGGER.warning("Failed to save upgraded password hash for user: " + user.getUserId());
+            }
+            limiter.reset(user.getUserId());
+            
             // Create session
-            String sessionToken = generateSessionToken();
-            UserSession session = new UserSession(user.getUserId(), LocalDateTime.now());
-            activeSessions.put(sessionToken, session);
+            String sessionToken = issueSignedTokens
+                    ? signer.issue(user.getUserId(), user.getCredentialStamp())
+                    : sessions.open(user.getUserId());
             
             LOGGER.info("User logged in successfully: " + user.getUserId());
             return sessionToken;
@@ -146,7 +221,9 @@ public class Authentication {
     }
     
     /**
-     * Logout a user by invalidating their session
+     * Logout a user by invalidating their session.
+     * A signed token cannot be revoked on its own: the client must discard it,
+     * and it stops working when it expires or the password changes.
      * 
      * @param sessionToken The session token
      * @return true if logout successful, false otherwise
@@ -156,9 +233,18 @@ public class Authentication {
             return false;
         }
         
-        UserSession session = activeSessions.remove(sessionToken);
-        if (session != null) {
-            LOGGER.info("User logged out successfully: " + session.getUserId());
+        if (SessionTokenSigner.isSignedToken(sessionToken)) {
+            User user = verifySignedToken(sessionToken);
+            if (user != null) {
+                LOGGER.info("User logged out successfully: " + user.getUserId());
+                return true;
+            }
+            return false;
+        }
+        
+        String userId = sessions.close(sessionToken);
+        if (userId != null) {
+            LOGGER.info("User logged out successfully: " + userId);
             return true;
         }
         
@@ -176,23 +262,18 @@ public class Authentication {
             return null;
         }
         
-        UserSession session = activeSessions.get(sessionToken);
-        if (session == null) {
-            return null;
+        if (SessionTokenSigner.isSignedToken(sessionToken)) {
+            return verifySignedToken(sessionToken);
         }
         
-        // Check if session is expired
-        if (isSessionExpired(session)) {
-            activeSessions.remove(sessionToken);
-            LOGGER.info("Session expired for user: " + session.getUserId());
+        // Look up the session, refreshing its idle timer; null if unknown or expired
+        String userId = sessions.touch(sessionToken);
+        if (userId == null) {
             return null;
         }
         
-        // Update session timestamp
-        session.setLastActivity(LocalDateTime.now());
-        
         // Load user from storage
-        return DataStorage.loadUser(session.getUserId());
+        return DataStorage.loadUser(userId);
     }
     
     /**
@@ -356,6 +437,8 @@ public class Authentication {
     
     /**
      * Delete a user account
+     * With the cascade installed by UserProvisioningService, the account's
+     * portfolios and holdings are deleted along with it
      * 
      * @param userId The user ID
      * @param password The user's password (for verification)
@@ -382,16 +465,12 @@ public class Authentication {
                 return false;
             }
             
-            // Delete user
-            boolean deleted = DataStorage.deleteUser(userId);
-            if (!deleted) {
+            // Delete the user and everything it owns
+            if (!accountDeleter.test(userId)) {
                 LOGGER.severe("Failed to delete user account");
                 return false;
             }
             
-            // Invalidate all sessions for this user
-            invalidateUserSessions(userId);
-            
             LOGGER.info("User account deleted successfully: " + userId);
             return true;
         } catch (Exception e) {
@@ -400,6 +479,29 @@ public class Authentication {
         }
     }
     
+    /**
+     * Set how a verified account is deleted by deleteUserAccount
+     * 
+     * @param deleter Deletes the account with the given user ID, returning false on failure
+     */
+    public static void setAccountDeleter(Predicate<String> deleter) {
+        if (deleter == null) {
+            throw new IllegalArgumentException("Account deleter cannot be null");
+        }
+        accountDeleter = deleter;
+    }
+    
+    /**
+     * Deletes only the user record and its sessions
+     */
+    private static boolean deleteUserRecord(String userId) {
+        if (!DataStorage.deleteUser(userId)) {
+            return false;
+        }
+        invalidateUserSessions(userId);
+        return true;
+    }
+    
     /**
      * Check if a username is valid
      * 
@@ -495,23 +597,7 @@ public class Authentication {
      * @return The user, or null if not found
      */
     public static User findUserByEmail(String email) {
-        if (email == null) {
-            return null;
-        }
-        
-        email = email.trim().toLowerCase();
-        
-        // Load all users
-        Map<String, User> users = DataStorage.loadUsers();
-        
-        // Find user with matching email
-        for (User user : users.values()) {
-            if (email.equals(user.getEmail().toLowerCase())) {
-                return user;
-            }
-        }
-        
-        return null;
+        return DataStorage.findUserByEmail(email);
     }
     
     /**
@@ -521,111 +607,47 @@ public class Authentication {
      * @return The user, or null if not found
      */
     public static User findUserByUsernameOrEmail(String usernameOrEmail) {
-        if (usernameOrEmail == null) {
-            return null;
-        }
-        
-        usernameOrEmail = usernameOrEmail.trim().toLowerCase();
-        
-        // Load all users
-        Map<String, User> users = DataStorage.loadUsers();
-        
-        // Find user with matching username or email
-        for (User user : users.values()) {
-            if (usernameOrEmail.equals(user.getUserName().toLowerCase()) || 
-                usernameOrEmail.equals(user.getEmail().toLowerCase())) {
-                return user;
-            }
-        }
-        
-        return null;
+        return DataStorage.findUserByUsernameOrEmail(usernameOrEmail);
     }
     
     /**
-     * Generate a random session token
+     * Validate a signed session token and load its user
      * 
-     * @return A random session token
+     * @param sessionToken The signed token
+     * @return The user, or null if the token is invalid, expired or predates a password change
      */
-    private static String generateSessionToken() {
-        byte[] randomBytes = new byte[32];
-        secureRandom.nextBytes(randomBytes);
-        
-        StringBuilder token = new StringBuilder();
-        for (byte b : randomBytes) {
-            token.append(String.format("%02x", b));
+    private static User verifySignedToken(String sessionToken) {
+        SessionTokenSigner tokenSigner = signer;
+        if (tokenSigner == null) {
+            return null;
         }
-        
-        return token.toString();
-    }
-    
-    /**
-     * Check if a session is expired
-     * 
-     * @param session The session to check
-     * @return true if expired, false otherwise
-     */
-    private static boolean isSessionExpired(UserSession session) {
-        LocalDateTime now = LocalDateTime.now();
-        Duration duration = Duration.between(session.getLastActivity(), now);
-        return duration.toMinutes() > SESSION_EXPIRY_MINUTES;
+        SessionTokenSigner.Claims claims = tokenSigner.verify(sessionToken);
+        if (claims == null) {
+            return null;
+        }
+        User user = DataStorage.loadUser(claims.getUserId());
+        if (user == null || user.getCredentialStamp() != claims.getCredentialStamp()) {
+            return null;
+        }
+        return user;
     }
     
     /**
      * Clean up expired sessions
      */
     private static void cleanupExpiredSessions() {
-        Iterator<Map.Entry<String, UserSession>> iterator = activeSessions.entrySet().iterator();
-        while (iterator.hasNext()) {
-            Map.Entry<String, UserSession> entry = iterator.next();
-            if (isSessionExpired(entry.getValue())) {
-                iterator.remove();
-                LOGGER.fine("Removed expired session for user: " + entry.getValue().getUserId());
-            }
-        }
+        sessions.expireIdleSessions();
     }
     
     /**
-     * Invalidate all sessions for a specific user
+     * Invalidate all server-side sessions for a specific user
      * 
      * @param userId The user ID
      */
-    private static void invalidateUserSessions(String userId) {
-        if (userId == null) {
-            return;
-        }
-        
-        Iterator<Map.Entry<String, UserSession>> iterator = activeSessions.entrySet().iterator();
-        while (iterator.hasNext()) {
-            Map.Entry<String, UserSession> entry = iterator.next();
-            if (userId.equals(entry.getValue().getUserId())) {
-                iterator.remove();
-                LOGGER.fine("Invalidated session for user: " + userId);
-            }
-        }
-    }
-    
-    /**
-     * Inner class to represent a user session
-     */
-    private static class UserSession {
-        private final String userId;
-        private LocalDateTime lastActivity;
-        
-        public UserSession(String userId, LocalDateTime lastActivity) {
-            this.userId = userId;
-            this.lastActivity = lastActivity;
-        }
-        
-        public String getUserId() {
-            return userId;
-        }
-        
-        public LocalDateTime getLastActivity() {
-            return lastActivity;
-        }
-        
-        public void setLastActivity(LocalDateTime lastActivity) {
-            this.lastActivity = lastActivity;
+    public static void invalidateUserSessions(String userId) {
+        int closed = sessions.closeAll(userId);
+        if (closed > 0) {
+            LOGGER.fine("Invalidated " + closed + " sessions for user: " + userId);
         }
     }
-}
\ No newline at end of file
+}
@@ -3,5 +3,6 @@ package felosy.authentication;
 public enum AuthenticationResult {
     SUCCESS,
     INVALID_CREDENTIALS,
+    THROTTLED,
     ERROR
 }
\ No newline at end of file
@@ -0,0 +1,319 @@
+package felosy.authentication;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Throttles login attempts per account and per source before any password is hashed.
+ * Each key has a token bucket held in a single atomic long, the time at which
+ * the bucket will next be full again; an attempt is a compare-and-set that
+ * pushes that time forward by one refill interval, and a rejection is a single
+ * read. Buckets that have refilled completely carry no state and are dropped
+ * when the map reaches its size limit. If every tracked key is still being
+ * throttled, new keys share one overflow bucket so memory stays bounded.
+ * Account buckets are only kept for existing users. Names that match no user
+ * are throttled apart from them, per typed name and against one budget shared
+ * by all unknown names, so guessed names can neither fill the account map nor
+ * make the server spend a password hash on every attempt.
+ */
+public class LoginRateLimiter {
+    private static final Logger LOGGER = Logger.getLogger(LoginRateLimiter.class.getName());
+    private static final int DEFAULT_ACCOUNT_BURST = 5;
+    private static final long DEFAULT_ACCOUNT_REFILL_MILLIS = 60_000;
+    private static final int DEFAULT_SOURCE_BURST = 20;
+    private static final long DEFAULT_SOURCE_REFILL_MILLIS = 3_000;
+    private static final int DEFAULT_UNKNOWN_BURST = 20;
+    private static final long DEFAULT_UNKNOWN_REFILL_MILLIS = 500;
+    private static final int DEFAULT_MAX_KEYS = 100_000;
+    private static final long PURGE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final LoginRateLimiter instance = new LoginRateLimiter(
+            DEFAULT_ACCOUNT_BURST, DEFAULT_ACCOUNT_REFILL_MILLIS,
+            DEFAULT_SOURCE_BURST, DEFAULT_SOURCE_REFILL_MILLIS, DEFAULT_MAX_KEYS);
+    private static final String LOCAL_SOURCE = "local:" + System.getProperty("user.name") + "@" + hostName();
+
+    /**
+     * Outcome of a login attempt check
+     */
+    public enum Decision {
+        ALLOWED,
+        ACCOUNT_THROTTLED,
+        SOURCE_THROTTLED
+    }
+
+    private final Buckets accounts;
+    private final Buckets sources;
+    private final Buckets unknownNames;
+    private final Buckets unknownBudget;
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder accountThrottled = new LongAdder();
+    private final LongAdder sourceThrottled = new LongAdder();
+    private final LongAdder unknownThrottled = new LongAdder();
+
+    /**
+     * Creates a limiter
+     * @param accountBurst Attempts an account may make in a row
+     * @param accountRefillMillis Time for an account to earn back one attempt
+     * @param sourceBurst Attempts a source may make in a row
+     * @param sourceRefillMillis Time for a source to earn back one attempt
+     * @param maxKeys Maximum number of accounts, and of sources, tracked at once
+     */
+    public LoginRateLimiter(int accountBurst, long accountRefillMillis,
+                            int sourceBurst, long sourceRefillMillis, int maxKeys) {
+        this(accountBurst, accountRefillMillis, sourceBurst, sourceRefillMillis,
+                DEFAULT_UNKNOWN_BURST, DEFAULT_UNKNOWN_REFILL_MILLIS, maxKeys);
+    }
+
+    /**
+     * Creates a limiter with its own budget for names that match no user
+     * @param accountBurst Attempts an account, or an unknown name, may make in a row
+     * @param accountRefillMillis Time for an account to earn back one attempt
+     * @param sourceBurst Attempts a source may make in a row
+     * @param sourceRefillMillis Time for a source to earn back one attempt
+     * @param unknownBurst Attempts all unknown names together may make in a row
+     * @param unknownRefillMillis Time for the unknown names to earn back one attempt
+     * @param maxKeys Maximum number of accounts, sources and unknown names tracked at once
+     */
+    public LoginRateLimiter(int accountBurst, long accountRefillMillis,
+                            int sourceBurst, long sourceRefillMillis,
+                            int unknownBurst, long unknownRefillMillis, int maxKeys) {
+        if (maxKeys <= 0) {
+            throw new IllegalArgumentException("Maximum number of keys must be positive");
+        }
+        this.accounts = new Buckets(accountBurst, accountRefillMillis, maxKeys);
+        this.sources = new Buckets(sourceBurst, sourceRefillMillis, maxKeys);
+        this.unknownNames = new Buckets(accountBurst, accountRefillMillis, maxKeys);
+        this.unknownBudget = new Buckets(unknownBurst, unknownRefillMillis, 1);
+    }
+
+    public static LoginRateLimiter getInstance() {
+        return instance;
+    }
+
+    /**
+     * Source for attempts made on this machine: the operating system user and host
+     * @return The local source key
+     */
+    public static String localSource() {
+        return LOCAL_SOURCE;
+    }
+
+    /**
+     * Takes one attempt from a source's bucket
+     * @param source Where the attempt comes from, or null if unknown
+     * @return true if the source may attempt a login
+     */
+    public boolean tryAcquireSource(String source) {
+        if (source == null || sources.tryAcquire(normalize(source))) {
+            return true;
+        }
+        sourceThrottled.increment();
+        LOGGER.fine("Login attempts throttled for source: " + source);
+        return false;
+    }
+
+    /**
+     * Takes one attempt from an account's bucket
+     * @param account User ID of an existing user
+     * @return true if the account may attempt a login
+     */
+    public boolean tryAcquireAccount(String account) {
+        if (account == null || accounts.tryAcquire(normalize(account))) {
+            allowed.increment();
+            return true;
+        }
+        accountThrottled.increment();
+        LOGGER.fine("Login attempts throttled for account: " + account);
+        return false;
+    }
+
+    /**
+     * Takes one attempt for a name that matched no user, from the name's own
+     * bucket and from the budget shared by every unknown name. Call it before
+     * spending a dummy password hash on the attempt.
+     * @param name The username or email that was entered
+     * @return true if the attempt may go ahead
+     */
+    public boolean tryAcquireUnknown(String name) {
+        if (name != null && unknownNames.tryAcquire(normalize(name)) && unknownBudget.tryAcquireShared()) {
+            allowed.increment();
+            return true;
+        }
+        unknownThrottled.increment();
+        LOGGER.fine("Login attempts throttled for unknown name");
+        return false;
+    }
+
+    /**
+     * Checks a source and then an account
+     * @param account The account
+     * @param source The source, or null if unknown
+     * @return The decision; nothing is taken from the account when the source is throttled
+     */
+    public Decision tryAcquire(String account, String source) {
+        if (!tryAcquireSource(source)) {
+            return Decision.SOURCE_THROTTLED;
+        }
+        return tryAcquireAccount(account) ? Decision.ALLOWED : Decision.ACCOUNT_THROTTLED;
+    }
+
+    /**
+     * Gives an account its full allowance back after a successful login
+     * @param account The account
+     */
+    public void reset(String account) {
+        if (account != null) {
+            accounts.remove(normalize(account));
+        }
+    }
+
+    public long getAllowedCount() {
+        return allowed.sum();
+    }
+
+    public long getAccountThrottledCount() {
+        return accountThrottled.sum();
+    }
+
+    public long getSourceThrottledCount() {
+        return sourceThrottled.sum();
+    }
+
+    public long getUnknownThrottledCount() {
+        return unknownThrottled.sum();
+    }
+
+    public int getTrackedAccountCount() {
+        return accounts.size();
+    }
+
+    public int getTrackedSourceCount() {
+        return sources.size();
+    }
+
+    public int getTrackedUnknownNameCount() {
+        return unknownNames.size();
+    }
+
+    /**
+     * Number of idle buckets dropped to keep the maps within their limit
+     */
+    public long getEvictionCount() {
+        return accounts.evictions.sum() + sources.evictions.sum() + unknownNames.evictions.sum();
+    }
+
+    /**
+     * Number of attempts that were checked against the shared overflow bucket
+     */
+    public long getOverflowCount() {
+        return accounts.overflowed.sum() + sources.overflowed.sum() + unknownNames.overflowed.sum();
+    }
+
+    private static String normalize(String key) {
+        return key.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "localhost";
+        }
+    }
+
+    /**
+     * Token buckets for one kind of key, kept as the time each bucket is full again
+     */
+    private static final class Buckets {
+        private final long intervalNanos;
+        private final long toleranceNanos;
+        private final int maxKeys;
+        private final Map<String, AtomicLong> fullAt = new ConcurrentHashMap<>();
+        private final AtomicLong overflow = new AtomicLong(System.nanoTime());
+        private final AtomicLong lastPurge = new AtomicLong(System.nanoTime() - PURGE_INTERVAL_NANOS);
+        private final LongAdder evictions = new LongAdder();
+        private final LongAdder overflowed = new LongAdder();
+
+        private Buckets(int burst, long refillMillis, int maxKeys) {
+            if (burst <= 0) {
+                throw new IllegalArgumentException("Burst must be positive");
+            }
+            if (refillMillis <= 0) {
+                throw new IllegalArgumentException("Refill time must be positive");
+            }
+            this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(refillMillis);
+            this.toleranceNanos = intervalNanos * (burst - 1);
+            this.maxKeys = maxKeys;
+        }
+
+        private boolean tryAcquire(String key) {
+            long now = System.nanoTime();
+            AtomicLong bucket = fullAt.get(key);
+            if (bucket == null) {
+                bucket = bucketFor(key, now);
+            }
+            return take(bucket, now);
+        }
+
+        /**
+         * Takes from the one bucket shared by every key, for a budget that is not split by key
+         */
+        private boolean tryAcquireShared() {
+            return take(overflow, System.nanoTime());
+        }
+
+        private boolean take(AtomicLong bucket, long now) {
+            while (true) {
+                long current = bucket.get();
+                long base = current - now > 0 ? current : now;
+                if (base - now > toleranceNanos) {
+                    return false;
+                }
+                if (bucket.compareAndSet(current, base + intervalNanos)) {
+                    return true;
+                }
+            }
+        }
+
+        private AtomicLong bucketFor(String key, long now) {
+            if (fullAt.size() >= maxKeys) {
+                purgeIdle(now);
+                if (fullAt.size() >= maxKeys) {
+                    overflowed.increment();
+                    return overflow;
+                }
+            }
+            return fullAt.computeIfAbsent(key, k -> new AtomicLong(now));
+        }
+
+        /**
+         * Drops buckets that have refilled, at most once per second
+         */
+        private void purgeIdle(long now) {
+            long last = lastPurge.get();
+            if (now - last < PURGE_INTERVAL_NANOS || !lastPurge.compareAndSet(last, now)) {
+                return;
+            }
+            for (Map.Entry<String, AtomicLong> entry : fullAt.entrySet()) {
+                AtomicLong bucket = entry.getValue();
+                if (bucket.get() - now <= 0 && fullAt.remove(entry.getKey(), bucket)) {
+                    evictions.increment();
+                }
+            }
+        }
+
+        private void remove(String key) {
+            fullAt.remove(key);
+        }
+
+        private int size() {
+            return fullAt.size();
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package felosy.authentication;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.spec.InvalidKeySpecException;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Salted PBKDF2 password hashing with a cost tuned to the machine.
+ * On startup the iteration count is calibrated so one hash takes about the
+ * target time. Hashes record their own iteration count and salt, so older
+ * hashes keep verifying after the cost changes; {@link #needsRehash(String)}
+ * tells callers when a stored hash should be replaced. Unsalted SHA-256
+ * hashes written by earlier versions are still accepted.
+ * Slow verifications can be run on a small bounded pool through
+ * {@link #submit(Supplier)}, which refuses work once its queue is full
+ * instead of letting a burst of logins pile up.
+ */
+public class PasswordHasher {
+    private static final Logger LOGGER = Logger.getLogger(PasswordHasher.class.getName());
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PREFIX = "pbkdf2-sha256";
+    private static final int SALT_BYTES = 16;
+    private static final int KEY_BITS = 256;
+    private static final int LEGACY_HASH_LENGTH = 64;
+    private static final int MIN_ITERATIONS = 100_000;
+    private static final int MAX_ITERATIONS = 5_000_000;
+    private static final int CALIBRATION_ITERATIONS = 20_000;
+    private static final int CALIBRATION_RUNS = 3;
+    private static final long DEFAULT_TARGET_MILLIS = 150;
+    // Calibration varies a little between runs; only hashes well below the current cost are upgraded
+    private static final double REHASH_BELOW_FRACTION = 0.8;
+    private static final int DEFAULT_QUEUE_CAPACITY = 32;
+    private static final PasswordHasher instance = new PasswordHasher(DEFAULT_TARGET_MILLIS,
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2), DEFAULT_QUEUE_CAPACITY);
+
+    private final int iterations;
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final ThreadPoolExecutor executor;
+    private volatile String dummyHash;
+
+    /**
+     * Creates a hasher and calibrates its cost
+     * @param targetMillis Time one hash should take
+     * @param threads Number of verification threads
+     * @param queueCapacity Number of verifications that may wait for a thread
+     */
+    public PasswordHasher(long targetMillis, int threads, int queueCapacity) {
+        if (targetMillis <= 0) {
+            throw new IllegalArgumentException("Target time must be positive");
+        }
+        if (threads <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("Threads and queue capacity must be positive");
+        }
+        this.iterations = calibrate(targetMillis);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "password-verifier-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public static PasswordHasher getInstance() {
+        return instance;
+    }
+
+    /**
+     * Hashes a password with a fresh salt
+     * @param password The plaintext password
+     * @return The encoded hash, including algorithm, iterations and salt
+     */
+    public String hash(String password) {
+        if (password == null) {
+            throw new IllegalArgumentException("Password cannot be null");
+        }
+        byte[] salt = new byte[SALT_BYTES];
+        secureRandom.nextBytes(salt);
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return PREFIX + "$" + iterations + "$" + encoder.encodeToString(salt) + "$"
+                + encoder.encodeToString(derive(password, salt, iterations, KEY_BITS));
+    }
+
+    /**
+     * Checks a password against a stored hash
+     * @param password The plaintext password
+     * @param storedHash A hash from {@link #hash(String)} or a legacy SHA-256 hash
+     * @return true if the password matches
+     */
+    public boolean verify(String password, String storedHash) {
+        if (password == null || storedHash == null) {
+            return false;
+        }
+        if (isLegacy(storedHash)) {
+            return MessageDigest.isEqual(legacyHash(password).getBytes(), storedHash.getBytes());
+        }
+        String[] parts = storedHash.split("\\$");
+        if (parts.length != 4 || !PREFIX.equals(parts[0])) {
+            LOGGER.warning("Unrecognised password hash format");
+            return false;
+        }
+        try {
+            int storedIterations = Integer.parseInt(parts[1]);
+            Base64.Decoder decoder = Base64.getDecoder();
+            byte[] salt = decoder.decode(parts[2]);
+            byte[] expected = decoder.decode(parts[3]);
+            return MessageDigest.isEqual(expected, derive(password, salt, storedIterations, expected.length * 8));
+        } catch (IllegalArgumentException e) {
+            LOGGER.warning("Malformed password hash: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Tells whether a stored hash is weaker than what {@link #hash(String)} produces now
+     * @param storedHash The stored hash
+     * @return true if the hash is a legacy hash or uses clearly fewer iterations than the current cost
+     */
+    public boolean needsRehash(String storedHash) {
+        if (storedHash == null || isLegacy(storedHash)) {
+            return true;
+        }
+        String[] parts = storedHash.split("\\$");
+        try {
+            return parts.length != 4 || !PREFIX.equals(parts[0])
+                    || Integer.parseInt(parts[1]) < Math.max(MIN_ITERATIONS, (int) (iterations * REHASH_BELOW_FRACTION));
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Spends as long as verifying a real password, for logins that match no user,
+     * so response times do not reveal which usernames exist
+     * @param password The plaintext password that was entered
+     */
+    public void verifyDummy(String password) {
+        String hash = dummyHash;
+        if (hash == null) {
+            // Creating the dummy hash costs the same as checking against it
+            byte[] secret = new byte[SALT_BYTES];
+            secureRandom.nextBytes(secret);
+            dummyHash = hash(Base64.getEncoder().encodeToString(secret));
+            return;
+        }
+        verify(password != null ? password : "", hash);
+    }
+
+    /**
+     * Runs a task on the verification pool
+     * @param task The task, typically a lookup followed by {@link #verify(String, String)}
+     * @return Future of the task's result; it fails with {@link RejectedExecutionException}
+     *         when the pool is saturated
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        if (task == null) {
+            throw new IllegalArgumentException("Task cannot be null");
+        }
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            LOGGER.fine("Password verification pool is saturated, rejecting request");
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public int getQueuedTasks() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Stops the verification pool
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Measures a short run and scales the iteration count to the target time
+     */
+    private static int calibrate(long targetMillis) {
+        long best = Long.MAX_VALUE;
+        byte[] salt = new byte[SALT_BYTES];
+        for (int i = 0; i < CALIBRATION_RUNS; i++) {
+            long start = System.nanoTime();
+            derive("calibration-password", salt, CALIBRATION_ITERATIONS, KEY_BITS);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        double perIteration = (double) Math.max(best, 1) / CALIBRATION_ITERATIONS;
+        long scaled = Math.round(targetMillis * 1_000_000.0 / perIteration / 1000.0) * 1000;
+        int result = (int) Math.max(MIN_ITERATIONS, Math.min(MAX_ITERATIONS, scaled));
+        LOGGER.info("Calibrated password hashing to " + result + " iterations for a "
+                + targetMillis + " ms target");
+        return result;
+    }
+
+    private static byte[] derive(String password, byte[] salt, int iterations, int keyBits) {
+        if (iterations <= 0 || keyBits <= 0) {
+            throw new IllegalArgumentException("Invalid hash parameters");
+        }
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, keyBits);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+            throw new RuntimeException("Error hashing password: " + ALGORITHM + " not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private static boolean isLegacy(String storedHash) {
+        if (storedHash.length() != LEGACY_HASH_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < storedHash.length(); i++) {
+            if (Character.digit(storedHash.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Unsalted SHA-256 hex digest, as earlier versions stored it
+     */
+    private static String legacyHash(String password) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            byte[] hash = md.digest(password.getBytes());
+            StringBuilder hexString = new StringBuilder();
+            for (byte b : hash) {
+                String hex = Integer.toHexString(0xff & b);
+                if (hex.length() == 1) hexString.append('0');
+                hexString.append(hex);
+            }
+            return hexString.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("Error hashing password: SHA-256 algorithm not available", e);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package felosy.authentication;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Append-only file of session events backing a {@link SessionStore}.
+ * Opens, touches and closes are queued in memory and written in one batch
+ * per flush, so a login or a page view never waits for the disk. When the
+ * file holds many more records than there are live sessions it is rewritten
+ * with one record per live session and swapped in atomically. Replaying the
+ * file on startup rebuilds the sessions that have not expired; a record cut
+ * short by a crash ends the replay. Records carry the hash of a session's token,
+ * never the token itself, and the file is readable by its owner only.
+ */
+class SessionLog {
+    private static final Logger LOGGER = Logger.getLogger(SessionLog.class.getName());
+    private static final int MAGIC = 0x46534C47;
+    private static final int VERSION = 2;
+    private static final byte OPEN = 'O';
+    private static final byte TOUCH = 'T';
+    private static final byte CLOSE = 'C';
+    private static final int MIN_RECORDS_BEFORE_COMPACTION = 10_000;
+
+    private final Path file;
+    private final Queue<Entry> pending = new ConcurrentLinkedQueue<>();
+    private FileOutputStream fileStream;
+    private DataOutputStream out;
+    private long records;
+
+    SessionLog(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Replays the file and opens it for appending.
+     * The file is rewritten first if it is missing, damaged or mostly dead records.
+     * @param idleTimeoutMillis Idle time after which a session has expired
+     * @return The live sessions in the order they were opened
+     * @throws IOException if the file cannot be opened or rewritten
+     */
+    synchronized List<Entry> load(long idleTimeoutMillis) throws IOException {
+        Map<String, Entry> live = new LinkedHashMap<>();
+        boolean intact = false;
+        if (Files.exists(file)) {
+            restrictPermissions(file);
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                intact = replay(in, live);
+            }
+        }
+        long now = System.currentTimeMillis();
+        live.values().removeIf(entry -> now - entry.lastActivity > idleTimeoutMillis);
+        List<Entry> sessions = new ArrayList<>(live.values());
+        if (!intact || shouldCompact(sessions.size())) {
+            compact(sessions);
+        } else {
+            fileStream = new FileOutputStream(file.toFile(), true);
+            out = new DataOutputStream(new BufferedOutputStream(fileStream));
+        }
+        return sessions;
+    }
+
+    void opened(String key, String userId, long at) {
+        pending.add(new Entry(OPEN, key, userId, at));
+    }
+
+    void touched(String key, long at) {
+        pending.add(new Entry(TOUCH, key, null, at));
+    }
+
+    void closed(String key) {
+        pending.add(new Entry(CLOSE, key, null, 0));
+    }
+
+    /**
+     * Writes every queued event and forces them to disk
+     */
+    synchronized void flush() {
+        if (out == null || pending.isEmpty()) {
+            return;
+        }
+        try {
+            Entry entry;
+            while ((entry = pending.poll()) != null) {
+                write(entry);
+            }
+            out.flush();
+            fileStream.getChannel().force(false);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to write session log " + file, e);
+        }
+    }
+
+    /**
+     * Tells whether the file has grown well past the live sessions it describes
+     * @param liveSessions Number of live sessions
+     */
+    synchronized boolean shouldCompact(int liveSessions) {
+        return records > MIN_RECORDS_BEFORE_COMPACTION && records > 2L * liveSessions;
+    }
+
+    /**
+     * Replaces the file with one record per live session.
+     * Events still queued are written to the new file afterwards; replaying
+     * them again on top of the snapshot gives the same sessions.
+     * @param live Snapshot of the live sessions
+     * @throws IOException if the new file cannot be written
+     */
+    synchronized void compact(Collection<Entry> live) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, "sessions", ".tmp");
+        restrictPermissions(temp);
+        try (FileOutputStream tempStream = new FileOutputStream(temp.toFile());
+             DataOutputStream tempOut = new DataOutputStream(new BufferedOutputStream(tempStream))) {
+            tempOut.writeInt(MAGIC);
+            tempOut.writeInt(VERSION);
+            for (Entry entry : live) {
+                writeOpen(tempOut, entry.key, entry.userId, entry.lastActivity);
+            }
+            tempOut.flush();
+            tempStream.getChannel().force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        close();
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        fileStream = new FileOutputStream(file.toFile(), true);
+        out = new DataOutputStream(new BufferedOutputStream(fileStream));
+        records = live.size();
+        LOGGER.fine("Compacted session log to " + records + " sessions");
+    }
+
+    /**
+     * Flushes queued events and closes the file
+     */
+    synchronized void shutdown() {
+        flush();
+        try {
+            close();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to close session log " + file, e);
+        }
+    }
+
+    private void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+            fileStream = null;
+        }
+    }
+
+    private void write(Entry entry) throws IOException {
+        switch (entry.type) {
+            case OPEN:
+                writeOpen(out, entry.key, entry.userId, entry.lastActivity);
+                break;
+            case TOUCH:
+                out.writeByte(TOUCH);
+                out.writeUTF(entry.key);
+                out.writeLong(entry.lastActivity);
+                break;
+            default:
+                out.writeByte(CLOSE);
+                out.writeUTF(entry.key);
+                break;
+        }
+        records++;
+    }
+
+    private static void writeOpen(DataOutputStream out, String key, String userId, long lastActivity) throws IOException {
+        out.writeByte(OPEN);
+        out.writeUTF(key);
+        out.writeUTF(userId);
+        out.writeLong(lastActivity);
+    }
+
+    /**
+     * Applies the file's records in order
+     * @return true if every record was read, false if the file is damaged
+     */
+    private boolean replay(DataInputStream in, Map<String, Entry> live) throws IOException {
+        try {
+            int version = in.readInt() == MAGIC ? in.readInt() : -1;
+            if (version != VERSION) {
+                LOGGER.warning("Ignoring session log with unknown format: " + file);
+                return false;
+            }
+            while (true) {
+                int type = in.read();
+                if (type == -1) {
+                    return true;
+                }
+                records++;
+                String key = in.readUTF();
+                if (type == OPEN) {
+                    String userId = in.readUTF();
+                    live.put(key, new Entry(OPEN, key, userId, in.readLong()));
+                } else if (type == TOUCH) {
+                    long at = in.readLong();
+                    Entry entry = live.get(key);
+                    if (entry != null && at > entry.lastActivity) {
+                        entry.lastActivity = at;
+                    }
+                } else if (type == CLOSE) {
+                    live.remove(key);
+                } else {
+                    LOGGER.warning("Corrupt session log record in " + file + ", ignoring the rest");
+                    return false;
+                }
+            }
+        } catch (EOFException e) {
+            LOGGER.warning("Session log " + file + " ends in a partial record, ignoring it");
+            return false;
+        }
+    }
+
+    /**
+     * Makes a file readable and writable by its owner only
+     */
+    private static void restrictPermissions(Path path) throws IOException {
+        try {
+            Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException e) {
+            LOGGER.fine("File system does not support POSIX permissions for " + path);
+        }
+    }
+
+    /**
+     * A session event, or a live session when loading and compacting
+     */
+    static final class Entry {
+        private final byte type;
+        private final String key;
+        private final String userId;
+        private long lastActivity;
+
+        Entry(String key, String userId, long lastActivity) {
+            this(OPEN, key, userId, lastActivity);
+        }
+
+        private Entry(byte type, String key, String userId, long lastActivity) {
+            this.type = type;
+            this.key = key;
+            this.userId = userId;
+            this.lastActivity = lastActivity;
+        }
+
+        String getKey() {
+            return key;
+        }
+
+        String getUserId() {
+            return userId;
+        }
+
+        long getLastActivity() {
+            return lastActivity;
+        }
+    }
+}
@@ -0,0 +1,424 @@
+package felosy.authentication;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Thread-safe store of login sessions with idle expiry.
+ * Sessions are found by token in a concurrent map and by user in a
+ * userId to sessions index, so logging a user out everywhere touches only
+ * that user's sessions. Expiry runs on a two-level timing wheel: a session
+ * sits in the slot of its deadline, and a background tick expires whatever
+ * is due. Activity only writes a timestamp; a session that was used since
+ * it was scheduled is simply moved to its new deadline when its slot comes up.
+ * Optionally the store is backed by a {@link SessionLog} so sessions survive
+ * a restart; activity is recorded at most once per session per granularity
+ * interval and written together with the other events once a second.
+ * Tokens are never stored: sessions are keyed by the SHA-256 of their token,
+ * so neither the heap nor the log holds anything that can be presented as one.
+ */
+public class SessionStore {
+    private static final Logger LOGGER = Logger.getLogger(SessionStore.class.getName());
+    private static final long TICK_MILLIS = 1_000L;
+    private static final int INNER_BITS = 8;
+    private static final int INNER_SLOTS = 1 << INNER_BITS;
+    private static final int OUTER_SLOTS = 64;
+    private static final int TOKEN_BYTES = 32;
+    private static final long MAX_TOUCH_GRANULARITY_MILLIS = 60_000L;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("Error hashing session tokens: SHA-256 not available", e);
+        }
+    });
+
+    private final long idleTimeoutMillis;
+    private final Map<String, Session> sessionsByKey = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> keysByUser = new ConcurrentHashMap<>();
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final long touchGranularityMillis;
+    private final TimingWheel wheel;
+    private final SessionLog log;
+    private final ScheduledExecutorService sweeper;
+
+    /**
+     * Creates an in-memory store whose sessions expire after a period without activity
+     * @param idleTimeoutMillis Idle time after which a session expires
+     */
+    public SessionStore(long idleTimeoutMillis) {
+        this(idleTimeoutMillis, null);
+    }
+
+    /**
+     * Creates a store that keeps its sessions in a log file across restarts
+     * @param idleTimeoutMillis Idle time after which a session expires
+     * @param logFile The session log, or null to keep sessions in memory only
+     */
+    public SessionStore(long idleTimeoutMillis, Path logFile) {
+        if (idleTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("Idle timeout must be positive");
+        }
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.touchGranularityMillis = Math.min(MAX_TOUCH_GRANULARITY_MILLIS, idleTimeoutMillis / 10);
+        this.wheel = new TimingWheel(System.currentTimeMillis() / TICK_MILLIS);
+        this.log = logFile != null ? restore(logFile) : null;
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleAtFixedRate(this::expireIdleSessions, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        if (log != null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(log::shutdown, "session-log-flush"));
+        }
+    }
+
+    /**
+     * Opens a new session for a user
+     * @param userId The user the session belongs to
+     * @return The session token
+     */
+    public String open(String userId) {
+        if (userId == null) {
+            throw new IllegalArgumentException("User ID cannot be null");
+        }
+        long now = System.currentTimeMillis();
+        String token = generateToken();
+        Session session = new Session(keyOf(token), userId, now);
+        sessionsByKey.put(session.key, session);
+        keysByUser.compute(userId, (id, keys) -> {
+            Set<String> set = keys != null ? keys : ConcurrentHashMap.newKeySet();
+            set.add(session.key);
+            return set;
+        });
+        wheel.schedule(session, now + idleTimeoutMillis);
+        if (log != null) {
+            log.opened(session.key, userId, now);
+        }
+        return token;
+    }
+
+    /**
+     * Looks up a session and records activity on it
+     * @param token The session token
+     * @return The ID of the session's user, or null if the token is unknown or expired
+     */
+    public String touch(String token) {
+        if (token == null) {
+            return null;
+        }
+        Session session = sessionsByKey.get(keyOf(token));
+        if (session == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (now - session.lastActivity > idleTimeoutMillis) {
+            if (remove(session)) {
+                LOGGER.info("Session expired for user: " + session.userId);
+            }
+            return null;
+        }
+        session.lastActivity = now;
+        if (log != null && now - session.loggedActivity >= touchGranularityMillis) {
+            session.loggedActivity = now;
+            log.touched(session.key, now);
+        }
+        return session.userId;
+    }
+
+    /**
+     * Closes a session
+     * @param token The session token
+     * @return The ID of the session's user, or null if there was no such session
+     */
+    public String close(String token) {
+        if (token == null) {
+            return null;
+        }
+        Session session = sessionsByKey.get(keyOf(token));
+        if (session == null || !remove(session)) {
+            return null;
+        }
+        if (log != null) {
+            log.closed(session.key);
+        }
+        return session.userId;
+    }
+
+    /**
+     * Closes every session of a user
+     * @param userId The user
+     * @return Number of sessions closed
+     */
+    public int closeAll(String userId) {
+        if (userId == null) {
+            return 0;
+        }
+        Set<String> keys = keysByUser.remove(userId);
+        if (keys == null) {
+            return 0;
+        }
+        int closed = 0;
+        for (String key : keys) {
+            Session session = sessionsByKey.remove(key);
+            if (session != null) {
+                session.closed = true;
+                closed++;
+                if (log != null) {
+                    log.closed(key);
+                }
+            }
+        }
+        return closed;
+    }
+
+    /**
+     * Expires every session whose idle time ran out.
+     * Runs once a second in the background; callers may also run it directly.
+     * @return Number of sessions expired
+     */
+    public int expireIdleSessions() {
+        long now = System.currentTimeMillis();
+        List<Session> due = wheel.advance(now / TICK_MILLIS);
+        int expired = 0;
+        List<Session> rescheduled = new ArrayList<>();
+        for (Session session : due) {
+            if (session.closed) {
+                continue;
+            }
+            long deadline = session.lastActivity + idleTimeoutMillis;
+            if (deadline < now) {
+                if (remove(session)) {
+                    expired++;
+                }
+            } else {
+                rescheduled.add(session);
+            }
+        }
+        for (Session session : rescheduled) {
+            wheel.schedule(session, session.lastActivity + idleTimeoutMillis);
+        }
+        if (expired > 0) {
+            LOGGER.fine("Expired " + expired + " idle sessions");
+        }
+        if (log != null) {
+            persist();
+        }
+        return expired;
+    }
+
+    /**
+     * Counts a user's open sessions
+     * @param userId The user
+     * @return Number of sessions
+     */
+    public int getSessionCount(String userId) {
+        Set<String> keys = userId != null ? keysByUser.get(userId) : null;
+        return keys != null ? keys.size() : 0;
+    }
+
+    public int size() {
+        return sessionsByKey.size();
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    /**
+     * Stops the background expiry and writes any pending session events
+     */
+    public void shutdown() {
+        sweeper.shutdownNow();
+        if (log != null) {
+            log.shutdown();
+        }
+    }
+
+    /**
+     * Loads the sessions of a log file that have not expired
+     * @return The log, or null if it cannot be used
+     */
+    private SessionLog restore(Path logFile) {
+        long start = System.nanoTime();
+        SessionLog sessionLog = new SessionLog(logFile);
+        List<SessionLog.Entry> entries;
+        try {
+            entries = sessionLog.load(idleTimeoutMillis);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to load session log " + logFile + ", keeping sessions in memory", e);
+            return null;
+        }
+        for (SessionLog.Entry entry : entries) {
+            Session session = new Session(entry.getKey(), entry.getUserId(), entry.getLastActivity());
+            sessionsByKey.put(session.key, session);
+            keysByUser.computeIfAbsent(session.userId, id -> ConcurrentHashMap.newKeySet()).add(session.key);
+            wheel.schedule(session, session.lastActivity + idleTimeoutMillis);
+        }
+        LOGGER.info("Restored " + entries.size() + " sessions in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return sessionLog;
+    }
+
+    /**
+     * Writes queued session events, compacting the log once it is mostly dead records
+     */
+    private void persist() {
+        log.flush();
+        if (!log.shouldCompact(sessionsByKey.size())) {
+            return;
+        }
+        List<SessionLog.Entry> live = new ArrayList<>(sessionsByKey.size());
+        for (Session session : sessionsByKey.values()) {
+            live.add(new SessionLog.Entry(session.key, session.userId, session.lastActivity));
+        }
+        try {
+            log.compact(live);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to compact session log", e);
+        }
+    }
+
+    /**
+     * Removes a session from both maps
+     * @return true if this call removed it
+     */
+    private boolean remove(Session session) {
+        if (!sessionsByKey.remove(session.key, session)) {
+            return false;
+        }
+        session.closed = true;
+        keysByUser.computeIfPresent(session.userId, (id, keys) -> {
+            keys.remove(session.key);
+            return keys.isEmpty() ? null : keys;
+        });
+        return true;
+    }
+
+    private String generateToken() {
+        byte[] randomBytes = new byte[TOKEN_BYTES];
+        secureRandom.nextBytes(randomBytes);
+        return toHex(randomBytes);
+    }
+
+    /**
+     * Derives the key a session is stored and logged under from its token
+     * @param token The session token
+     * @return Hex SHA-256 of the token
+     */
+    static String keyOf(String token) {
+        return toHex(DIGESTS.get().digest(token.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = HEX[(bytes[i] >> 4) & 0xF];
+            hex[2 * i + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * An open session; the wheel holds it until it expires or is found closed
+     */
+    private static final class Session {
+        private final String key;
+        private final String userId;
+        private volatile long lastActivity;
+        private volatile long loggedActivity;
+        private volatile boolean closed;
+
+        private Session(String key, String userId, long lastActivity) {
+            this.key = key;
+            this.userId = userId;
+            this.lastActivity = lastActivity;
+            this.loggedActivity = lastActivity;
+        }
+    }
+
+    /**
+     * Hierarchical timing wheel with one-second ticks.
+     * The inner wheel covers the next 256 seconds one slot per tick; the outer
+     * wheel covers about four and a half hours in 256-second slots. Sessions in
+     * an outer slot, and those in the overflow list beyond it, are handed back
+     * for rescheduling when time reaches them, which moves them inwards.
+     */
+    private static final class TimingWheel {
+        private final List<List<Session>> inner = new ArrayList<>(INNER_SLOTS);
+        private final List<List<Session>> outer = new ArrayList<>(OUTER_SLOTS);
+        private List<Session> overflow = new ArrayList<>();
+        private long currentTick;
+
+        private TimingWheel(long startTick) {
+            for (int i = 0; i < INNER_SLOTS; i++) {
+                inner.add(new ArrayList<>());
+            }
+            for (int i = 0; i < OUTER_SLOTS; i++) {
+                outer.add(new ArrayList<>());
+            }
+            this.currentTick = startTick;
+        }
+
+        private synchronized void schedule(Session session, long deadlineMillis) {
+            place(session, deadlineMillis / TICK_MILLIS);
+        }
+
+        /**
+         * Moves the wheel forward to a tick
+         * @return The sessions whose slots were passed
+         */
+        private synchronized List<Session> advance(long targetTick) {
+            List<Session> due = new ArrayList<>();
+            while (currentTick < targetTick) {
+                currentTick++;
+                int innerIndex = (int) (currentTick & (INNER_SLOTS - 1));
+                if (innerIndex == 0) {
+                    long outerTick = currentTick >>> INNER_BITS;
+                    if (outerTick % OUTER_SLOTS == 0 && !overflow.isEmpty()) {
+                        due.addAll(overflow);
+                        overflow = new ArrayList<>();
+                    }
+                    // Handed back to the caller, which reschedules them onto the inner wheel
+                    due.addAll(outer.set((int) (outerTick % OUTER_SLOTS), new ArrayList<>()));
+                }
+                List<Session> slot = inner.get(innerIndex);
+                if (!slot.isEmpty()) {
+                    due.addAll(slot);
+                    inner.set(innerIndex, new ArrayList<>());
+                }
+            }
+            return due;
+        }
+
+        private void place(Session session, long tick) {
+            long delta = tick - currentTick;
+            if (delta < 1) {
+                tick = currentTick + 1;
+                delta = 1;
+            }
+            if (delta < INNER_SLOTS) {
+                inner.get((int) (tick & (INNER_SLOTS - 1))).add(session);
+            } else if ((tick >>> INNER_BITS) - (currentTick >>> INNER_BITS) < OUTER_SLOTS) {
+                outer.get((int) ((tick >>> INNER_BITS) % OUTER_SLOTS)).add(session);
+            } else {
+                overflow.add(session);
+            }
+        }
+    }
+}
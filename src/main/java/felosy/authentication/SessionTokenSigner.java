@@ -0,0 +1,215 @@
+package felosy.authentication;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.logging.Logger;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Issues and checks self-contained session tokens signed with HMAC-SHA256.
+ * A token carries the user ID, its issue and expiry times and a stamp of the
+ * user's credentials, so it can be validated with a signature check alone:
+ * any process holding the same key accepts it, and restarts do not log
+ * anyone out. The token is {@code base64url(payload) + "." + base64url(mac)}.
+ * Such a token cannot be revoked on its own before it expires; changing the
+ * password changes the credential stamp, which invalidates every token issued before.
+ */
+public class SessionTokenSigner {
+    private static final Logger LOGGER = Logger.getLogger(SessionTokenSigner.class.getName());
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int KEY_BYTES = 32;
+    private static final byte VERSION = 1;
+    private static final int HEADER_BYTES = 1 + Long.BYTES + Long.BYTES + Integer.BYTES;
+    private static final char SEPARATOR = '.';
+
+    private final SecretKeySpec key;
+    private final long ttlMillis;
+    private final ThreadLocal<Mac> macs;
+
+    /**
+     * Creates a signer
+     * @param key Secret key shared by every process that validates the tokens
+     * @param ttlMillis Lifetime of an issued token
+     */
+    public SessionTokenSigner(byte[] key, long ttlMillis) {
+        if (key == null || key.length < KEY_BYTES) {
+            throw new IllegalArgumentException("Key must be at least " + KEY_BYTES + " bytes");
+        }
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("Token lifetime must be positive");
+        }
+        this.key = new SecretKeySpec(key.clone(), ALGORITHM);
+        this.ttlMillis = ttlMillis;
+        this.macs = ThreadLocal.withInitial(this::newMac);
+        newMac();
+    }
+
+    /**
+     * Reads the signing key from a file, creating it with a random key if it does not exist
+     * @param keyFile The key file
+     * @return The key
+     * @throws IOException if the file cannot be read or written
+     */
+    public static byte[] loadOrCreateKey(Path keyFile) throws IOException {
+        if (Files.exists(keyFile)) {
+            byte[] key = Base64.getDecoder().decode(Files.readString(keyFile, StandardCharsets.US_ASCII).trim());
+            if (key.length < KEY_BYTES) {
+                throw new IOException("Session key in " + keyFile + " is too short");
+            }
+            return key;
+        }
+        byte[] key = new byte[KEY_BYTES];
+        new SecureRandom().nextBytes(key);
+        Path parent = keyFile.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, "session", ".key");
+        try {
+            Files.setPosixFilePermissions(temp, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException e) {
+            LOGGER.fine("File system does not support POSIX permissions for " + temp);
+        }
+        Files.writeString(temp, Base64.getEncoder().encodeToString(key), StandardCharsets.US_ASCII);
+        try {
+            Files.move(temp, keyFile, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Another process created the key first; use theirs
+            Files.deleteIfExists(temp);
+            if (!Files.exists(keyFile)) {
+                throw e;
+            }
+            return loadOrCreateKey(keyFile);
+        }
+        LOGGER.info("Created session signing key: " + keyFile);
+        return key;
+    }
+
+    /**
+     * Issues a token for a user
+     * @param userId The user
+     * @param credentialStamp Stamp of the user's current credentials
+     * @return The signed token
+     */
+    public String issue(String userId, int credentialStamp) {
+        if (userId == null) {
+            throw new IllegalArgumentException("User ID cannot be null");
+        }
+        long now = System.currentTimeMillis();
+        byte[] id = userId.getBytes(StandardCharsets.UTF_8);
+        byte[] payload = ByteBuffer.allocate(HEADER_BYTES + id.length)
+                .put(VERSION)
+                .putLong(now)
+                .putLong(now + ttlMillis)
+                .putInt(credentialStamp)
+                .put(id)
+                .array();
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString(payload) + SEPARATOR + encoder.encodeToString(macs.get().doFinal(payload));
+    }
+
+    /**
+     * Checks a token's signature and expiry
+     * @param token The token
+     * @return The token's claims, or null if the token is forged, malformed or expired
+     */
+    public Claims verify(String token) {
+        if (!isSignedToken(token)) {
+            return null;
+        }
+        int separator = token.lastIndexOf(SEPARATOR);
+        byte[] payload;
+        byte[] signature;
+        try {
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            payload = decoder.decode(token.substring(0, separator));
+            signature = decoder.decode(token.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (!MessageDigest.isEqual(macs.get().doFinal(payload), signature)) {
+            return null;
+        }
+        if (payload.length <= HEADER_BYTES || payload[0] != VERSION) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(payload, 1, payload.length - 1);
+        long issuedAt = buffer.getLong();
+        long expiresAt = buffer.getLong();
+        int credentialStamp = buffer.getInt();
+        if (System.currentTimeMillis() >= expiresAt) {
+            return null;
+        }
+        String userId = new String(payload, HEADER_BYTES, payload.length - HEADER_BYTES, StandardCharsets.UTF_8);
+        return new Claims(userId, issuedAt, expiresAt, credentialStamp);
+    }
+
+    /**
+     * Tells signed tokens apart from server-side session tokens, which are plain hex
+     * @param token The token
+     * @return true if the token has the shape of a signed token
+     */
+    public static boolean isSignedToken(String token) {
+        if (token == null) {
+            return false;
+        }
+        int separator = token.lastIndexOf(SEPARATOR);
+        return separator > 0 && separator < token.length() - 1;
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Error creating session signer: " + ALGORITHM + " not available", e);
+        }
+    }
+
+    /**
+     * What a valid token says about its session
+     */
+    public static final class Claims {
+        private final String userId;
+        private final long issuedAt;
+        private final long expiresAt;
+        private final int credentialStamp;
+
+        private Claims(String userId, long issuedAt, long expiresAt, int credentialStamp) {
+            this.userId = userId;
+            this.issuedAt = issuedAt;
+            this.expiresAt = expiresAt;
+            this.credentialStamp = credentialStamp;
+        }
+
+        // Getters
+        public String getUserId() {
+            return userId;
+        }
+
+        public long getIssuedAt() {
+            return issuedAt;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+
+        public int getCredentialStamp() {
+            return credentialStamp;
+        }
+    }
+}
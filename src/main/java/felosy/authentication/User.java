@@ -1,8 +1,8 @@
 package felosy.authentication;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.UUID;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 
 /**
  * User class that maintains basic user information and wealth data
@@ -15,7 +15,8 @@ public class User implements Serializable {
     private String userId;
     private String userName;
     private String email;
-    private String passwordHash; // Store hashed password
+    private volatile String passwordHash; // Store salted PBKDF2 hash
+    private volatile int credentialVersion; // Bumped on every password change, not on rehash
     private double currentWealth; // Added current wealth field
     private boolean isConfirmed; // Store confirmation status
 
@@ -46,6 +47,7 @@ public class User implements Serializable {
         this.userName = userName;
         this.email = email;
         this.passwordHash = hashPassword(password);
+        this.credentialVersion = 1;
         this.currentWealth = currentWealth;
         this.isConfirmed = false;
     }
@@ -169,30 +171,20 @@ public class User implements Serializable {
     }
 
     /**
-     * Hash password with SHA-256
+     * Hash password with a salted, calibrated PBKDF2
      *
      * @param password The plaintext password to hash
-     * @return The hashed password as hexadecimal string
-     * @throws RuntimeException if the hashing algorithm is not available
+     * @return The encoded hash
      */
     private String hashPassword(String password) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] hash = md.digest(password.getBytes());
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) hexString.append('0');
-                hexString.append(hex);
-            }
-            return hexString.toString();
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("Error hashing password: SHA-256 algorithm not available", e);
-        }
+        return PasswordHasher.getInstance().hash(password);
     }
 
     /**
-     * Authenticate a user with password
+     * Authenticate a user with password.
+     * A correct password stored under a legacy or weaker hash is rehashed
+     * at the current cost; callers should save the user when
+     * {@link #needsPasswordRehash()} was true before the call.
      *
      * @param password The plaintext password to verify
      * @return true if password matches, false otherwise
@@ -201,7 +193,35 @@ public class User implements Serializable {
         if (password == null || password.isEmpty()) {
             return false;
         }
-        return passwordHash.equals(hashPassword(password));
+        PasswordHasher hasher = PasswordHasher.getInstance();
+        String storedHash = passwordHash;
+        if (!hasher.verify(password, storedHash)) {
+            return false;
+        }
+        if (hasher.needsRehash(storedHash)) {
+            passwordHash = hasher.hash(password);
+        }
+        return true;
+    }
+
+    /**
+     * Whether the stored password hash is older or weaker than the current scheme
+     *
+     * @return true if the next successful login will replace the hash
+     */
+    public boolean needsPasswordRehash() {
+        return PasswordHasher.getInstance().needsRehash(passwordHash);
+    }
+
+    /**
+     * Stamp that changes whenever the password does; signed session tokens
+     * carry it so that a password change invalidates them. Upgrading the hash
+     * of an unchanged password keeps the stamp, so tokens survive rehashing.
+     *
+     * @return The stamp
+     */
+    int getCredentialStamp() {
+        return credentialVersion;
     }
 
     // Getters
@@ -237,6 +257,7 @@ public class User implements Serializable {
     public void setPassword(String password) {
         validatePassword(password);
         this.passwordHash = hashPassword(password);
+        this.credentialVersion++;
     }
 
     public void setCurrentWealth(double wealth) {
@@ -279,4 +300,14 @@ public class User implements Serializable {
                 ", currentWealth=" + String.format("$%,.2f", currentWealth) +
                 '}';
     }
+
+    /**
+     * Starts users saved before credential versions were tracked at the first version
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (credentialVersion == 0) {
+            credentialVersion = 1;
+        }
+    }
 }
\ No newline at end of file
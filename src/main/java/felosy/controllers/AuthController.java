@@ -11,8 +11,10 @@ import felosy.utils.AlertUtil;
 import felosy.utils.ValidationUtil;
 import felosy.authentication.AuthenticationResponse;
 import felosy.authentication.AuthenticationResult;
+import felosy.authentication.LoginRateLimiter;
 
 
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
@@ -90,35 +92,50 @@ public class AuthController implements Initializable {
                 return;
             }
 
-            // Attempt to authenticate user
-            AuthenticationResponse response = authService.authenticateUser(username, password);
-
-            switch (response.getResult()) {
-                case SUCCESS:
-                    try {
-                        App.setCurrentUser(response.getUser());
-                        App.setRoot("dashboard");
-                    } catch (IOException e) {
-                        showLoginError("Error loading dashboard page");
-                    }
-                    break;
-
-                case INVALID_CREDENTIALS:
-                    showLoginError("Invalid username or password");
-                    break;
-
-                case ERROR:
-                    showLoginError("An error occurred. Please try again later");
-                    break;
-            }
+            // Attempt to authenticate user off the UI thread; password hashing is deliberately slow
+            login_btn.setDisable(true);
+            authService.authenticateUserAsync(username, password, LoginRateLimiter.localSource())
+                    .thenAccept(response -> Platform.runLater(() -> handleLoginResponse(response)));
 
         } catch (Exception e) {
+            login_btn.setDisable(false);
             // Handle unexpected errors
             showLoginError("An error occurred: " + e.getMessage());
             e.printStackTrace();
         }
     }
 
+    /**
+     * Applies the result of a login attempt on the UI thread.
+     *
+     * @param response The authentication response
+     */
+    private void handleLoginResponse(AuthenticationResponse response) {
+        login_btn.setDisable(false);
+        switch (response.getResult()) {
+            case SUCCESS:
+                try {
+                    App.setCurrentUser(response.getUser());
+                    App.setRoot("dashboard");
+                } catch (IOException e) {
+                    showLoginError("Error loading dashboard page");
+                }
+                break;
+
+            case INVALID_CREDENTIALS:
+                showLoginError("Invalid username or password");
+                break;
+
+            case THROTTLED:
+                showLoginError("Too many login attempts. Please wait a minute and try again");
+                break;
+
+            case ERROR:
+                showLoginError("An error occurred. Please try again later");
+                break;
+        }
+    }
+
     /**
      * Handles the signup button click event.
      * Validates user input and attempts to create a new user account.
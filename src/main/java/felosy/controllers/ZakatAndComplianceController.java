@@ -16,6 +16,7 @@ import javafx.scene.control.ProgressBar;
 import javafx.scene.control.CheckBox;
 
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.net.URL;
 import java.util.ResourceBundle;
 
@@ -26,6 +27,8 @@ import felosy.storage.DataStorage;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import felosy.islamicfinance.ZakatCalculator;
+import felosy.assetmanagement.FxRateTable;
+import felosy.assetmanagement.InstrumentRegistry;
 import java.util.List;
 import java.util.ArrayList;
 
@@ -73,9 +76,7 @@ public class ZakatAndComplianceController implements Initializable {
     public void initialize(URL location, ResourceBundle resources) {
         calculate_btn.setOnAction(this::handleCalculateButton);
         // Populate currency combo box
-        currency_combobox.getItems().addAll(
-            "EGP", "USD", "EUR", "GBP", "JPY", "SAR", "AED", "CAD", "AUD", "CHF", "INR", "CNY"
-        );
+        currency_combobox.getItems().addAll(FxRateTable.getInstance().getCurrencies());
         currency_combobox.setValue("EGP");
         currency_combobox.setOnAction(e -> updateGoldSilverLabels());
         updateGoldSilverLabels();
@@ -147,7 +148,7 @@ public class ZakatAndComplianceController implements Initializable {
             updateComplianceUI(false, 0.0f);
             return;
         }
-        ZakatCalculator calculator = new ZakatCalculator("user-portfolio", selectedAssets);
+        ZakatCalculator calculator = new ZakatCalculator("user-portfolio", selectedAssets, currency_combobox.getValue());
         float totalZakat = calculator.calculateZakat();
         System.out.println("Total Zakat Due: " + totalZakat);
         // Print breakdown
@@ -180,40 +181,14 @@ public class ZakatAndComplianceController implements Initializable {
 
     private void updateGoldSilverLabels() {
         String currency = currency_combobox.getValue();
-        // Mock prices per gram (could be fetched from a service)
-        double goldPriceUSD = 65.0; // USD/gram
-        double silverPriceUSD = 0.8; // USD/gram
-        double rate = 1.0;
-        String symbol = "$";
-        switch (currency) {
-            case "EGP":
-                rate = 48.0; symbol = "E£"; break;
-            case "EUR":
-                rate = 0.92; symbol = "€"; break;
-            case "GBP":
-                rate = 0.79; symbol = "£"; break;
-            case "JPY":
-                rate = 157.0; symbol = "¥"; break;
-            case "SAR":
-                rate = 3.75; symbol = "ر.س"; break;
-            case "AED":
-                rate = 3.67; symbol = "د.إ"; break;
-            case "CAD":
-                rate = 1.36; symbol = "C$"; break;
-            case "AUD":
-                rate = 1.52; symbol = "A$"; break;
-            case "CHF":
-                rate = 0.90; symbol = "Fr"; break;
-            case "INR":
-                rate = 83.0; symbol = "₹"; break;
-            case "CNY":
-                rate = 7.2; symbol = "¥"; break;
-            case "USD":
-            default:
-                rate = 1.0; symbol = "$"; break;
-        }
-        double goldPrice = goldPriceUSD * rate;
-        double silverPrice = silverPriceUSD * rate;
+        FxRateTable fxRates = FxRateTable.getInstance();
+        InstrumentRegistry instruments = InstrumentRegistry.getInstance();
+        // Prices per gram in USD, from the latest market data when available
+        BigDecimal goldPriceUSD = instruments.getMarketPrice("XAU", new BigDecimal("65.0"));
+        BigDecimal silverPriceUSD = instruments.getMarketPrice("XAG", new BigDecimal("0.8"));
+        BigDecimal goldPrice = fxRates.convert(goldPriceUSD, FxRateTable.BASE_CURRENCY, currency);
+        BigDecimal silverPrice = fxRates.convert(silverPriceUSD, FxRateTable.BASE_CURRENCY, currency);
+        String symbol = fxRates.getSymbol(currency);
         curr_per_gram_label.setText(String.format("%.2f %s / gram", goldPrice, symbol));
         curr_per_silver.setText(String.format("%.2f %s / gram", silverPrice, symbol));
     }
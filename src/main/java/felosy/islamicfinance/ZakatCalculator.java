@@ -6,6 +6,7 @@ import felosy.reporting.Report;
 import felosy.authentication.User;
 import felosy.islamicfinance.config.IslamicFinanceConfig;
 import felosy.assetmanagement.Asset;
+import felosy.assetmanagement.FxRateTable;
 import java.math.BigDecimal;
 
 /**
@@ -16,21 +17,37 @@ public class ZakatCalculator extends IslamicFinanceBase {
     private final IslamicFinanceConfig config;
     private final Map<String, Float> assetValues;
     private final List<Asset> assets;
+    private final String currency;
 
     public ZakatCalculator(String portfolioId) {
         super(portfolioId);
         this.config = IslamicFinanceConfig.getInstance();
         this.assetValues = new HashMap<>();
         this.assets = new ArrayList<>();
+        this.currency = FxRateTable.BASE_CURRENCY;
         initializeAssetValues();
     }
     
     // New constructor for dynamic asset list
     public ZakatCalculator(String portfolioId, List<Asset> assets) {
+        this(portfolioId, assets, FxRateTable.BASE_CURRENCY);
+    }
+
+    /**
+     * Creates a calculator that values the assets and Nisab in one currency
+     * @param portfolioId The portfolio being assessed
+     * @param assets The assets to include
+     * @param currency The currency to calculate Zakat in
+     */
+    public ZakatCalculator(String portfolioId, List<Asset> assets, String currency) {
         super(portfolioId);
+        if (!FxRateTable.getInstance().isSupported(currency)) {
+            throw new IllegalArgumentException("Unsupported currency: " + currency);
+        }
         this.config = IslamicFinanceConfig.getInstance();
         this.assetValues = new HashMap<>();
         this.assets = assets != null ? new ArrayList<>(assets) : new ArrayList<>();
+        this.currency = currency.trim().toUpperCase(Locale.ROOT);
         initializeAssetValuesFromAssets();
     }
 
@@ -41,22 +58,38 @@ public class ZakatCalculator extends IslamicFinanceBase {
         assetValues.put("Cash", 5000.0f);
     }
 
+    /**
+     * Totals the assets by type, converting each value to the calculation currency
+     */
     private void initializeAssetValuesFromAssets() {
         assetValues.clear();
         if (assets != null) {
+            FxRateTable.Rates rates = FxRateTable.getInstance().getRates();
+            int toId = rates.idOf(currency);
             for (Asset asset : assets) {
                 String type = asset.getClass().getSimpleName();
-                float value = asset.getCurrentValue() != null ? asset.getCurrentValue().floatValue() : 0.0f;
-                assetValues.merge(type, value, Float::sum);
+                BigDecimal value = asset.getCurrentValue();
+                float converted = value != null
+                    ? rates.convert(value, rates.idOf(asset.getCurrency()), toId).floatValue()
+                    : 0.0f;
+                assetValues.merge(type, converted, Float::sum);
             }
         }
     }
 
+    /**
+     * @return the Nisab threshold in the calculation currency
+     */
+    private float getNisabThreshold() {
+        return FxRateTable.getInstance().convert(BigDecimal.valueOf(config.getNisabThreshold()),
+            config.getNisabCurrency(), currency).floatValue();
+    }
+
     @Override
     public boolean checkCompliance() {
         try {
             float totalValue = calculateTotalValue();
-            isCompliant = totalValue >= config.getNisabThreshold();
+            isCompliant = totalValue >= getNisabThreshold();
             logComplianceCheck("Zakat threshold check", isCompliant);
             updateLastUpdateDate();
             return isCompliant;
@@ -80,22 +113,11 @@ public class ZakatCalculator extends IslamicFinanceBase {
 
     public Map<String, Float> getZakatByAsset() {
         Map<String, Float> zakatByAsset = new HashMap<>();
-        if (assets != null && !assets.isEmpty()) {
-            for (Asset asset : assets) {
-                String type = asset.getClass().getSimpleName();
-                float value = asset.getCurrentValue() != null ? asset.getCurrentValue().floatValue() : 0.0f;
-                if (value > 0) {
-                    float assetZakat = value * (float)config.getZakatRate();
-                    zakatByAsset.merge(type, assetZakat, Float::sum);
-                }
-            }
-        } else {
-            for (Map.Entry<String, Float> entry : assetValues.entrySet()) {
-                float assetValue = entry.getValue();
-                if (assetValue > 0) {
-                    float assetZakat = assetValue * (float)config.getZakatRate();
-                    zakatByAsset.put(entry.getKey(), assetZakat);
-                }
+        for (Map.Entry<String, Float> entry : assetValues.entrySet()) {
+            float assetValue = entry.getValue();
+            if (assetValue > 0) {
+                float assetZakat = assetValue * (float)config.getZakatRate();
+                zakatByAsset.put(entry.getKey(), assetZakat);
             }
         }
         return zakatByAsset;
@@ -114,7 +136,8 @@ public class ZakatCalculator extends IslamicFinanceBase {
         
         // Add report details
         report.addData("Total Portfolio Value", calculateTotalValue());
-        report.addData("Nisab Threshold", config.getNisabThreshold());
+        report.addData("Currency", currency);
+        report.addData("Nisab Threshold", getNisabThreshold());
         report.addData("Zakat Rate", config.getZakatRate() * 100 + "%");
         report.addData("Total Zakat Due", totalZakat);
         
@@ -127,16 +150,13 @@ public class ZakatCalculator extends IslamicFinanceBase {
     }
 
     private float calculateTotalValue() {
-        if (assets != null && !assets.isEmpty()) {
-            return assets.stream()
-                .map(Asset::getCurrentValue)
-                .filter(java.util.Objects::nonNull)
-                .map(BigDecimal::floatValue)
-                .reduce(0.0f, Float::sum);
-        } else {
-            return assetValues.values().stream()
-                .reduce(0.0f, Float::sum);
-        }
+        // Asset values are already totalled by type in the calculation currency
+        return assetValues.values().stream()
+            .reduce(0.0f, Float::sum);
+    }
+
+    public String getCurrency() {
+        return currency;
     }
 
     public Map<String, Float> getAssetValues() {
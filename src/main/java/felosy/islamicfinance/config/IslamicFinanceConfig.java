@@ -17,6 +17,7 @@ public class IslamicFinanceConfig {
     // Default values
     private static final double DEFAULT_ZAKAT_RATE = 0.025; // 2.5%
     private static final double DEFAULT_NISAB_THRESHOLD = 5000.0;
+    private static final String DEFAULT_NISAB_CURRENCY = "USD";
     private static final double DEFAULT_DEBT_RATIO_THRESHOLD = 0.33; // 33%
     private static final double DEFAULT_NON_HALAL_INCOME_THRESHOLD = 0.05; // 5%
 
@@ -36,6 +37,7 @@ public class IslamicFinanceConfig {
     private void loadDefaultProperties() {
         properties.setProperty("zakat.rate", String.valueOf(DEFAULT_ZAKAT_RATE));
         properties.setProperty("nisab.threshold", String.valueOf(DEFAULT_NISAB_THRESHOLD));
+        properties.setProperty("nisab.currency", DEFAULT_NISAB_CURRENCY);
         properties.setProperty("debt.ratio.threshold", String.valueOf(DEFAULT_DEBT_RATIO_THRESHOLD));
         properties.setProperty("non.halal.income.threshold", String.valueOf(DEFAULT_NON_HALAL_INCOME_THRESHOLD));
     }
@@ -59,6 +61,10 @@ public class IslamicFinanceConfig {
         return Double.parseDouble(properties.getProperty("nisab.threshold"));
     }
 
+    public String getNisabCurrency() {
+        return properties.getProperty("nisab.currency");
+    }
+
     public double getDebtRatioThreshold() {
         return Double.parseDouble(properties.getProperty("debt.ratio.threshold"));
     }
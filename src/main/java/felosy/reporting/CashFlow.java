@@ -0,0 +1,78 @@
+package felosy.reporting;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * One projected payment into or out of a holding.
+ * Income is positive and expenses are negative.
+ */
+public final class CashFlow {
+
+    public enum Type {
+        DIVIDEND(true),
+        RENT(true),
+        PROPERTY_TAX(false),
+        MAINTENANCE(false),
+        INSURANCE(false);
+
+        private final boolean income;
+
+        Type(boolean income) {
+            this.income = income;
+        }
+
+        public boolean isIncome() {
+            return income;
+        }
+
+        @Override
+        public String toString() {
+            String name = name().replace('_', ' ').toLowerCase();
+            return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        }
+    }
+
+    private final LocalDate date;
+    private final String assetId;
+    private final Type type;
+    private final BigDecimal amount;
+    private final String currency;
+
+    public CashFlow(LocalDate date, String assetId, Type type, BigDecimal amount, String currency) {
+        if (date == null || type == null || amount == null) {
+            throw new IllegalArgumentException("Date, type and amount cannot be null");
+        }
+        this.date = date;
+        this.assetId = assetId;
+        this.type = type;
+        this.amount = amount;
+        this.currency = currency;
+    }
+
+    // Getters
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public String getAssetId() {
+        return assetId;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    @Override
+    public String toString() {
+        return date + " " + type + " " + amount + " " + currency + " (" + assetId + ")";
+    }
+}
@@ -0,0 +1,162 @@
+package felosy.reporting;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Projected cash flows summed per calendar month and per type, in one currency.
+ * Totals live in a dense type-by-month array so schedules for many holdings
+ * or portfolios can be accumulated and merged without per-payment objects.
+ * Not thread-safe; parallel builders fill separate schedules and merge them.
+ */
+public class CashFlowSchedule {
+    private static final CashFlow.Type[] TYPES = CashFlow.Type.values();
+
+    private final YearMonth start;
+    private final int months;
+    private final String currency;
+    private final double[][] totals;
+
+    public CashFlowSchedule(YearMonth start, int months, String currency) {
+        if (start == null || currency == null) {
+            throw new IllegalArgumentException("Start month and currency cannot be null");
+        }
+        if (months <= 0) {
+            throw new IllegalArgumentException("Months must be positive");
+        }
+        this.start = start;
+        this.months = months;
+        this.currency = currency;
+        this.totals = new double[TYPES.length][months];
+    }
+
+    /**
+     * Adds an amount to a month
+     * @param monthIndex Months after the start month, from 0
+     * @param type Type of the cash flow
+     * @param amount Signed amount; expenses are negative
+     */
+    public void add(int monthIndex, CashFlow.Type type, double amount) {
+        totals[type.ordinal()][monthIndex] += amount;
+    }
+
+    /**
+     * Adds another schedule with the same start, length and currency into this one
+     * @param other The schedule to add
+     * @return This schedule
+     */
+    public CashFlowSchedule merge(CashFlowSchedule other) {
+        if (!start.equals(other.start) || months != other.months || !currency.equals(other.currency)) {
+            throw new IllegalArgumentException("Schedules must cover the same months in the same currency");
+        }
+        for (int type = 0; type < TYPES.length; type++) {
+            double[] into = totals[type];
+            double[] from = other.totals[type];
+            for (int m = 0; m < months; m++) {
+                into[m] += from[m];
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Gets the net cash flow of a month
+     * @param month The month
+     * @return Income minus expenses, or zero outside the schedule
+     */
+    public BigDecimal getNet(YearMonth month) {
+        int m = indexOf(month);
+        double net = 0.0;
+        if (m >= 0) {
+            for (double[] byMonth : totals) {
+                net += byMonth[m];
+            }
+        }
+        return money(net);
+    }
+
+    /**
+     * Gets the total of one type of cash flow in a month
+     */
+    public BigDecimal getTotal(YearMonth month, CashFlow.Type type) {
+        int m = indexOf(month);
+        return money(m >= 0 ? totals[type.ordinal()][m] : 0.0);
+    }
+
+    /**
+     * Gets the total of one type of cash flow over the whole schedule
+     */
+    public BigDecimal getTotal(CashFlow.Type type) {
+        double sum = 0.0;
+        for (double amount : totals[type.ordinal()]) {
+            sum += amount;
+        }
+        return money(sum);
+    }
+
+    /**
+     * Gets the net cash flow over the whole schedule
+     */
+    public BigDecimal getNetTotal() {
+        double sum = 0.0;
+        for (double[] byMonth : totals) {
+            for (double amount : byMonth) {
+                sum += amount;
+            }
+        }
+        return money(sum);
+    }
+
+    /**
+     * Gets the net cash flow of every month in order
+     * @return Month to net amount
+     */
+    public SortedMap<YearMonth, BigDecimal> getMonthlyNet() {
+        SortedMap<YearMonth, BigDecimal> net = new TreeMap<>();
+        for (int m = 0; m < months; m++) {
+            double sum = 0.0;
+            for (double[] byMonth : totals) {
+                sum += byMonth[m];
+            }
+            net.put(start.plusMonths(m), money(sum));
+        }
+        return Collections.unmodifiableSortedMap(net);
+    }
+
+    // Getters
+    public YearMonth getStart() {
+        return start;
+    }
+
+    public YearMonth getEnd() {
+        return start.plusMonths(months - 1L);
+    }
+
+    public int getMonthCount() {
+        return months;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    private int indexOf(YearMonth month) {
+        long m = start.until(month, ChronoUnit.MONTHS);
+        return m >= 0 && m < months ? (int) m : -1;
+    }
+
+    private static BigDecimal money(double amount) {
+        return BigDecimal.valueOf(amount).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    @Override
+    public String toString() {
+        return "CashFlowSchedule{" + start + " to " + getEnd() + ", currency=" + currency
+                + ", net=" + getNetTotal() + '}';
+    }
+}
@@ -23,6 +23,23 @@ public class FinancialInsight extends BaseReport {
     private String riskLevel;
     private double confidenceScore;
     
+    public enum RiskLevel {
+        LOW("Low"),
+        MEDIUM("Medium"),
+        HIGH("High");
+
+        private final String label;
+
+        RiskLevel(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+    
     public FinancialInsight(String insightId, String portfolioId) {
         super(insightId, "Financial Insight Report");
         this.portfolioId = portfolioId;
@@ -45,6 +62,10 @@ public class FinancialInsight extends BaseReport {
         this.riskLevel = riskLevel;
     }
     
+    public void setRiskLevel(RiskLevel riskLevel) {
+        this.riskLevel = riskLevel.toString();
+    }
+    
     public void setConfidenceScore(double score) {
         this.confidenceScore = score;
     }
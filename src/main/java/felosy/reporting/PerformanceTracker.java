@@ -0,0 +1,268 @@
+package felosy.reporting;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+
+/**
+ * Streaming performance statistics for one valuation series, such as a
+ * single asset or a whole portfolio.
+ * Each daily mark updates the time-weighted return, drawdown and volatility
+ * in constant time. Cash flows are kept in a compact per-day array so the
+ * money-weighted return (XIRR) can be solved on request, warm-started from
+ * the previous solution.
+ * Not thread-safe; callers serialize access per tracker.
+ */
+public class PerformanceTracker {
+    private static final double DAYS_PER_YEAR = 365.0;
+    private static final double TRADING_DAYS_PER_YEAR = 252.0;
+    private static final int MAX_IRR_ITERATIONS = 50;
+    private static final double IRR_TOLERANCE = 1e-9;
+
+    private LocalDate firstDate;
+    private LocalDate firstMarkDate;
+    private LocalDate lastDate;
+    private double lastValue;
+    private int markCount;
+
+    // Time-weighted return as a growth index starting at 1
+    private double growthIndex = 1.0;
+    private double peakIndex = 1.0;
+    private double maxDrawdown;
+
+    // Welford running mean and variance of period returns
+    private long returnCount;
+    private double meanReturn;
+    private double sumSquaredDeviations;
+
+    // Investor cash flows: positive means money put in, merged per day
+    private long[] flowDays = new long[16];
+    private double[] flowAmounts = new double[16];
+    private int flowCount;
+    private double netContributions;
+
+    private double lastIrr = 0.1;
+    private boolean irrDirty = true;
+    private double irr = Double.NaN;
+
+    /**
+     * Records the value of the series at the end of a day
+     * @param date The valuation date; must not be before the previous mark
+     * @param value The value at the end of the day
+     * @param netFlow Money added (positive) or withdrawn (negative) during the day
+     */
+    public void mark(LocalDate date, double value, double netFlow) {
+        if (date == null) {
+            throw new IllegalArgumentException("Date cannot be null");
+        }
+        if (lastDate != null && date.isBefore(lastDate)) {
+            throw new IllegalArgumentException("Marks must be in date order");
+        }
+        if (value < 0 || Double.isNaN(value)) {
+            throw new IllegalArgumentException("Value cannot be negative");
+        }
+
+        if (markCount > 0 && lastValue > 0) {
+            // Flows are assumed to land at the end of the day, so they earn nothing that day
+            double periodReturn = (value - netFlow) / lastValue - 1.0;
+            growthIndex *= 1.0 + periodReturn;
+            addReturn(periodReturn);
+            peakIndex = Math.max(peakIndex, growthIndex);
+            maxDrawdown = Math.max(maxDrawdown, 1.0 - growthIndex / peakIndex);
+        }
+        if (firstDate == null) {
+            firstDate = date;
+        }
+        if (firstMarkDate == null) {
+            firstMarkDate = date;
+        }
+        if (netFlow != 0) {
+            addFlow(date, netFlow);
+        }
+        lastDate = date;
+        lastValue = value;
+        markCount++;
+        irrDirty = true;
+    }
+
+    /**
+     * Records a cash flow without a valuation, e.g. a historical trade
+     * @param date The date of the flow
+     * @param amount Money added (positive) or withdrawn (negative)
+     */
+    public void recordFlow(LocalDate date, double amount) {
+        if (date == null) {
+            throw new IllegalArgumentException("Date cannot be null");
+        }
+        if (amount == 0) {
+            return;
+        }
+        if (firstDate == null || date.isBefore(firstDate)) {
+            firstDate = date;
+        }
+        addFlow(date, amount);
+        irrDirty = true;
+    }
+
+    /**
+     * @return cumulative time-weighted return, e.g. 0.12 for 12%
+     */
+    public double getTimeWeightedReturn() {
+        return growthIndex - 1.0;
+    }
+
+    /**
+     * @return time-weighted return per year over the tracked period
+     */
+    public double getAnnualizedReturn() {
+        long days = getTrackedDays();
+        if (days <= 0) {
+            return 0.0;
+        }
+        return Math.pow(growthIndex, DAYS_PER_YEAR / days) - 1.0;
+    }
+
+    /**
+     * @return largest peak-to-trough fall of the time-weighted index, e.g. 0.2 for 20%
+     */
+    public double getMaxDrawdown() {
+        return maxDrawdown;
+    }
+
+    /**
+     * @return how far the time-weighted index is below its peak
+     */
+    public double getCurrentDrawdown() {
+        return 1.0 - growthIndex / peakIndex;
+    }
+
+    /**
+     * @return annualized standard deviation of the daily returns
+     */
+    public double getVolatility() {
+        if (returnCount < 2) {
+            return 0.0;
+        }
+        return Math.sqrt(sumSquaredDeviations / (returnCount - 1) * TRADING_DAYS_PER_YEAR);
+    }
+
+    /**
+     * Solves the annual money-weighted return over all recorded flows, with
+     * the last value as the final withdrawal
+     * @return the XIRR, or NaN if it cannot be solved
+     */
+    public double getXirr() {
+        if (!irrDirty) {
+            return irr;
+        }
+        irr = solveXirr();
+        irrDirty = false;
+        if (!Double.isNaN(irr)) {
+            lastIrr = irr;
+        }
+        return irr;
+    }
+
+    /**
+     * @return value at the last mark minus everything put in
+     */
+    public double getProfitLoss() {
+        return lastValue - netContributions;
+    }
+
+    /**
+     * @return days between the first and the last mark
+     */
+    public long getTrackedDays() {
+        return firstMarkDate != null ? ChronoUnit.DAYS.between(firstMarkDate, lastDate) : 0;
+    }
+
+    /**
+     * @return date of the earliest mark or cash flow
+     */
+    public LocalDate getFirstDate() {
+        return firstDate;
+    }
+
+    public LocalDate getLastDate() {
+        return lastDate;
+    }
+
+    public double getLastValue() {
+        return lastValue;
+    }
+
+    public int getMarkCount() {
+        return markCount;
+    }
+
+    public double getNetContributions() {
+        return netContributions;
+    }
+
+    private void addReturn(double periodReturn) {
+        returnCount++;
+        double delta = periodReturn - meanReturn;
+        meanReturn += delta / returnCount;
+        sumSquaredDeviations += delta * (periodReturn - meanReturn);
+    }
+
+    private void addFlow(LocalDate date, double amount) {
+        long day = date.toEpochDay();
+        netContributions += amount;
+        if (flowCount > 0 && flowDays[flowCount - 1] == day) {
+            flowAmounts[flowCount - 1] += amount;
+            return;
+        }
+        if (flowCount == flowDays.length) {
+            flowDays = Arrays.copyOf(flowDays, flowCount * 2);
+            flowAmounts = Arrays.copyOf(flowAmounts, flowCount * 2);
+        }
+        flowDays[flowCount] = day;
+        flowAmounts[flowCount] = amount;
+        flowCount++;
+    }
+
+    /**
+     * Newton's method on the net present value, seeded with the previous
+     * solution so a new mark usually converges in a couple of steps
+     */
+    private double solveXirr() {
+        if (flowCount == 0 || lastDate == null) {
+            return Double.NaN;
+        }
+        long origin = firstDate.toEpochDay();
+        double endYears = (lastDate.toEpochDay() - origin) / DAYS_PER_YEAR;
+        if (endYears <= 0) {
+            return Double.NaN;
+        }
+
+        double rate = lastIrr;
+        for (int iteration = 0; iteration < MAX_IRR_ITERATIONS; iteration++) {
+            double growth = 1.0 + rate;
+            if (growth <= 0) {
+                rate = -0.99;
+                growth = 0.01;
+            }
+            double logGrowth = Math.log(growth);
+            // Investor view: contributions are outflows, the final value an inflow
+            double npv = lastValue * Math.exp(-endYears * logGrowth);
+            double derivative = -endYears * npv / growth;
+            for (int i = 0; i < flowCount; i++) {
+                double years = (flowDays[i] - origin) / DAYS_PER_YEAR;
+                double discounted = -flowAmounts[i] * Math.exp(-years * logGrowth);
+                npv += discounted;
+                derivative -= years * discounted / growth;
+            }
+            if (derivative == 0 || Double.isNaN(derivative)) {
+                return Double.NaN;
+            }
+            double next = rate - npv / derivative;
+            if (Math.abs(next - rate) < IRR_TOLERANCE) {
+                return next;
+            }
+            rate = next;
+        }
+        return Double.NaN;
+    }
+}
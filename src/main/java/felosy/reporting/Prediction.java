@@ -7,6 +7,7 @@ package felosy.reporting;
 import java.util.Date;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ArrayList;
 
@@ -38,7 +39,7 @@ public class Prediction extends BaseReport {
         this.targetDate = targetDate;
         this.confidenceLevel = confidenceLevel;
         this.scenarioType = scenarioType;
-        this.forecastValues = new HashMap<>();
+        this.forecastValues = new LinkedHashMap<>();
         this.assumptions = new ArrayList<>();
     }
     
@@ -146,7 +147,7 @@ public class Prediction extends BaseReport {
     }
     
     public Map<String, Float> getForecastValues() {
-        return new HashMap<>(forecastValues);
+        return new LinkedHashMap<>(forecastValues);
     }
     
     public List<String> getAssumptions() {
@@ -9,10 +9,12 @@ import java.util.Map;
 import java.util.HashMap;
 import java.util.logging.Level;
 import java.math.BigDecimal;
+import java.time.YearMonth;
 import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
 import java.util.Locale;
 import felosy.authentication.User;
+import felosy.assetmanagement.FxRateTable;
 import felosy.assetmanagement.Portfolio;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
@@ -32,6 +34,7 @@ public class Report extends BaseReport {
     private boolean isGenerated;
     private User user;
     private Portfolio portfolio;
+    private CashFlowSchedule cashFlowSchedule;
     private ReportFormat format;
     
     public enum ReportFormat {
@@ -65,6 +68,13 @@ public class Report extends BaseReport {
         this.portfolio = portfolio;
     }
     
+    /**
+     * Set the projected cash flows to include in this report
+     */
+    public void setCashFlowSchedule(CashFlowSchedule cashFlowSchedule) {
+        this.cashFlowSchedule = cashFlowSchedule;
+    }
+    
     /**
      * Set the report format
      */
@@ -94,6 +104,11 @@ public class Report extends BaseReport {
             content.append(generateDetailedAssetsSection());
         }
         
+        // Add projected cash flows if available
+        if (cashFlowSchedule != null) {
+            content.append(generateCashFlowSection());
+        }
+        
         // Add report data
         content.append(generateDataSection());
         
@@ -133,7 +148,8 @@ public class Report extends BaseReport {
         section.append("Portfolio ID: ").append(portfolio.getPortfolioId()).append("\n");
         section.append("Name: ").append(portfolio.getName()).append("\n");
         section.append("Description: ").append(portfolio.getDescription()).append("\n");
-        section.append("Total Value: ").append(formatCurrency(portfolio.getNetWorth())).append("\n");
+        section.append("Total Value: ").append(formatCurrency(portfolio.getNetWorth(), portfolio.getReportingCurrency())).append("\n");
+        section.append("Reporting Currency: ").append(portfolio.getReportingCurrency()).append("\n");
         section.append("Number of Assets: ").append(portfolio.getAssets().size()).append("\n");
         section.append("Last Updated: ").append(DATE_FORMAT.format(portfolio.getLastUpdated())).append("\n\n");
         return section.toString();
@@ -143,10 +159,18 @@ public class Report extends BaseReport {
         if (portfolio == null || portfolio.getAssets().isEmpty()) return "No assets found.\n";
         StringBuilder section = new StringBuilder();
         section.append("=== Assets & Investments ===\n");
+        // One set of rates for the whole section so every conversion agrees
+        FxRateTable.Rates rates = FxRateTable.getInstance().getRates();
+        String reportingCurrency = portfolio.getReportingCurrency();
         int idx = 1;
         for (felosy.assetmanagement.Asset asset : portfolio.getAssets()) {
             section.append("Asset #").append(idx++).append("\n");
             section.append(generateAssetDetails(asset));
+            if (!asset.getCurrency().equals(reportingCurrency)) {
+                BigDecimal converted = rates.convert(asset.getCurrentValue(), asset.getCurrency(), reportingCurrency);
+                section.append("Value in ").append(reportingCurrency).append(": ")
+                    .append(formatCurrency(converted, reportingCurrency)).append("\n");
+            }
             section.append("\n");
         }
         return section.toString();
@@ -158,8 +182,9 @@ public class Report extends BaseReport {
         sb.append("Asset ID: ").append(asset.getAssetId()).append("\n");
         sb.append("Name: ").append(asset.getName()).append("\n");
         sb.append("Purchase Date: ").append(DATE_FORMAT.format(asset.getPurchaseDate())).append("\n");
-        sb.append("Purchase Price: ").append(formatCurrency(asset.getPurchasePrice())).append("\n");
-        sb.append("Current Value: ").append(formatCurrency(asset.getCurrentValue())).append("\n");
+        sb.append("Currency: ").append(asset.getCurrency()).append("\n");
+        sb.append("Purchase Price: ").append(formatCurrency(asset.getPurchasePrice(), asset.getCurrency())).append("\n");
+        sb.append("Current Value: ").append(formatCurrency(asset.getCurrentValue(), asset.getCurrency())).append("\n");
         sb.append("Action Date: ").append(DATE_FORMAT.format(asset.getActionDate())).append("\n");
         sb.append("Return: ").append(formatValue(asset.calculateReturn())).append("\n");
         // Type-specific details
@@ -171,7 +196,7 @@ public class Report extends BaseReport {
             sb.append("EPS: ").append(formatValue(stock.getEps())).append("\n");
             sb.append("P/E Ratio: ").append(formatValue(stock.calculatePERatio())).append("\n");
             sb.append("Annual Dividend: ").append(formatValue(stock.calculateDividend())).append("\n");
-            sb.append("Transaction History: ").append(stock.getTransactionHistory().size()).append(" transactions\n");
+            sb.append("Transaction History: ").append(stock.getTransactionCount()).append(" transactions\n");
         } else if (asset instanceof felosy.assetmanagement.Gold gold) {
             sb.append("Weight (grams): ").append(gold.getWeightGrams()).append("\n");
             sb.append("Purity: ").append(gold.getPurity()).append(" (" + gold.getPurity().multiply(new java.math.BigDecimal("24")) + "K)\n");
@@ -194,6 +219,32 @@ public class Report extends BaseReport {
         return sb.toString();
     }
     
+    private String generateCashFlowSection() {
+        StringBuilder section = new StringBuilder();
+        String currency = cashFlowSchedule.getCurrency();
+        section.append("=== Projected Cash Flow ===\n");
+        section.append("Period: ").append(cashFlowSchedule.getStart()).append(" to ")
+            .append(cashFlowSchedule.getEnd()).append("\n");
+        for (CashFlow.Type type : CashFlow.Type.values()) {
+            BigDecimal total = cashFlowSchedule.getTotal(type);
+            if (total.signum() != 0) {
+                section.append(type).append(": ").append(formatCurrency(total, currency)).append("\n");
+            }
+        }
+        section.append("Net: ").append(formatCurrency(cashFlowSchedule.getNetTotal(), currency)).append("\n");
+        // Month by month for the first year only; the totals above cover the rest
+        int shown = 0;
+        for (Map.Entry<YearMonth, BigDecimal> entry : cashFlowSchedule.getMonthlyNet().entrySet()) {
+            if (shown++ == 12) {
+                break;
+            }
+            section.append("  ").append(entry.getKey()).append(": ")
+                .append(formatCurrency(entry.getValue(), currency)).append("\n");
+        }
+        section.append("\n");
+        return section.toString();
+    }
+    
     private String generateDataSection() {
         StringBuilder section = new StringBuilder();
         section.append("=== Report Data ===\n");
@@ -238,6 +289,13 @@ public class Report extends BaseReport {
         return CURRENCY_FORMAT.format(amount);
     }
     
+    private String formatCurrency(BigDecimal amount, String currency) {
+        if (FxRateTable.BASE_CURRENCY.equals(currency)) {
+            return formatCurrency(amount);
+        }
+        return String.format("%s %,.2f", FxRateTable.getInstance().getSymbol(currency), amount);
+    }
+    
     /**
      * Send the report via email
      */
@@ -0,0 +1,58 @@
+package felosy.services;
+
+import felosy.assetmanagement.Asset;
+import felosy.assetmanagement.Instrument;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Shared naming for the groups that scenarios and allocation targets refer to:
+ * an instrument symbol (XAU), an asset class (STOCK, CRYPTO, COMMODITY) or an
+ * asset type (REALESTATE), with everyday aliases such as "gold" or "equity".
+ */
+final class AllocationKeys {
+    private static final Map<String, String> ALIASES = Map.of(
+        "GOLD", "XAU",
+        "SILVER", "XAG",
+        "STOCKS", "STOCK",
+        "EQUITY", "STOCK",
+        "EQUITIES", "STOCK",
+        "CRYPTOCURRENCY", "CRYPTO",
+        "COMMODITIES", "COMMODITY",
+        "REAL ESTATE", "REALESTATE",
+        "PROPERTY", "REALESTATE"
+    );
+
+    private AllocationKeys() {
+    }
+
+    /**
+     * Turns a user-facing target name into its canonical key
+     */
+    static String normalize(String target) {
+        if (target == null || target.trim().isEmpty()) {
+            throw new IllegalArgumentException("Target cannot be null or empty");
+        }
+        String key = target.trim().toUpperCase(Locale.ROOT);
+        return ALIASES.getOrDefault(key, key);
+    }
+
+    /**
+     * Finds the most specific key in a map that covers an asset:
+     * instrument symbol, then asset class, then asset type
+     * @return The matching key, or null if none covers the asset
+     */
+    static String match(Map<String, ?> keyed, Asset asset, Instrument instrument) {
+        if (instrument != null) {
+            if (keyed.containsKey(instrument.getSymbol())) {
+                return instrument.getSymbol();
+            }
+            String assetClass = instrument.getAssetClass().name();
+            if (keyed.containsKey(assetClass)) {
+                return assetClass;
+            }
+        }
+        String type = normalize(asset.getClass().getSimpleName());
+        return keyed.containsKey(type) ? type : null;
+    }
+}
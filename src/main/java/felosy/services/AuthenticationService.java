@@ -2,44 +2,39 @@ package felosy.services;
 
 import felosy.authentication.AuthenticationResponse;
 import felosy.authentication.AuthenticationResult;
-import java.util.HashMap;
-import java.util.Map;
-
-import felosy.authentication.User;
+import felosy.authentication.LoginRateLimiter;
+import felosy.authentication.PasswordHasher;
 import felosy.authentication.User;
-import felosy.utils.FileStorageUtil;
+import felosy.storage.DataStorage;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Service class for handling user authentication and registration operations.
  * Provides functionality for user creation, authentication, and validation.
+ * Users live in the shared user directory in {@link DataStorage}, the same
+ * store {@link felosy.authentication.Authentication} uses, so each sign-up is
+ * written once.
  */
 public class AuthenticationService {
 
-    // In-memory storage for users - in a real app, this would be a database
-    private Map<String, User> usersByUsername = new HashMap<>();
-    private Map<String, User> usersByEmail = new HashMap<>();
-
     // Singleton instance
-    private static AuthenticationService instance;
+    private static final AuthenticationService instance = new AuthenticationService();
 
     // Session info
-    private User currentUser;
+    private volatile User currentUser;
 
     /**
-     * Constructor loads existing users from storage if available
+     * Constructor makes sure the user directory is ready
      */
     public AuthenticationService() {
-        // Load users from persistent storage if available
-        loadUsers();
+        DataStorage.initialize();
     }
 
     /**
      * Get singleton instance
      */
     public static AuthenticationService getInstance() {
-        if (instance == null) {
-            instance = new AuthenticationService();
-        }
         return instance;
     }
 
@@ -69,12 +64,14 @@ public class AuthenticationService {
             User newUser = new User(username, email, password);
             newUser.setConfirmed(true);
 
-            // Store user in map
-            usersByUsername.put(username.toLowerCase(), newUser);
-            usersByEmail.put(email.toLowerCase(), newUser);
-
-            // Save updated users to storage
-            saveUsers();
+            // Store user in the directory; a concurrent sign-up may have taken the name first
+            if (!DataStorage.addUser(newUser, true)) {
+                if (isUsernameTaken(username) || isEmailTaken(email)) {
+                    throw new IllegalArgumentException("Username or email already registered");
+                }
+                System.err.println("Error creating user: could not save user " + newUser.getUserId());
+                return null;
+            }
 
             return newUser;
         } catch (IllegalArgumentException e) {
@@ -89,16 +86,40 @@ public class AuthenticationService {
     }
 
     /**
-     * Authenticates a user with username and password
+     * Authenticates a user with username and password from this machine
      *
      * @param username Username
      * @param password Password
      * @return AuthenticationResponse containing the result, message, and user if successful
      */
     public AuthenticationResponse authenticateUser(String username, String password) {
-        User user = usersByUsername.get(username);
+        return authenticateUser(username, password, LoginRateLimiter.localSource());
+    }
+
+    /**
+     * Authenticates a user with username and password, refusing throttled
+     * attempts before any password is hashed
+     *
+     * @param username Username
+     * @param password Password
+     * @param source Where the attempt comes from, e.g. {@link LoginRateLimiter#localSource()}
+     * @return AuthenticationResponse containing the result, message, and user if successful
+     */
+    public AuthenticationResponse authenticateUser(String username, String password, String source) {
+        LoginRateLimiter limiter = LoginRateLimiter.getInstance();
+        if (!limiter.tryAcquireSource(source)) {
+            return throttled();
+        }
+
+        User user = DataStorage.findUserByUsername(username);
 
         if (user == null) {
+            // Throttle unknown names before spending a hash on them
+            if (!limiter.tryAcquireUnknown(username)) {
+                return throttled();
+            }
+            // Take as long as a real check so unknown usernames cannot be told apart
+            PasswordHasher.getInstance().verifyDummy(password);
             return new AuthenticationResponse(
                     AuthenticationResult.INVALID_CREDENTIALS,
                     "Invalid username or password",
@@ -106,7 +127,17 @@ public class AuthenticationService {
             );
         }
 
+        // Refuse throttled accounts before spending a password hash on them
+        if (!limiter.tryAcquireAccount(user.getUserId())) {
+            return throttled();
+        }
+
+        boolean rehash = user.needsPasswordRehash();
         if (user.authenticate(password)) {
+            if (rehash && !DataStorage.saveUser(user)) {
+                System.err.println("Error saving upgraded password hash for user " + user.getUserId());
+            }
+            limiter.reset(user.getUserId());
             currentUser = user;
             return new AuthenticationResponse(
                     AuthenticationResult.SUCCESS,
@@ -122,6 +153,45 @@ public class AuthenticationService {
         );
     }
 
+    /**
+     * Authenticates a user from this machine on the password verification pool, off the calling thread
+     *
+     * @param username Username
+     * @param password Password
+     * @return Future of the AuthenticationResponse; an ERROR response if the pool is saturated
+     */
+    public CompletableFuture<AuthenticationResponse> authenticateUserAsync(String username, String password) {
+        return authenticateUserAsync(username, password, LoginRateLimiter.localSource());
+    }
+
+    /**
+     * Authenticates a user on the password verification pool, off the calling thread
+     *
+     * @param username Username
+     * @param password Password
+     * @param source Where the attempt comes from
+     * @return Future of the AuthenticationResponse; an ERROR response if the pool is saturated
+     */
+    public CompletableFuture<AuthenticationResponse> authenticateUserAsync(String username, String password,
+                                                                           String source) {
+        return PasswordHasher.getInstance()
+                .submit(() -> authenticateUser(username, password, source))
+                .exceptionally(e -> new AuthenticationResponse(
+                        AuthenticationResult.ERROR,
+                        e instanceof RejectedExecutionException || e.getCause() instanceof RejectedExecutionException
+                                ? "Too many sign-ins in progress, please try again"
+                                : "Error during authentication: " + e.getMessage(),
+                        null
+                ));
+    }
+
+    private static AuthenticationResponse throttled() {
+        return new AuthenticationResponse(
+                AuthenticationResult.THROTTLED,
+                "Too many login attempts, please try again later",
+                null
+        );
+    }
 
     /**
      * Checks if a username is already taken
@@ -130,7 +200,7 @@ public class AuthenticationService {
      * @return true if username is taken, false otherwise
      */
     public boolean isUsernameTaken(String username) {
-        return usersByUsername.containsKey(username.toLowerCase());
+        return DataStorage.findUserByUsername(username) != null;
     }
 
     /**
@@ -140,7 +210,7 @@ public class AuthenticationService {
      * @return true if email is registered, false otherwise
      */
     public boolean isEmailTaken(String email) {
-        return usersByEmail.containsKey(email.toLowerCase());
+        return DataStorage.findUserByEmail(email) != null;
     }
 
     /**
@@ -158,45 +228,4 @@ public class AuthenticationService {
     public void logout() {
         currentUser = null;
     }
-
-    /**
-     * Loads users from storage
-     */
-    @SuppressWarnings("unchecked")
-    private void loadUsers() {
-        try {
-            // Load user maps from persistent storage
-            Map<String, User> loadedUsersByUsername =
-                    (Map<String, User>) FileStorageUtil.loadObject("users_by_username.dat");
-
-            Map<String, User> loadedUsersByEmail =
-                    (Map<String, User>) FileStorageUtil.loadObject("users_by_email.dat");
-
-            if (loadedUsersByUsername != null && loadedUsersByEmail != null) {
-                usersByUsername = loadedUsersByUsername;
-                usersByEmail = loadedUsersByEmail;
-            }
-        } catch (Exception e) {
-            System.err.println("Error loading users: " + e.getMessage());
-            e.printStackTrace();
-
-            // Initialize empty maps if loading fails
-            usersByUsername = new HashMap<>();
-            usersByEmail = new HashMap<>();
-        }
-    }
-
-    /**
-     * Saves users to storage
-     */
-    private void saveUsers() {
-        try {
-            // Save user maps to persistent storage
-            FileStorageUtil.saveObject(usersByUsername, "users_by_username.dat");
-            FileStorageUtil.saveObject(usersByEmail, "users_by_email.dat");
-        } catch (Exception e) {
-            System.err.println("Error saving users: " + e.getMessage());
-            e.printStackTrace();
-        }
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,280 @@
+package felosy.services;
+
+import felosy.assetmanagement.Asset;
+import felosy.assetmanagement.FxRateTable;
+import felosy.assetmanagement.Portfolio;
+import felosy.assetmanagement.PortfolioSnapshot;
+import felosy.assetmanagement.RealEstate;
+import felosy.assetmanagement.Stock;
+import felosy.reporting.CashFlow;
+import felosy.reporting.CashFlowSchedule;
+import felosy.storage.DataStorage;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Projects the future dividends, rents and property costs of holdings.
+ * Each holding is reduced to a handful of recurring payments (quarterly
+ * dividends, monthly rent and maintenance, yearly tax and insurance).
+ * Dated cash flows are generated lazily from those, month by month, so
+ * callers only pay for the part of the schedule they read. Monthly totals
+ * are accumulated straight from the recurring payments into a dense
+ * {@link CashFlowSchedule} without creating a cash flow per payment.
+ */
+public class CashFlowProjectionService {
+    private static final Logger LOGGER = Logger.getLogger(CashFlowProjectionService.class.getName());
+    private static final int DIVIDEND_DAY = 15;
+    private static final int RENT_DAY = 1;
+    private static final int QUARTER_MONTHS = 3;
+    private static final int YEAR_MONTHS = 12;
+    private static final CashFlowProjectionService instance = new CashFlowProjectionService(ForkJoinPool.commonPool());
+
+    private final ForkJoinPool pool;
+
+    public CashFlowProjectionService(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("Pool cannot be null");
+        }
+        this.pool = pool;
+    }
+
+    public static CashFlowProjectionService getInstance() {
+        return instance;
+    }
+
+    /**
+     * Projects the cash flows of a single asset in its own currency
+     * @param asset The asset
+     * @param from First day of the projection
+     * @param years Number of years to project
+     * @return Lazy stream of cash flows in date order
+     */
+    public Stream<CashFlow> project(Asset asset, LocalDate from, int years) {
+        if (asset == null) {
+            throw new IllegalArgumentException("Asset cannot be null");
+        }
+        validate(from, years);
+        return stream(recurringPayments(asset, asset.getCurrentValue().doubleValue(), 1.0),
+                from, years, asset.getCurrency());
+    }
+
+    /**
+     * Projects the cash flows of every holding in a portfolio, in its reporting currency
+     * @param portfolio The portfolio
+     * @param from First day of the projection
+     * @param years Number of years to project
+     * @return Lazy stream of cash flows in date order
+     */
+    public Stream<CashFlow> project(Portfolio portfolio, LocalDate from, int years) {
+        if (portfolio == null) {
+            throw new IllegalArgumentException("Portfolio cannot be null");
+        }
+        validate(from, years);
+        PortfolioSnapshot snapshot = portfolio.snapshot();
+        return stream(recurringPayments(snapshot, snapshot.getCurrency()), from, years, snapshot.getCurrency());
+    }
+
+    /**
+     * Sums a portfolio's projected cash flows per month in its reporting currency
+     * @param portfolio The portfolio
+     * @param years Number of years to project from today
+     * @return Monthly totals by type
+     */
+    public CashFlowSchedule schedule(Portfolio portfolio, int years) {
+        if (portfolio == null) {
+            throw new IllegalArgumentException("Portfolio cannot be null");
+        }
+        validate(LocalDate.now(), years);
+        PortfolioSnapshot snapshot = portfolio.snapshot();
+        CashFlowSchedule schedule = new CashFlowSchedule(YearMonth.now(), years * YEAR_MONTHS, snapshot.getCurrency());
+        accumulate(recurringPayments(snapshot, snapshot.getCurrency()), LocalDate.now(), schedule);
+        return schedule;
+    }
+
+    /**
+     * Sums the projected cash flows of many portfolios per month, in parallel
+     * @param portfolios The portfolios
+     * @param from First day of the projection
+     * @param years Number of years to project
+     * @param currency Currency of the totals
+     * @return Combined monthly totals by type
+     */
+    public CashFlowSchedule schedule(Collection<Portfolio> portfolios, LocalDate from, int years, String currency) {
+        if (portfolios == null) {
+            throw new IllegalArgumentException("Portfolios cannot be null");
+        }
+        validate(from, years);
+        if (!FxRateTable.getInstance().isSupported(currency)) {
+            throw new IllegalArgumentException("Unsupported currency: " + currency);
+        }
+        long start = System.nanoTime();
+        YearMonth first = YearMonth.from(from);
+        int months = years * YEAR_MONTHS;
+        // Each split fills its own schedule; merge adds into the left one in place
+        CashFlowSchedule schedule = pool.submit(() -> portfolios.parallelStream()
+                .collect(() -> new CashFlowSchedule(first, months, currency),
+                        (partial, portfolio) -> accumulate(recurringPayments(portfolio.snapshot(), currency), from, partial),
+                        CashFlowSchedule::merge)).join();
+        LOGGER.info("Projected cash flows of " + portfolios.size() + " portfolios in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return schedule;
+    }
+
+    /**
+     * Sums the projected cash flows of every cached portfolio in US dollars
+     * @param years Number of years to project from today
+     * @return Combined monthly totals by type
+     */
+    public CashFlowSchedule scheduleAllPortfolios(int years) {
+        return schedule(DataStorage.loadCachedPortfolios(), LocalDate.now(), years, FxRateTable.BASE_CURRENCY);
+    }
+
+    private static void validate(LocalDate from, int years) {
+        if (from == null) {
+            throw new IllegalArgumentException("Start date cannot be null");
+        }
+        if (years <= 0) {
+            throw new IllegalArgumentException("Years must be positive");
+        }
+    }
+
+    /**
+     * Reduces every asset of a snapshot to recurring payments in a target currency
+     */
+    private static List<Recurring> recurringPayments(PortfolioSnapshot snapshot, String currency) {
+        FxRateTable.Rates rates = FxRateTable.getInstance().getRates();
+        int target = rates.idOf(currency);
+        double snapshotRate = rates.rate(rates.idOf(snapshot.getCurrency()), target);
+        List<Recurring> payments = new ArrayList<>();
+        for (Asset asset : snapshot.getAssets()) {
+            BigDecimal value = snapshot.getAssetValue(asset.getAssetId());
+            if (value == null) {
+                continue;
+            }
+            payments.addAll(recurringPayments(asset, value.doubleValue() * snapshotRate,
+                    rates.rate(rates.idOf(asset.getCurrency()), target)));
+        }
+        return payments;
+    }
+
+    /**
+     * Reduces an asset to its recurring payments
+     * @param value Value of the holding in the target currency
+     * @param rate Conversion from the asset's currency to the target currency
+     */
+    private static List<Recurring> recurringPayments(Asset asset, double value, double rate) {
+        List<Recurring> payments = new ArrayList<>(4);
+        int anniversary = purchaseMonth(asset);
+        if (asset instanceof Stock) {
+            BigDecimal yield = ((Stock) asset).getDividendYield();
+            if (yield != null && yield.signum() > 0 && value > 0) {
+                payments.add(new Recurring(asset.getAssetId(), CashFlow.Type.DIVIDEND,
+                        value * yield.doubleValue() / 4, QUARTER_MONTHS, anniversary, DIVIDEND_DAY));
+            }
+        } else if (asset instanceof RealEstate) {
+            RealEstate property = (RealEstate) asset;
+            double rent = property.getMonthlyRentalIncome().doubleValue() * property.getOccupancyRate();
+            if (rent > 0) {
+                payments.add(new Recurring(asset.getAssetId(), CashFlow.Type.RENT, rent * rate, 1, 0, RENT_DAY));
+            }
+            double maintenance = property.getAnnualMaintenanceCost().doubleValue();
+            if (maintenance > 0) {
+                payments.add(new Recurring(asset.getAssetId(), CashFlow.Type.MAINTENANCE,
+                        -maintenance / YEAR_MONTHS * rate, 1, 0, RENT_DAY));
+            }
+            double tax = property.getAnnualPropertyTax().doubleValue();
+            if (tax > 0) {
+                payments.add(new Recurring(asset.getAssetId(), CashFlow.Type.PROPERTY_TAX,
+                        -tax * rate, YEAR_MONTHS, anniversary, DIVIDEND_DAY));
+            }
+            double insurance = property.getAnnualInsuranceCost().doubleValue();
+            if (insurance > 0) {
+                payments.add(new Recurring(asset.getAssetId(), CashFlow.Type.INSURANCE,
+                        -insurance * rate, YEAR_MONTHS, anniversary, RENT_DAY));
+            }
+        }
+        return payments;
+    }
+
+    private static int purchaseMonth(Asset asset) {
+        if (asset.getPurchaseDate() == null) {
+            return 0;
+        }
+        return asset.getPurchaseDate().toInstant().atZone(ZoneId.systemDefault()).getMonthValue() - 1;
+    }
+
+    /**
+     * Generates dated cash flows one month at a time
+     */
+    private static Stream<CashFlow> stream(List<Recurring> payments, LocalDate from, int years, String currency) {
+        List<Recurring> byDay = new ArrayList<>(payments);
+        byDay.sort(Comparator.comparingInt(payment -> payment.day));
+        YearMonth first = YearMonth.from(from);
+        return IntStream.range(0, years * YEAR_MONTHS)
+                .mapToObj(first::plusMonths)
+                .flatMap(month -> byDay.stream()
+                        .filter(payment -> payment.occursIn(month))
+                        .map(payment -> new CashFlow(month.atDay(Math.min(payment.day, month.lengthOfMonth())),
+                                payment.assetId, payment.type,
+                                BigDecimal.valueOf(payment.amount).setScale(2, RoundingMode.HALF_UP), currency)))
+                .filter(flow -> !flow.getDate().isBefore(from));
+    }
+
+    /**
+     * Adds every occurrence of the payments to a schedule, jumping straight from one to the next
+     */
+    private static void accumulate(List<Recurring> payments, LocalDate from, CashFlowSchedule schedule) {
+        YearMonth first = schedule.getStart();
+        int firstMonthNumber = monthNumber(first);
+        int months = schedule.getMonthCount();
+        for (Recurring payment : payments) {
+            int m = Math.floorMod(payment.phase - firstMonthNumber, payment.periodMonths);
+            if (m == 0 && Math.min(payment.day, first.lengthOfMonth()) < from.getDayOfMonth()) {
+                m += payment.periodMonths;
+            }
+            for (; m < months; m += payment.periodMonths) {
+                schedule.add(m, payment.type, payment.amount);
+            }
+        }
+    }
+
+    private static int monthNumber(YearMonth month) {
+        return month.getYear() * YEAR_MONTHS + month.getMonthValue() - 1;
+    }
+
+    /**
+     * A payment that repeats every few months on a fixed day
+     */
+    private static final class Recurring {
+        private final String assetId;
+        private final CashFlow.Type type;
+        private final double amount;
+        private final int periodMonths;
+        private final int phase;
+        private final int day;
+
+        private Recurring(String assetId, CashFlow.Type type, double amount, int periodMonths, int phase, int day) {
+            this.assetId = assetId;
+            this.type = type;
+            this.amount = amount;
+            this.periodMonths = periodMonths;
+            this.phase = phase % periodMonths;
+            this.day = day;
+        }
+
+        private boolean occursIn(YearMonth month) {
+            return Math.floorMod(monthNumber(month) - phase, periodMonths) == 0;
+        }
+    }
+}
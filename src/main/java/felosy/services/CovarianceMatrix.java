@@ -0,0 +1,104 @@
+package felosy.services;
+
+/**
+ * Covariance of daily log returns between instruments, with annualized
+ * views for volatility, correlation and portfolio variance.
+ */
+public final class CovarianceMatrix {
+    private static final double TRADING_DAYS_PER_YEAR = 252.0;
+
+    private final int[] instrumentIds;
+    private final double[] covariance;
+    private final int size;
+    private final int periods;
+
+    CovarianceMatrix(int[] instrumentIds, double[] covariance, int periods) {
+        this.instrumentIds = instrumentIds;
+        this.covariance = covariance;
+        this.size = instrumentIds.length;
+        this.periods = periods;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return number of daily returns the matrix was estimated from
+     */
+    public int getPeriodCount() {
+        return periods;
+    }
+
+    public int getInstrumentId(int index) {
+        return instrumentIds[index];
+    }
+
+    /**
+     * @return index of the instrument, or -1 if it is not in the matrix
+     */
+    public int indexOf(int instrumentId) {
+        for (int i = 0; i < size; i++) {
+            if (instrumentIds[i] == instrumentId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return daily covariance of the two instruments' log returns
+     */
+    public double getCovariance(int i, int j) {
+        return covariance[i * size + j];
+    }
+
+    public double getCorrelation(int i, int j) {
+        double denominator = Math.sqrt(covariance[i * size + i] * covariance[j * size + j]);
+        return denominator > 0 ? covariance[i * size + j] / denominator : (i == j ? 1.0 : 0.0);
+    }
+
+    /**
+     * @return annualized volatility of one instrument
+     */
+    public double getVolatility(int i) {
+        return Math.sqrt(covariance[i * size + i] * TRADING_DAYS_PER_YEAR);
+    }
+
+    /**
+     * Annualized variance of a portfolio, w^T * C * w
+     * @param weights Weight per instrument, in matrix order
+     * @return The portfolio's annualized variance
+     */
+    public double getPortfolioVariance(double[] weights) {
+        if (weights == null || weights.length != size) {
+            throw new IllegalArgumentException("Expected " + size + " weights");
+        }
+        double variance = 0.0;
+        for (int i = 0; i < size; i++) {
+            if (weights[i] == 0) {
+                continue;
+            }
+            double rowSum = 0.0;
+            int row = i * size;
+            for (int j = 0; j < size; j++) {
+                rowSum += covariance[row + j] * weights[j];
+            }
+            variance += weights[i] * rowSum;
+        }
+        return variance * TRADING_DAYS_PER_YEAR;
+    }
+
+    /**
+     * @return the full correlation matrix in row-major order
+     */
+    public double[] toCorrelationArray() {
+        double[] correlation = new double[size * size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                correlation[i * size + j] = getCorrelation(i, j);
+            }
+        }
+        return correlation;
+    }
+}
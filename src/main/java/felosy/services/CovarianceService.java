@@ -0,0 +1,296 @@
+package felosy.services;
+
+import felosy.assetmanagement.Asset;
+import felosy.assetmanagement.Instrument;
+import felosy.assetmanagement.InstrumentRegistry;
+import felosy.assetmanagement.Portfolio;
+import felosy.assetmanagement.PortfolioSnapshot;
+import felosy.reporting.FinancialInsight;
+import felosy.storage.DataStorage;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+/**
+ * Builds return covariance and correlation matrices and derives
+ * diversification metrics from them.
+ * The kernel centers each instrument's returns, then accumulates dot products
+ * tile by tile: blocks of instruments against blocks of instruments, over
+ * slices of the time axis small enough to stay in cache. Tile pairs run in
+ * parallel, and the inner loop computes four dot products at once so each
+ * element of the shared row is loaded once and the accumulators stay independent.
+ */
+public class CovarianceService {
+    private static final Logger LOGGER = Logger.getLogger(CovarianceService.class.getName());
+    private static final int INSTRUMENT_BLOCK = 64;
+    private static final int PERIOD_BLOCK = 256;
+    private static final int DEFAULT_LOOKBACK_YEARS = 3;
+    private static final double CONCENTRATION_WARNING = 0.25;
+    private static final CovarianceService instance =
+            new CovarianceService(ForkJoinPool.commonPool(), PriceHistoryService.getInstance());
+
+    private final ForkJoinPool pool;
+    private final PriceHistoryService priceHistory;
+
+    public CovarianceService(ForkJoinPool pool, PriceHistoryService priceHistory) {
+        if (pool == null || priceHistory == null) {
+            throw new IllegalArgumentException("Pool and price history cannot be null");
+        }
+        this.pool = pool;
+        this.priceHistory = priceHistory;
+    }
+
+    public static CovarianceService getInstance() {
+        return instance;
+    }
+
+    /**
+     * Computes the covariance matrix of a set of aligned returns
+     * @param returns The return matrix
+     * @return The sample covariance of daily log returns
+     */
+    public CovarianceMatrix compute(ReturnMatrix returns) {
+        if (returns == null) {
+            throw new IllegalArgumentException("Returns cannot be null");
+        }
+        int n = returns.getInstrumentCount();
+        int periods = returns.getPeriodCount();
+        int[] ids = new int[n];
+        double[][] centered = new double[n][];
+        for (int i = 0; i < n; i++) {
+            ids[i] = returns.getInstrumentId(i);
+            centered[i] = center(returns.row(i));
+        }
+
+        double[] covariance = new double[n * n];
+        if (periods < 2) {
+            return new CovarianceMatrix(ids, covariance, periods);
+        }
+
+        int blocks = (n + INSTRUMENT_BLOCK - 1) / INSTRUMENT_BLOCK;
+        int pairs = blocks * (blocks + 1) / 2;
+        double scale = 1.0 / (periods - 1);
+        long start = System.nanoTime();
+        pool.submit(() -> IntStream.range(0, pairs).parallel().forEach(pair -> {
+            // Unrank the pair index into upper-triangle block coordinates
+            int blockRow = 0;
+            int remaining = pair;
+            while (remaining >= blocks - blockRow) {
+                remaining -= blocks - blockRow;
+                blockRow++;
+            }
+            multiplyTile(centered, covariance, n, periods, blockRow, blockRow + remaining, scale);
+        })).join();
+        LOGGER.fine("Covariance of " + n + " instruments over " + periods + " periods in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return new CovarianceMatrix(ids, covariance, periods);
+    }
+
+    /**
+     * Computes the covariance matrix of instruments over a lookback window ending today
+     * @param instrumentIds The instruments
+     * @param years Length of the window
+     * @return The covariance matrix; instruments without enough history are left out
+     */
+    public CovarianceMatrix compute(int[] instrumentIds, int years) {
+        LocalDate to = LocalDate.now();
+        return compute(priceHistory.getReturns(instrumentIds, to.minusYears(years), to));
+    }
+
+    /**
+     * Computes the covariance matrix of every instrument a user holds
+     * @param userId The user
+     * @return The covariance matrix over the default lookback window
+     */
+    public CovarianceMatrix computeForUser(String userId) {
+        Map<Integer, Double> exposures = new LinkedHashMap<>();
+        for (Portfolio portfolio : DataStorage.loadUserPortfolios(userId)) {
+            collectExposures(portfolio.snapshot(), exposures);
+        }
+        return compute(exposures.keySet().stream().mapToInt(Integer::intValue).toArray(), DEFAULT_LOOKBACK_YEARS);
+    }
+
+    /**
+     * Measures how diversified a portfolio is
+     * @param portfolio The portfolio
+     * @return Insight holding volatility, concentration and correlation metrics
+     */
+    public FinancialInsight analyzeDiversification(Portfolio portfolio) {
+        if (portfolio == null) {
+            throw new IllegalArgumentException("Portfolio cannot be null");
+        }
+
+        PortfolioSnapshot snapshot = portfolio.snapshot();
+        Map<Integer, Double> exposures = new LinkedHashMap<>();
+        double nonTraded = collectExposures(snapshot, exposures);
+        double total = snapshot.getNetWorth().doubleValue();
+
+        FinancialInsight insight = new FinancialInsight("DIV-" + UUID.randomUUID().toString().substring(0, 8),
+                snapshot.getPortfolioId());
+        if (total <= 0) {
+            insight.addRecommendation("Add assets to the portfolio to measure diversification");
+            return insight;
+        }
+
+        // Concentration counts every holding, traded or not
+        double herfindahl = Math.pow(nonTraded / total, 2);
+        for (double exposure : exposures.values()) {
+            herfindahl += Math.pow(exposure / total, 2);
+        }
+        insight.addMetric("Concentration (HHI)", herfindahl);
+        insight.addMetric("Effective Number of Holdings", herfindahl > 0 ? 1.0 / herfindahl : 0.0);
+
+        CovarianceMatrix matrix = compute(exposures.keySet().stream().mapToInt(Integer::intValue).toArray(),
+                DEFAULT_LOOKBACK_YEARS);
+        int n = matrix.size();
+        double[] weights = new double[n];
+        double covered = 0.0;
+        for (int i = 0; i < n; i++) {
+            weights[i] = exposures.get(matrix.getInstrumentId(i)) / total;
+            covered += weights[i];
+        }
+        insight.addMetric("Covered Weight", covered);
+
+        if (n > 0 && matrix.getPeriodCount() >= 2) {
+            double volatility = Math.sqrt(matrix.getPortfolioVariance(weights));
+            double weightedVolatility = 0.0;
+            double correlationSum = 0.0;
+            double pairWeight = 0.0;
+            for (int i = 0; i < n; i++) {
+                weightedVolatility += weights[i] * matrix.getVolatility(i);
+                for (int j = i + 1; j < n; j++) {
+                    double w = weights[i] * weights[j];
+                    correlationSum += w * matrix.getCorrelation(i, j);
+                    pairWeight += w;
+                }
+            }
+            insight.addMetric("Portfolio Volatility", volatility);
+            insight.addMetric("Diversification Ratio", volatility > 0 ? weightedVolatility / volatility : 1.0);
+            insight.addMetric("Average Pairwise Correlation", pairWeight > 0 ? correlationSum / pairWeight : 0.0);
+            insight.setConfidenceScore(Math.min(1.0, matrix.getPeriodCount() / 252.0));
+            if (pairWeight > 0 && correlationSum / pairWeight > 0.7) {
+                insight.addRecommendation("Holdings move closely together; consider less correlated assets");
+            }
+        }
+        if (herfindahl > CONCENTRATION_WARNING) {
+            insight.addRecommendation("Portfolio is concentrated in a few holdings");
+        }
+        return insight;
+    }
+
+    /**
+     * Adds up the snapshot's value per instrument
+     * @return Value of holdings that are not traded instruments
+     */
+    private static double collectExposures(PortfolioSnapshot snapshot, Map<Integer, Double> exposures) {
+        InstrumentRegistry registry = InstrumentRegistry.getInstance();
+        double nonTraded = 0.0;
+        for (Asset asset : snapshot.getAssets()) {
+            BigDecimal value = snapshot.getAssetValue(asset.getAssetId());
+            if (value == null || value.signum() <= 0) {
+                continue;
+            }
+            String symbol = asset.getInstrumentSymbol();
+            Instrument instrument = symbol != null ? registry.get(symbol) : null;
+            if (instrument != null) {
+                exposures.merge(instrument.getId(), value.doubleValue(), Double::sum);
+            } else {
+                nonTraded += value.doubleValue();
+            }
+        }
+        return nonTraded;
+    }
+
+    private static double[] center(double[] row) {
+        double mean = 0.0;
+        for (double value : row) {
+            mean += value;
+        }
+        mean /= Math.max(1, row.length);
+        double[] centered = new double[row.length];
+        for (int t = 0; t < row.length; t++) {
+            centered[t] = row[t] - mean;
+        }
+        return centered;
+    }
+
+    /**
+     * Fills one tile of the covariance matrix and its mirror image
+     */
+    private static void multiplyTile(double[][] x, double[] covariance, int n, int periods,
+                                     int blockRow, int blockColumn, double scale) {
+        int rowStart = blockRow * INSTRUMENT_BLOCK;
+        int rowEnd = Math.min(n, rowStart + INSTRUMENT_BLOCK);
+        int columnStart = blockColumn * INSTRUMENT_BLOCK;
+        int columnEnd = Math.min(n, columnStart + INSTRUMENT_BLOCK);
+        int width = columnEnd - columnStart;
+        double[] tile = new double[(rowEnd - rowStart) * width];
+
+        for (int periodStart = 0; periodStart < periods; periodStart += PERIOD_BLOCK) {
+            int periodEnd = Math.min(periods, periodStart + PERIOD_BLOCK);
+            for (int i = rowStart; i < rowEnd; i++) {
+                double[] left = x[i];
+                int offset = (i - rowStart) * width - columnStart;
+                int j = blockRow == blockColumn ? i : columnStart;
+                // Four columns at a time so each element of the left row is loaded once per four products
+                for (; j + 3 < columnEnd; j += 4) {
+                    dot4(left, x[j], x[j + 1], x[j + 2], x[j + 3], periodStart, periodEnd, tile, offset + j);
+                }
+                for (; j < columnEnd; j++) {
+                    tile[offset + j] += dot(left, x[j], periodStart, periodEnd);
+                }
+            }
+        }
+
+        for (int i = rowStart; i < rowEnd; i++) {
+            int firstColumn = blockRow == blockColumn ? i : columnStart;
+            for (int j = firstColumn; j < columnEnd; j++) {
+                double value = tile[(i - rowStart) * width + (j - columnStart)] * scale;
+                covariance[i * n + j] = value;
+                covariance[j * n + i] = value;
+            }
+        }
+    }
+
+    private static void dot4(double[] a, double[] b0, double[] b1, double[] b2, double[] b3,
+                             int from, int to, double[] out, int index) {
+        double s0 = 0.0;
+        double s1 = 0.0;
+        double s2 = 0.0;
+        double s3 = 0.0;
+        for (int t = from; t < to; t++) {
+            double value = a[t];
+            s0 += value * b0[t];
+            s1 += value * b1[t];
+            s2 += value * b2[t];
+            s3 += value * b3[t];
+        }
+        out[index] += s0;
+        out[index + 1] += s1;
+        out[index + 2] += s2;
+        out[index + 3] += s3;
+    }
+
+    private static double dot(double[] a, double[] b, int from, int to) {
+        double s0 = 0.0;
+        double s1 = 0.0;
+        double s2 = 0.0;
+        double s3 = 0.0;
+        int t = from;
+        for (; t + 3 < to; t += 4) {
+            s0 += a[t] * b[t];
+            s1 += a[t + 1] * b[t + 1];
+            s2 += a[t + 2] * b[t + 2];
+            s3 += a[t + 3] * b[t + 3];
+        }
+        for (; t < to; t++) {
+            s0 += a[t] * b[t];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+}
@@ -4,6 +4,7 @@ import felosy.assetmanagement.Cryptocurrency;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import java.io.*;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -20,29 +21,31 @@ public class CryptoDataService {
         return instance;
     }
 
-    public ObservableList<Cryptocurrency> getUserCryptoList(String userId) {
+    public synchronized ObservableList<Cryptocurrency> getUserCryptoList(String userId) {
         return userCryptoData.computeIfAbsent(userId, k -> FXCollections.observableArrayList());
     }
 
-    public void saveUserCryptoList(String userId, ObservableList<Cryptocurrency> cryptoList) {
+    public synchronized void saveUserCryptoList(String userId, ObservableList<Cryptocurrency> cryptoList) {
         userCryptoData.put(userId, cryptoList);
         saveData(); // Save data whenever it's updated
     }
 
-    private void saveData() {
+    private synchronized boolean saveData() {
         try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(DATA_FILE))) {
             // Convert ObservableLists to regular Lists before saving
             Map<String, java.util.List<Cryptocurrency>> serializableMap = new HashMap<>();
             userCryptoData.forEach((key, value) ->
                     serializableMap.put(key, new java.util.ArrayList<>(value)));
             oos.writeObject(serializableMap);
+            return true;
         } catch (IOException e) {
             e.printStackTrace();
+            return false;
         }
     }
 
     @SuppressWarnings("unchecked")
-    private void loadData() {
+    private synchronized void loadData() {
         File file = new File(DATA_FILE);
         if (!file.exists()) {
             return;
@@ -59,6 +62,45 @@ public class CryptoDataService {
         }
     }
 
+    /**
+     * Copies every user's crypto holdings so they can be walked off the UI thread
+     * @return A map of user IDs to copies of their crypto lists
+     */
+    public synchronized Map<String, java.util.List<Cryptocurrency>> snapshotAllUsers() {
+        Map<String, java.util.List<Cryptocurrency>> snapshot = new HashMap<>();
+        userCryptoData.forEach((userId, list) -> snapshot.put(userId, new java.util.ArrayList<>(list)));
+        return snapshot;
+    }
+
+    /**
+     * Drops the crypto holdings of many users with a single save.
+     * If the save fails the holdings are put back.
+     * @param userIds The users
+     * @return true if nothing was held or the change was saved
+     */
+    public synchronized boolean removeUsers(Collection<String> userIds) {
+        Map<String, ObservableList<Cryptocurrency>> removed = new HashMap<>();
+        for (String userId : userIds) {
+            ObservableList<Cryptocurrency> list = userCryptoData.remove(userId);
+            if (list != null) {
+                removed.put(userId, list);
+            }
+        }
+        if (removed.isEmpty() || saveData()) {
+            return true;
+        }
+        userCryptoData.putAll(removed);
+        return false;
+    }
+
+    /**
+     * Writes every user's crypto holdings to disk in one save, e.g. after a revaluation
+     * @return true if the data was saved
+     */
+    public boolean save() {
+        return saveData();
+    }
+
     // Add this method to save data when the application closes
     public void shutdown() {
         saveData();
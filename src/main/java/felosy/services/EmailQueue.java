@@ -0,0 +1,305 @@
+package felosy.services;
+
+import javax.mail.MessagingException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Persistent outbound mail queue delivered by a small pool of worker threads.
+ * Enqueuing writes the email to its own file under the queue directory and
+ * returns at once; a worker picks up every email that is due, opens one
+ * connection and sends the whole batch through it. Failed emails are retried
+ * with exponential backoff and jitter, and set aside in a failed directory
+ * once they run out of attempts. Emails still on disk at startup are queued
+ * again, so delivery is at least once across restarts. Emails whose send-by
+ * deadline has passed, such as expired one-time passwords, are dropped
+ * rather than sent or retried.
+ */
+public class EmailQueue {
+    private static final Logger LOGGER = Logger.getLogger(EmailQueue.class.getName());
+    private static final String QUEUE_DIR = "data/mail_queue";
+    private static final String FAILED_DIR = "failed";
+    private static final String EMAIL_SUFFIX = ".ser";
+    private static final int DEFAULT_WORKERS = 2;
+    private static final int BATCH_SIZE = 50;
+    private static final int MAX_ATTEMPTS = 6;
+    private static final long BASE_BACKOFF_MILLIS = 2_000;
+    private static final long MAX_BACKOFF_MILLIS = 10 * 60_000;
+    private static final long POLL_MILLIS = 1_000;
+    private static final EmailQueue instance =
+            new EmailQueue(EmailService.smtpTransport(), DEFAULT_WORKERS, Paths.get(QUEUE_DIR));
+
+    private final MailTransport transport;
+    private final Path queueDir;
+    private final Path failedDir;
+    private final DelayQueue<OutgoingEmail> due = new DelayQueue<>();
+    private final ExecutorService workers;
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private volatile boolean running = true;
+
+    /**
+     * Creates a queue, requeues what is left in its directory and starts the workers
+     * @param transport How emails are delivered
+     * @param workerCount Number of worker threads
+     * @param queueDir Directory holding the queued emails
+     */
+    public EmailQueue(MailTransport transport, int workerCount, Path queueDir) {
+        if (transport == null || queueDir == null) {
+            throw new IllegalArgumentException("Transport and queue directory cannot be null");
+        }
+        if (workerCount <= 0) {
+            throw new IllegalArgumentException("Worker count must be positive");
+        }
+        this.transport = transport;
+        this.queueDir = queueDir;
+        this.failedDir = queueDir.resolve(FAILED_DIR);
+        try {
+            Files.createDirectories(failedDir);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Failed to create mail queue directory: " + queueDir, e);
+        }
+        recover();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "mail-sender-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workerCount; i++) {
+            workers.execute(this::work);
+        }
+    }
+
+    public static EmailQueue getInstance() {
+        return instance;
+    }
+
+    /**
+     * Stores an email and queues it for delivery
+     * @param email The email
+     * @return true if the email was stored; delivery happens later
+     */
+    public boolean enqueue(OutgoingEmail email) {
+        if (email == null) {
+            throw new IllegalArgumentException("Email cannot be null");
+        }
+        if (!running) {
+            LOGGER.warning("Mail queue is shut down, dropping email to: " + email.getTo());
+            return false;
+        }
+        try {
+            persist(email);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Failed to store email to: " + email.getTo(), e);
+            return false;
+        }
+        due.add(email);
+        return true;
+    }
+
+    public int getPendingCount() {
+        return due.size();
+    }
+
+    public long getSentCount() {
+        return sent.sum();
+    }
+
+    public long getRetryCount() {
+        return retried.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    public long getExpiredCount() {
+        return expired.sum();
+    }
+
+    /**
+     * Stops the workers; queued emails stay on disk for the next start
+     */
+    public void shutdown() {
+        running = false;
+        workers.shutdownNow();
+    }
+
+    private void work() {
+        while (running) {
+            OutgoingEmail first;
+            try {
+                first = due.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (first == null) {
+                continue;
+            }
+            List<OutgoingEmail> batch = new ArrayList<>();
+            batch.add(first);
+            due.drainTo(batch, BATCH_SIZE - 1);
+            deliver(batch);
+        }
+    }
+
+    /**
+     * Sends a batch through one connection
+     */
+    private void deliver(List<OutgoingEmail> batch) {
+        int index = 0;
+        try (MailTransport.Connection connection = transport.connect()) {
+            for (; index < batch.size(); index++) {
+                OutgoingEmail email = batch.get(index);
+                if (email.isExpired(System.currentTimeMillis())) {
+                    drop(email);
+                    continue;
+                }
+                try {
+                    connection.send(email);
+                    sent.increment();
+                    Files.deleteIfExists(fileOf(email));
+                    LOGGER.info("Email sent successfully to: " + email.getTo());
+                } catch (MessagingException e) {
+                    retry(email, e);
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Sent email " + email.getEmailId() + " but could not remove it from the queue", e);
+                }
+            }
+        } catch (MessagingException e) {
+            LOGGER.log(Level.WARNING, "Failed to connect to the mail server", e);
+            for (; index < batch.size(); index++) {
+                retry(batch.get(index), e);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Unexpected error delivering emails", e);
+            for (; index < batch.size(); index++) {
+                retry(batch.get(index), e);
+            }
+        }
+    }
+
+    /**
+     * Schedules another attempt, or sets the email aside once it is out of attempts
+     */
+    private void retry(OutgoingEmail email, Exception cause) {
+        long backoff = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << Math.min(email.getAttempts(), 20));
+        backoff += ThreadLocalRandom.current().nextLong(backoff / 5 + 1);
+        email.recordFailure(String.valueOf(cause.getMessage()), System.currentTimeMillis() + backoff);
+        if (email.isExpired(email.getNextAttemptAt())) {
+            drop(email);
+            return;
+        }
+        try {
+            if (email.getAttempts() >= MAX_ATTEMPTS) {
+                failed.increment();
+                persist(email);
+                Files.move(fileOf(email), failedDir.resolve(email.getEmailId() + EMAIL_SUFFIX),
+                        StandardCopyOption.REPLACE_EXISTING);
+                LOGGER.severe("Giving up on email to " + email.getTo() + " after " + email.getAttempts()
+                        + " attempts: " + email.getLastError());
+                return;
+            }
+            persist(email);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to update queued email " + email.getEmailId(), e);
+        }
+        retried.increment();
+        due.add(email);
+    }
+
+    /**
+     * Requeues the emails left in the queue directory
+     */
+    private void recover() {
+        if (!Files.isDirectory(queueDir)) {
+            return;
+        }
+        int recovered = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(queueDir, "*" + EMAIL_SUFFIX)) {
+            for (Path file : files) {
+                OutgoingEmail email;
+                try (ObjectInputStream in = new ObjectInputStream(Files.newInputStream(file))) {
+                    email = (OutgoingEmail) in.readObject();
+                } catch (IOException | ClassNotFoundException | ClassCastException e) {
+                    LOGGER.log(Level.WARNING, "Unreadable queued email " + file + ", moving it aside", e);
+                    moveAside(file);
+                    continue;
+                }
+                if (email.isExpired(System.currentTimeMillis())) {
+                    drop(email);
+                    continue;
+                }
+                due.add(email);
+                recovered++;
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Failed to read mail queue directory: " + queueDir, e);
+        }
+        if (recovered > 0) {
+            LOGGER.info("Requeued " + recovered + " emails from " + queueDir);
+        }
+    }
+
+    /**
+     * Moves an unreadable file to the failed directory without stopping the recovery
+     */
+    private void moveAside(Path file) {
+        try {
+            Files.move(file, failedDir.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to move aside queued email " + file, e);
+        }
+    }
+
+    /**
+     * Discards an email whose deadline has passed
+     */
+    private void drop(OutgoingEmail email) {
+        expired.increment();
+        try {
+            Files.deleteIfExists(fileOf(email));
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to remove expired email " + email.getEmailId(), e);
+        }
+        LOGGER.info("Dropping email to " + email.getTo() + " after its send-by deadline");
+    }
+
+    private void persist(OutgoingEmail email) throws IOException {
+        Path temp = Files.createTempFile(queueDir, email.getEmailId(), ".tmp");
+        try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(temp))) {
+            synchronized (email) {
+                out.writeObject(email);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, fileOf(email), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path fileOf(OutgoingEmail email) {
+        return queueDir.resolve(email.getEmailId() + EMAIL_SUFFIX);
+    }
+}
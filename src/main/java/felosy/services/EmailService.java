@@ -1,45 +1,47 @@
 package felosy.services;
 
 import javax.mail.*;
-import javax.mail.internet.*;
 import java.io.File;
-import java.io.IOException;
-import java.security.SecureRandom;
-import java.time.LocalDateTime;
-import java.util.Map;
 import java.util.Properties;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Builds the application's emails and hands them to the {@link EmailQueue},
+ * which delivers them in the background. The send methods return as soon as
+ * the email is queued.
+ */
 public class EmailService {
     private static final Logger LOGGER = Logger.getLogger(EmailService.class.getName());
     private static final String EMAIL_FROM = "20230043@stud.fci-cu.edu.eg";
     private static final String APP_PASSWORD = "nojh svgh hgcp yvty";
     private final String emailTo;
-    private final Session session;
+    private final EmailQueue queue;
     
-    // Store OTPs with their expiration time
-    private static final Map<String, OTPData> otpStore = new ConcurrentHashMap<>();
-    private static final int OTP_LENGTH = 6;
-    private static final int OTP_EXPIRY_MINUTES = 5;
-    private static final SecureRandom secureRandom = new SecureRandom();
+    // One-time passwords, shared by every EmailService
+    private static final OtpStore otpStore = OtpStore.getInstance();
     
-    private static class OTPData {
-        private final String otp;
-        private final LocalDateTime expiryTime;
-        private boolean used;
-        
-        public OTPData(String otp, LocalDateTime expiryTime) {
-            this.otp = otp;
-            this.expiryTime = expiryTime;
-            this.used = false;
-        }
+    public EmailService(String emailTo) {
+        this(emailTo, EmailQueue.getInstance());
     }
     
-    public EmailService(String emailTo) {
+    /**
+     * Creates a service that sends through a given queue, e.g. one backed by a {@link FileMailTransport}
+     * @param emailTo Recipient address
+     * @param queue The outbound queue
+     */
+    public EmailService(String emailTo, EmailQueue queue) {
+        if (queue == null) {
+            throw new IllegalArgumentException("Queue cannot be null");
+        }
         this.emailTo = emailTo;
-        this.session = getEmailSession();
+        this.queue = queue;
+    }
+    
+    /**
+     * SMTP transport using the application's mail account
+     */
+    static MailTransport smtpTransport() {
+        return new SmtpMailTransport(getEmailSession(), EMAIL_FROM);
     }
     
     private static Session getEmailSession() {
@@ -66,11 +68,8 @@ public class EmailService {
      * @return true if OTP was generated and sent successfully
      */
     public boolean generateAndSendOTP() {
-        String otp = generateOTP();
-        LocalDateTime expiryTime = LocalDateTime.now().plusMinutes(OTP_EXPIRY_MINUTES);
-        
-        // Store the OTP
-        otpStore.put(emailTo, new OTPData(otp, expiryTime));
+        // Issue and store the OTP
+        String otp = otpStore.issue(emailTo);
         
         // Send the OTP via email
         String subject = "Your OTP Code";
@@ -86,13 +85,16 @@ public class EmailService {
                     <p>If you didn't request this code, please ignore this email.</p>
                 </body>
             </html>
-            """, otp, OTP_EXPIRY_MINUTES);
+            """, otp, otpStore.getTtlMillis() / 60_000);
         
-        boolean sent = sendHtmlEmail(subject, htmlBody);
+        // A code that arrives after it expired is useless, so the queue drops it instead
+        OutgoingEmail email = new OutgoingEmail(emailTo, subject, htmlBody, true);
+        email.setSendBy(System.currentTimeMillis() + otpStore.getTtlMillis());
+        boolean sent = enqueue(email);
         if (sent) {
-            LOGGER.info("OTP sent successfully to: " + emailTo);
+            LOGGER.info("OTP queued for: " + emailTo);
         } else {
-            otpStore.remove(emailTo); // Remove OTP if email sending failed
+            otpStore.invalidate(emailTo); // Remove OTP if email sending failed
         }
         return sent;
     }
@@ -103,134 +105,61 @@ public class EmailService {
      * @return true if OTP is valid and not expired
      */
     public boolean verifyOTP(String providedOTP) {
-        OTPData otpData = otpStore.get(emailTo);
-        
-        if (otpData == null) {
-            LOGGER.warning("No OTP found for email: " + emailTo);
-            return false;
-        }
-        
-        if (otpData.used) {
-            LOGGER.warning("OTP already used for email: " + emailTo);
-            return false;
+        switch (otpStore.verify(emailTo, providedOTP)) {
+            case VERIFIED:
+                LOGGER.info("OTP verified successfully for email: " + emailTo);
+                return true;
+            case NOT_FOUND:
+                LOGGER.warning("No OTP found for email: " + emailTo);
+                return false;
+            case EXPIRED:
+                LOGGER.warning("OTP expired for email: " + emailTo);
+                return false;
+            case TOO_MANY_ATTEMPTS:
+                LOGGER.warning("Too many invalid OTP attempts for email: " + emailTo);
+                return false;
+            default:
+                LOGGER.warning("Invalid OTP provided for email: " + emailTo);
+                return false;
         }
-        
-        if (LocalDateTime.now().isAfter(otpData.expiryTime)) {
-            LOGGER.warning("OTP expired for email: " + emailTo);
-            otpStore.remove(emailTo);
-            return false;
-        }
-        
-        boolean isValid = otpData.otp.equals(providedOTP);
-        if (isValid) {
-            otpData.used = true;
-            otpStore.remove(emailTo); // Remove OTP after successful verification
-            LOGGER.info("OTP verified successfully for email: " + emailTo);
-        } else {
-            LOGGER.warning("Invalid OTP provided for email: " + emailTo);
-        }
-        
-        return isValid;
-    }
-    
-    /**
-     * Generates a random OTP of specified length
-     * @return The generated OTP
-     */
-    private String generateOTP() {
-        StringBuilder otp = new StringBuilder(OTP_LENGTH);
-        for (int i = 0; i < OTP_LENGTH; i++) {
-            otp.append(secureRandom.nextInt(10));
-        }
-        return otp.toString();
     }
     
     /**
-     * Sends a simple text email
+     * Queues a simple text email
      * @param subject Email subject
      * @param body Email body
-     * @return true if email was sent successfully
+     * @return true if email was queued successfully
      */
     public boolean sendTextEmail(String subject, String body) {
-        try {
-            Message message = new MimeMessage(session);
-            message.setFrom(new InternetAddress(EMAIL_FROM));
-            message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(emailTo));
-            message.setSubject(subject);
-            message.setText(body);
-            
-            Transport.send(message);
-            LOGGER.info("Text email sent successfully to: " + emailTo);
-            return true;
-        } catch (MessagingException e) {
-            LOGGER.log(Level.SEVERE, "Failed to send text email", e);
-            return false;
-        }
+        return enqueue(new OutgoingEmail(emailTo, subject, body, false));
     }
     
     /**
-     * Sends an HTML email
+     * Queues an HTML email
      * @param subject Email subject
      * @param htmlBody HTML content of the email
-     * @return true if email was sent successfully
+     * @return true if email was queued successfully
      */
     public boolean sendHtmlEmail(String subject, String htmlBody) {
-        try {
-            Message message = new MimeMessage(session);
-            message.setFrom(new InternetAddress(EMAIL_FROM));
-            message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(emailTo));
-            message.setSubject(subject);
-            
-            MimeBodyPart mimeBodyPart = new MimeBodyPart();
-            mimeBodyPart.setContent(htmlBody, "text/html; charset=utf-8");
-            
-            Multipart multipart = new MimeMultipart();
-            multipart.addBodyPart(mimeBodyPart);
-            
-            message.setContent(multipart);
-            
-            Transport.send(message);
-            LOGGER.info("HTML email sent successfully to: " + emailTo);
-            return true;
-        } catch (MessagingException e) {
-            LOGGER.log(Level.SEVERE, "Failed to send HTML email", e);
-            return false;
-        }
+        return enqueue(new OutgoingEmail(emailTo, subject, htmlBody, true));
     }
     
     /**
-     * Sends an email with attachments
+     * Queues an email with attachments; the files are read when the email is sent
      * @param subject Email subject
      * @param body Email body
      * @param attachments Array of files to attach
-     * @return true if email was sent successfully
+     * @return true if email was queued successfully
      */
     public boolean sendEmailWithAttachments(String subject, String body, File... attachments) {
+        return enqueue(new OutgoingEmail(emailTo, subject, body, false, attachments));
+    }
+    
+    private boolean enqueue(OutgoingEmail email) {
         try {
-            Message message = new MimeMessage(session);
-            message.setFrom(new InternetAddress(EMAIL_FROM));
-            message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(emailTo));
-            message.setSubject(subject);
-            
-            MimeBodyPart messageBodyPart = new MimeBodyPart();
-            messageBodyPart.setText(body);
-            
-            Multipart multipart = new MimeMultipart();
-            multipart.addBodyPart(messageBodyPart);
-            
-            for (File file : attachments) {
-                MimeBodyPart attachmentPart = new MimeBodyPart();
-                attachmentPart.attachFile(file);
-                multipart.addBodyPart(attachmentPart);
-            }
-            
-            message.setContent(multipart);
-            
-            Transport.send(message);
-            LOGGER.info("Email with attachments sent successfully to: " + emailTo);
-            return true;
-        } catch (MessagingException | IOException e) {
-            LOGGER.log(Level.SEVERE, "Failed to send email with attachments", e);
+            return queue.enqueue(email);
+        } catch (IllegalArgumentException e) {
+            LOGGER.warning("Failed to queue email: " + e.getMessage());
             return false;
         }
     }
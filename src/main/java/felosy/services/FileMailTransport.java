@@ -0,0 +1,76 @@
+package felosy.services;
+
+import javax.mail.MessagingException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+
+/**
+ * Stand-in for an SMTP server that writes each email to a file in a directory.
+ * Useful for development and tests: what would have been sent can be read
+ * back from {@code <emailId>.eml}.
+ */
+public class FileMailTransport implements MailTransport {
+    private final Path outbox;
+
+    /**
+     * Creates a transport
+     * @param outbox Directory the emails are written to
+     */
+    public FileMailTransport(Path outbox) {
+        if (outbox == null) {
+            throw new IllegalArgumentException("Outbox directory cannot be null");
+        }
+        this.outbox = outbox;
+    }
+
+    @Override
+    public Connection connect() throws MessagingException {
+        try {
+            Files.createDirectories(outbox);
+        } catch (IOException e) {
+            throw new MessagingException("Cannot create outbox " + outbox, e);
+        }
+        return new Connection() {
+            @Override
+            public void send(OutgoingEmail email) throws MessagingException {
+                write(email);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    public Path getOutbox() {
+        return outbox;
+    }
+
+    private void write(OutgoingEmail email) throws MessagingException {
+        StringBuilder content = new StringBuilder();
+        content.append("Date: ").append(Instant.now()).append('\n');
+        content.append("To: ").append(email.getTo()).append('\n');
+        content.append("Subject: ").append(email.getSubject()).append('\n');
+        content.append("Content-Type: ").append(email.isHtml() ? "text/html" : "text/plain").append("; charset=utf-8\n");
+        for (File attachment : email.getAttachments()) {
+            if (!attachment.isFile()) {
+                throw new MessagingException("Attachment not found: " + attachment);
+            }
+            content.append("X-Attachment: ").append(attachment.getAbsolutePath()).append('\n');
+        }
+        content.append('\n').append(email.getBody()).append('\n');
+        try {
+            Path temp = Files.createTempFile(outbox, email.getEmailId(), ".tmp");
+            Files.writeString(temp, content, StandardCharsets.UTF_8);
+            Files.move(temp, outbox.resolve(email.getEmailId() + ".eml"),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new MessagingException("Cannot write email " + email.getEmailId(), e);
+        }
+    }
+}
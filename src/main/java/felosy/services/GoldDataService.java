@@ -4,6 +4,7 @@ import felosy.assetmanagement.Gold;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import java.io.*;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Logger;
@@ -34,7 +35,7 @@ public class GoldDataService {
         return instance;
     }
 
-    public ObservableList<Gold> getUserGoldList(String userId) {
+    public synchronized ObservableList<Gold> getUserGoldList(String userId) {
         if (userId == null || userId.trim().isEmpty()) {
             LOGGER.warning("Attempted to get gold list for null or empty user ID");
             return FXCollections.observableArrayList();
@@ -45,7 +46,7 @@ public class GoldDataService {
         });
     }
 
-    public void saveUserGoldList(String userId, ObservableList<Gold> goldList) {
+    public synchronized void saveUserGoldList(String userId, ObservableList<Gold> goldList) {
         if (userId == null || userId.trim().isEmpty()) {
             LOGGER.warning("Attempted to save gold list for null or empty user ID");
             return;
@@ -59,7 +60,7 @@ public class GoldDataService {
         saveData(); // Save data whenever it's updated
     }
 
-    private void saveData() {
+    private synchronized boolean saveData() {
         File file = new File(DATA_FILE);
         File tempFile = new File(DATA_FILE + ".tmp");
 
@@ -79,17 +80,19 @@ public class GoldDataService {
             }
 
             LOGGER.info("Successfully saved gold data to: " + DATA_FILE);
+            return true;
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "Failed to save gold data", e);
             // Clean up temporary file if it exists
             if (tempFile.exists()) {
                 tempFile.delete();
             }
+            return false;
         }
     }
 
     @SuppressWarnings("unchecked")
-    private void loadData() {
+    private synchronized void loadData() {
         File file = new File(DATA_FILE);
         if (!file.exists()) {
             LOGGER.info("No existing gold data file found at: " + DATA_FILE);
@@ -109,7 +112,7 @@ public class GoldDataService {
         }
     }
 
-    public void addGold(String userId, Gold gold) {
+    public synchronized void addGold(String userId, Gold gold) {
         if (userId == null || userId.trim().isEmpty()) {
             LOGGER.warning("Attempted to add gold for null or empty user ID");
             return;
@@ -125,7 +128,7 @@ public class GoldDataService {
         LOGGER.info("Added gold asset " + gold.getAssetId() + " for user: " + userId);
     }
 
-    public void removeGold(String userId, Gold gold) {
+    public synchronized void removeGold(String userId, Gold gold) {
         if (userId == null || userId.trim().isEmpty()) {
             LOGGER.warning("Attempted to remove gold for null or empty user ID");
             return;
@@ -142,7 +145,7 @@ public class GoldDataService {
         }
     }
 
-    public void updateGold(String userId, Gold oldGold, Gold newGold) {
+    public synchronized void updateGold(String userId, Gold oldGold, Gold newGold) {
         if (userId == null || userId.trim().isEmpty()) {
             LOGGER.warning("Attempted to update gold for null or empty user ID");
             return;
@@ -161,6 +164,45 @@ public class GoldDataService {
         }
     }
 
+    /**
+     * Copies every user's gold holdings so they can be walked off the UI thread
+     * @return A map of user IDs to copies of their gold lists
+     */
+    public synchronized Map<String, java.util.List<Gold>> snapshotAllUsers() {
+        Map<String, java.util.List<Gold>> snapshot = new HashMap<>();
+        userGoldData.forEach((userId, list) -> snapshot.put(userId, new java.util.ArrayList<>(list)));
+        return snapshot;
+    }
+
+    /**
+     * Drops the gold holdings of many users with a single save.
+     * If the save fails the holdings are put back.
+     * @param userIds The users
+     * @return true if nothing was held or the change was saved
+     */
+    public synchronized boolean removeUsers(Collection<String> userIds) {
+        Map<String, ObservableList<Gold>> removed = new HashMap<>();
+        for (String userId : userIds) {
+            ObservableList<Gold> list = userGoldData.remove(userId);
+            if (list != null) {
+                removed.put(userId, list);
+            }
+        }
+        if (removed.isEmpty() || saveData()) {
+            return true;
+        }
+        userGoldData.putAll(removed);
+        return false;
+    }
+
+    /**
+     * Writes every user's gold holdings to disk in one save, e.g. after a revaluation
+     * @return true if the data was saved
+     */
+    public boolean save() {
+        return saveData();
+    }
+
     // Add this method to save data when the application closes
     public void shutdown() {
         LOGGER.info("Shutting down GoldDataService and saving data");
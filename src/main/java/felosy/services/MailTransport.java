@@ -0,0 +1,33 @@
+package felosy.services;
+
+import javax.mail.MessagingException;
+
+/**
+ * Something that can deliver emails: an SMTP server, or a stand-in for it.
+ * A connection is opened once per batch and used for every email in it.
+ */
+public interface MailTransport {
+
+    /**
+     * Opens a connection for sending a batch of emails
+     * @return The connection
+     * @throws MessagingException if the connection cannot be made
+     */
+    Connection connect() throws MessagingException;
+
+    /**
+     * An open connection
+     */
+    interface Connection extends AutoCloseable {
+
+        /**
+         * Sends one email
+         * @param email The email
+         * @throws MessagingException if this email could not be sent
+         */
+        void send(OutgoingEmail email) throws MessagingException;
+
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,416 @@
+package felosy.services;
+
+import felosy.assetmanagement.Instrument;
+import felosy.assetmanagement.InstrumentRegistry;
+import felosy.assetmanagement.Portfolio;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Local market data simulator.
+ * Moves the price of every registered instrument along a geometric Brownian
+ * motion path, records it as the instrument's last price in the registry
+ * and fans each tick out to subscribers. Every subscriber keeps
+ * only the latest price per instrument, so a slow subscriber sees fewer,
+ * fresher ticks instead of a growing backlog.
+ */
+public class MarketDataFeed {
+    private static final Logger LOGGER = Logger.getLogger(MarketDataFeed.class.getName());
+    private static final long PUBLISH_INTERVAL_MILLIS = 10;
+    // One simulated second of trading time per tick: 252 days of 6.5 hours
+    private static final double DEFAULT_TIME_STEP = 1.0 / (252 * 6.5 * 3600);
+
+    private final InstrumentRegistry registry;
+    private final int[] instrumentIds;
+    private final double[] prices;
+    private final double[] drifts;
+    private final double[] volatilities;
+    private final double timeStep;
+    private final SplittableRandom random;
+    private final int capacity;
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final ExecutorService deliveryExecutor;
+    private final ScheduledExecutorService scheduler;
+    private final LongAdder published = new LongAdder();
+
+    private volatile int ticksPerSecond;
+    private ScheduledFuture<?> publisher;
+    private double tickCarry;
+
+    /**
+     * Creates a feed over every instrument currently in the registry
+     * @param ticksPerSecond Target publish rate while started
+     * @param seed Random seed, so runs can be repeated
+     */
+    public MarketDataFeed(int ticksPerSecond, long seed) {
+        this(InstrumentRegistry.getInstance(), ticksPerSecond, DEFAULT_TIME_STEP, seed);
+    }
+
+    public MarketDataFeed(InstrumentRegistry registry, int ticksPerSecond, double timeStep, long seed) {
+        if (registry == null) {
+            throw new IllegalArgumentException("Registry cannot be null");
+        }
+        if (timeStep <= 0) {
+            throw new IllegalArgumentException("Time step must be positive");
+        }
+        setTicksPerSecond(ticksPerSecond);
+
+        int count = 0;
+        int size = registry.size();
+        int[] ids = new int[size];
+        double[] start = new double[size];
+        double[] vols = new double[size];
+        double[] annualDrifts = new double[size];
+        for (int id = 0; id < size; id++) {
+            Instrument instrument = registry.get(id);
+            BigDecimal reference = instrument.getReferencePrice();
+            if (reference == null || reference.signum() <= 0) {
+                continue;
+            }
+            ids[count] = id;
+            start[count] = reference.doubleValue();
+            vols[count] = instrument.getAssetClass().getDefaultVolatility();
+            annualDrifts[count] = instrument.getAssetClass().getDefaultDrift();
+            count++;
+        }
+        if (count == 0) {
+            throw new IllegalArgumentException("No priced instruments to simulate");
+        }
+
+        this.registry = registry;
+        this.instrumentIds = Arrays.copyOf(ids, count);
+        this.prices = Arrays.copyOf(start, count);
+        this.volatilities = Arrays.copyOf(vols, count);
+        this.drifts = Arrays.copyOf(annualDrifts, count);
+        this.timeStep = timeStep;
+        this.random = new SplittableRandom(seed);
+        this.capacity = size;
+
+        this.deliveryExecutor = Executors.newFixedThreadPool(
+                Math.max(1, Runtime.getRuntime().availableProcessors() - 1), daemon("market-data-delivery"));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(daemon("market-data-publisher"));
+    }
+
+    /**
+     * Starts publishing ticks at the configured rate
+     */
+    public synchronized void start() {
+        if (publisher != null) {
+            return;
+        }
+        publisher = scheduler.scheduleAtFixedRate(this::publishInterval,
+                0, PUBLISH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        LOGGER.info("Market data feed started at " + ticksPerSecond + " ticks/sec over "
+                + instrumentIds.length + " instruments");
+    }
+
+    /**
+     * Stops publishing; subscribers still receive ticks already queued for them
+     */
+    public synchronized void stop() {
+        if (publisher == null) {
+            return;
+        }
+        publisher.cancel(false);
+        publisher = null;
+        LOGGER.info("Market data feed stopped after " + published.sum() + " ticks");
+    }
+
+    /**
+     * Stops the feed and its threads for good
+     */
+    public void shutdown() {
+        stop();
+        scheduler.shutdown();
+        deliveryExecutor.shutdown();
+    }
+
+    public synchronized boolean isRunning() {
+        return publisher != null;
+    }
+
+    /**
+     * Generates and publishes ticks on the calling thread, e.g. for load tests
+     * @param count Number of ticks to generate
+     */
+    public void simulate(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Tick count cannot be negative");
+        }
+        generate(count);
+    }
+
+    /**
+     * Publishes an externally sourced price, e.g. from a replay file
+     * @param instrumentId The instrument ID
+     * @param price The unit price
+     */
+    public void publish(int instrumentId, double price) {
+        if (instrumentId < 0 || instrumentId >= capacity) {
+            throw new IllegalArgumentException("Unknown instrument ID: " + instrumentId);
+        }
+        if (!(price > 0)) {
+            throw new IllegalArgumentException("Price must be greater than 0");
+        }
+        fanOut(instrumentId, price, System.currentTimeMillis());
+    }
+
+    /**
+     * Subscribes a listener to every instrument
+     * @param listener Receives the latest price per instrument
+     * @return The subscription, used to cancel it and read its counters
+     */
+    public Subscription subscribe(TickListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener cannot be null");
+        }
+        Subscription subscription = new Subscription(listener, capacity, deliveryExecutor);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    /**
+     * Subscribes a portfolio so every tick reprices its holdings of that instrument
+     */
+    public Subscription subscribe(Portfolio portfolio) {
+        if (portfolio == null) {
+            throw new IllegalArgumentException("Portfolio cannot be null");
+        }
+        return subscribe((instrumentId, price, timestamp) ->
+                portfolio.applyPrice(registry.get(instrumentId).getSymbol(), BigDecimal.valueOf(price)));
+    }
+
+    /**
+     * Subscribes a quote cache so it always holds the latest simulated prices
+     */
+    public Subscription subscribe(QuoteCache quoteCache) {
+        if (quoteCache == null) {
+            throw new IllegalArgumentException("Quote cache cannot be null");
+        }
+        return subscribe((instrumentId, price, timestamp) ->
+                quoteCache.putQuote(instrumentId, BigDecimal.valueOf(price)));
+    }
+
+    public void unsubscribe(Subscription subscription) {
+        if (subscription != null) {
+            subscription.cancel();
+            subscriptions.remove(subscription);
+        }
+    }
+
+    /**
+     * Overrides the drift and volatility of one instrument
+     * @param instrumentId The instrument ID
+     * @param drift Annual drift, e.g. 0.05 for 5%
+     * @param volatility Annual volatility, e.g. 0.25 for 25%
+     */
+    public synchronized void setDynamics(int instrumentId, double drift, double volatility) {
+        if (volatility < 0) {
+            throw new IllegalArgumentException("Volatility cannot be negative");
+        }
+        for (int i = 0; i < instrumentIds.length; i++) {
+            if (instrumentIds[i] == instrumentId) {
+                drifts[i] = drift;
+                volatilities[i] = volatility;
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Instrument is not simulated: " + instrumentId);
+    }
+
+    public int getTicksPerSecond() {
+        return ticksPerSecond;
+    }
+
+    public void setTicksPerSecond(int ticksPerSecond) {
+        if (ticksPerSecond <= 0) {
+            throw new IllegalArgumentException("Ticks per second must be positive");
+        }
+        this.ticksPerSecond = ticksPerSecond;
+    }
+
+    public long getPublishedCount() {
+        return published.sum();
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    private void publishInterval() {
+        try {
+            double due = ticksPerSecond * (PUBLISH_INTERVAL_MILLIS / 1000.0) + tickCarry;
+            int count = (int) due;
+            tickCarry = due - count;
+            generate(count);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Error publishing market data", e);
+        }
+    }
+
+    /**
+     * Advances randomly chosen instruments one GBM step each and publishes them
+     */
+    private synchronized void generate(int count) {
+        double sqrtStep = Math.sqrt(timeStep);
+        long now = System.currentTimeMillis();
+        for (int n = 0; n < count; n++) {
+            int i = random.nextInt(instrumentIds.length);
+            double sigma = volatilities[i];
+            double shock = gaussian();
+            prices[i] *= Math.exp((drifts[i] - 0.5 * sigma * sigma) * timeStep + sigma * sqrtStep * shock);
+            fanOut(instrumentIds[i], prices[i], now);
+        }
+    }
+
+    private void fanOut(int instrumentId, double price, long timestamp) {
+        registry.markPrice(instrumentId, BigDecimal.valueOf(price));
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(instrumentId, price, timestamp);
+        }
+        published.increment();
+    }
+
+    /**
+     * Standard normal sample (Box-Muller); callers must hold the monitor
+     */
+    private double gaussian() {
+        double u1 = 1.0 - random.nextDouble();
+        double u2 = random.nextDouble();
+        return Math.sqrt(-2.0 * Math.log(u1)) * Math.cos(2.0 * Math.PI * u2);
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * One subscriber's view of the feed.
+     * Holds the latest price per instrument and a bitmap of instruments that
+     * changed since the last delivery. Publishing only overwrites the slot and
+     * sets the bit; a single drain task at a time delivers what is pending.
+     */
+    public static final class Subscription {
+        private final TickListener listener;
+        private final Executor executor;
+        private final AtomicLongArray latestPrices;
+        private final AtomicLongArray latestTimes;
+        private final AtomicLongArray pending;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final LongAdder offered = new LongAdder();
+        private final LongAdder delivered = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private volatile boolean cancelled;
+
+        private Subscription(TickListener listener, int capacity, Executor executor) {
+            this.listener = listener;
+            this.executor = executor;
+            this.latestPrices = new AtomicLongArray(capacity);
+            this.latestTimes = new AtomicLongArray(capacity);
+            this.pending = new AtomicLongArray((capacity + 63) >>> 6);
+        }
+
+        private void offer(int instrumentId, double price, long timestamp) {
+            if (cancelled) {
+                return;
+            }
+            latestPrices.set(instrumentId, Double.doubleToRawLongBits(price));
+            latestTimes.set(instrumentId, timestamp);
+            long bit = 1L << instrumentId;
+            int word = instrumentId >>> 6;
+            long previous = pending.getAndAccumulate(word, bit, (current, mask) -> current | mask);
+            offered.increment();
+            if ((previous & bit) == 0 && scheduled.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            do {
+                for (int word = 0; word < pending.length(); word++) {
+                    long bits = pending.getAndSet(word, 0L);
+                    while (bits != 0 && !cancelled) {
+                        int instrumentId = (word << 6) + Long.numberOfTrailingZeros(bits);
+                        bits &= bits - 1;
+                        deliver(instrumentId);
+                    }
+                }
+                scheduled.set(false);
+            } while (hasPending() && scheduled.compareAndSet(false, true));
+        }
+
+        private void deliver(int instrumentId) {
+            try {
+                listener.onTick(instrumentId,
+                        Double.longBitsToDouble(latestPrices.get(instrumentId)),
+                        latestTimes.get(instrumentId));
+                delivered.increment();
+            } catch (Exception e) {
+                failures.increment();
+                LOGGER.log(Level.FINE, "Subscriber failed on instrument " + instrumentId, e);
+            }
+        }
+
+        private boolean hasPending() {
+            for (int word = 0; word < pending.length(); word++) {
+                if (pending.get(word) != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * @return ticks published to this subscriber
+         */
+        public long getOfferedCount() {
+            return offered.sum();
+        }
+
+        /**
+         * @return ticks actually handed to the listener
+         */
+        public long getDeliveredCount() {
+            return delivered.sum();
+        }
+
+        /**
+         * @return ticks replaced by a newer price before they were delivered
+         */
+        public long getConflatedCount() {
+            return Math.max(0, offered.sum() - delivered.sum() - failures.sum());
+        }
+
+        public long getFailureCount() {
+            return failures.sum();
+        }
+    }
+}
@@ -0,0 +1,445 @@
+package felosy.services;
+
+import felosy.assetmanagement.Asset;
+import felosy.assetmanagement.Instrument;
+import felosy.assetmanagement.InstrumentRegistry;
+import felosy.assetmanagement.Portfolio;
+import felosy.assetmanagement.PortfolioSnapshot;
+import felosy.reporting.Prediction;
+import java.math.BigDecimal;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.logging.Logger;
+
+/**
+ * Monte Carlo forecasts of portfolio value.
+ * Each holding follows a geometric Brownian motion with its own drift and
+ * volatility, correlated through a Cholesky factor of the correlation matrix.
+ * Paths are split across a fork/join pool, each task with its own
+ * SplittableRandom and preallocated scratch arrays. Outcomes are binned into
+ * log-value histograms, so memory stays flat however many paths are run.
+ */
+public class MonteCarloForecastService {
+    private static final Logger LOGGER = Logger.getLogger(MonteCarloForecastService.class.getName());
+    private static final int DEFAULT_PATHS = 100_000;
+    private static final int BATCH_PATHS = 8_192;
+    private static final int MAX_CHECKPOINTS = 12;
+    private static final int HISTOGRAM_BINS = 4_096;
+    // Histograms cover growth factors from e^-6 to e^6
+    private static final double LOG_RANGE = 6.0;
+    private static final double DAYS_PER_YEAR = 365.0;
+    private static final double NON_TRADED_DRIFT = 0.03;
+    private static final double NON_TRADED_VOLATILITY = 0.10;
+    private static final double SAME_CLASS_CORRELATION = 0.6;
+    private static final double CROSS_CLASS_CORRELATION = 0.2;
+    private static final int[] PERCENTILES = {5, 25, 50, 75, 95};
+    private static final MonteCarloForecastService instance =
+            new MonteCarloForecastService(ForkJoinPool.commonPool());
+
+    private final ForkJoinPool pool;
+    private final Map<String, double[]> dynamics = new ConcurrentHashMap<>();
+    private final Map<String, Double> correlations = new ConcurrentHashMap<>();
+
+    public MonteCarloForecastService(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("Pool cannot be null");
+        }
+        this.pool = pool;
+    }
+
+    public static MonteCarloForecastService getInstance() {
+        return instance;
+    }
+
+    /**
+     * Forecasts a portfolio's value at a future date with the default number of paths
+     */
+    public Prediction forecast(Portfolio portfolio, Date targetDate) {
+        return forecast(portfolio, targetDate, DEFAULT_PATHS, System.nanoTime());
+    }
+
+    /**
+     * Forecasts a portfolio's value at a future date
+     * @param portfolio The portfolio to forecast
+     * @param targetDate The date to forecast to
+     * @param paths Number of simulated paths
+     * @param seed Random seed, so runs can be repeated
+     * @return A prediction holding percentile bands, the expected value and the probability of loss
+     */
+    public Prediction forecast(Portfolio portfolio, Date targetDate, int paths, long seed) {
+        if (portfolio == null || targetDate == null) {
+            throw new IllegalArgumentException("Portfolio and target date cannot be null");
+        }
+        if (paths <= 0) {
+            throw new IllegalArgumentException("Number of paths must be positive");
+        }
+        long now = System.currentTimeMillis();
+        double years = (targetDate.getTime() - now) / (DAYS_PER_YEAR * 24 * 60 * 60 * 1000);
+        if (years <= 0) {
+            throw new IllegalArgumentException("Target date must be in the future");
+        }
+
+        PortfolioSnapshot snapshot = portfolio.snapshot();
+        Model model = buildModel(snapshot);
+        if (model.size == 0) {
+            throw new IllegalArgumentException("Portfolio has no assets to forecast");
+        }
+
+        int checkpoints = (int) Math.max(1, Math.min(MAX_CHECKPOINTS, Math.round(years * 12)));
+        double stepYears = years / checkpoints;
+        long start = System.nanoTime();
+        Outcomes outcomes = pool.invoke(new SimulationTask(model, checkpoints, stepYears, paths, new SplittableRandom(seed)));
+        LOGGER.info("Simulated " + paths + " paths over " + model.size + " holdings in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+
+        return toPrediction(snapshot, model, outcomes, targetDate, now, paths);
+    }
+
+    /**
+     * Overrides the assumed drift and volatility of an instrument or of a
+     * non-traded asset type (e.g. "RealEstate")
+     * @param key Instrument symbol or asset class name
+     * @param drift Annual drift, e.g. 0.07 for 7%
+     * @param volatility Annual volatility, e.g. 0.25 for 25%
+     */
+    public void setDynamics(String key, double drift, double volatility) {
+        if (key == null || key.trim().isEmpty()) {
+            throw new IllegalArgumentException("Key cannot be null or empty");
+        }
+        if (volatility < 0) {
+            throw new IllegalArgumentException("Volatility cannot be negative");
+        }
+        dynamics.put(key.trim().toUpperCase(Locale.ROOT), new double[] {drift, volatility});
+    }
+
+    /**
+     * Overrides the assumed correlation between two holdings
+     * @param first Instrument symbol or asset class name
+     * @param second Instrument symbol or asset class name
+     * @param correlation Correlation between -1 and 1
+     */
+    public void setCorrelation(String first, String second, double correlation) {
+        if (first == null || second == null) {
+            throw new IllegalArgumentException("Keys cannot be null");
+        }
+        if (correlation < -1 || correlation > 1) {
+            throw new IllegalArgumentException("Correlation must be between -1 and 1");
+        }
+        correlations.put(pairKey(first.trim().toUpperCase(Locale.ROOT), second.trim().toUpperCase(Locale.ROOT)), correlation);
+    }
+
+    /**
+     * Groups the snapshot into one position per instrument (or per asset type
+     * for assets that do not trade) and factors their correlation matrix
+     */
+    private Model buildModel(PortfolioSnapshot snapshot) {
+        InstrumentRegistry registry = InstrumentRegistry.getInstance();
+        Map<String, double[]> positions = new LinkedHashMap<>();
+        Map<String, String> classes = new LinkedHashMap<>();
+        for (Asset asset : snapshot.getAssets()) {
+            BigDecimal value = snapshot.getAssetValue(asset.getAssetId());
+            if (value == null || value.signum() <= 0) {
+                continue;
+            }
+            String symbol = asset.getInstrumentSymbol();
+            Instrument instrument = symbol != null ? registry.get(symbol) : null;
+            String key = instrument != null ? instrument.getSymbol() : asset.getClass().getSimpleName().toUpperCase(Locale.ROOT);
+            double[] position = positions.computeIfAbsent(key, k -> {
+                double[] override = dynamics.get(k);
+                if (override != null) {
+                    return new double[] {0, override[0], override[1]};
+                }
+                return instrument != null
+                    ? new double[] {0, instrument.getAssetClass().getDefaultDrift(), instrument.getAssetClass().getDefaultVolatility()}
+                    : new double[] {0, NON_TRADED_DRIFT, NON_TRADED_VOLATILITY};
+            });
+            position[0] += value.doubleValue();
+            classes.putIfAbsent(key, instrument != null ? instrument.getAssetClass().name() : key);
+        }
+
+        int n = positions.size();
+        String[] labels = positions.keySet().toArray(new String[0]);
+        double[] values = new double[n];
+        double[] drifts = new double[n];
+        double[] volatilities = new double[n];
+        for (int i = 0; i < n; i++) {
+            double[] position = positions.get(labels[i]);
+            values[i] = position[0];
+            drifts[i] = position[1];
+            volatilities[i] = position[2];
+        }
+
+        double[] correlation = new double[n * n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (i == j) {
+                    correlation[i * n + j] = 1.0;
+                    continue;
+                }
+                Double override = correlations.get(pairKey(labels[i], labels[j]));
+                correlation[i * n + j] = override != null ? override
+                    : classes.get(labels[i]).equals(classes.get(labels[j])) ? SAME_CLASS_CORRELATION
+                    : CROSS_CLASS_CORRELATION;
+            }
+        }
+        return new Model(labels, values, drifts, volatilities, choleskyWithShrinkage(correlation, n));
+    }
+
+    /**
+     * Factors the correlation matrix, shrinking it toward the identity until
+     * it is positive definite if the given correlations are inconsistent
+     */
+    private static double[] choleskyWithShrinkage(double[] correlation, int n) {
+        double[] matrix = correlation.clone();
+        for (int attempt = 0; attempt < 20; attempt++) {
+            double[] factor = cholesky(matrix, n);
+            if (factor != null) {
+                return factor;
+            }
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    if (i != j) {
+                        matrix[i * n + j] *= 0.9;
+                    }
+                }
+            }
+        }
+        LOGGER.warning("Correlation matrix is not positive definite; simulating holdings independently");
+        double[] identity = new double[n * n];
+        for (int i = 0; i < n; i++) {
+            identity[i * n + i] = 1.0;
+        }
+        return identity;
+    }
+
+    /**
+     * @return lower-triangular factor L with L * L^T = matrix, or null if the matrix is not positive definite
+     */
+    private static double[] cholesky(double[] matrix, int n) {
+        double[] lower = new double[n * n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j <= i; j++) {
+                double sum = matrix[i * n + j];
+                for (int k = 0; k < j; k++) {
+                    sum -= lower[i * n + k] * lower[j * n + k];
+                }
+                if (i == j) {
+                    if (sum <= 0) {
+                        return null;
+                    }
+                    lower[i * n + i] = Math.sqrt(sum);
+                } else {
+                    lower[i * n + j] = sum / lower[j * n + j];
+                }
+            }
+        }
+        return lower;
+    }
+
+    private Prediction toPrediction(PortfolioSnapshot snapshot, Model model, Outcomes outcomes,
+                                    Date targetDate, long now, int paths) {
+        int last = outcomes.checkpoints - 1;
+        float p5 = (float) outcomes.percentile(last, 0.05, model.total);
+        float p95 = (float) outcomes.percentile(last, 0.95, model.total);
+        // Confidence is how tight the 90% band is relative to its level
+        float confidence = p95 + p5 > 0 ? Math.max(0f, Math.min(1f, 1f - (p95 - p5) / (p95 + p5))) : 0f;
+
+        Prediction prediction = new Prediction("MC-" + UUID.randomUUID().toString().substring(0, 8),
+                snapshot.getPortfolioId(), targetDate, confidence, "Monte Carlo");
+        prediction.addForecastValue("Current Value", (float) model.total);
+        prediction.addForecastValue("Expected Value", (float) (outcomes.sums[last] / paths));
+        for (int percentile : PERCENTILES) {
+            prediction.addForecastValue("P" + percentile,
+                    (float) outcomes.percentile(last, percentile / 100.0, model.total));
+        }
+        prediction.addForecastValue("Probability of Loss", (float) outcomes.losses / paths);
+
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+        for (int k = 0; k < last; k++) {
+            Date date = new Date(now + (targetDate.getTime() - now) * (k + 1) / outcomes.checkpoints);
+            String label = " on " + format.format(date);
+            prediction.addForecastValue("P5" + label, (float) outcomes.percentile(k, 0.05, model.total));
+            prediction.addForecastValue("P50" + label, (float) outcomes.percentile(k, 0.50, model.total));
+            prediction.addForecastValue("P95" + label, (float) outcomes.percentile(k, 0.95, model.total));
+        }
+
+        prediction.addAssumption(paths + " simulated paths of correlated geometric Brownian motion");
+        prediction.addAssumption("Values in " + snapshot.getCurrency());
+        for (int i = 0; i < model.size; i++) {
+            prediction.addAssumption(String.format("%s: drift %.1f%%, volatility %.1f%%",
+                    model.labels[i], model.drifts[i] * 100, model.volatilities[i] * 100));
+        }
+        return prediction;
+    }
+
+    private static String pairKey(String first, String second) {
+        return first.compareTo(second) <= 0 ? first + "|" + second : second + "|" + first;
+    }
+
+    /**
+     * Starting values and dynamics of each position, with the Cholesky factor of their correlations
+     */
+    private static final class Model {
+        private final String[] labels;
+        private final double[] values;
+        private final double[] drifts;
+        private final double[] volatilities;
+        private final double[] cholesky;
+        private final int size;
+        private final double total;
+
+        private Model(String[] labels, double[] values, double[] drifts, double[] volatilities, double[] cholesky) {
+            this.labels = labels;
+            this.values = values;
+            this.drifts = drifts;
+            this.volatilities = volatilities;
+            this.cholesky = cholesky;
+            this.size = labels.length;
+            this.total = Arrays.stream(values).sum();
+        }
+    }
+
+    /**
+     * Histogram of log growth per checkpoint, plus sums for the mean and a loss count
+     */
+    private static final class Outcomes {
+        private final int checkpoints;
+        private final long[] histogram;
+        private final double[] sums;
+        private long losses;
+
+        private Outcomes(int checkpoints) {
+            this.checkpoints = checkpoints;
+            this.histogram = new long[checkpoints * HISTOGRAM_BINS];
+            this.sums = new double[checkpoints];
+        }
+
+        private void record(int checkpoint, double value, double startValue) {
+            double growth = value > 0 ? Math.log(value / startValue) : -LOG_RANGE;
+            int bin = (int) ((growth + LOG_RANGE) / (2 * LOG_RANGE) * HISTOGRAM_BINS);
+            bin = Math.max(0, Math.min(HISTOGRAM_BINS - 1, bin));
+            histogram[checkpoint * HISTOGRAM_BINS + bin]++;
+            sums[checkpoint] += value;
+        }
+
+        private Outcomes merge(Outcomes other) {
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] += other.histogram[i];
+            }
+            for (int k = 0; k < checkpoints; k++) {
+                sums[k] += other.sums[k];
+            }
+            losses += other.losses;
+            return this;
+        }
+
+        /**
+         * Reads a percentile off the histogram, interpolating within the bin
+         */
+        private double percentile(int checkpoint, double quantile, double startValue) {
+            int offset = checkpoint * HISTOGRAM_BINS;
+            long total = 0;
+            for (int bin = 0; bin < HISTOGRAM_BINS; bin++) {
+                total += histogram[offset + bin];
+            }
+            double target = quantile * total;
+            long cumulative = 0;
+            double binWidth = 2 * LOG_RANGE / HISTOGRAM_BINS;
+            for (int bin = 0; bin < HISTOGRAM_BINS; bin++) {
+                long count = histogram[offset + bin];
+                if (count > 0 && cumulative + count >= target) {
+                    double fraction = (target - cumulative) / count;
+                    double growth = -LOG_RANGE + (bin + fraction) * binWidth;
+                    return startValue * Math.exp(growth);
+                }
+                cumulative += count;
+            }
+            return startValue * Math.exp(LOG_RANGE);
+        }
+    }
+
+    /**
+     * Halves the path count until it fits in a batch, giving each half its
+     * own split of the random generator, then simulates the batch
+     */
+    private static final class SimulationTask extends RecursiveTask<Outcomes> {
+        private static final long serialVersionUID = 1L;
+
+        private final Model model;
+        private final int checkpoints;
+        private final double stepYears;
+        private final int paths;
+        private final SplittableRandom random;
+
+        private SimulationTask(Model model, int checkpoints, double stepYears, int paths, SplittableRandom random) {
+            this.model = model;
+            this.checkpoints = checkpoints;
+            this.stepYears = stepYears;
+            this.paths = paths;
+            this.random = random;
+        }
+
+        @Override
+        protected Outcomes compute() {
+            if (paths <= BATCH_PATHS) {
+                return simulate();
+            }
+            int half = paths / 2;
+            SimulationTask left = new SimulationTask(model, checkpoints, stepYears, half, random.split());
+            left.fork();
+            Outcomes right = new SimulationTask(model, checkpoints, stepYears, paths - half, random).compute();
+            return right.merge(left.join());
+        }
+
+        private Outcomes simulate() {
+            int n = model.size;
+            double[] values = model.values;
+            double[] lower = model.cholesky;
+            double[] driftStep = new double[n];
+            double[] volatilityStep = new double[n];
+            for (int i = 0; i < n; i++) {
+                double sigma = model.volatilities[i];
+                driftStep[i] = (model.drifts[i] - 0.5 * sigma * sigma) * stepYears;
+                volatilityStep[i] = sigma * Math.sqrt(stepYears);
+            }
+
+            // Scratch space reused by every path in the batch
+            double[] shocks = new double[n];
+            double[] logGrowth = new double[n];
+            Outcomes outcomes = new Outcomes(checkpoints);
+            for (int path = 0; path < paths; path++) {
+                Arrays.fill(logGrowth, 0.0);
+                double total = model.total;
+                for (int k = 0; k < checkpoints; k++) {
+                    for (int i = 0; i < n; i++) {
+                        shocks[i] = random.nextGaussian();
+                    }
+                    total = 0.0;
+                    for (int i = 0; i < n; i++) {
+                        double correlated = 0.0;
+                        int row = i * n;
+                        for (int j = 0; j <= i; j++) {
+                            correlated += lower[row + j] * shocks[j];
+                        }
+                        logGrowth[i] += driftStep[i] + volatilityStep[i] * correlated;
+                        total += values[i] * Math.exp(logGrowth[i]);
+                    }
+                    outcomes.record(k, total, model.total);
+                }
+                if (total < model.total) {
+                    outcomes.losses++;
+                }
+            }
+            return outcomes;
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package felosy.services;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Bounded store of one-time passwords, one per email address.
+ * Every code lives for the same time, so codes expire in the order they were
+ * issued: a queue in issue order lets the background sweep and the eviction
+ * of the oldest codes stop at the first entry that is still valid. Codes that
+ * were replaced, used or discarded stay in the queue until they reach its head,
+ * so the queue is purged of them whenever it grows to twice the size limit.
+ * Wrong guesses are counted per email over the lifetime of its first code:
+ * requesting a new code keeps the count, so a locked-out address stays locked
+ * until that window ends.
+ */
+public class OtpStore {
+    private static final Logger LOGGER = Logger.getLogger(OtpStore.class.getName());
+    private static final int DEFAULT_LENGTH = 6;
+    private static final long DEFAULT_TTL_MILLIS = 5 * 60_000L;
+    private static final int DEFAULT_MAX_ENTRIES = 10_000;
+    private static final int DEFAULT_MAX_ATTEMPTS = 5;
+    private static final long SWEEP_INTERVAL_MILLIS = 10_000;
+    // Rough heap cost of one code (map node, entry and key string) and of one queue node
+    private static final int ESTIMATED_ENTRY_BYTES = 224;
+    private static final int ESTIMATED_QUEUE_NODE_BYTES = 32;
+    private static final OtpStore instance =
+            new OtpStore(DEFAULT_LENGTH, DEFAULT_TTL_MILLIS, DEFAULT_MAX_ENTRIES, DEFAULT_MAX_ATTEMPTS);
+
+    /**
+     * Outcome of checking a code
+     */
+    public enum Result {
+        VERIFIED,
+        INVALID,
+        EXPIRED,
+        NOT_FOUND,
+        TOO_MANY_ATTEMPTS
+    }
+
+    private final int length;
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final int maxAttempts;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry> issueOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final ScheduledExecutorService sweeper;
+    private final LongAdder issued = new LongAdder();
+    private final LongAdder verified = new LongAdder();
+    private final LongAdder failedAttempts = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder lockedOut = new LongAdder();
+
+    /**
+     * Creates a store
+     * @param length Number of digits in a code
+     * @param ttlMillis How long a code stays valid
+     * @param maxEntries Most codes kept at once; the oldest are evicted beyond that
+     * @param maxAttempts Wrong guesses allowed before a code is discarded
+     */
+    public OtpStore(int length, long ttlMillis, int maxEntries, int maxAttempts) {
+        if (length <= 0 || ttlMillis <= 0 || maxEntries <= 0 || maxAttempts <= 0) {
+            throw new IllegalArgumentException("OTP store limits must be positive");
+        }
+        this.length = length;
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+        this.maxAttempts = maxAttempts;
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "otp-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.min(SWEEP_INTERVAL_MILLIS, ttlMillis);
+        sweeper.scheduleAtFixedRate(this::sweepExpired, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public static OtpStore getInstance() {
+        return instance;
+    }
+
+    /**
+     * Issues a new code for an email address, replacing any earlier one
+     * @param email The email address
+     * @return The code
+     */
+    public String issue(String email) {
+        String key = normalize(email);
+        StringBuilder code = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            code.append(secureRandom.nextInt(10));
+        }
+        long now = System.nanoTime();
+        long expiresAt = now + TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        Entry previous = entries.get(key);
+        Entry entry = previous != null && now - previous.attemptsResetAt < 0
+            // Keep counting wrong guesses for this email across new codes
+            ? new Entry(key, code.toString(), expiresAt, previous.attemptsResetAt, previous.attempts.get())
+            : new Entry(key, code.toString(), expiresAt);
+        if (previous == null) {
+            makeRoom();
+        }
+        entries.put(key, entry);
+        issueOrder.add(entry);
+        if (queued.incrementAndGet() > 2 * maxEntries) {
+            purgeStale();
+        }
+        issued.increment();
+        return entry.code;
+    }
+
+    /**
+     * Checks a code; a correct code is consumed
+     * @param email The email address
+     * @param code The code entered
+     * @return The outcome
+     */
+    public Result verify(String email, String code) {
+        String key = normalize(email);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return Result.NOT_FOUND;
+        }
+        if (entry.isExpired(System.nanoTime())) {
+            if (entries.remove(key, entry)) {
+                expired.increment();
+            }
+            return Result.EXPIRED;
+        }
+        if (entry.attempts.get() >= maxAttempts) {
+            return Result.TOO_MANY_ATTEMPTS;
+        }
+        if (code != null && MessageDigest.isEqual(entry.code.getBytes(StandardCharsets.US_ASCII),
+                code.getBytes(StandardCharsets.US_ASCII))) {
+            if (entries.remove(key, entry)) {
+                verified.increment();
+                return Result.VERIFIED;
+            }
+            // Consumed or replaced by a concurrent call
+            return Result.NOT_FOUND;
+        }
+        failedAttempts.increment();
+        int attempts = entry.attempts.incrementAndGet();
+        if (attempts < maxAttempts) {
+            return Result.INVALID;
+        }
+        if (attempts == maxAttempts) {
+            // The locked entry stays, so a new code for this email inherits the count
+            lockedOut.increment();
+        }
+        return Result.TOO_MANY_ATTEMPTS;
+    }
+
+    /**
+     * Discards the code of an email address, e.g. when it could not be sent
+     * @param email The email address
+     */
+    public void invalidate(String email) {
+        entries.remove(normalize(email));
+    }
+
+    /**
+     * Removes every expired code
+     * @return Number of codes removed
+     */
+    public synchronized int sweepExpired() {
+        long now = System.nanoTime();
+        int removed = 0;
+        Entry head;
+        while ((head = issueOrder.peek()) != null && (head.isExpired(now) || entries.get(head.key) != head)) {
+            if (issueOrder.remove(head)) {
+                queued.decrementAndGet();
+                if (entries.remove(head.key, head)) {
+                    removed++;
+                }
+            }
+        }
+        if (removed > 0) {
+            expired.add(removed);
+            LOGGER.fine("Expired " + removed + " one-time passwords");
+        }
+        return removed;
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Approximate heap used by the stored codes
+     */
+    public long getEstimatedMemoryBytes() {
+        return (long) entries.size() * ESTIMATED_ENTRY_BYTES + (long) queued.get() * ESTIMATED_QUEUE_NODE_BYTES;
+    }
+
+    public long getIssuedCount() {
+        return issued.sum();
+    }
+
+    public long getVerifiedCount() {
+        return verified.sum();
+    }
+
+    public long getFailedAttemptCount() {
+        return failedAttempts.sum();
+    }
+
+    public long getExpiredCount() {
+        return expired.sum();
+    }
+
+    public long getEvictedCount() {
+        return evicted.sum();
+    }
+
+    public long getLockedOutCount() {
+        return lockedOut.sum();
+    }
+
+    /**
+     * Stops the background sweep
+     */
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * Drops expired codes, then the oldest live ones, until a new code fits
+     */
+    private synchronized void makeRoom() {
+        if (entries.size() < maxEntries) {
+            return;
+        }
+        sweepExpired();
+        Entry oldest;
+        while (entries.size() >= maxEntries && (oldest = issueOrder.poll()) != null) {
+            queued.decrementAndGet();
+            if (entries.remove(oldest.key, oldest)) {
+                evicted.increment();
+            }
+        }
+    }
+
+    /**
+     * Drops queue entries whose code was replaced, used or discarded.
+     * Runs once the queue is twice the size limit; at most the limit of its
+     * entries can still be live, so each purge frees at least as many as it keeps.
+     * Removals from the queue are synchronized so the queued count stays exact.
+     */
+    private synchronized void purgeStale() {
+        int purged = 0;
+        for (Iterator<Entry> iterator = issueOrder.iterator(); iterator.hasNext(); ) {
+            Entry entry = iterator.next();
+            if (entries.get(entry.key) != entry) {
+                iterator.remove();
+                purged++;
+            }
+        }
+        queued.addAndGet(-purged);
+    }
+
+    private static String normalize(String email) {
+        if (email == null) {
+            throw new IllegalArgumentException("Email cannot be null");
+        }
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * A code and its state
+     */
+    private static final class Entry {
+        private final String key;
+        private final String code;
+        private final long expiresAt;
+        private final long attemptsResetAt;
+        private final AtomicInteger attempts;
+
+        private Entry(String key, String code, long expiresAt) {
+            this(key, code, expiresAt, expiresAt, 0);
+        }
+
+        private Entry(String key, String code, long expiresAt, long attemptsResetAt, int attempts) {
+            this.key = key;
+            this.code = code;
+            this.expiresAt = expiresAt;
+            this.attemptsResetAt = attemptsResetAt;
+            this.attempts = new AtomicInteger(attempts);
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiresAt > 0;
+        }
+    }
+}
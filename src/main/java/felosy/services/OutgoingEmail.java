@@ -0,0 +1,151 @@
+package felosy.services;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An email waiting in the {@link EmailQueue}, with its delivery attempts.
+ * It becomes due for sending at its next attempt time. An email can carry a
+ * send-by deadline, after which it is dropped instead of delivered.
+ */
+public class OutgoingEmail implements Serializable, Delayed {
+    private static final long serialVersionUID = 1L;
+
+    private final String emailId;
+    private final String to;
+    private final String subject;
+    private final String body;
+    private final boolean html;
+    private final List<String> attachmentPaths;
+    private final long createdAt;
+    private int attempts;
+    private long nextAttemptAt;
+    private long sendBy; // 0 when the email has no deadline
+    private String lastError;
+
+    /**
+     * Creates an email
+     * @param to Recipient address
+     * @param subject Subject line
+     * @param body Plain text or HTML body
+     * @param html Whether the body is HTML
+     * @param attachments Files to attach, read when the email is sent
+     */
+    public OutgoingEmail(String to, String subject, String body, boolean html, File... attachments) {
+        if (to == null || to.trim().isEmpty()) {
+            throw new IllegalArgumentException("Recipient cannot be empty");
+        }
+        if (subject == null || body == null) {
+            throw new IllegalArgumentException("Subject and body cannot be null");
+        }
+        this.emailId = UUID.randomUUID().toString();
+        this.to = to;
+        this.subject = subject;
+        this.body = body;
+        this.html = html;
+        List<String> paths = new ArrayList<>();
+        for (File attachment : attachments) {
+            paths.add(attachment.getAbsolutePath());
+        }
+        this.attachmentPaths = paths;
+        this.createdAt = System.currentTimeMillis();
+        this.nextAttemptAt = createdAt;
+    }
+
+    /**
+     * Records a failed delivery and when to try again
+     * @param error What went wrong
+     * @param retryAt Time of the next attempt
+     */
+    synchronized void recordFailure(String error, long retryAt) {
+        attempts++;
+        lastError = error;
+        nextAttemptAt = retryAt;
+    }
+
+    /**
+     * Sets the time after which the email is no longer worth sending
+     * @param sendBy Deadline in epoch milliseconds, or 0 for none
+     */
+    public synchronized void setSendBy(long sendBy) {
+        if (sendBy < 0) {
+            throw new IllegalArgumentException("Deadline cannot be negative");
+        }
+        this.sendBy = sendBy;
+    }
+
+    /**
+     * @return true if the email has a deadline that has passed by the given time
+     */
+    public synchronized boolean isExpired(long now) {
+        return sendBy > 0 && now > sendBy;
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+        return unit.convert(nextAttemptAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+        if (other instanceof OutgoingEmail) {
+            return Long.compare(nextAttemptAt, ((OutgoingEmail) other).nextAttemptAt);
+        }
+        return Long.compare(getDelay(TimeUnit.MILLISECONDS), other.getDelay(TimeUnit.MILLISECONDS));
+    }
+
+    // Getters
+    public String getEmailId() {
+        return emailId;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public boolean isHtml() {
+        return html;
+    }
+
+    public List<File> getAttachments() {
+        List<File> files = new ArrayList<>(attachmentPaths.size());
+        for (String path : attachmentPaths) {
+            files.add(new File(path));
+        }
+        return Collections.unmodifiableList(files);
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public synchronized int getAttempts() {
+        return attempts;
+    }
+
+    public synchronized long getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public synchronized long getSendBy() {
+        return sendBy;
+    }
+
+    public synchronized String getLastError() {
+        return lastError;
+    }
+}
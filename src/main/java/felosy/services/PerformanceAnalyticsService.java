@@ -0,0 +1,315 @@
+package felosy.services;
+
+import felosy.assetmanagement.Asset;
+import felosy.assetmanagement.FxRateTable;
+import felosy.assetmanagement.Portfolio;
+import felosy.assetmanagement.PortfolioSnapshot;
+import felosy.assetmanagement.Stock;
+import felosy.reporting.FinancialInsight;
+import felosy.reporting.PerformanceTracker;
+import felosy.storage.DataStorage;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Tracks time- and money-weighted performance of portfolios and their assets.
+ * Each call to {@link #markPortfolio} folds one daily valuation into streaming
+ * trackers, picking up new stock trades and added or removed assets as cash
+ * flows, so a mark costs the same no matter how long the history is.
+ * Values are in each portfolio's reporting currency.
+ */
+public class PerformanceAnalyticsService {
+    private static final Logger LOGGER = Logger.getLogger(PerformanceAnalyticsService.class.getName());
+    private static final PerformanceAnalyticsService instance =
+            new PerformanceAnalyticsService(ForkJoinPool.commonPool());
+
+    private final ForkJoinPool pool;
+    private final Map<String, PortfolioPerformance> performances = new ConcurrentHashMap<>();
+
+    public PerformanceAnalyticsService(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("Pool cannot be null");
+        }
+        this.pool = pool;
+    }
+
+    public static PerformanceAnalyticsService getInstance() {
+        return instance;
+    }
+
+    /**
+     * Records today's valuation of a portfolio
+     * @param portfolio The portfolio to mark
+     * @return The portfolio's tracker after the mark
+     */
+    public PerformanceTracker markPortfolio(Portfolio portfolio) {
+        return markPortfolio(portfolio, LocalDate.now());
+    }
+
+    /**
+     * Records the valuation of a portfolio at the end of a day
+     * @param portfolio The portfolio to mark
+     * @param date The valuation date
+     * @return The portfolio's tracker after the mark
+     */
+    public PerformanceTracker markPortfolio(Portfolio portfolio, LocalDate date) {
+        if (portfolio == null || date == null) {
+            throw new IllegalArgumentException("Portfolio and date cannot be null");
+        }
+        PortfolioPerformance performance =
+                performances.computeIfAbsent(portfolio.getPortfolioId(), id -> new PortfolioPerformance());
+        return performance.mark(portfolio.snapshot(), date, FxRateTable.getInstance().getRates());
+    }
+
+    /**
+     * Marks many portfolios in parallel
+     * @param portfolios The portfolios to mark
+     * @param date The valuation date
+     * @return Number of portfolios marked successfully
+     */
+    public int markAll(Collection<Portfolio> portfolios, LocalDate date) {
+        if (portfolios == null || date == null) {
+            throw new IllegalArgumentException("Portfolios and date cannot be null");
+        }
+        AtomicInteger marked = new AtomicInteger();
+        long start = System.nanoTime();
+        pool.submit(() -> portfolios.parallelStream().forEach(portfolio -> {
+            try {
+                markPortfolio(portfolio, date);
+                marked.incrementAndGet();
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Failed to mark portfolio " + portfolio.getPortfolioId(), e);
+            }
+        })).join();
+        LOGGER.info("Marked " + marked.get() + " portfolios in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return marked.get();
+    }
+
+    /**
+     * Marks every cached portfolio for today, including unsaved changes
+     * @return Number of portfolios marked successfully
+     */
+    public int markAllPortfolios() {
+        return markAll(DataStorage.loadCachedPortfolios(), LocalDate.now());
+    }
+
+    /**
+     * Rebuilds a portfolio's performance from a historical valuation series.
+     * Stock trades on each date are taken as the day's cash flows; other assets
+     * count as contributed at their purchase price on their purchase date.
+     * @param portfolio The portfolio
+     * @param dailyValues Portfolio value per day in its reporting currency
+     * @return The rebuilt tracker
+     */
+    public PerformanceTracker loadHistory(Portfolio portfolio, SortedMap<LocalDate, BigDecimal> dailyValues) {
+        if (portfolio == null || dailyValues == null || dailyValues.isEmpty()) {
+            throw new IllegalArgumentException("Portfolio and valuation history cannot be null or empty");
+        }
+
+        FxRateTable.Rates rates = FxRateTable.getInstance().getRates();
+        String currency = portfolio.getReportingCurrency();
+        LocalDate firstDay = dailyValues.firstKey();
+        PortfolioPerformance performance = new PortfolioPerformance();
+        PerformanceTracker tracker = performance.portfolio;
+        Map<LocalDate, Double> flowsByDay = new HashMap<>();
+        for (Asset asset : portfolio.getAssets()) {
+            for (Map.Entry<LocalDate, Double> flow : historicalFlows(asset, rates, currency).entrySet()) {
+                if (flow.getKey().isAfter(firstDay)) {
+                    flowsByDay.merge(flow.getKey(), flow.getValue(), Double::sum);
+                } else {
+                    // Money put in before the series starts only matters to the XIRR
+                    tracker.recordFlow(flow.getKey(), flow.getValue());
+                }
+            }
+            performance.track(asset, rates, currency);
+        }
+
+        for (Map.Entry<LocalDate, BigDecimal> entry : dailyValues.entrySet()) {
+            LocalDate day = entry.getKey();
+            tracker.mark(day, entry.getValue().doubleValue(), flowsByDay.getOrDefault(day, 0.0));
+        }
+
+        performances.put(portfolio.getPortfolioId(), performance);
+        return tracker;
+    }
+
+    /**
+     * @return the portfolio's tracker, or null if it has never been marked
+     */
+    public PerformanceTracker getPortfolioTracker(String portfolioId) {
+        PortfolioPerformance performance = performances.get(portfolioId);
+        return performance != null ? performance.portfolio : null;
+    }
+
+    /**
+     * @return the asset's tracker within a portfolio, or null if it has never been marked
+     */
+    public PerformanceTracker getAssetTracker(String portfolioId, String assetId) {
+        PortfolioPerformance performance = performances.get(portfolioId);
+        if (performance == null) {
+            return null;
+        }
+        synchronized (performance) {
+            AssetState state = performance.assets.get(assetId);
+            return state != null ? state.tracker : null;
+        }
+    }
+
+    /**
+     * Summarizes a portfolio's performance as a financial insight
+     * @param portfolioId The portfolio
+     * @return The insight, or null if the portfolio has never been marked
+     */
+    public FinancialInsight createInsight(String portfolioId) {
+        PortfolioPerformance performance = performances.get(portfolioId);
+        if (performance == null) {
+            return null;
+        }
+
+        FinancialInsight insight = new FinancialInsight("PERF-" + UUID.randomUUID().toString().substring(0, 8), portfolioId);
+        synchronized (performance) {
+            PerformanceTracker tracker = performance.portfolio;
+            double volatility = tracker.getVolatility();
+            insight.addMetric("Time-Weighted Return", tracker.getTimeWeightedReturn());
+            insight.addMetric("Annualized Return", tracker.getAnnualizedReturn());
+            insight.addMetric("Money-Weighted Return (XIRR)", tracker.getXirr());
+            insight.addMetric("Max Drawdown", tracker.getMaxDrawdown());
+            insight.addMetric("Current Drawdown", tracker.getCurrentDrawdown());
+            insight.addMetric("Volatility", volatility);
+            insight.setRiskLevel(volatility < 0.10 ? FinancialInsight.RiskLevel.LOW
+                    : volatility < 0.25 ? FinancialInsight.RiskLevel.MEDIUM
+                    : FinancialInsight.RiskLevel.HIGH);
+            // A year of daily marks gives full confidence in the statistics
+            insight.setConfidenceScore(Math.min(1.0, tracker.getMarkCount() / 252.0));
+            if (tracker.getMaxDrawdown() > 0.20) {
+                insight.addRecommendation("Drawdowns above 20% suggest reviewing diversification");
+            }
+        }
+        return insight;
+    }
+
+    public void reset(String portfolioId) {
+        performances.remove(portfolioId);
+    }
+
+    /**
+     * Converts an asset's past purchases and sales to dated cash flows
+     */
+    private static Map<LocalDate, Double> historicalFlows(Asset asset, FxRateTable.Rates rates, String currency) {
+        Map<LocalDate, Double> flows = new HashMap<>();
+        if (asset instanceof Stock stock) {
+            for (Stock.Transaction transaction : stock.getTransactionsSince(0)) {
+                double value = convert(transaction.getTransactionValue(), asset, rates, currency);
+                flows.merge(transaction.getDate(), transaction.isBuy() ? value : -value, Double::sum);
+            }
+        } else if (asset.getPurchasePrice() != null && asset.getPurchaseDate() != null) {
+            LocalDate purchaseDate = asset.getPurchaseDate().toInstant()
+                    .atZone(ZoneId.systemDefault()).toLocalDate();
+            flows.put(purchaseDate, convert(asset.getPurchasePrice(), asset, rates, currency));
+        }
+        return flows;
+    }
+
+    private static double convert(BigDecimal amount, Asset asset, FxRateTable.Rates rates, String currency) {
+        return rates.convert(amount, asset.getCurrency(), currency).doubleValue();
+    }
+
+    /**
+     * Per-asset tracker plus how many of a stock's trades it has already seen
+     */
+    private static final class AssetState {
+        private final PerformanceTracker tracker = new PerformanceTracker();
+        private int seenTransactions;
+    }
+
+    /**
+     * Trackers for one portfolio and its assets; marks are serialized on the instance
+     */
+    private static final class PortfolioPerformance {
+        private final PerformanceTracker portfolio = new PerformanceTracker();
+        private final Map<String, AssetState> assets = new HashMap<>();
+
+        /**
+         * Starts tracking an asset, replaying its purchase history so its XIRR starts at the real dates
+         * @return Flows replayed, by date
+         */
+        private Map<LocalDate, Double> track(Asset asset, FxRateTable.Rates rates, String currency) {
+            AssetState state = new AssetState();
+            Map<LocalDate, Double> flows = historicalFlows(asset, rates, currency);
+            for (Map.Entry<LocalDate, Double> flow : flows.entrySet()) {
+                state.tracker.recordFlow(flow.getKey(), flow.getValue());
+            }
+            if (asset instanceof Stock stock) {
+                state.seenTransactions = stock.getTransactionCount();
+            }
+            assets.put(asset.getAssetId(), state);
+            return flows;
+        }
+
+        private synchronized PerformanceTracker mark(PortfolioSnapshot snapshot, LocalDate date,
+                                                     FxRateTable.Rates rates) {
+            String currency = snapshot.getCurrency();
+            boolean firstMark = portfolio.getMarkCount() == 0;
+            double portfolioFlow = 0;
+            Set<String> present = new HashSet<>();
+
+            for (Asset asset : snapshot.getAssets()) {
+                String assetId = asset.getAssetId();
+                present.add(assetId);
+                BigDecimal recorded = snapshot.getAssetValue(assetId);
+                double value = recorded != null ? recorded.doubleValue() : 0.0;
+
+                AssetState state = assets.get(assetId);
+                double assetFlow = 0;
+                if (state == null) {
+                    Map<LocalDate, Double> flows = track(asset, rates, currency);
+                    state = assets.get(assetId);
+                    if (firstMark) {
+                        flows.forEach(portfolio::recordFlow);
+                    } else {
+                        // An asset joining an existing portfolio is money moving in at today's value
+                        portfolioFlow += value;
+                    }
+                } else if (asset instanceof Stock stock) {
+                    List<Stock.Transaction> trades = stock.getTransactionsSince(state.seenTransactions);
+                    for (Stock.Transaction trade : trades) {
+                        double amount = convert(trade.getTransactionValue(), asset, rates, currency);
+                        assetFlow += trade.isBuy() ? amount : -amount;
+                    }
+                    state.seenTransactions += trades.size();
+                    portfolioFlow += assetFlow;
+                }
+                state.tracker.mark(date, value, assetFlow);
+            }
+
+            // Assets that left the portfolio are money moving out at their last value
+            Iterator<Map.Entry<String, AssetState>> iterator = assets.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, AssetState> entry = iterator.next();
+                if (!present.contains(entry.getKey())) {
+                    portfolioFlow -= entry.getValue().tracker.getLastValue();
+                    iterator.remove();
+                }
+            }
+
+            portfolio.mark(date, snapshot.getNetWorth().doubleValue(), portfolioFlow);
+            return portfolio;
+        }
+    }
+}
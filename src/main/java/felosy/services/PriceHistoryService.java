@@ -0,0 +1,279 @@
+package felosy.services;
+
+import felosy.assetmanagement.InstrumentRegistry;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Daily closing prices per instrument.
+ * Series are stored as parallel primitive arrays indexed by instrument ID
+ * and can be aligned onto a shared calendar as a {@link ReturnMatrix}.
+ * History is loaded from data/prices/SYMBOL.csv files with the columns
+ * date,close and can be extended at runtime, e.g. from the market data feed.
+ */
+public class PriceHistoryService {
+    private static final Logger LOGGER = Logger.getLogger(PriceHistoryService.class.getName());
+    private static final String PRICES_DIR = "data/prices";
+    private static final PriceHistoryService instance = new PriceHistoryService();
+
+    private volatile Series[] series = new Series[128];
+
+    private PriceHistoryService() {
+        Path dir = Paths.get(PRICES_DIR);
+        if (Files.isDirectory(dir)) {
+            try {
+                int count = load(dir);
+                LOGGER.info("Loaded price history for " + count + " instruments from " + PRICES_DIR);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not load price history from " + PRICES_DIR, e);
+            }
+        }
+    }
+
+    public static PriceHistoryService getInstance() {
+        return instance;
+    }
+
+    /**
+     * Records the closing price of an instrument on a day, replacing any earlier close for that day
+     * @param instrumentId The instrument ID
+     * @param date The trading day
+     * @param close The closing price
+     */
+    public void recordClose(int instrumentId, LocalDate date, double close) {
+        if (date == null) {
+            throw new IllegalArgumentException("Date cannot be null");
+        }
+        if (!(close > 0)) {
+            throw new IllegalArgumentException("Closing price must be greater than 0");
+        }
+        seriesFor(instrumentId).put(Math.toIntExact(date.toEpochDay()), close);
+    }
+
+    public void recordClose(String symbol, LocalDate date, double close) {
+        recordClose(InstrumentRegistry.getInstance().intern(symbol), date, close);
+    }
+
+    /**
+     * @return number of closes stored for the instrument
+     */
+    public int getObservationCount(int instrumentId) {
+        Series current = peek(instrumentId);
+        return current != null ? current.size() : 0;
+    }
+
+    /**
+     * Loads every SYMBOL.csv file in a directory
+     * @param dir Directory of price files
+     * @return Number of files loaded
+     * @throws IOException if the directory cannot be listed
+     */
+    public int load(Path dir) throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.csv")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String symbol = name.substring(0, name.length() - ".csv".length());
+                try {
+                    loadFile(symbol, file);
+                    count++;
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Skipping price file " + file, e);
+                }
+            }
+        }
+        return count;
+    }
+
+    private void loadFile(String symbol, Path file) throws IOException {
+        int instrumentId = InstrumentRegistry.getInstance().intern(symbol);
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#") || line.startsWith("date,")) {
+                    continue;
+                }
+                String[] fields = line.split(",");
+                recordClose(instrumentId, LocalDate.parse(fields[0].trim()), Double.parseDouble(fields[1].trim()));
+            }
+        }
+    }
+
+    /**
+     * Aligns the instruments' closes onto the days any of them traded and
+     * turns them into daily log returns. The window is cut to the range every
+     * included instrument has closes for, so no instrument is given returns
+     * from before its first close or after its last. Gaps inside that range
+     * are filled with the previous close, so a missing day counts as a zero return.
+     * @param instrumentIds Instruments to include; those with fewer than two closes in the window are dropped
+     * @param from First day of the window
+     * @param to Last day of the window
+     * @return The aligned returns, one row per instrument
+     */
+    public ReturnMatrix getReturns(int[] instrumentIds, LocalDate from, LocalDate to) {
+        if (instrumentIds == null || from == null || to == null) {
+            throw new IllegalArgumentException("Instruments and window cannot be null");
+        }
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("Window end cannot be before its start");
+        }
+        int startDay = Math.toIntExact(from.toEpochDay());
+        int endDay = Math.toIntExact(to.toEpochDay());
+
+        // Snapshot each series once so concurrent writers cannot shift it under us
+        int[][] days = new int[instrumentIds.length][];
+        double[][] closes = new double[instrumentIds.length][];
+        int commonStart = startDay;
+        int commonEnd = endDay;
+        int included = 0;
+        for (int k = 0; k < instrumentIds.length; k++) {
+            Series current = peek(instrumentIds[k]);
+            if (current == null) {
+                continue;
+            }
+            synchronized (current) {
+                int lo = current.indexOf(startDay);
+                int hi = current.indexOf(endDay + 1);
+                if (hi - lo < 2) {
+                    continue;
+                }
+                days[k] = Arrays.copyOfRange(current.days, lo, hi);
+                closes[k] = Arrays.copyOfRange(current.closes, lo, hi);
+            }
+            commonStart = Math.max(commonStart, days[k][0]);
+            commonEnd = Math.min(commonEnd, days[k][days[k].length - 1]);
+            included++;
+        }
+
+        BitSet calendar = new BitSet(endDay - startDay + 1);
+        for (int[] instrumentDays : days) {
+            if (instrumentDays == null) {
+                continue;
+            }
+            for (int day : instrumentDays) {
+                if (day >= commonStart && day <= commonEnd) {
+                    calendar.set(day - startDay);
+                }
+            }
+        }
+
+        int[] calendarDays = calendar.stream().map(offset -> offset + startDay).toArray();
+        int periods = Math.max(0, calendarDays.length - 1);
+        int[] ids = new int[included];
+        double[][] returns = new double[included][];
+        int row = 0;
+        for (int k = 0; k < instrumentIds.length; k++) {
+            if (days[k] == null) {
+                continue;
+            }
+            ids[row] = instrumentIds[k];
+            returns[row] = alignReturns(days[k], closes[k], calendarDays, periods);
+            row++;
+        }
+        return new ReturnMatrix(ids, calendarDays, returns);
+    }
+
+    /**
+     * Every calendar day falls on or after the instrument's first close,
+     * so the first calendar day always picks up a real close
+     */
+    private static double[] alignReturns(int[] days, double[] closes, int[] calendarDays, int periods) {
+        double[] returns = new double[periods];
+        int next = 0;
+        double previous = closes[0];
+        for (int t = 0; t < calendarDays.length; t++) {
+            double close = previous;
+            while (next < days.length && days[next] <= calendarDays[t]) {
+                close = closes[next++];
+            }
+            if (t > 0) {
+                returns[t - 1] = Math.log(close / previous);
+            }
+            previous = close;
+        }
+        return returns;
+    }
+
+    private Series peek(int instrumentId) {
+        Series[] current = series;
+        return instrumentId >= 0 && instrumentId < current.length ? current[instrumentId] : null;
+    }
+
+    private Series seriesFor(int instrumentId) {
+        if (instrumentId < 0) {
+            throw new IllegalArgumentException("Invalid instrument ID: " + instrumentId);
+        }
+        Series existing = peek(instrumentId);
+        return existing != null ? existing : createSeries(instrumentId);
+    }
+
+    private synchronized Series createSeries(int instrumentId) {
+        Series[] current = series;
+        if (instrumentId >= current.length) {
+            current = Arrays.copyOf(current, Math.max(instrumentId + 1, current.length * 2));
+        }
+        if (current[instrumentId] == null) {
+            current[instrumentId] = new Series();
+        }
+        series = current;
+        return current[instrumentId];
+    }
+
+    /**
+     * Closes of one instrument, sorted by day
+     */
+    private static final class Series {
+        private int[] days = new int[64];
+        private double[] closes = new double[64];
+        private int size;
+
+        private synchronized void put(int day, double close) {
+            // Closes nearly always arrive in date order, so appending is the fast path
+            if (size > 0 && days[size - 1] >= day) {
+                int index = Arrays.binarySearch(days, 0, size, day);
+                if (index >= 0) {
+                    closes[index] = close;
+                    return;
+                }
+                insert(-index - 1, day, close);
+                return;
+            }
+            insert(size, day, close);
+        }
+
+        private void insert(int index, int day, double close) {
+            if (size == days.length) {
+                days = Arrays.copyOf(days, size * 2);
+                closes = Arrays.copyOf(closes, size * 2);
+            }
+            System.arraycopy(days, index, days, index + 1, size - index);
+            System.arraycopy(closes, index, closes, index + 1, size - index);
+            days[index] = day;
+            closes[index] = close;
+            size++;
+        }
+
+        /**
+         * @return index of the first close on or after the day
+         */
+        private int indexOf(int day) {
+            int index = Arrays.binarySearch(days, 0, size, day);
+            return index >= 0 ? index : -index - 1;
+        }
+
+        private synchronized int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package felosy.services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of a bulk user operation: which entries went through and why the others did not
+ */
+public class ProvisioningResult {
+    private final List<String> succeeded = new ArrayList<>();
+    private final Map<String, String> failures = new LinkedHashMap<>();
+    private final List<String> warnings = new ArrayList<>();
+    private long elapsedMillis;
+
+    void addSuccess(String key) {
+        succeeded.add(key);
+    }
+
+    void addFailure(String key, String reason) {
+        failures.put(key, reason);
+    }
+
+    void addWarning(String warning) {
+        warnings.add(warning);
+    }
+
+    void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    // Getters
+
+    /**
+     * IDs of the users created or deleted
+     */
+    public List<String> getSucceeded() {
+        return Collections.unmodifiableList(succeeded);
+    }
+
+    /**
+     * Reasons keyed by the email (registrations) or user ID (deletions) that failed
+     */
+    public Map<String, String> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * Problems that did not stop the operation, such as data left behind by a failed cascade
+     */
+    public List<String> getWarnings() {
+        return Collections.unmodifiableList(warnings);
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "ProvisioningResult{" +
+                "succeeded=" + succeeded.size() +
+                ", failed=" + failures.size() +
+                ", warnings=" + warnings.size() +
+                ", elapsedMillis=" + elapsedMillis +
+                '}';
+    }
+}
@@ -0,0 +1,179 @@
+package felosy.services;
+
+import felosy.assetmanagement.InstrumentRegistry;
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Shared cache of instrument unit prices keyed by instrument ID.
+ * Lets many holdings of the same instrument be priced with a single quote
+ * and is safe to use from many threads at once. Symbol-based methods resolve
+ * the ID through the {@link InstrumentRegistry}.
+ */
+public class QuoteCache {
+    private static final Logger LOGGER = Logger.getLogger(QuoteCache.class.getName());
+    private static final QuoteCache instance = new QuoteCache(60_000L);
+
+    // Slot per instrument ID, grown as the registry grows
+    private volatile AtomicReferenceArray<Quote> quotes = new AtomicReferenceArray<>(128);
+    private volatile long maxAgeMillis;
+
+    /**
+     * A unit price and the time it was recorded
+     */
+    private static final class Quote {
+        private final BigDecimal price;
+        private final long timestamp;
+
+        private Quote(BigDecimal price, long timestamp) {
+            this.price = price;
+            this.timestamp = timestamp;
+        }
+    }
+
+    public QuoteCache(long maxAgeMillis) {
+        setMaxAgeMillis(maxAgeMillis);
+    }
+
+    public static QuoteCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Gets the cached price of an instrument, loading it if missing or stale.
+     * Concurrent callers may both load a stale quote; the later result wins.
+     * @param instrumentId The instrument ID
+     * @param loader Fetches a fresh price when the cache cannot answer
+     * @return The unit price
+     */
+    public BigDecimal getQuote(int instrumentId, Supplier<BigDecimal> loader) {
+        if (loader == null) {
+            throw new IllegalArgumentException("Loader cannot be null");
+        }
+
+        Quote quote = slots(instrumentId).get(instrumentId);
+        if (quote != null && System.currentTimeMillis() - quote.timestamp <= maxAgeMillis) {
+            return quote.price;
+        }
+
+        BigDecimal price = loader.get();
+        putQuote(instrumentId, price);
+        return price;
+    }
+
+    public BigDecimal getQuote(String symbol, Supplier<BigDecimal> loader) {
+        return getQuote(idOf(symbol), loader);
+    }
+
+    /**
+     * Records a price for an instrument, e.g. from a market data update
+     * @param instrumentId The instrument ID
+     * @param price The unit price
+     */
+    public void putQuote(int instrumentId, BigDecimal price) {
+        if (price == null) {
+            throw new IllegalArgumentException("Price cannot be null");
+        }
+        slots(instrumentId).set(instrumentId, new Quote(price, System.currentTimeMillis()));
+    }
+
+    public void putQuote(String symbol, BigDecimal price) {
+        putQuote(idOf(symbol), price);
+    }
+
+    /**
+     * Gets the cached price of an instrument without loading it
+     * @param instrumentId The instrument ID
+     * @return The unit price, or null if not cached
+     */
+    public BigDecimal peekQuote(int instrumentId) {
+        AtomicReferenceArray<Quote> current = quotes;
+        if (instrumentId < 0 || instrumentId >= current.length()) {
+            return null;
+        }
+        Quote quote = current.get(instrumentId);
+        return quote != null ? quote.price : null;
+    }
+
+    public BigDecimal peekQuote(String symbol) {
+        return peekQuote(InstrumentRegistry.getInstance().idOf(symbol));
+    }
+
+    public void invalidate(int instrumentId) {
+        AtomicReferenceArray<Quote> current = quotes;
+        if (instrumentId >= 0 && instrumentId < current.length()) {
+            current.set(instrumentId, null);
+        }
+    }
+
+    public void invalidate(String symbol) {
+        invalidate(InstrumentRegistry.getInstance().idOf(symbol));
+    }
+
+    public synchronized void clear() {
+        quotes = new AtomicReferenceArray<>(quotes.length());
+        LOGGER.info("Cleared quote cache");
+    }
+
+    /**
+     * @return number of instruments with a cached quote
+     */
+    public int size() {
+        AtomicReferenceArray<Quote> current = quotes;
+        int count = 0;
+        for (int i = 0; i < current.length(); i++) {
+            if (current.get(i) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public long getMaxAgeMillis() {
+        return maxAgeMillis;
+    }
+
+    public void setMaxAgeMillis(long maxAgeMillis) {
+        if (maxAgeMillis < 0) {
+            throw new IllegalArgumentException("Max age cannot be negative");
+        }
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    private static int idOf(String symbol) {
+        if (symbol == null) {
+            throw new IllegalArgumentException("Symbol cannot be null");
+        }
+        return InstrumentRegistry.getInstance().intern(symbol);
+    }
+
+    /**
+     * Gets the slot array, growing it first if the ID is past the end
+     */
+    private AtomicReferenceArray<Quote> slots(int instrumentId) {
+        if (instrumentId < 0) {
+            throw new IllegalArgumentException("Invalid instrument ID: " + instrumentId);
+        }
+        AtomicReferenceArray<Quote> current = quotes;
+        if (instrumentId < current.length()) {
+            return current;
+        }
+        return grow(instrumentId);
+    }
+
+    private synchronized AtomicReferenceArray<Quote> grow(int instrumentId) {
+        AtomicReferenceArray<Quote> current = quotes;
+        if (instrumentId < current.length()) {
+            return current;
+        }
+        int length = Math.max(instrumentId + 1, current.length() * 2);
+        AtomicReferenceArray<Quote> grown = new AtomicReferenceArray<>(length);
+        for (int i = 0; i < current.length(); i++) {
+            grown.set(i, current.get(i));
+        }
+        quotes = grown;
+        return grown;
+    }
+}
@@ -4,6 +4,7 @@ import felosy.assetmanagement.RealEstate;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import java.io.*;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -20,29 +21,31 @@ public class RealEstateDataService {
         return instance;
     }
 
-    public ObservableList<RealEstate> getUserRealEstateList(String userId) {
+    public synchronized ObservableList<RealEstate> getUserRealEstateList(String userId) {
         return userRealEstateData.computeIfAbsent(userId, k -> FXCollections.observableArrayList());
     }
 
-    public void saveUserRealEstateList(String userId, ObservableList<RealEstate> realEstateList) {
+    public synchronized void saveUserRealEstateList(String userId, ObservableList<RealEstate> realEstateList) {
         userRealEstateData.put(userId, realEstateList);
         saveData(); // Save data whenever it's updated
     }
 
-    private void saveData() {
+    private synchronized boolean saveData() {
         try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(DATA_FILE))) {
             // Convert ObservableLists to regular Lists before saving
             Map<String, java.util.List<RealEstate>> serializableMap = new HashMap<>();
             userRealEstateData.forEach((key, value) ->
                     serializableMap.put(key, new java.util.ArrayList<>(value)));
             oos.writeObject(serializableMap);
+            return true;
         } catch (IOException e) {
             e.printStackTrace();
+            return false;
         }
     }
 
     @SuppressWarnings("unchecked")
-    private void loadData() {
+    private synchronized void loadData() {
         File file = new File(DATA_FILE);
         if (!file.exists()) {
             return;
@@ -59,6 +62,45 @@ public class RealEstateDataService {
         }
     }
 
+    /**
+     * Copies every user's realEstate holdings so they can be walked off the UI thread
+     * @return A map of user IDs to copies of their realEstate lists
+     */
+    public synchronized Map<String, java.util.List<RealEstate>> snapshotAllUsers() {
+        Map<String, java.util.List<RealEstate>> snapshot = new HashMap<>();
+        userRealEstateData.forEach((userId, list) -> snapshot.put(userId, new java.util.ArrayList<>(list)));
+        return snapshot;
+    }
+
+    /**
+     * Drops the real estate holdings of many users with a single save.
+     * If the save fails the holdings are put back.
+     * @param userIds The users
+     * @return true if nothing was held or the change was saved
+     */
+    public synchronized boolean removeUsers(Collection<String> userIds) {
+        Map<String, ObservableList<RealEstate>> removed = new HashMap<>();
+        for (String userId : userIds) {
+            ObservableList<RealEstate> list = userRealEstateData.remove(userId);
+            if (list != null) {
+                removed.put(userId, list);
+            }
+        }
+        if (removed.isEmpty() || saveData()) {
+            return true;
+        }
+        userRealEstateData.putAll(removed);
+        return false;
+    }
+
+    /**
+     * Writes every user's real estate holdings to disk in one save, e.g. after a revaluation
+     * @return true if the data was saved
+     */
+    public boolean save() {
+        return saveData();
+    }
+
     // Add this method to save data when the application closes
     public void shutdown() {
         saveData();
@@ -0,0 +1,192 @@
+package felosy.services;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Orders that move a portfolio towards its target allocation, with the fees
+ * and tax they cost and the weights they leave behind.
+ * Amounts are in the portfolio's reporting currency.
+ */
+public final class RebalancePlan {
+
+    public enum Side {
+        BUY,
+        SELL
+    }
+
+    /**
+     * A single buy or sell of one holding
+     */
+    public static final class Order {
+        private final String assetId;
+        private final String symbol;
+        private final String target;
+        private final Side side;
+        private final BigDecimal quantity;
+        private final BigDecimal unitPrice;
+        private final BigDecimal value;
+        private final BigDecimal fee;
+        private final BigDecimal tax;
+
+        Order(String assetId, String symbol, String target, Side side, BigDecimal quantity,
+              BigDecimal unitPrice, BigDecimal value, BigDecimal fee, BigDecimal tax) {
+            this.assetId = assetId;
+            this.symbol = symbol;
+            this.target = target;
+            this.side = side;
+            this.quantity = quantity;
+            this.unitPrice = unitPrice;
+            this.value = value;
+            this.fee = fee;
+            this.tax = tax;
+        }
+
+        // Getters
+        public String getAssetId() {
+            return assetId;
+        }
+
+        public String getSymbol() {
+            return symbol;
+        }
+
+        public String getTarget() {
+            return target;
+        }
+
+        public Side getSide() {
+            return side;
+        }
+
+        public BigDecimal getQuantity() {
+            return quantity;
+        }
+
+        public BigDecimal getUnitPrice() {
+            return unitPrice;
+        }
+
+        public BigDecimal getValue() {
+            return value;
+        }
+
+        public BigDecimal getFee() {
+            return fee;
+        }
+
+        /**
+         * @return estimated tax on the realized gain; negative when the sale realizes a loss
+         */
+        public BigDecimal getTax() {
+            return tax;
+        }
+
+        @Override
+        public String toString() {
+            return side + " " + quantity.toPlainString() + " " + symbol + " @ " + unitPrice
+                    + " = " + value + " (fee " + fee + ", tax " + tax + ")";
+        }
+    }
+
+    private final String portfolioId;
+    private final String currency;
+    private final List<Order> orders;
+    private final Map<String, Double> currentWeights;
+    private final Map<String, Double> targetWeights;
+    private final Map<String, Double> projectedWeights;
+    private final BigDecimal totalFees;
+    private final BigDecimal totalTax;
+    private final BigDecimal cashRemaining;
+    private final List<String> warnings;
+    private final long elapsedNanos;
+
+    RebalancePlan(String portfolioId, String currency, List<Order> orders,
+                  Map<String, Double> currentWeights, Map<String, Double> targetWeights,
+                  Map<String, Double> projectedWeights, BigDecimal totalFees, BigDecimal totalTax,
+                  BigDecimal cashRemaining, List<String> warnings, long elapsedNanos) {
+        this.portfolioId = portfolioId;
+        this.currency = currency;
+        this.orders = Collections.unmodifiableList(orders);
+        this.currentWeights = Collections.unmodifiableMap(currentWeights);
+        this.targetWeights = Collections.unmodifiableMap(targetWeights);
+        this.projectedWeights = Collections.unmodifiableMap(projectedWeights);
+        this.totalFees = totalFees;
+        this.totalTax = totalTax;
+        this.cashRemaining = cashRemaining;
+        this.warnings = Collections.unmodifiableList(warnings);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public boolean isBalanced() {
+        return orders.isEmpty();
+    }
+
+    /**
+     * Gets the largest gap between a projected and a target weight
+     * @return Absolute drift, e.g. 0.01 for one percentage point
+     */
+    public double getResidualDrift() {
+        double drift = 0.0;
+        for (Map.Entry<String, Double> entry : targetWeights.entrySet()) {
+            drift = Math.max(drift, Math.abs(projectedWeights.getOrDefault(entry.getKey(), 0.0) - entry.getValue()));
+        }
+        return drift;
+    }
+
+    // Getters
+    public String getPortfolioId() {
+        return portfolioId;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public List<Order> getOrders() {
+        return orders;
+    }
+
+    public Map<String, Double> getCurrentWeights() {
+        return currentWeights;
+    }
+
+    public Map<String, Double> getTargetWeights() {
+        return targetWeights;
+    }
+
+    public Map<String, Double> getProjectedWeights() {
+        return projectedWeights;
+    }
+
+    public BigDecimal getTotalFees() {
+        return totalFees;
+    }
+
+    public BigDecimal getTotalTax() {
+        return totalTax;
+    }
+
+    /**
+     * @return sale proceeds left over after fees, tax and buys
+     */
+    public BigDecimal getCashRemaining() {
+        return cashRemaining;
+    }
+
+    public List<String> getWarnings() {
+        return warnings;
+    }
+
+    public long getElapsedMicros() {
+        return elapsedNanos / 1_000;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RebalancePlan[portfolio=%s, orders=%d, fees=%s, tax=%s, cash=%s %s, drift=%.2f%%]",
+            portfolioId, orders.size(), totalFees, totalTax, cashRemaining, currency, getResidualDrift() * 100);
+    }
+}
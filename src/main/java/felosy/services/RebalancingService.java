@@ -0,0 +1,415 @@
+package felosy.services;
+
+import felosy.assetmanagement.Asset;
+import felosy.assetmanagement.FxRateTable;
+import felosy.assetmanagement.Instrument;
+import felosy.assetmanagement.InstrumentRegistry;
+import felosy.assetmanagement.LotLedger;
+import felosy.assetmanagement.Portfolio;
+import felosy.assetmanagement.PortfolioSnapshot;
+import felosy.assetmanagement.Stock;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Computes the orders that bring a portfolio back to its target allocation.
+ * Holdings are grouped under the most specific target that covers them, and
+ * only groups that drifted past the tolerance band are traded. Overweight
+ * groups sell the holdings that cost the least tax per unit sold first;
+ * the proceeds, net of fees and tax, buy into the largest holding of each
+ * underweight group. Quantities are rounded to each instrument's lot size.
+ * A plan is a single pass over the snapshot, so it is cheap enough to
+ * recompute on every price tick.
+ */
+public class RebalancingService {
+    private static final Logger LOGGER = Logger.getLogger(RebalancingService.class.getName());
+    private static final double DEFAULT_DRIFT_TOLERANCE = 0.01;
+    private static final RebalancingService instance = new RebalancingService(TradingCostModel.free());
+
+    private final Map<String, BigDecimal> lotSizes = new ConcurrentHashMap<>();
+    private volatile TradingCostModel costModel;
+    private volatile double driftTolerance = DEFAULT_DRIFT_TOLERANCE;
+
+    public RebalancingService(TradingCostModel costModel) {
+        setCostModel(costModel);
+        lotSizes.put(Instrument.AssetClass.STOCK.name(), BigDecimal.ONE);
+        lotSizes.put(Instrument.AssetClass.CRYPTO.name(), new BigDecimal("0.0001"));
+        lotSizes.put(Instrument.AssetClass.COMMODITY.name(), new BigDecimal("0.01"));
+    }
+
+    public static RebalancingService getInstance() {
+        return instance;
+    }
+
+    /**
+     * Plans the trades that move a portfolio to its target allocation
+     * @param portfolio The portfolio to rebalance
+     * @param targets Target weights for the holdings
+     * @return The orders with their costs and the weights they lead to
+     */
+    public RebalancePlan plan(Portfolio portfolio, TargetAllocation targets) {
+        if (portfolio == null || targets == null) {
+            throw new IllegalArgumentException("Portfolio and targets cannot be null");
+        }
+        return plan(portfolio.snapshot(), targets);
+    }
+
+    /**
+     * Plans the trades for a snapshot that was already taken
+     * @param snapshot The portfolio snapshot
+     * @param targets Target weights for the holdings
+     * @return The orders with their costs and the weights they lead to
+     */
+    public RebalancePlan plan(PortfolioSnapshot snapshot, TargetAllocation targets) {
+        if (snapshot == null || targets == null) {
+            throw new IllegalArgumentException("Snapshot and targets cannot be null");
+        }
+        long start = System.nanoTime();
+        TradingCostModel costs = this.costModel;
+        double tolerance = this.driftTolerance;
+        InstrumentRegistry registry = InstrumentRegistry.getInstance();
+        FxRateTable.Rates rates = FxRateTable.getInstance().getRates();
+        int reportingId = rates.idOf(snapshot.getCurrency());
+        LocalDate today = LocalDate.now();
+
+        // Group holdings under their targets
+        Map<String, Group> groups = new LinkedHashMap<>();
+        for (String target : targets.getWeights().keySet()) {
+            groups.put(target, new Group(target, targets.getWeights().get(target)));
+        }
+        double covered = 0.0;
+        for (Asset asset : snapshot.getAssets()) {
+            BigDecimal recorded = snapshot.getAssetValue(asset.getAssetId());
+            if (recorded == null || recorded.signum() <= 0) {
+                continue;
+            }
+            String symbol = asset.getInstrumentSymbol();
+            Instrument instrument = symbol != null ? registry.get(symbol) : null;
+            String target = AllocationKeys.match(targets.getWeights(), asset, instrument);
+            if (target == null) {
+                continue;
+            }
+            Holding holding = new Holding(asset, instrument, recorded.doubleValue(),
+                    rates.rate(rates.idOf(asset.getCurrency()), reportingId), lotSizeFor(instrument));
+            groups.get(target).add(holding);
+            covered += holding.value;
+        }
+
+        List<RebalancePlan.Order> orders = new ArrayList<>();
+        List<String> warnings = new ArrayList<>();
+        Map<String, Double> currentWeights = new LinkedHashMap<>();
+        if (covered <= 0.0) {
+            warnings.add("No holdings match the target allocation");
+            return new RebalancePlan(snapshot.getPortfolioId(), snapshot.getCurrency(), orders, currentWeights,
+                    targets.getWeights(), currentWeights, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO,
+                    warnings, System.nanoTime() - start);
+        }
+        for (Group group : groups.values()) {
+            currentWeights.put(group.target, group.value / covered);
+            group.gap = group.weight * covered - group.value;
+        }
+
+        // Sell overweight groups, cheapest tax first
+        double band = tolerance * covered;
+        double proceeds = 0.0;
+        double fees = 0.0;
+        double tax = 0.0;
+        for (Group group : groups.values()) {
+            if (-group.gap <= band) {
+                continue;
+            }
+            List<Holding> candidates = group.tradable();
+            if (candidates.isEmpty()) {
+                warnings.add("No holding under " + group.target + " can be sold in units");
+                continue;
+            }
+            for (Holding holding : candidates) {
+                holding.taxPerValue = estimateTax(holding, holding.lotsHeld() * holding.lotValue(), costs, today)
+                        / holding.value;
+            }
+            candidates.sort(Comparator.comparingDouble((Holding h) -> h.taxPerValue));
+            double remaining = -group.gap;
+            for (Holding holding : candidates) {
+                if (remaining <= 0.0) {
+                    break;
+                }
+                long lots = Math.min(holding.lotsHeld(), Math.round(remaining / holding.lotValue()));
+                if (lots <= 0) {
+                    continue;
+                }
+                double value = lots * holding.lotValue();
+                double fee = costs.feeFor(value);
+                double orderTax = estimateTax(holding, value, costs, today);
+                orders.add(order(holding, group.target, RebalancePlan.Side.SELL, lots, value, fee, orderTax));
+                group.traded -= value;
+                remaining -= value;
+                proceeds += value;
+                fees += fee;
+                tax += orderTax;
+            }
+        }
+
+        // Spend what is left on the underweight groups in proportion to their gaps
+        double cash = proceeds - fees - Math.max(0.0, tax);
+        double needed = 0.0;
+        for (Group group : groups.values()) {
+            if (group.gap > band) {
+                needed += group.gap;
+            }
+        }
+        double scale = needed > 0.0 ? Math.min(1.0, cash / needed) : 0.0;
+        for (Group group : groups.values()) {
+            if (group.gap <= band || scale <= 0.0) {
+                continue;
+            }
+            Holding holding = group.largestTradable();
+            if (holding == null) {
+                warnings.add("No holding under " + group.target + " to buy into");
+                continue;
+            }
+            double budget = Math.min(group.gap * scale, cash) - costs.getFixedFee().doubleValue();
+            long lots = (long) Math.floor(budget / (holding.lotValue() * (1.0 + costs.getCommissionRate())));
+            if (lots <= 0) {
+                continue;
+            }
+            double value = lots * holding.lotValue();
+            double fee = costs.feeFor(value);
+            orders.add(order(holding, group.target, RebalancePlan.Side.BUY, lots, value, fee, 0.0));
+            group.traded += value;
+            cash -= value + fee;
+            fees += fee;
+        }
+
+        double invested = 0.0;
+        for (Group group : groups.values()) {
+            invested += group.value + group.traded;
+        }
+        Map<String, Double> projectedWeights = new LinkedHashMap<>();
+        for (Group group : groups.values()) {
+            projectedWeights.put(group.target, invested > 0.0 ? (group.value + group.traded) / invested : 0.0);
+        }
+
+        long elapsed = System.nanoTime() - start;
+        LOGGER.fine("Planned " + orders.size() + " orders for portfolio " + snapshot.getPortfolioId()
+                + " in " + elapsed / 1_000 + " us");
+        return new RebalancePlan(snapshot.getPortfolioId(), snapshot.getCurrency(), orders, currentWeights,
+                targets.getWeights(), projectedWeights, money(fees), money(tax), money(Math.max(0.0, cash)),
+                warnings, elapsed);
+    }
+
+    /**
+     * Sets the smallest tradable quantity for an instrument or asset class
+     * @param target Instrument symbol or asset class, e.g. "AAPL" or "crypto"
+     * @param lotSize Quantity that orders are rounded to
+     */
+    public void setLotSize(String target, BigDecimal lotSize) {
+        if (lotSize == null || lotSize.signum() <= 0) {
+            throw new IllegalArgumentException("Lot size must be positive");
+        }
+        lotSizes.put(AllocationKeys.normalize(target), lotSize);
+    }
+
+    public BigDecimal getLotSize(String target) {
+        return lotSizes.get(AllocationKeys.normalize(target));
+    }
+
+    public TradingCostModel getCostModel() {
+        return costModel;
+    }
+
+    public void setCostModel(TradingCostModel costModel) {
+        if (costModel == null) {
+            throw new IllegalArgumentException("Cost model cannot be null");
+        }
+        this.costModel = costModel;
+    }
+
+    public double getDriftTolerance() {
+        return driftTolerance;
+    }
+
+    /**
+     * Sets how far a group may drift from its target before it is traded
+     * @param driftTolerance Share of the portfolio, e.g. 0.01 for one percentage point
+     */
+    public void setDriftTolerance(double driftTolerance) {
+        if (driftTolerance < 0.0 || driftTolerance >= 1.0) {
+            throw new IllegalArgumentException("Drift tolerance must be between 0 and 1");
+        }
+        this.driftTolerance = driftTolerance;
+    }
+
+    private BigDecimal lotSizeFor(Instrument instrument) {
+        if (instrument == null) {
+            return BigDecimal.ONE;
+        }
+        BigDecimal lotSize = lotSizes.get(instrument.getSymbol());
+        if (lotSize == null) {
+            lotSize = lotSizes.getOrDefault(instrument.getAssetClass().name(), BigDecimal.ONE);
+        }
+        return lotSize;
+    }
+
+    /**
+     * Estimates the tax on selling part of a holding.
+     * Stocks walk their open lots in the order their cost basis method sells
+     * them; other assets realize a proportional share of their overall gain.
+     * @param value Value sold in the reporting currency
+     */
+    private static double estimateTax(Holding holding, double value, TradingCostModel costs, LocalDate today) {
+        Asset asset = holding.asset;
+        if (asset instanceof Stock && !((Stock) asset).getOpenLots().isEmpty()) {
+            Stock stock = (Stock) asset;
+            double unitPrice = holding.value / holding.quantity;
+            double remaining = Math.round(value / unitPrice);
+            double tax = 0.0;
+            if (stock.getCostBasisMethod() == LotLedger.CostBasisMethod.AVERAGE_COST) {
+                // Average cost sets the basis; lots still drain oldest first for the holding period
+                double basis = stock.getAverageCost().doubleValue() * holding.toReporting;
+                for (LotLedger.Lot lot : stock.getOpenLots()) {
+                    double taken = Math.min(remaining, lot.getQuantity());
+                    tax += costs.taxFor(taken * (unitPrice - basis), ChronoUnit.DAYS.between(lot.getDate(), today));
+                    remaining -= taken;
+                    if (remaining <= 0) {
+                        break;
+                    }
+                }
+                return tax;
+            }
+            for (LotLedger.Lot lot : saleOrder(stock)) {
+                double taken = Math.min(remaining, lot.getQuantity());
+                double basis = lot.getPricePerShare().doubleValue() * holding.toReporting;
+                tax += costs.taxFor(taken * (unitPrice - basis), ChronoUnit.DAYS.between(lot.getDate(), today));
+                remaining -= taken;
+                if (remaining <= 0) {
+                    break;
+                }
+            }
+            return tax;
+        }
+        double basis = asset.getPurchasePrice().doubleValue() * holding.toReporting;
+        double gain = (holding.value - basis) * (value / holding.value);
+        long heldDays = asset.getPurchaseDate() == null ? 0
+                : ChronoUnit.DAYS.between(asset.getPurchaseDate().toInstant().atZone(ZoneId.systemDefault()).toLocalDate(), today);
+        return costs.taxFor(gain, heldDays);
+    }
+
+    /**
+     * Orders a stock's open lots the way its cost basis method sells them
+     */
+    private static List<LotLedger.Lot> saleOrder(Stock stock) {
+        List<LotLedger.Lot> lots = stock.getOpenLots();
+        switch (stock.getCostBasisMethod()) {
+            case LIFO:
+                Collections.reverse(lots);
+                break;
+            case HIFO:
+                lots.sort(Comparator.comparing(LotLedger.Lot::getPricePerShare).reversed());
+                break;
+            default:
+                break;
+        }
+        return lots;
+    }
+
+    private static RebalancePlan.Order order(Holding holding, String target, RebalancePlan.Side side,
+                                             long lots, double value, double fee, double tax) {
+        String symbol = holding.instrument != null ? holding.instrument.getSymbol() : holding.asset.getName();
+        return new RebalancePlan.Order(holding.asset.getAssetId(), symbol, target, side,
+                holding.lotSize.multiply(BigDecimal.valueOf(lots)).stripTrailingZeros(),
+                BigDecimal.valueOf(holding.value / holding.quantity).setScale(4, RoundingMode.HALF_UP),
+                money(value), money(fee), money(tax));
+    }
+
+    private static BigDecimal money(double amount) {
+        return BigDecimal.valueOf(amount).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Holdings that share a target, with how far they are from it
+     */
+    private static final class Group {
+        private final String target;
+        private final double weight;
+        private final List<Holding> holdings = new ArrayList<>();
+        private double value;
+        private double gap;
+        private double traded;
+
+        private Group(String target, double weight) {
+            this.target = target;
+            this.weight = weight;
+        }
+
+        private void add(Holding holding) {
+            holdings.add(holding);
+            value += holding.value;
+        }
+
+        private List<Holding> tradable() {
+            List<Holding> tradable = new ArrayList<>();
+            for (Holding holding : holdings) {
+                if (holding.isTradable()) {
+                    tradable.add(holding);
+                }
+            }
+            return tradable;
+        }
+
+        private Holding largestTradable() {
+            Holding largest = null;
+            for (Holding holding : holdings) {
+                if (holding.isTradable() && (largest == null || holding.value > largest.value)) {
+                    largest = holding;
+                }
+            }
+            return largest;
+        }
+    }
+
+    /**
+     * One asset with its value in the reporting currency and its unit size
+     */
+    private static final class Holding {
+        private final Asset asset;
+        private final Instrument instrument;
+        private final double value;
+        private final double quantity;
+        private final double toReporting;
+        private final BigDecimal lotSize;
+        private double taxPerValue;
+
+        private Holding(Asset asset, Instrument instrument, double value, double toReporting, BigDecimal lotSize) {
+            BigDecimal units = asset.getQuantity();
+            this.asset = asset;
+            this.instrument = instrument;
+            this.value = value;
+            this.quantity = units != null ? units.doubleValue() : 0.0;
+            this.toReporting = toReporting;
+            this.lotSize = lotSize;
+        }
+
+        private boolean isTradable() {
+            return quantity > 0.0;
+        }
+
+        private double lotValue() {
+            return value / quantity * lotSize.doubleValue();
+        }
+
+        private long lotsHeld() {
+            return (long) Math.floor(quantity / lotSize.doubleValue() + 1e-9);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package felosy.services;
+
+import java.time.LocalDate;
+
+/**
+ * Daily log returns of several instruments aligned on one calendar.
+ * Each instrument's returns are one contiguous row, which keeps the
+ * covariance and risk kernels streaming through memory in order.
+ */
+public final class ReturnMatrix {
+    private final int[] instrumentIds;
+    private final int[] calendarDays;
+    private final double[][] returns;
+
+    ReturnMatrix(int[] instrumentIds, int[] calendarDays, double[][] returns) {
+        this.instrumentIds = instrumentIds;
+        this.calendarDays = calendarDays;
+        this.returns = returns;
+    }
+
+    /**
+     * @return number of instruments (rows)
+     */
+    public int getInstrumentCount() {
+        return instrumentIds.length;
+    }
+
+    /**
+     * @return number of daily returns per instrument (columns)
+     */
+    public int getPeriodCount() {
+        return calendarDays.length > 0 ? calendarDays.length - 1 : 0;
+    }
+
+    public int getInstrumentId(int row) {
+        return instrumentIds[row];
+    }
+
+    /**
+     * @return row of the instrument, or -1 if it is not in the matrix
+     */
+    public int rowOf(int instrumentId) {
+        for (int row = 0; row < instrumentIds.length; row++) {
+            if (instrumentIds[row] == instrumentId) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    public double getReturn(int row, int period) {
+        return returns[row][period];
+    }
+
+    /**
+     * @return the date a return period ends on
+     */
+    public LocalDate getPeriodEnd(int period) {
+        return LocalDate.ofEpochDay(calendarDays[period + 1]);
+    }
+
+    /**
+     * Direct access to a row for the analytics kernels; callers must not modify it
+     */
+    double[] row(int row) {
+        return returns[row];
+    }
+}
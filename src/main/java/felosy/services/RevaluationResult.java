@@ -0,0 +1,67 @@
+package felosy.services;
+
+import java.math.BigDecimal;
+
+/**
+ * Outcome of a revaluation run: how much was priced, how fast, and the total value in one currency
+ */
+public class RevaluationResult {
+    private final int usersProcessed;
+    private final long assetsProcessed;
+    private final long failures;
+    private final BigDecimal totalValue;
+    private final String currency;
+    private final long elapsedNanos;
+
+    public RevaluationResult(int usersProcessed, long assetsProcessed, long failures,
+                             BigDecimal totalValue, String currency, long elapsedNanos) {
+        this.usersProcessed = usersProcessed;
+        this.assetsProcessed = assetsProcessed;
+        this.failures = failures;
+        this.totalValue = totalValue;
+        this.currency = currency;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Gets the throughput of the run
+     * @return Assets valued per second
+     */
+    public double getAssetsPerSecond() {
+        if (elapsedNanos <= 0) {
+            return 0.0;
+        }
+        return assetsProcessed * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    // Getters
+    public int getUsersProcessed() {
+        return usersProcessed;
+    }
+
+    public long getAssetsProcessed() {
+        return assetsProcessed;
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+
+    public BigDecimal getTotalValue() {
+        return totalValue;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedNanos / 1_000_000;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RevaluationResult[users=%d, assets=%d, failures=%d, total=%s %s, elapsed=%dms, rate=%.0f assets/s]",
+            usersProcessed, assetsProcessed, failures, totalValue, currency, getElapsedMillis(), getAssetsPerSecond());
+    }
+}
@@ -0,0 +1,249 @@
+package felosy.services;
+
+import felosy.assetmanagement.Asset;
+import felosy.assetmanagement.FxRateTable;
+import felosy.assetmanagement.InstrumentRegistry;
+import felosy.assetmanagement.Portfolio;
+import felosy.storage.DataStorage;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Marks every user's holdings to market in parallel.
+ * Walks the assets held by the four data services, splits them across a
+ * fork/join pool, prices each instrument once through the shared quote cache
+ * and writes the new values back a batch at a time: instrument prices are
+ * recorded in the instrument registry, which is where quoted assets read their
+ * value from, and other assets take their new value directly. A run over every
+ * user then reprices the cached portfolios through {@link Portfolio#applyPrice}
+ * so their running totals follow, and saves each store once.
+ * Totals are reported in {@link FxRateTable#BASE_CURRENCY}.
+ */
+public class RevaluationService {
+    private static final Logger LOGGER = Logger.getLogger(RevaluationService.class.getName());
+    private static final int DEFAULT_BATCH_SIZE = 512;
+    private static final RevaluationService instance =
+            new RevaluationService(ForkJoinPool.commonPool(), QuoteCache.getInstance(), DEFAULT_BATCH_SIZE);
+
+    private final ForkJoinPool pool;
+    private final QuoteCache quoteCache;
+    private final int batchSize;
+
+    public RevaluationService(ForkJoinPool pool, QuoteCache quoteCache, int batchSize) {
+        if (pool == null || quoteCache == null) {
+            throw new IllegalArgumentException("Pool and quote cache cannot be null");
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.pool = pool;
+        this.quoteCache = quoteCache;
+        this.batchSize = batchSize;
+    }
+
+    public static RevaluationService getInstance() {
+        return instance;
+    }
+
+    /**
+     * Revalues the holdings of every user known to the data services
+     * @return Counts, total value and throughput of the run
+     */
+    public RevaluationResult revalueAllUsers() {
+        Set<String> userIds = new HashSet<>();
+        List<Asset> assets = new ArrayList<>();
+        collect(GoldDataService.getInstance().snapshotAllUsers(), userIds, assets);
+        collect(StockDataService.getInstance().snapshotAllUsers(), userIds, assets);
+        collect(CryptoDataService.getInstance().snapshotAllUsers(), userIds, assets);
+        collect(RealEstateDataService.getInstance().snapshotAllUsers(), userIds, assets);
+
+        Map<Integer, BigDecimal> unitPrices = new ConcurrentHashMap<>();
+        RevaluationResult result = revalue(assets, userIds.size(), unitPrices);
+        persist(unitPrices);
+        return result;
+    }
+
+    /**
+     * Revalues an arbitrary list of assets
+     * @param assets The assets to revalue
+     * @param userCount Number of users the assets belong to, for reporting
+     * @return Counts, total value and throughput of the run
+     */
+    public RevaluationResult revalue(List<? extends Asset> assets, int userCount) {
+        return revalue(assets, userCount, new ConcurrentHashMap<>());
+    }
+
+    private RevaluationResult revalue(List<? extends Asset> assets, int userCount, Map<Integer, BigDecimal> unitPrices) {
+        if (assets == null) {
+            throw new IllegalArgumentException("Assets cannot be null");
+        }
+
+        Asset[] work = assets.toArray(new Asset[0]);
+        FxRateTable.Rates rates = FxRateTable.getInstance().getRates();
+        long start = System.nanoTime();
+        Tally tally = work.length == 0
+            ? new Tally()
+            : pool.invoke(new RevalueTask(work, 0, work.length, rates, unitPrices));
+        long elapsed = System.nanoTime() - start;
+
+        RevaluationResult result = new RevaluationResult(userCount, tally.count, tally.failures, tally.total,
+            FxRateTable.BASE_CURRENCY, elapsed);
+        LOGGER.info("Revaluation finished: " + result);
+        return result;
+    }
+
+    /**
+     * Applies the run's instrument prices to the cached portfolios and revalues
+     * the holdings that are not quoted, keeping the portfolios' running totals
+     * current, then saves the holdings and the same portfolios, one write per store
+     */
+    private void persist(Map<Integer, BigDecimal> unitPrices) {
+        InstrumentRegistry registry = InstrumentRegistry.getInstance();
+        boolean saved = DataStorage.updatePortfolios(portfolios -> pool.submit(() ->
+            portfolios.parallelStream().forEach(portfolio -> {
+                for (String symbol : portfolio.getInstrumentSymbols()) {
+                    int instrumentId = registry.idOf(symbol);
+                    BigDecimal unitPrice = instrumentId >= 0 ? unitPrices.get(instrumentId) : null;
+                    if (unitPrice != null) {
+                        portfolio.applyPrice(symbol, unitPrice);
+                    }
+                }
+                for (Asset asset : portfolio.getAssets()) {
+                    if (asset.getInstrumentId() < 0) {
+                        portfolio.revalueAsset(asset.getAssetId());
+                    }
+                }
+            })).join());
+        saved &= GoldDataService.getInstance().save();
+        saved &= StockDataService.getInstance().save();
+        saved &= CryptoDataService.getInstance().save();
+        saved &= RealEstateDataService.getInstance().save();
+        if (!saved) {
+            LOGGER.warning("Revaluation finished but not every store could be saved");
+        }
+    }
+
+    private static <T extends Asset> void collect(Map<String, List<T>> byUser, Set<String> userIds, List<Asset> assets) {
+        byUser.forEach((userId, list) -> {
+            userIds.add(userId);
+            assets.addAll(list);
+        });
+    }
+
+    /**
+     * Running counts for a slice of the work
+     */
+    private static final class Tally {
+        private long count;
+        private long failures;
+        private BigDecimal total = BigDecimal.ZERO;
+
+        private Tally add(Tally other) {
+            count += other.count;
+            failures += other.failures;
+            total = total.add(other.total);
+            return this;
+        }
+    }
+
+    /**
+     * Splits the asset array in halves until a slice fits in one batch,
+     * then prices the batch and writes all of its values back together
+     */
+    private final class RevalueTask extends RecursiveTask<Tally> {
+        private static final long serialVersionUID = 1L;
+
+        private final Asset[] assets;
+        private final int from;
+        private final int to;
+        private final FxRateTable.Rates rates;
+        private final Map<Integer, BigDecimal> unitPrices;
+
+        private RevalueTask(Asset[] assets, int from, int to, FxRateTable.Rates rates,
+                            Map<Integer, BigDecimal> unitPrices) {
+            this.assets = assets;
+            this.from = from;
+            this.to = to;
+            this.rates = rates;
+            this.unitPrices = unitPrices;
+        }
+
+        @Override
+        protected Tally compute() {
+            if (to - from <= batchSize) {
+                return revalueBatch();
+            }
+            int mid = (from + to) >>> 1;
+            RevalueTask left = new RevalueTask(assets, from, mid, rates, unitPrices);
+            left.fork();
+            Tally right = new RevalueTask(assets, mid, to, rates, unitPrices).compute();
+            return right.add(left.join());
+        }
+
+        private Tally revalueBatch() {
+            Tally tally = new Tally();
+            BigDecimal[] values = new BigDecimal[to - from];
+            BigDecimal[] unitPrices = new BigDecimal[to - from];
+            for (int i = from; i < to; i++) {
+                try {
+                    // Quoted assets are priced once per instrument through the quote cache
+                    int instrumentId = assets[i].getInstrumentId();
+                    if (instrumentId < 0) {
+                        values[i - from] = assets[i].getCurrentValue();
+                    } else {
+                        unitPrices[i - from] = quoteCache.getQuote(instrumentId, assets[i]::fetchPrice);
+                        values[i - from] = assets[i].valueAt(unitPrices[i - from]);
+                    }
+                } catch (Exception e) {
+                    tally.failures++;
+                    LOGGER.log(Level.FINE, "Failed to price asset " + assets[i].getAssetId(), e);
+                }
+            }
+
+            int baseId = rates.idOf(FxRateTable.BASE_CURRENCY);
+            for (int i = from; i < to; i++) {
+                BigDecimal value = values[i - from];
+                if (value == null) {
+                    continue;
+                }
+                Asset asset = assets[i];
+                writeBack(asset, value, unitPrices[i - from]);
+                try {
+                    tally.total = tally.total.add(rates.convert(value, rates.idOf(asset.getCurrency()), baseId));
+                    tally.count++;
+                } catch (IllegalArgumentException e) {
+                    tally.failures++;
+                    LOGGER.log(Level.FINE, "Cannot convert value of asset " + asset.getAssetId(), e);
+                }
+            }
+            return tally;
+        }
+
+        /**
+         * Records a new valuation where the asset reads it back from: quoted
+         * assets through their instrument's price, others directly
+         */
+        private void writeBack(Asset asset, BigDecimal value, BigDecimal unitPrice) {
+            if (value.signum() <= 0) {
+                return;
+            }
+            if (unitPrice == null) {
+                asset.setCurrentValue(value);
+                return;
+            }
+            int instrumentId = asset.getInstrumentId();
+            if (unitPrice.signum() > 0 && unitPrices.putIfAbsent(instrumentId, unitPrice) == null) {
+                InstrumentRegistry.getInstance().markPrice(instrumentId, unitPrice);
+            }
+        }
+    }
+}
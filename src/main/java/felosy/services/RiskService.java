@@ -0,0 +1,286 @@
+package felosy.services;
+
+import felosy.assetmanagement.Asset;
+import felosy.assetmanagement.Instrument;
+import felosy.assetmanagement.InstrumentRegistry;
+import felosy.assetmanagement.Portfolio;
+import felosy.assetmanagement.PortfolioSnapshot;
+import felosy.reporting.FinancialInsight;
+import felosy.storage.DataStorage;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Value-at-Risk, Expected Shortfall and stress tests for portfolios.
+ * A batch first builds one shared risk model over every instrument held:
+ * aligned daily returns and their covariance matrix. Each portfolio then
+ * only reads the rows it holds, so a run over many portfolios costs one
+ * matrix build plus a short pass per portfolio. All figures are one-day
+ * losses in the portfolio's reporting currency, reported as positive numbers.
+ */
+public class RiskService {
+    private static final Logger LOGGER = Logger.getLogger(RiskService.class.getName());
+    private static final int DEFAULT_LOOKBACK_YEARS = 3;
+    private static final double[] CONFIDENCE_LEVELS = {0.95, 0.99};
+    private static final double[] Z_SCORES = {1.6448536269514722, 2.3263478740408408};
+    private static final double LOW_RISK_THRESHOLD = 0.02;
+    private static final double HIGH_RISK_THRESHOLD = 0.05;
+    private static final RiskService instance = new RiskService(ForkJoinPool.commonPool(),
+            PriceHistoryService.getInstance(), CovarianceService.getInstance());
+
+    private final ForkJoinPool pool;
+    private final PriceHistoryService priceHistory;
+    private final CovarianceService covarianceService;
+    private final List<StressScenario> scenarios = new CopyOnWriteArrayList<>();
+
+    public RiskService(ForkJoinPool pool, PriceHistoryService priceHistory, CovarianceService covarianceService) {
+        if (pool == null || priceHistory == null || covarianceService == null) {
+            throw new IllegalArgumentException("Pool, price history and covariance service cannot be null");
+        }
+        this.pool = pool;
+        this.priceHistory = priceHistory;
+        this.covarianceService = covarianceService;
+        scenarios.add(StressScenario.parse("gold -20%, crypto -60%"));
+        scenarios.add(StressScenario.parse("stocks -35%, crypto -50%, commodities -10%"));
+        scenarios.add(StressScenario.parse("real estate -25%, stocks -15%"));
+    }
+
+    public static RiskService getInstance() {
+        return instance;
+    }
+
+    /**
+     * Analyzes a single portfolio against a fresh risk model
+     * @param portfolio The portfolio
+     * @return Insight with VaR, Expected Shortfall and stress test results in its metrics
+     */
+    public FinancialInsight analyze(Portfolio portfolio) {
+        if (portfolio == null) {
+            throw new IllegalArgumentException("Portfolio cannot be null");
+        }
+        PortfolioSnapshot snapshot = portfolio.snapshot();
+        return analyze(snapshot, buildModel(List.of(snapshot)));
+    }
+
+    /**
+     * Analyzes many portfolios in parallel against one shared risk model
+     * @param portfolios The portfolios
+     * @return Insight per portfolio ID; portfolios that fail are logged and left out
+     */
+    public Map<String, FinancialInsight> analyzeAll(Collection<Portfolio> portfolios) {
+        if (portfolios == null) {
+            throw new IllegalArgumentException("Portfolios cannot be null");
+        }
+        long start = System.nanoTime();
+        List<PortfolioSnapshot> snapshots = new ArrayList<>(portfolios.size());
+        for (Portfolio portfolio : portfolios) {
+            snapshots.add(portfolio.snapshot());
+        }
+        RiskModel model = buildModel(snapshots);
+
+        Map<String, FinancialInsight> insights = new ConcurrentHashMap<>();
+        pool.submit(() -> snapshots.parallelStream().forEach(snapshot -> {
+            try {
+                insights.put(snapshot.getPortfolioId(), analyze(snapshot, model));
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Risk analysis failed for portfolio " + snapshot.getPortfolioId(), e);
+            }
+        })).join();
+        LOGGER.info("Risk analysis of " + insights.size() + " portfolios in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return insights;
+    }
+
+    /**
+     * Runs the overnight batch over every cached portfolio, including unsaved changes
+     * @return Insight per portfolio ID
+     */
+    public Map<String, FinancialInsight> analyzeAllPortfolios() {
+        return analyzeAll(DataStorage.loadCachedPortfolios());
+    }
+
+    public void addScenario(StressScenario scenario) {
+        if (scenario == null) {
+            throw new IllegalArgumentException("Scenario cannot be null");
+        }
+        scenarios.add(scenario);
+    }
+
+    public List<StressScenario> getScenarios() {
+        return new ArrayList<>(scenarios);
+    }
+
+    /**
+     * Builds returns and covariance for every instrument the snapshots hold
+     */
+    private RiskModel buildModel(List<PortfolioSnapshot> snapshots) {
+        Set<Integer> held = new HashSet<>();
+        for (PortfolioSnapshot snapshot : snapshots) {
+            for (Asset asset : snapshot.getAssets()) {
+                int instrumentId = asset.getInstrumentId();
+                if (instrumentId >= 0) {
+                    held.add(instrumentId);
+                }
+            }
+        }
+        LocalDate to = LocalDate.now();
+        ReturnMatrix returns = priceHistory.getReturns(held.stream().mapToInt(Integer::intValue).toArray(),
+                to.minusYears(DEFAULT_LOOKBACK_YEARS), to);
+        return new RiskModel(returns, covarianceService.compute(returns));
+    }
+
+    private FinancialInsight analyze(PortfolioSnapshot snapshot, RiskModel model) {
+        InstrumentRegistry registry = InstrumentRegistry.getInstance();
+        FinancialInsight insight = new FinancialInsight("RISK-" + UUID.randomUUID().toString().substring(0, 8),
+                snapshot.getPortfolioId());
+        double total = snapshot.getNetWorth().doubleValue();
+
+        // Exposure per model row, plus stress losses, in one pass over the holdings
+        double[] exposures = new double[model.size];
+        int[] heldRows = new int[model.size];
+        int heldCount = 0;
+        double covered = 0.0;
+        double[] stressLosses = new double[scenarios.size()];
+        for (Asset asset : snapshot.getAssets()) {
+            BigDecimal recorded = snapshot.getAssetValue(asset.getAssetId());
+            if (recorded == null || recorded.signum() <= 0) {
+                continue;
+            }
+            double value = recorded.doubleValue();
+            String symbol = asset.getInstrumentSymbol();
+            Instrument instrument = symbol != null ? registry.get(symbol) : null;
+            for (int s = 0; s < stressLosses.length; s++) {
+                stressLosses[s] -= value * scenarios.get(s).shockFor(asset, instrument);
+            }
+            int row = instrument != null ? model.rowOf(instrument.getId()) : -1;
+            if (row >= 0) {
+                if (exposures[row] == 0) {
+                    heldRows[heldCount++] = row;
+                }
+                exposures[row] += value;
+                covered += value;
+            }
+        }
+
+        insight.addMetric("Portfolio Value", total);
+        insight.addMetric("Covered Weight", total > 0 ? covered / total : 0.0);
+        for (int s = 0; s < stressLosses.length; s++) {
+            insight.addMetric("Stress Loss: " + scenarios.get(s).getName(), stressLosses[s]);
+        }
+
+        double worstVar = 0.0;
+        if (heldCount > 0 && model.periods >= 2) {
+            double[] profitLoss = new double[model.periods];
+            for (int k = 0; k < heldCount; k++) {
+                int row = heldRows[k];
+                double exposure = exposures[row];
+                double[] simpleReturns = model.simpleReturns[row];
+                for (int t = 0; t < profitLoss.length; t++) {
+                    profitLoss[t] += exposure * simpleReturns[t];
+                }
+            }
+            Arrays.sort(profitLoss);
+
+            double sigma = Math.sqrt(variance(model.covariance, exposures, heldRows, heldCount));
+            for (int c = 0; c < CONFIDENCE_LEVELS.length; c++) {
+                String level = Math.round(CONFIDENCE_LEVELS[c] * 100) + "%";
+                int tail = Math.max(1, (int) Math.floor((1 - CONFIDENCE_LEVELS[c]) * profitLoss.length));
+                double historicalVar = -profitLoss[tail - 1];
+                double tailSum = 0.0;
+                for (int t = 0; t < tail; t++) {
+                    tailSum += profitLoss[t];
+                }
+                double z = Z_SCORES[c];
+                double density = Math.exp(-0.5 * z * z) / Math.sqrt(2 * Math.PI);
+                double parametricVar = z * sigma;
+                insight.addMetric("Historical VaR " + level, historicalVar);
+                insight.addMetric("Historical ES " + level, -tailSum / tail);
+                insight.addMetric("Parametric VaR " + level, parametricVar);
+                insight.addMetric("Parametric ES " + level, sigma * density / (1 - CONFIDENCE_LEVELS[c]));
+                if (c == 0) {
+                    worstVar = Math.max(historicalVar, parametricVar);
+                }
+            }
+            insight.setConfidenceScore(Math.min(1.0, model.periods / 252.0) * (total > 0 ? covered / total : 0.0));
+        } else {
+            insight.addRecommendation("Not enough price history to estimate Value-at-Risk");
+        }
+
+        double varShare = total > 0 ? worstVar / total : 0.0;
+        insight.setRiskLevel(varShare < LOW_RISK_THRESHOLD ? FinancialInsight.RiskLevel.LOW
+                : varShare < HIGH_RISK_THRESHOLD ? FinancialInsight.RiskLevel.MEDIUM
+                : FinancialInsight.RiskLevel.HIGH);
+        for (int s = 0; s < stressLosses.length; s++) {
+            if (total > 0 && stressLosses[s] / total > 0.3) {
+                insight.addRecommendation("Scenario \"" + scenarios.get(s).getName()
+                        + "\" would cost over 30% of the portfolio");
+            }
+        }
+        return insight;
+    }
+
+    /**
+     * Daily variance of the exposures, e^T * C * e, over the held rows only
+     */
+    private static double variance(CovarianceMatrix covariance, double[] exposures, int[] rows, int count) {
+        double variance = 0.0;
+        for (int a = 0; a < count; a++) {
+            int i = rows[a];
+            for (int b = 0; b < count; b++) {
+                int j = rows[b];
+                variance += exposures[i] * exposures[j] * covariance.getCovariance(i, j);
+            }
+        }
+        return Math.max(0.0, variance);
+    }
+
+    /**
+     * Shared inputs for a batch: simple returns per instrument row and their covariance
+     */
+    private static final class RiskModel {
+        private final CovarianceMatrix covariance;
+        private final double[][] simpleReturns;
+        private final int[] rowsByInstrument;
+        private final int size;
+        private final int periods;
+
+        private RiskModel(ReturnMatrix returns, CovarianceMatrix covariance) {
+            this.covariance = covariance;
+            this.size = returns.getInstrumentCount();
+            this.periods = returns.getPeriodCount();
+            this.simpleReturns = new double[size][];
+            int maxId = -1;
+            for (int row = 0; row < size; row++) {
+                maxId = Math.max(maxId, returns.getInstrumentId(row));
+                double[] logReturns = returns.row(row);
+                double[] simple = new double[logReturns.length];
+                for (int t = 0; t < simple.length; t++) {
+                    simple[t] = Math.expm1(logReturns[t]);
+                }
+                simpleReturns[row] = simple;
+            }
+            this.rowsByInstrument = new int[maxId + 1];
+            Arrays.fill(rowsByInstrument, -1);
+            for (int row = 0; row < size; row++) {
+                rowsByInstrument[returns.getInstrumentId(row)] = row;
+            }
+        }
+
+        private int rowOf(int instrumentId) {
+            return instrumentId < rowsByInstrument.length ? rowsByInstrument[instrumentId] : -1;
+        }
+    }
+}
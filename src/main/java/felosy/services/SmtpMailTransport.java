@@ -0,0 +1,93 @@
+package felosy.services;
+
+import javax.mail.*;
+import javax.mail.internet.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Delivers emails over SMTP, keeping one connection open for a whole batch
+ */
+public class SmtpMailTransport implements MailTransport {
+    private static final Logger LOGGER = Logger.getLogger(SmtpMailTransport.class.getName());
+
+    private final Session session;
+    private final String from;
+
+    /**
+     * Creates a transport
+     * @param session Mail session holding the server settings and credentials
+     * @param from Sender address
+     */
+    public SmtpMailTransport(Session session, String from) {
+        if (session == null || from == null) {
+            throw new IllegalArgumentException("Session and sender cannot be null");
+        }
+        this.session = session;
+        this.from = from;
+    }
+
+    @Override
+    public Connection connect() throws MessagingException {
+        Transport transport = session.getTransport("smtp");
+        transport.connect();
+        return new Connection() {
+            @Override
+            public void send(OutgoingEmail email) throws MessagingException {
+                Message message = toMessage(email);
+                transport.sendMessage(message, message.getAllRecipients());
+            }
+
+            @Override
+            public void close() {
+                try {
+                    transport.close();
+                } catch (MessagingException e) {
+                    LOGGER.log(Level.FINE, "Error closing SMTP connection", e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Builds the MIME message for an email
+     */
+    private Message toMessage(OutgoingEmail email) throws MessagingException {
+        Message message = new MimeMessage(session);
+        message.setFrom(new InternetAddress(from));
+        message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(email.getTo()));
+        message.setSubject(email.getSubject());
+        message.setSentDate(new Date());
+
+        if (!email.isHtml() && email.getAttachments().isEmpty()) {
+            message.setText(email.getBody());
+        } else {
+            MimeBodyPart bodyPart = new MimeBodyPart();
+            if (email.isHtml()) {
+                bodyPart.setContent(email.getBody(), "text/html; charset=utf-8");
+            } else {
+                bodyPart.setText(email.getBody());
+            }
+
+            Multipart multipart = new MimeMultipart();
+            multipart.addBodyPart(bodyPart);
+
+            for (File file : email.getAttachments()) {
+                MimeBodyPart attachmentPart = new MimeBodyPart();
+                try {
+                    attachmentPart.attachFile(file);
+                } catch (IOException e) {
+                    throw new MessagingException("Cannot attach " + file, e);
+                }
+                multipart.addBodyPart(attachmentPart);
+            }
+
+            message.setContent(multipart);
+        }
+        message.saveChanges();
+        return message;
+    }
+}
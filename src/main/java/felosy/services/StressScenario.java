@@ -0,0 +1,87 @@
+package felosy.services;
+
+import felosy.assetmanagement.Asset;
+import felosy.assetmanagement.Instrument;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A hypothetical market move, given as a relative shock per instrument,
+ * asset class or asset type, e.g. "gold -20%, crypto -60%".
+ * The most specific shock wins: instrument symbol, then asset class
+ * (STOCK, CRYPTO, COMMODITY), then asset type (e.g. REALESTATE).
+ */
+public final class StressScenario {
+    private final String name;
+    private final Map<String, Double> shocks;
+
+    public StressScenario(String name, Map<String, Double> shocks) {
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("Scenario name cannot be null or empty");
+        }
+        if (shocks == null || shocks.isEmpty()) {
+            throw new IllegalArgumentException("Scenario needs at least one shock");
+        }
+        Map<String, Double> normalized = new LinkedHashMap<>();
+        for (Map.Entry<String, Double> entry : shocks.entrySet()) {
+            if (entry.getValue() == null || entry.getValue() < -1.0) {
+                throw new IllegalArgumentException("Shock cannot be below -100%: " + entry.getKey());
+            }
+            normalized.put(AllocationKeys.normalize(entry.getKey()), entry.getValue());
+        }
+        this.name = name.trim();
+        this.shocks = Collections.unmodifiableMap(normalized);
+    }
+
+    /**
+     * Parses a scenario such as "gold -20%, crypto -60%"
+     * @param spec Comma-separated "target change%" pairs
+     * @return The scenario, named after its spec
+     */
+    public static StressScenario parse(String spec) {
+        if (spec == null || spec.trim().isEmpty()) {
+            throw new IllegalArgumentException("Scenario cannot be null or empty");
+        }
+        Map<String, Double> shocks = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            String term = part.trim();
+            int split = term.lastIndexOf(' ');
+            if (split <= 0) {
+                throw new IllegalArgumentException("Expected \"target change%\" but got: " + term);
+            }
+            String amount = term.substring(split + 1).replace("%", "").trim();
+            try {
+                shocks.put(term.substring(0, split), Double.parseDouble(amount) / 100.0);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid shock in scenario: " + term);
+            }
+        }
+        return new StressScenario(spec.trim(), shocks);
+    }
+
+    /**
+     * Gets the relative shock that applies to an asset
+     * @param asset The asset
+     * @param instrument The asset's instrument, or null if it does not trade
+     * @return The shock, e.g. -0.2 for a 20% fall, or 0 if the scenario leaves it alone
+     */
+    public double shockFor(Asset asset, Instrument instrument) {
+        String key = AllocationKeys.match(shocks, asset, instrument);
+        Double shock = key != null ? shocks.get(key) : null;
+        return shock != null ? shock : 0.0;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Map<String, Double> getShocks() {
+        return shocks;
+    }
+
+    @Override
+    public String toString() {
+        return "StressScenario{" + name + "}";
+    }
+}
@@ -0,0 +1,77 @@
+package felosy.services;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Target weights for a portfolio, keyed by instrument symbol, asset class or
+ * asset type, e.g. "stocks 40%, gold 20%, crypto 10%, real estate 30%".
+ * Weights are relative to the holdings they cover; holdings that no target
+ * covers are left out of rebalancing.
+ */
+public final class TargetAllocation {
+    private static final double WEIGHT_TOLERANCE = 1e-6;
+
+    private final Map<String, Double> weights;
+
+    public TargetAllocation(Map<String, Double> weights) {
+        if (weights == null || weights.isEmpty()) {
+            throw new IllegalArgumentException("Target allocation needs at least one target");
+        }
+        Map<String, Double> normalized = new LinkedHashMap<>();
+        double sum = 0.0;
+        for (Map.Entry<String, Double> entry : weights.entrySet()) {
+            Double weight = entry.getValue();
+            if (weight == null || weight < 0.0 || weight.isNaN()) {
+                throw new IllegalArgumentException("Target weight must be non-negative: " + entry.getKey());
+            }
+            normalized.merge(AllocationKeys.normalize(entry.getKey()), weight, Double::sum);
+            sum += weight;
+        }
+        if (Math.abs(sum - 1.0) > WEIGHT_TOLERANCE) {
+            throw new IllegalArgumentException("Target weights must add up to 100% but add up to "
+                    + String.format("%.2f%%", sum * 100));
+        }
+        this.weights = Collections.unmodifiableMap(normalized);
+    }
+
+    /**
+     * Parses an allocation such as "stocks 40%, gold 20%, crypto 40%"
+     * @param spec Comma-separated "target weight%" pairs
+     * @return The allocation
+     */
+    public static TargetAllocation parse(String spec) {
+        if (spec == null || spec.trim().isEmpty()) {
+            throw new IllegalArgumentException("Target allocation cannot be null or empty");
+        }
+        Map<String, Double> weights = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            String term = part.trim();
+            int split = term.lastIndexOf(' ');
+            if (split <= 0) {
+                throw new IllegalArgumentException("Expected \"target weight%\" but got: " + term);
+            }
+            String amount = term.substring(split + 1).replace("%", "").trim();
+            try {
+                weights.merge(term.substring(0, split), Double.parseDouble(amount) / 100.0, Double::sum);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid weight in target allocation: " + term);
+            }
+        }
+        return new TargetAllocation(weights);
+    }
+
+    public double getWeight(String target) {
+        return weights.getOrDefault(AllocationKeys.normalize(target), 0.0);
+    }
+
+    public Map<String, Double> getWeights() {
+        return weights;
+    }
+
+    @Override
+    public String toString() {
+        return "TargetAllocation" + weights;
+    }
+}
@@ -0,0 +1,16 @@
+package felosy.services;
+
+/**
+ * Receives price updates from a {@link MarketDataFeed}.
+ * Calls for one subscription are never concurrent, but may arrive on any feed thread.
+ */
+@FunctionalInterface
+public interface TickListener {
+    /**
+     * Called with the latest price of an instrument
+     * @param instrumentId The instrument ID in the instrument registry
+     * @param price The unit price
+     * @param timestamp When the price was published, in epoch milliseconds
+     */
+    void onTick(int instrumentId, double price, long timestamp);
+}
@@ -0,0 +1,82 @@
+package felosy.services;
+
+import java.math.BigDecimal;
+
+/**
+ * Costs charged on a trade: a fixed fee per order, a commission on the traded
+ * value, and capital gains tax on realized gains, with a lower rate once a
+ * position has been held for longer than a year.
+ */
+public final class TradingCostModel {
+    public static final int LONG_TERM_DAYS = 365;
+
+    private final BigDecimal fixedFee;
+    private final double commissionRate;
+    private final double shortTermTaxRate;
+    private final double longTermTaxRate;
+
+    public TradingCostModel(BigDecimal fixedFee, double commissionRate,
+                            double shortTermTaxRate, double longTermTaxRate) {
+        if (fixedFee == null || fixedFee.signum() < 0) {
+            throw new IllegalArgumentException("Fixed fee cannot be null or negative");
+        }
+        if (commissionRate < 0.0 || commissionRate >= 1.0) {
+            throw new IllegalArgumentException("Commission rate must be between 0 and 1");
+        }
+        if (shortTermTaxRate < 0.0 || shortTermTaxRate >= 1.0 || longTermTaxRate < 0.0 || longTermTaxRate >= 1.0) {
+            throw new IllegalArgumentException("Tax rates must be between 0 and 1");
+        }
+        this.fixedFee = fixedFee;
+        this.commissionRate = commissionRate;
+        this.shortTermTaxRate = shortTermTaxRate;
+        this.longTermTaxRate = longTermTaxRate;
+    }
+
+    /**
+     * @return a model with no fees and no tax
+     */
+    public static TradingCostModel free() {
+        return new TradingCostModel(BigDecimal.ZERO, 0.0, 0.0, 0.0);
+    }
+
+    /**
+     * Gets the fee charged for one order
+     * @param tradeValue Value traded by the order
+     * @return Fixed fee plus commission
+     */
+    public double feeFor(double tradeValue) {
+        return fixedFee.doubleValue() + commissionRate * Math.abs(tradeValue);
+    }
+
+    /**
+     * Gets the tax due on a realized gain; losses give a negative amount that offsets other gains
+     * @param gain Realized gain, negative for a loss
+     * @param heldDays Days the position was held
+     */
+    public double taxFor(double gain, long heldDays) {
+        return gain * (heldDays > LONG_TERM_DAYS ? longTermTaxRate : shortTermTaxRate);
+    }
+
+    // Getters
+    public BigDecimal getFixedFee() {
+        return fixedFee;
+    }
+
+    public double getCommissionRate() {
+        return commissionRate;
+    }
+
+    public double getShortTermTaxRate() {
+        return shortTermTaxRate;
+    }
+
+    public double getLongTermTaxRate() {
+        return longTermTaxRate;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TradingCostModel[fixedFee=%s, commission=%.4f, shortTermTax=%.2f, longTermTax=%.2f]",
+            fixedFee, commissionRate, shortTermTaxRate, longTermTaxRate);
+    }
+}
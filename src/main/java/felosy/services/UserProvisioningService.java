@@ -0,0 +1,228 @@
+package felosy.services;
+
+import felosy.authentication.Authentication;
+import felosy.authentication.User;
+import felosy.storage.DataStorage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+/**
+ * Creates and removes users in bulk, e.g. when onboarding an organization.
+ * Registrations are validated and their passwords hashed in parallel, then
+ * committed to the user directory with one write. Deletions remove the users
+ * with one write and then cascade to their portfolios and holdings, one
+ * write per store. Password hashing dominates large registrations: its cost
+ * is deliberately calibrated per hash, so it scales with the number of cores.
+ */
+public class UserProvisioningService {
+    private static final Logger LOGGER = Logger.getLogger(UserProvisioningService.class.getName());
+    private static final UserProvisioningService instance = new UserProvisioningService(ForkJoinPool.commonPool());
+
+    private final ForkJoinPool pool;
+
+    public UserProvisioningService(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("Pool cannot be null");
+        }
+        this.pool = pool;
+    }
+
+    public static UserProvisioningService getInstance() {
+        return instance;
+    }
+
+    /**
+     * Registers many users at once.
+     * Invalid entries, emails repeated in the batch and emails already registered
+     * are reported as failures; the rest are saved together.
+     * @param registrations The users to create
+     * @return IDs of the created users, and failures keyed by email
+     */
+    public ProvisioningResult registerUsers(List<Registration> registrations) {
+        if (registrations == null) {
+            throw new IllegalArgumentException("Registrations cannot be null");
+        }
+        long start = System.nanoTime();
+        ProvisioningResult result = new ProvisioningResult();
+
+        // Reject repeats within the batch before spending a password hash on them
+        Set<String> seen = new HashSet<>();
+        boolean[] repeated = new boolean[registrations.size()];
+        for (int i = 0; i < registrations.size(); i++) {
+            Registration registration = registrations.get(i);
+            repeated[i] = registration != null && registration.email != null
+                    && !seen.add(registration.email.trim().toLowerCase(Locale.ROOT));
+        }
+
+        // Validate and hash in parallel; each slot holds a user or a reason
+        Object[] outcomes = pool.submit(() -> IntStream.range(0, registrations.size())
+                .parallel()
+                .mapToObj(i -> repeated[i] ? "Email repeated in batch" : create(registrations.get(i)))
+                .toArray()).join();
+
+        List<User> candidates = new ArrayList<>();
+        for (int i = 0; i < outcomes.length; i++) {
+            if (outcomes[i] instanceof User) {
+                candidates.add((User) outcomes[i]);
+            } else {
+                String key = keyOf(registrations.get(i), i);
+                result.addFailure(repeated[i] ? key + " #" + i : key, (String) outcomes[i]);
+            }
+        }
+
+        // Commit in one write; anything registered concurrently is left out
+        List<User> added = DataStorage.addUsers(candidates, false);
+        Set<String> addedIds = new HashSet<>();
+        for (User user : added) {
+            addedIds.add(user.getUserId());
+            result.addSuccess(user.getUserId());
+        }
+        for (User user : candidates) {
+            if (!addedIds.contains(user.getUserId())) {
+                result.addFailure(user.getEmail(), DataStorage.findUserByEmail(user.getEmail()) != null
+                        ? "Email already registered" : "Could not save user");
+            }
+        }
+
+        result.setElapsedMillis((System.nanoTime() - start) / 1_000_000);
+        LOGGER.info("Registered " + added.size() + " of " + registrations.size() + " users in "
+                + result.getElapsedMillis() + " ms");
+        return result;
+    }
+
+    /**
+     * Deletes many users along with their portfolios, holdings and sessions.
+     * The users are removed first; if that write fails nothing is touched.
+     * A store that fails afterwards is reported as a warning.
+     * @param userIds The users to delete
+     * @return IDs of the deleted users, and failures keyed by user ID
+     */
+    public ProvisioningResult deleteUsers(Collection<String> userIds) {
+        if (userIds == null) {
+            throw new IllegalArgumentException("User IDs cannot be null");
+        }
+        long start = System.nanoTime();
+        ProvisioningResult result = new ProvisioningResult();
+        Set<String> requested = new LinkedHashSet<>(userIds);
+
+        List<String> deleted = DataStorage.deleteUsers(requested);
+        if (deleted == null) {
+            for (String userId : requested) {
+                result.addFailure(userId, "Could not save user directory");
+            }
+            result.setElapsedMillis((System.nanoTime() - start) / 1_000_000);
+            return result;
+        }
+        Set<String> deletedIds = new HashSet<>(deleted);
+        for (String userId : requested) {
+            if (deletedIds.contains(userId)) {
+                result.addSuccess(userId);
+            } else {
+                result.addFailure(userId, "User not found");
+            }
+        }
+
+        if (!deleted.isEmpty()) {
+            cascade(deleted, result);
+        }
+
+        result.setElapsedMillis((System.nanoTime() - start) / 1_000_000);
+        LOGGER.info("Deleted " + deleted.size() + " of " + requested.size() + " users in "
+                + result.getElapsedMillis() + " ms");
+        return result;
+    }
+
+    /**
+     * Makes single account deletion go through the same cascade as bulk deletion
+     */
+    public void installAccountDeleter() {
+        Authentication.setAccountDeleter(userId -> deleteUsers(List.of(userId)).getSucceeded().contains(userId));
+    }
+
+    /**
+     * Removes what the deleted users owned from every other store
+     */
+    private void cascade(List<String> deleted, ProvisioningResult result) {
+        if (!DataStorage.deleteUserPortfolios(deleted)) {
+            result.addWarning("Could not delete the portfolios of the deleted users");
+        }
+        if (!GoldDataService.getInstance().removeUsers(deleted)) {
+            result.addWarning("Could not delete the gold holdings of the deleted users");
+        }
+        if (!StockDataService.getInstance().removeUsers(deleted)) {
+            result.addWarning("Could not delete the stock holdings of the deleted users");
+        }
+        if (!CryptoDataService.getInstance().removeUsers(deleted)) {
+            result.addWarning("Could not delete the crypto holdings of the deleted users");
+        }
+        if (!RealEstateDataService.getInstance().removeUsers(deleted)) {
+            result.addWarning("Could not delete the real estate holdings of the deleted users");
+        }
+        for (String userId : deleted) {
+            Authentication.invalidateUserSessions(userId);
+        }
+    }
+
+    /**
+     * Validates a registration and creates its user
+     * @return The user, or the reason it was rejected
+     */
+    private static Object create(Registration registration) {
+        if (registration == null) {
+            return "Registration cannot be null";
+        }
+        if (!Authentication.isValidUsername(registration.username)) {
+            return "Invalid username";
+        }
+        if (!Authentication.isValidEmail(registration.email)) {
+            return "Invalid email";
+        }
+        if (!Authentication.isValidPassword(registration.password)) {
+            return "Password does not meet the password policy";
+        }
+        if (DataStorage.findUserByEmail(registration.email) != null) {
+            return "Email already registered";
+        }
+        try {
+            return new User(registration.username, registration.email, registration.password);
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+
+    private static String keyOf(Registration registration, int index) {
+        return registration != null && registration.email != null ? registration.email : "#" + index;
+    }
+
+    /**
+     * One user to register
+     */
+    public static final class Registration {
+        private final String username;
+        private final String email;
+        private final String password;
+
+        public Registration(String username, String email, String password) {
+            this.username = username;
+            this.email = email;
+            this.password = password;
+        }
+
+        // Getters
+        public String getUsername() {
+            return username;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+    }
+}
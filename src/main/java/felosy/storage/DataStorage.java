@@ -2,8 +2,10 @@ package felosy.storage;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 import java.nio.file.*;
@@ -35,6 +37,10 @@ public class DataStorage {
     private static final String COMPLIANCE_RULES_FILE = "compliance_rules.dat";
     private static final String REPORTS_FILE = "reports.dat";
     
+    // Files of the retired user store, merged into USERS_FILE once and then renamed
+    private static final String[] LEGACY_USER_FILES = {"users_by_username.dat", "users_by_email.dat"};
+    private static final String MIGRATED_SUFFIX = ".migrated";
+    
     // Thread safety locks
     private static final ReadWriteLock usersLock = new ReentrantReadWriteLock();
     private static final ReadWriteLock portfoliosLock = new ReentrantReadWriteLock();
@@ -42,9 +48,16 @@ public class DataStorage {
     private static final ReadWriteLock reportsLock = new ReentrantReadWriteLock();
     
     // In-memory caches
-    private static Map<String, User> userCache = new HashMap<>();
+    private static volatile Map<String, User> userCache = new ConcurrentHashMap<>();
     private static Map<String, Portfolio> portfolioCache = new HashMap<>();
-    private static boolean cacheInitialized = false;
+    private static volatile boolean cacheInitialized = false;
+    
+    // Case-folded lookup indexes over the user cache. Reads are lock-free;
+    // writers hold the users write lock so the indexes move with the file.
+    // Keys are remembered per user so a user renamed in place is re-indexed correctly.
+    private static final Map<String, String> userIdsByEmail = new ConcurrentHashMap<>();
+    private static final Map<String, Set<String>> userIdsByUsername = new ConcurrentHashMap<>();
+    private static final Map<String, String[]> indexKeysByUserId = new ConcurrentHashMap<>();
     
     /**
      * Initialize the data storage system
@@ -56,7 +69,7 @@ public class DataStorage {
             createDirectories();
             
             // Initialize caches
-            initializeCaches();
+            ensureCachesInitialized();
             
             LOGGER.info("DataStorage system initialized successfully");
         } catch (Exception e) {
@@ -81,6 +94,7 @@ public class DataStorage {
     
     /**
      * Initialize the in-memory caches from disk
+     * Callers hold the users write lock; see {@link #ensureCachesInitialized()}
      */
     private static void initializeCaches() {
         if (cacheInitialized) {
@@ -89,9 +103,9 @@ public class DataStorage {
         
         // Load users
         Map<String, User> loadedUsers = loadUsers();
-        if (loadedUsers != null) {
-            userCache = loadedUsers;
-        }
+        userCache = loadedUsers != null ? new ConcurrentHashMap<>(loadedUsers) : new ConcurrentHashMap<>();
+        rebuildUserIndexes();
+        mergeLegacyUserFiles();
         
         // Load portfolios
         Map<String, Portfolio> loadedPortfolios = loadPortfolios();
@@ -116,11 +130,91 @@ public class DataStorage {
         
         usersLock.writeLock().lock();
         try {
-            // Update cache
-            userCache.put(user.getUserId(), user);
+            ensureCachesInitialized();
+            
+            // Update cache and indexes
+            User previous = userCache.put(user.getUserId(), user);
+            String[] previousKeys = indexUser(user);
             
-            // Save to disk with transaction-like semantics
-            return saveObjectToFile(userCache, USERS_FILE);
+            // Save to disk with transaction-like semantics, undoing the cache change on failure
+            if (saveObjectToFile(userCache, USERS_FILE)) {
+                return true;
+            }
+            restoreUser(user.getUserId(), previous, previousKeys);
+            return false;
+        } finally {
+            usersLock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Add a new user to the directory, atomically checking that its email
+     * (and optionally its username) is not registered yet
+     * 
+     * @param user The user to add
+     * @param requireUniqueUsername Whether the username must also be unused
+     * @return true if the user was added and saved, false if it clashed or could not be saved
+     */
+    public static boolean addUser(User user, boolean requireUniqueUsername) {
+        if (user == null) {
+            LOGGER.warning("Attempted to add null user");
+            return false;
+        }
+        
+        usersLock.writeLock().lock();
+        try {
+            ensureCachesInitialized();
+            if (findUserByEmail(user.getEmail()) != null
+                    || (requireUniqueUsername && findUserByUsername(user.getUserName()) != null)) {
+                LOGGER.warning("User already registered: " + user.getEmail());
+                return false;
+            }
+            return saveUser(user);
+        } finally {
+            usersLock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Add many new users in a single write, skipping any whose email is already
+     * registered or repeated earlier in the batch (and, optionally, whose username is)
+     * 
+     * @param users The users to add
+     * @param requireUniqueUsername Whether usernames must also be unused
+     * @return The users that were added; empty if none were, or if the write failed
+     */
+    public static List<User> addUsers(Collection<User> users, boolean requireUniqueUsername) {
+        if (users == null || users.isEmpty()) {
+            return new ArrayList<>();
+        }
+        
+        usersLock.writeLock().lock();
+        try {
+            ensureCachesInitialized();
+            
+            // Indexing each user as it is accepted makes later duplicates in the batch clash too
+            List<User> added = new ArrayList<>();
+            for (User user : users) {
+                if (user == null || findUserByEmail(user.getEmail()) != null
+                        || (requireUniqueUsername && findUserByUsername(user.getUserName()) != null)) {
+                    continue;
+                }
+                userCache.put(user.getUserId(), user);
+                indexUser(user);
+                added.add(user);
+            }
+            if (added.isEmpty()) {
+                return added;
+            }
+            
+            // Save to disk once, taking the whole batch back out on failure
+            if (saveObjectToFile(userCache, USERS_FILE)) {
+                return added;
+            }
+            for (User user : added) {
+                restoreUser(user.getUserId(), null, null);
+            }
+            return new ArrayList<>();
         } finally {
             usersLock.writeLock().unlock();
         }
@@ -140,13 +234,29 @@ public class DataStorage {
         
         usersLock.writeLock().lock();
         try {
-            // Update cache
+            ensureCachesInitialized();
+            
+            // Update cache and indexes, remembering what each user replaced
+            Map<String, User> previousUsers = new HashMap<>();
+            Map<String, String[]> previousKeys = new HashMap<>();
             for (User user : users) {
-                userCache.put(user.getUserId(), user);
+                String userId = user.getUserId();
+                User previous = userCache.put(userId, user);
+                String[] keys = indexUser(user);
+                if (!previousKeys.containsKey(userId)) {
+                    previousUsers.put(userId, previous);
+                    previousKeys.put(userId, keys);
+                }
             }
             
             // Save to disk
-            return saveObjectToFile(userCache, USERS_FILE);
+            if (saveObjectToFile(userCache, USERS_FILE)) {
+                return true;
+            }
+            for (Map.Entry<String, String[]> entry : previousKeys.entrySet()) {
+                restoreUser(entry.getKey(), previousUsers.get(entry.getKey()), entry.getValue());
+            }
+            return false;
         } finally {
             usersLock.writeLock().unlock();
         }
@@ -164,17 +274,9 @@ public class DataStorage {
             return null;
         }
         
-        usersLock.readLock().lock();
-        try {
-            // Ensure cache is initialized
-            if (!cacheInitialized) {
-                initializeCaches();
-            }
-            
-            return userCache.get(userId);
-        } finally {
-            usersLock.readLock().unlock();
-        }
+        // Ensure cache is initialized; reads from the cache need no lock
+        ensureCachesInitialized();
+        return userCache.get(userId);
     }
     
     /**
@@ -212,16 +314,304 @@ public class DataStorage {
         
         usersLock.writeLock().lock();
         try {
-            // Remove from cache
-            userCache.remove(userId);
+            ensureCachesInitialized();
             
-            // Save updated cache to disk
-            return saveObjectToFile(userCache, USERS_FILE);
+            // Remove from cache and indexes
+            User previous = userCache.remove(userId);
+            String[] previousKeys = unindexUser(userId);
+            
+            // Save updated cache to disk, putting the user back on failure
+            if (saveObjectToFile(userCache, USERS_FILE)) {
+                return true;
+            }
+            restoreUser(userId, previous, previousKeys);
+            return false;
+        } finally {
+            usersLock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Delete many users from persistent storage in a single write
+     * 
+     * @param userIds The IDs of the users to delete
+     * @return The IDs that were deleted, or null if the write failed and nothing was deleted
+     */
+    public static List<String> deleteUsers(Collection<String> userIds) {
+        if (userIds == null || userIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        
+        usersLock.writeLock().lock();
+        try {
+            ensureCachesInitialized();
+            
+            // Remove from cache and indexes, remembering what to put back
+            List<String> deleted = new ArrayList<>();
+            Map<String, User> previousUsers = new HashMap<>();
+            Map<String, String[]> previousKeys = new HashMap<>();
+            for (String userId : userIds) {
+                User previous = userId != null ? userCache.remove(userId) : null;
+                if (previous == null) {
+                    continue;
+                }
+                deleted.add(userId);
+                previousUsers.put(userId, previous);
+                previousKeys.put(userId, unindexUser(userId));
+            }
+            if (deleted.isEmpty()) {
+                return deleted;
+            }
+            
+            // Save updated cache to disk, putting the users back on failure
+            if (saveObjectToFile(userCache, USERS_FILE)) {
+                return deleted;
+            }
+            for (String userId : deleted) {
+                restoreUser(userId, previousUsers.get(userId), previousKeys.get(userId));
+            }
+            return null;
+        } finally {
+            usersLock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Find a user by email, ignoring case
+     * Served from an in-memory index; never reads the users file
+     * 
+     * @param email The email to search for
+     * @return The user, or null if not found
+     */
+    public static User findUserByEmail(String email) {
+        if (email == null) {
+            return null;
+        }
+        
+        ensureCachesInitialized();
+        String userId = userIdsByEmail.get(foldCase(email));
+        return userId != null ? userCache.get(userId) : null;
+    }
+    
+    /**
+     * Find a user by username, ignoring case
+     * Usernames are not guaranteed unique; the earliest indexed user wins
+     * 
+     * @param username The username to search for
+     * @return The user, or null if not found
+     */
+    public static User findUserByUsername(String username) {
+        if (username == null) {
+            return null;
+        }
+        
+        ensureCachesInitialized();
+        Set<String> userIds = userIdsByUsername.get(foldCase(username));
+        if (userIds != null) {
+            for (String userId : userIds) {
+                User user = userCache.get(userId);
+                if (user != null) {
+                    return user;
+                }
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Find a user by username or email, ignoring case
+     * An email match wins over a username match
+     * 
+     * @param usernameOrEmail The username or email to search for
+     * @return The user, or null if not found
+     */
+    public static User findUserByUsernameOrEmail(String usernameOrEmail) {
+        if (usernameOrEmail == null) {
+            return null;
+        }
+        
+        User user = findUserByEmail(usernameOrEmail);
+        return user != null ? user : findUserByUsername(usernameOrEmail);
+    }
+    
+    /**
+     * Normalizes an email or username for the lookup indexes
+     */
+    private static String foldCase(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+    
+    /**
+     * Initializes the caches on first use
+     * Must not be called while holding only the users read lock
+     */
+    private static void ensureCachesInitialized() {
+        if (cacheInitialized) {
+            return;
+        }
+        usersLock.writeLock().lock();
+        try {
+            initializeCaches();
         } finally {
             usersLock.writeLock().unlock();
         }
     }
     
+    /**
+     * Merges users from the retired per-username and per-email files into the
+     * user cache, writes them to the users file once, and renames the old files
+     * so the merge does not run again. Users already present by ID or email are kept.
+     * Files that cannot be read are left in place so the merge is retried on the next start.
+     */
+    @SuppressWarnings("unchecked")
+    private static void mergeLegacyUserFiles() {
+        int merged = 0;
+        List<String> read = new ArrayList<>();
+        for (String legacyFile : LEGACY_USER_FILES) {
+            if (!Files.exists(Paths.get(DATA_DIR, legacyFile))) {
+                continue;
+            }
+            Object obj = loadObjectFromFile(legacyFile);
+            if (!(obj instanceof Map)) {
+                LOGGER.severe("Could not read legacy user file " + legacyFile + "; leaving it in place");
+                continue;
+            }
+            read.add(legacyFile);
+            for (Object value : ((Map<String, Object>) obj).values()) {
+                if (!(value instanceof User)) {
+                    continue;
+                }
+                User user = (User) value;
+                if (userCache.containsKey(user.getUserId())
+                        || (user.getEmail() != null && userIdsByEmail.containsKey(foldCase(user.getEmail())))) {
+                    continue;
+                }
+                userCache.put(user.getUserId(), user);
+                indexUser(user);
+                merged++;
+            }
+        }
+        if (read.isEmpty()) {
+            return;
+        }
+        if (merged > 0 && !saveObjectToFile(userCache, USERS_FILE)) {
+            LOGGER.severe("Failed to save merged users; legacy user files left in place");
+            return;
+        }
+        for (String legacyFile : read) {
+            try {
+                Files.move(Paths.get(DATA_DIR, legacyFile), Paths.get(DATA_DIR, legacyFile + MIGRATED_SUFFIX),
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to retire legacy user file " + legacyFile, e);
+            }
+        }
+        LOGGER.info("Merged " + merged + " users from legacy user files");
+    }
+    
+    /**
+     * Rebuilds the email and username indexes from the user cache
+     */
+    private static void rebuildUserIndexes() {
+        userIdsByEmail.clear();
+        userIdsByUsername.clear();
+        indexKeysByUserId.clear();
+        for (User user : userCache.values()) {
+            indexUser(user);
+        }
+    }
+    
+    /**
+     * Indexes a user under its current email and username, replacing its old keys.
+     * The new keys are published before the old ones are dropped, so a lock-free
+     * reader never finds an existing user missing while it is re-indexed.
+     * 
+     * @return The keys the user was indexed under before, or null if it was not indexed
+     */
+    private static String[] indexUser(User user) {
+        String[] keys = {
+            user.getEmail() != null ? foldCase(user.getEmail()) : null,
+            user.getUserName() != null ? foldCase(user.getUserName()) : null
+        };
+        return replaceKeys(user.getUserId(), keys);
+    }
+    
+    /**
+     * Removes a user from the indexes
+     * 
+     * @return The keys the user was indexed under, or null if it was not indexed
+     */
+    private static String[] unindexUser(String userId) {
+        String[] keys = indexKeysByUserId.remove(userId);
+        if (keys != null) {
+            removeKeys(userId, keys, null);
+        }
+        return keys;
+    }
+    
+    /**
+     * Indexes a user under new keys, then drops whichever old keys changed
+     * 
+     * @return The keys the user was indexed under before, or null if it was not indexed
+     */
+    private static String[] replaceKeys(String userId, String[] keys) {
+        if (keys[0] != null) {
+            userIdsByEmail.put(keys[0], userId);
+        }
+        if (keys[1] != null) {
+            // Username sets are immutable and swapped whole, so readers can iterate them without the lock
+            userIdsByUsername.compute(keys[1], (key, userIds) -> {
+                if (userIds != null && userIds.contains(userId)) {
+                    return userIds;
+                }
+                Set<String> updated = userIds != null ? new LinkedHashSet<>(userIds) : new LinkedHashSet<>();
+                updated.add(userId);
+                return Collections.unmodifiableSet(updated);
+            });
+        }
+        String[] previousKeys = indexKeysByUserId.put(userId, keys);
+        if (previousKeys != null) {
+            removeKeys(userId, previousKeys, keys);
+        }
+        return previousKeys;
+    }
+    
+    /**
+     * Drops a user's index entries for the given keys, except those it keeps
+     */
+    private static void removeKeys(String userId, String[] keys, String[] kept) {
+        if (keys[0] != null && (kept == null || !keys[0].equals(kept[0]))) {
+            userIdsByEmail.remove(keys[0], userId);
+        }
+        if (keys[1] != null && (kept == null || !keys[1].equals(kept[1]))) {
+            userIdsByUsername.computeIfPresent(keys[1], (key, userIds) -> {
+                if (!userIds.contains(userId)) {
+                    return userIds;
+                }
+                Set<String> updated = new LinkedHashSet<>(userIds);
+                updated.remove(userId);
+                return updated.isEmpty() ? null : Collections.unmodifiableSet(updated);
+            });
+        }
+    }
+    
+    /**
+     * Puts a user's cache entry and index keys back after a failed write
+     */
+    private static void restoreUser(String userId, User previous, String[] previousKeys) {
+        if (previous != null) {
+            userCache.put(userId, previous);
+        }
+        if (previousKeys != null) {
+            replaceKeys(userId, previousKeys);
+        } else {
+            unindexUser(userId);
+        }
+        if (previous == null) {
+            userCache.remove(userId);
+        }
+    }
+    
     /**
      * Save a portfolio to persistent storage
      * 
@@ -284,13 +674,11 @@ public class DataStorage {
             return null;
         }
         
+        // Ensure cache is initialized before taking the portfolios lock
+        ensureCachesInitialized();
+        
         portfoliosLock.readLock().lock();
         try {
-            // Ensure cache is initialized
-            if (!cacheInitialized) {
-                initializeCaches();
-            }
-            
             return portfolioCache.get(portfolioId);
         } finally {
             portfoliosLock.readLock().unlock();
@@ -318,6 +706,56 @@ public class DataStorage {
         }
     }
     
+    /**
+     * Get every cached portfolio. Unlike {@link #loadPortfolios()} this does
+     * not read the file, and the portfolios returned are the live instances,
+     * including changes that have not been saved yet.
+     * 
+     * @return A list of all portfolios
+     */
+    public static List<Portfolio> loadCachedPortfolios() {
+        // Ensure cache is initialized before taking the portfolios lock
+        ensureCachesInitialized();
+        
+        portfoliosLock.readLock().lock();
+        try {
+            return new ArrayList<>(portfolioCache.values());
+        } finally {
+            portfoliosLock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Update every cached portfolio in place and save them in a single write.
+     * The portfolios lock is held throughout, so no other save can write an
+     * older copy over the update.
+     * 
+     * @param update Receives the live portfolios and changes them
+     * @return true if the portfolios were saved, or there were none to save
+     */
+    public static boolean updatePortfolios(Consumer<Collection<Portfolio>> update) {
+        if (update == null) {
+            LOGGER.warning("Attempted to update portfolios with null update");
+            return false;
+        }
+        
+        // Ensure cache is initialized before taking the portfolios lock
+        ensureCachesInitialized();
+        
+        portfoliosLock.writeLock().lock();
+        try {
+            if (portfolioCache.isEmpty()) {
+                return true;
+            }
+            update.accept(Collections.unmodifiableCollection(portfolioCache.values()));
+            
+            // Save to disk
+            return saveObjectToFile(portfolioCache, PORTFOLIOS_FILE);
+        } finally {
+            portfoliosLock.writeLock().unlock();
+        }
+    }
+    
     /**
      * Load all portfolios for a specific user
      * 
@@ -330,13 +768,11 @@ public class DataStorage {
             return new ArrayList<>();
         }
         
+        // Ensure cache is initialized before taking the portfolios lock
+        ensureCachesInitialized();
+        
         portfoliosLock.readLock().lock();
         try {
-            // Ensure cache is initialized
-            if (!cacheInitialized) {
-                initializeCaches();
-            }
-            
             List<Portfolio> userPortfolios = new ArrayList<>();
             for (Portfolio portfolio : portfolioCache.values()) {
                 if (userId.equals(portfolio.getUserId())) {
@@ -374,6 +810,47 @@ public class DataStorage {
         }
     }
     
+    /**
+     * Delete every portfolio owned by any of the given users in a single write
+     * 
+     * @param userIds The IDs of the owners
+     * @return true if the operation was successful
+     */
+    public static boolean deleteUserPortfolios(Collection<String> userIds) {
+        if (userIds == null || userIds.isEmpty()) {
+            return true;
+        }
+        
+        // Ensure cache is initialized before taking the portfolios lock
+        ensureCachesInitialized();
+        
+        portfoliosLock.writeLock().lock();
+        try {
+            Set<String> owners = new HashSet<>(userIds);
+            Map<String, Portfolio> removed = new HashMap<>();
+            Iterator<Map.Entry<String, Portfolio>> iterator = portfolioCache.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Portfolio> entry = iterator.next();
+                if (owners.contains(entry.getValue().getUserId())) {
+                    removed.put(entry.getKey(), entry.getValue());
+                    iterator.remove();
+                }
+            }
+            if (removed.isEmpty()) {
+                return true;
+            }
+            
+            // Save updated cache to disk, putting the portfolios back on failure
+            if (saveObjectToFile(portfolioCache, PORTFOLIOS_FILE)) {
+                return true;
+            }
+            portfolioCache.putAll(removed);
+            return false;
+        } finally {
+            portfoliosLock.writeLock().unlock();
+        }
+    }
+    
     /**
      * Create a backup of all data files
      * 
@@ -450,8 +927,13 @@ public class DataStorage {
             }
             
             // Reset caches
-            cacheInitialized = false;
-            initializeCaches();
+            usersLock.writeLock().lock();
+            try {
+                cacheInitialized = false;
+                initializeCaches();
+            } finally {
+                usersLock.writeLock().unlock();
+            }
             
             LOGGER.info("Restored from backup at " + backupDir);
             return true;
@@ -551,6 +1033,9 @@ public class DataStorage {
             // Clear caches
             userCache.clear();
             portfolioCache.clear();
+            userIdsByEmail.clear();
+            userIdsByUsername.clear();
+            indexKeysByUserId.clear();
             
             // Delete files
             new File(DATA_DIR, USERS_FILE).delete();